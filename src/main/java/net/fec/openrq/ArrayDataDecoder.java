@@ -20,10 +20,15 @@ import java.io.DataInput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import net.fec.openrq.DataUtils.SourceBlockSupplier;
 import net.fec.openrq.decoder.DataDecoder;
+import net.fec.openrq.decoder.DecodingEngine;
 import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockDecodingListener;
 import net.fec.openrq.parameters.FECParameters;
 import net.fec.openrq.util.collection.ImmutableList;
 
@@ -46,6 +51,109 @@ public final class ArrayDataDecoder implements DataDecoder {
      */
     static ArrayDataDecoder newDecoder(FECParameters fecParams, int symbOver) {
 
+        return newDecoder(fecParams, symbOver, DecodingEngine.PERMANENT_INACTIVATION, null, null);
+    }
+
+    /**
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbOver
+     *            Repair symbol overhead (must be non-negative)
+     * @param engine
+     *            The algorithm used to decode source blocks
+     * @param decodingExecutor
+     *            An executor that runs the decoding operations, or {@code null} if source blocks are decoded by the
+     *            threads that put encoding packets
+     * @param listener
+     *            A listener of finished decoding operations, or {@code null} if no listener is to be notified
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} or {@code engine} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || extraSymbols < 0}
+     */
+    static ArrayDataDecoder newDecoder(
+        FECParameters fecParams,
+        int symbOver,
+        DecodingEngine engine,
+        Executor decodingExecutor,
+        SourceBlockDecodingListener listener)
+    {
+
+        return newDecoder(fecParams, symbOver, engine, decodingExecutor, listener, null);
+    }
+
+    /**
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbOver
+     *            Repair symbol overhead (must be non-negative)
+     * @param engine
+     *            The algorithm used to decode source blocks
+     * @param decodingExecutor
+     *            An executor that runs the decoding operations, or {@code null} if source blocks are decoded by the
+     *            threads that put encoding packets
+     * @param listener
+     *            A listener of finished decoding operations, or {@code null} if no listener is to be notified
+     * @param repairSymbolBudget
+     *            A memory budget for the received repair symbols, or {@code null} if their memory is unbounded
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} or {@code engine} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || extraSymbols < 0}
+     */
+    static ArrayDataDecoder newDecoder(
+        FECParameters fecParams,
+        int symbOver,
+        DecodingEngine engine,
+        Executor decodingExecutor,
+        SourceBlockDecodingListener listener,
+        RepairSymbolBudget repairSymbolBudget)
+    {
+
+        return newDecoder(fecParams, symbOver, engine, decodingExecutor, listener, repairSymbolBudget, null, 0);
+    }
+
+    /**
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbOver
+     *            Repair symbol overhead (must be non-negative)
+     * @param engine
+     *            The algorithm used to decode source blocks
+     * @param decodingExecutor
+     *            An executor that runs the decoding operations, or {@code null} if source blocks are decoded by the
+     *            threads that put encoding packets
+     * @param listener
+     *            A listener of finished decoding operations, or {@code null} if no listener is to be notified
+     * @param repairSymbolBudget
+     *            A memory budget for the received repair symbols, or {@code null} if their memory is unbounded
+     * @param symbolOperationsPool
+     *            A pool where the symbol operations that complete the decoding of a source block are run in parallel,
+     *            or {@code null} if they are run by the decoding thread
+     * @param symbolWorkingSetSize
+     *            The maximum number of bytes of all symbols that those symbol operations are run over at a time, or
+     *            0 if they are run over whole symbols
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} or {@code engine} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || extraSymbols < 0 ||
+     *                symbolWorkingSetSize < 0}
+     */
+    static ArrayDataDecoder newDecoder(
+        FECParameters fecParams,
+        int symbOver,
+        DecodingEngine engine,
+        Executor decodingExecutor,
+        SourceBlockDecodingListener listener,
+        RepairSymbolBudget repairSymbolBudget,
+        ForkJoinPool symbolOperationsPool,
+        int symbolWorkingSetSize)
+    {
+
+        Objects.requireNonNull(engine);
         // throws NullPointerException if null fecParams
         if (fecParams.dataLength() > Integer.MAX_VALUE) {
             throw new IllegalArgumentException("data length must be at most 2^^31 - 1");
@@ -53,9 +161,14 @@ public final class ArrayDataDecoder implements DataDecoder {
         if (symbOver < 0) {
             throw new IllegalArgumentException("negative symbol overhead");
         }
+        if (symbolWorkingSetSize < 0) {
+            throw new IllegalArgumentException("negative working set size");
+        }
 
         final byte[] dataArray = new byte[fecParams.dataLengthAsInt()];
-        return new ArrayDataDecoder(dataArray, fecParams, symbOver);
+        return new ArrayDataDecoder(
+            dataArray, fecParams, symbOver, engine, decodingExecutor, listener, repairSymbolBudget,
+            symbolOperationsPool, symbolWorkingSetSize);
     }
 
 
@@ -64,19 +177,33 @@ public final class ArrayDataDecoder implements DataDecoder {
     private final ImmutableList<SourceBlockDecoder> srcBlockDecoders;
 
 
-    private ArrayDataDecoder(byte[] dataArray, FECParameters fecParams, final int symbOver) {
+    private ArrayDataDecoder(
+        byte[] dataArray,
+        FECParameters fecParams,
+        final int symbOver,
+        DecodingEngine engine,
+        Executor decodingExecutor,
+        SourceBlockDecodingListener listener,
+        RepairSymbolBudget repairSymbolBudget,
+        ForkJoinPool symbolOperationsPool,
+        int symbolWorkingSetSize)
+    {
 
         this.dataArray = dataArray;
         this.fecParams = fecParams;
+
+        final DecodingContext context = DecodingContext.newContext(
+            fecParams, symbOver, engine, decodingExecutor, listener, repairSymbolBudget, symbolOperationsPool,
+            symbolWorkingSetSize);
         this.srcBlockDecoders = DataUtils.partitionSourceData(
             fecParams,
             SourceBlockDecoder.class, new SourceBlockSupplier<SourceBlockDecoder>() {
 
                 @Override
-                public SourceBlockDecoder get(int off, int sbn) {
+                public SourceBlockDecoder get(long off, int sbn) {
 
                     return ArraySourceBlockDecoder.newDecoder(
-                        ArrayDataDecoder.this, ArrayDataDecoder.this.dataArray, off,
+                        ArrayDataDecoder.this, context, ArrayDataDecoder.this.dataArray, (int)off, // fits in the array
                         ArrayDataDecoder.this.fecParams,
                         sbn, symbOver);
                 }
@@ -242,6 +369,45 @@ public final class ArrayDataDecoder implements DataDecoder {
         return DataUtils.parsePacket(this, buffer, copySymbols);
     }
 
+    /**
+     * Puts into this decoder every encoding packet in a buffer that contains packets serialized back-to-back (as
+     * written by {@link EncodingPacket#writeTo(ByteBuffer)}), without creating an object per packet.
+     * <p>
+     * The headers of the packets are validated as in method {@link #parsePacket(ByteBuffer, boolean)}, and invalid
+     * packets are skipped. If the length of the symbols data of a packet is invalid (or if the buffer ends in the middle
+     * of a packet), no more packets are read and the buffer position is left at the start of that packet; otherwise,
+     * the buffer position is advanced past the last packet.
+     * 
+     * @param packets
+     *            A buffer containing serialized encoding packets
+     * @return the number of encoding packets put into this decoder
+     * @exception NullPointerException
+     *                If {@code packets} is {@code null}
+     */
+    public int putPackets(ByteBuffer packets) {
+
+        return DataUtils.putPackets(this, packets);
+    }
+
+    /**
+     * Puts into this decoder the encoding packet serialized in each buffer (as written by
+     * {@link EncodingPacket#writeTo(ByteBuffer)}), without creating an object per packet. This is useful for batches
+     * of datagrams received at once.
+     * <p>
+     * The headers of the packets are validated as in method {@link #parsePacket(ByteBuffer, boolean)}, and invalid
+     * packets are skipped. The position of each buffer is advanced past the data read from it.
+     * 
+     * @param packets
+     *            An array of buffers, each containing a serialized encoding packet
+     * @return the number of encoding packets put into this decoder
+     * @exception NullPointerException
+     *                If {@code packets} or any of its buffers are {@code null}
+     */
+    public int putPackets(ByteBuffer[] packets) {
+
+        return DataUtils.putPackets(this, packets);
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -16,12 +16,23 @@
 package net.fec.openrq;
 
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import net.fec.openrq.DataUtils.SourceBlockSupplier;
 import net.fec.openrq.encoder.DataEncoder;
 import net.fec.openrq.encoder.SourceBlockEncoder;
 import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.parameters.ParameterChecker;
 import net.fec.openrq.util.checking.Indexables;
 import net.fec.openrq.util.collection.ImmutableList;
 
@@ -49,6 +60,30 @@ public final class ArrayDataEncoder implements DataEncoder {
     static ArrayDataEncoder newEncoder(byte[] data, int offset,
         FECParameters fecParams) {
 
+        return newEncoder(data, offset, fecParams, 0);
+    }
+
+    /**
+     * @param fecParams
+     *            FEC parameters that configure the returned data encoder object
+     * @param data
+     *            An array of bytes containing the source data to be encoded
+     * @param offset
+     *            The index in the array where the source data begins
+     * @param symbolWorkingSetSize
+     *            The maximum number of bytes of all symbols that symbol operations are run over at a time, or 0 if
+     *            they are run over whole symbols
+     * @return a data encoder object backed by an array of bytes
+     * @exception NullPointerException
+     *                If {@code data} or {@code fecParams} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || symbolWorkingSetSize < 0}
+     * @exception IndexOutOfBoundsException
+     *                If {@code offset < 0 || fecParams.dataLength() > (data.length - offset)}
+     */
+    static ArrayDataEncoder newEncoder(byte[] data, int offset,
+        FECParameters fecParams, int symbolWorkingSetSize) {
+
         Objects.requireNonNull(data);
         // throws NullPointerException if null fecParams
         if (fecParams.dataLength() > Integer.MAX_VALUE) {
@@ -57,8 +92,11 @@ public final class ArrayDataEncoder implements DataEncoder {
         }
         Indexables.checkOffsetLengthBounds(offset, fecParams.dataLengthAsInt(),
             data.length);
+        if (symbolWorkingSetSize < 0) {
+            throw new IllegalArgumentException("negative working set size");
+        }
 
-        return new ArrayDataEncoder(data, offset, fecParams);
+        return new ArrayDataEncoder(data, offset, fecParams, symbolWorkingSetSize);
     }
 
 
@@ -69,7 +107,7 @@ public final class ArrayDataEncoder implements DataEncoder {
     private final ImmutableList<SourceBlockEncoder> srcBlockEncoders;
 
 
-    private ArrayDataEncoder(byte[] array, int offset, FECParameters fecParams) {
+    private ArrayDataEncoder(byte[] array, int offset, FECParameters fecParams, final int symbolWorkingSetSize) {
 
         this.array = array;
         this.offset = offset;
@@ -81,12 +119,12 @@ public final class ArrayDataEncoder implements DataEncoder {
             SourceBlockEncoder.class, new SourceBlockSupplier<SourceBlockEncoder>() {
 
                 @Override
-                public SourceBlockEncoder get(int off, int sbn) {
+                public SourceBlockEncoder get(long off, int sbn) {
 
                     return ArraySourceBlockEncoder.newEncoder(
                         ArrayDataEncoder.this,
-                        ArrayDataEncoder.this.array, off,
-                        ArrayDataEncoder.this.fecParams, sbn);
+                        ArrayDataEncoder.this.array, (int)off, // fits in the array
+                        ArrayDataEncoder.this.fecParams, sbn, symbolWorkingSetSize);
                 }
             });
     }
@@ -139,6 +177,313 @@ public final class ArrayDataEncoder implements DataEncoder {
         return srcBlockEncoders;
     }
 
+    /**
+     * Writes the data of multiple consecutive repair symbols from a source block into the provided buffer. The symbols
+     * identified by <code>&lt;sbn, esi&gt;</code>, <code>&lt;sbn, esi+1&gt;</code>, etc. are written one after the
+     * other, each symbol occupying {@code T} bytes, where {@code T} is the symbol size.
+     * <p>
+     * Unlike the method {@link SourceBlockEncoder#repairPacket(int, int)}, this method does not allocate memory for the
+     * symbols, so it is suited for sending large amounts of repair symbols from a reusable buffer.
+     * <p>
+     * The provided buffer must not be {@linkplain ByteBuffer#isReadOnly() read-only}, and must have at least
+     * {@code (numSymbols * T)} bytes {@linkplain ByteBuffer#remaining() remaining}. If this method returns
+     * normally, the position of the provided buffer will have been advanced by the same amount.
+     * <p>
+     * <b><em>Bounds checking</em></b> - The source block number is checked as in the method {@link #sourceBlock(int)}.
+     * If we have {@code K} as the number of source symbols into which is divided the source block, and {@code max_esi}
+     * as the {@linkplain ParameterChecker#maxEncodingSymbolID() maximum value for the encoding symbol identifier}, then
+     * the following must be true, otherwise an {@code IllegalArgumentException} is thrown:
+     * <ul>
+     * <li>{@code esi} &ge; {@code K} <li>{@code esi} &le; {@code max_esi} <li>{@code numSymbols} &gt; 0
+     * <li>{@code numSymbols} &le; ({@code 1 + max_esi - esi})
+     * </ul>
+     * 
+     * @param sbn
+     *            A source block number
+     * @param esi
+     *            The encoding symbol identifier of the first repair symbol to write
+     * @param numSymbols
+     *            The number of repair symbols to write
+     * @param buffer
+     *            A buffer on which the repair symbols are written
+     * @exception IllegalArgumentException
+     *                If the provided source block number, encoding symbol identifier or number of symbols are invalid
+     * @exception ReadOnlyBufferException
+     *                If the provided buffer is read-only
+     * @exception BufferOverflowException
+     *                If the provided buffer has less than {@code (numSymbols * T)} bytes remaining
+     * @exception NullPointerException
+     *                If {@code buffer} is {@code null}
+     */
+    public void writeRepairSymbols(int sbn, int esi, int numSymbols, ByteBuffer buffer) {
+
+        sourceBlockEncoder(sbn).writeRepairSymbols(esi, numSymbols, buffer);
+    }
+
+    /**
+     * Writes the data of multiple consecutive repair symbols from a source block into the provided array, starting at
+     * the provided offset. The symbols are written as in the method
+     * {@link #writeRepairSymbols(int, int, int, ByteBuffer)}, and occupy {@code (numSymbols * T)} bytes of the array,
+     * where {@code T} is the symbol size.
+     * <p>
+     * <b><em>Bounds checking</em></b> - The source block number is checked as in the method {@link #sourceBlock(int)},
+     * and the encoding symbol identifier and the number of symbols are checked as in the method
+     * {@link #writeRepairSymbols(int, int, int, ByteBuffer)}.
+     * 
+     * @param sbn
+     *            A source block number
+     * @param esi
+     *            The encoding symbol identifier of the first repair symbol to write
+     * @param numSymbols
+     *            The number of repair symbols to write
+     * @param array
+     *            An array on which the repair symbols are written
+     * @param offset
+     *            The index in the array of the first byte to write
+     * @exception IllegalArgumentException
+     *                If the provided source block number, encoding symbol identifier or number of symbols are invalid
+     * @exception IndexOutOfBoundsException
+     *                If {@code offset} is negative or if there are less than {@code (numSymbols * T)} bytes in the
+     *                array after the offset
+     * @exception NullPointerException
+     *                If {@code array} is {@code null}
+     */
+    public void writeRepairSymbols(int sbn, int esi, int numSymbols, byte[] array, int offset) {
+
+        sourceBlockEncoder(sbn).writeRepairSymbols(esi, numSymbols, array, offset);
+    }
+
+    /**
+     * Writes an encoding packet with a source symbol from a source block into the provided buffer, without creating an
+     * {@link EncodingPacket} object. The written contents are the same as those written by the method
+     * {@link EncodingPacket#writeTo(ByteBuffer)} on the packet returned by
+     * {@link SourceBlockEncoder#sourcePacket(int)}, that is, the FEC payload ID, followed by the symbols data length,
+     * followed by the symbols data itself.
+     * <p>
+     * The provided buffer must not be {@linkplain ByteBuffer#isReadOnly() read-only}, and must have enough bytes
+     * {@linkplain ByteBuffer#remaining() remaining} to hold the whole packet. If this method returns normally, the
+     * position of the provided buffer will have been advanced by the number of written bytes, otherwise nothing is
+     * written.
+     * <p>
+     * <b><em>Bounds checking</em></b> - The source block number is checked as in the method {@link #sourceBlock(int)},
+     * and the encoding symbol identifier is checked as in the method {@link SourceBlockEncoder#sourcePacket(int)}.
+     * 
+     * @param sbn
+     *            A source block number
+     * @param esi
+     *            The encoding symbol identifier of the source symbol in the written packet
+     * @param buffer
+     *            A buffer on which the packet contents are written
+     * @exception IllegalArgumentException
+     *                If the provided source block number or encoding symbol identifier are invalid
+     * @exception ReadOnlyBufferException
+     *                If the provided buffer is read-only
+     * @exception BufferOverflowException
+     *                If the provided buffer does not have enough bytes remaining
+     * @exception NullPointerException
+     *                If {@code buffer} is {@code null}
+     */
+    public void writeSourcePacket(int sbn, int esi, ByteBuffer buffer) {
+
+        sourceBlockEncoder(sbn).writeSourcePacket(esi, buffer);
+    }
+
+    /**
+     * Writes an encoding packet with multiple source symbols from a source block into the provided buffer, without
+     * creating an {@link EncodingPacket} object. The written contents are the same as those written by the method
+     * {@link EncodingPacket#writeTo(ByteBuffer)} on the packet returned by
+     * {@link SourceBlockEncoder#sourcePacket(int, int)}.
+     * <p>
+     * The provided buffer must not be {@linkplain ByteBuffer#isReadOnly() read-only}, and must have enough bytes
+     * {@linkplain ByteBuffer#remaining() remaining} to hold the whole packet. If this method returns normally, the
+     * position of the provided buffer will have been advanced by the number of written bytes, otherwise nothing is
+     * written.
+     * <p>
+     * <b><em>Bounds checking</em></b> - The source block number is checked as in the method {@link #sourceBlock(int)},
+     * and the encoding symbol identifier and the number of symbols are checked as in the method
+     * {@link SourceBlockEncoder#sourcePacket(int, int)}.
+     * 
+     * @param sbn
+     *            A source block number
+     * @param esi
+     *            The encoding symbol identifier of the first source symbol in the written packet
+     * @param numSymbols
+     *            The number of source symbols to be placed in the written packet
+     * @param buffer
+     *            A buffer on which the packet contents are written
+     * @exception IllegalArgumentException
+     *                If the provided source block number, encoding symbol identifier or number of symbols are invalid
+     * @exception ReadOnlyBufferException
+     *                If the provided buffer is read-only
+     * @exception BufferOverflowException
+     *                If the provided buffer does not have enough bytes remaining
+     * @exception NullPointerException
+     *                If {@code buffer} is {@code null}
+     */
+    public void writeSourcePacket(int sbn, int esi, int numSymbols, ByteBuffer buffer) {
+
+        sourceBlockEncoder(sbn).writeSourcePacket(esi, numSymbols, buffer);
+    }
+
+    /**
+     * Writes an encoding packet with a repair symbol from a source block into the provided buffer, without creating an
+     * {@link EncodingPacket} object. The written contents are the same as those written by the method
+     * {@link EncodingPacket#writeTo(ByteBuffer)} on the packet returned by
+     * {@link SourceBlockEncoder#repairPacket(int)}, that is, the FEC payload ID, followed by the symbols data length,
+     * followed by the symbols data itself. The repair symbol is generated directly into the buffer.
+     * <p>
+     * The provided buffer must not be {@linkplain ByteBuffer#isReadOnly() read-only}, and must have at least
+     * {@code (8 + T)} bytes {@linkplain ByteBuffer#remaining() remaining}, where {@code T} is the symbol size. If this
+     * method returns normally, the position of the provided buffer will have been advanced by the same amount,
+     * otherwise nothing is written.
+     * <p>
+     * <b><em>Bounds checking</em></b> - The source block number is checked as in the method {@link #sourceBlock(int)},
+     * and the encoding symbol identifier is checked as in the method {@link SourceBlockEncoder#repairPacket(int)}.
+     * 
+     * @param sbn
+     *            A source block number
+     * @param esi
+     *            The encoding symbol identifier of the repair symbol in the written packet
+     * @param buffer
+     *            A buffer on which the packet contents are written
+     * @exception IllegalArgumentException
+     *                If the provided source block number or encoding symbol identifier are invalid
+     * @exception ReadOnlyBufferException
+     *                If the provided buffer is read-only
+     * @exception BufferOverflowException
+     *                If the provided buffer has less than {@code (8 + T)} bytes remaining
+     * @exception NullPointerException
+     *                If {@code buffer} is {@code null}
+     */
+    public void writeRepairPacket(int sbn, int esi, ByteBuffer buffer) {
+
+        sourceBlockEncoder(sbn).writeRepairPacket(esi, buffer);
+    }
+
+    /**
+     * Writes an encoding packet with multiple repair symbols from a source block into the provided buffer, without
+     * creating an {@link EncodingPacket} object. The written contents are the same as those written by the method
+     * {@link EncodingPacket#writeTo(ByteBuffer)} on the packet returned by
+     * {@link SourceBlockEncoder#repairPacket(int, int)}. The repair symbols are generated directly into the buffer.
+     * <p>
+     * The provided buffer must not be {@linkplain ByteBuffer#isReadOnly() read-only}, and must have at least
+     * {@code (8 + numSymbols * T)} bytes {@linkplain ByteBuffer#remaining() remaining}, where {@code T} is the symbol
+     * size. If this method returns normally, the position of the provided buffer will have been advanced by the same
+     * amount, otherwise nothing is written.
+     * <p>
+     * <b><em>Bounds checking</em></b> - The source block number is checked as in the method {@link #sourceBlock(int)},
+     * and the encoding symbol identifier and the number of symbols are checked as in the method
+     * {@link SourceBlockEncoder#repairPacket(int, int)}.
+     * 
+     * @param sbn
+     *            A source block number
+     * @param esi
+     *            The encoding symbol identifier of the first repair symbol in the written packet
+     * @param numSymbols
+     *            The number of repair symbols to be placed in the written packet
+     * @param buffer
+     *            A buffer on which the packet contents are written
+     * @exception IllegalArgumentException
+     *                If the provided source block number, encoding symbol identifier or number of symbols are invalid
+     * @exception ReadOnlyBufferException
+     *                If the provided buffer is read-only
+     * @exception BufferOverflowException
+     *                If the provided buffer has less than {@code (8 + numSymbols * T)} bytes remaining
+     * @exception NullPointerException
+     *                If {@code buffer} is {@code null}
+     */
+    public void writeRepairPacket(int sbn, int esi, int numSymbols, ByteBuffer buffer) {
+
+        sourceBlockEncoder(sbn).writeRepairPacket(esi, numSymbols, buffer);
+    }
+
+    // every data encoder is made of array source block encoders
+    private ArraySourceBlockEncoder sourceBlockEncoder(int sbn) {
+
+        return (ArraySourceBlockEncoder)sourceBlock(sbn);
+    }
+
+    /**
+     * Generates in the background the intermediate symbols of every source block, which are otherwise generated by
+     * each source block encoder on the first request of a repair symbol. The generation of each source block is
+     * submitted as a separate task to the provided executor, so source blocks are generated in parallel if the
+     * executor runs tasks in multiple threads.
+     * <p>
+     * Source block encoders may be used while the intermediate symbols are being generated. Requests for repair
+     * symbols of a source block whose intermediate symbols are being generated wait for the generation to complete.
+     * 
+     * @param executor
+     *            An executor that runs the generation tasks
+     * @return a list of futures, one per source block (ordered by source block number), each one completing with the
+     *         respective source block encoder when its intermediate symbols are generated
+     * @exception java.util.concurrent.RejectedExecutionException
+     *                If the executor does not accept a task
+     * @exception NullPointerException
+     *                If {@code executor} is {@code null}
+     */
+    public List<Future<SourceBlockEncoder>> precomputeIntermediateSymbols(Executor executor) {
+
+        final int[] sbns = new int[numberOfSourceBlocks()];
+        for (int sbn = 0; sbn < sbns.length; sbn++) {
+            sbns[sbn] = sbn;
+        }
+
+        return precomputeIntermediateSymbols(executor, sbns);
+    }
+
+    /**
+     * Generates in the background the intermediate symbols of the source blocks with the provided source block
+     * numbers, as defined in method {@link #precomputeIntermediateSymbols(Executor)}.
+     * <p>
+     * <b><em>Bounds checking</em></b> - If we have {@code Z} as the number of source blocks into which is divided the
+     * the source data being encoded, then the following must be true for each source block number, otherwise an
+     * {@code IllegalArgumentException} is thrown (and no task is submitted):
+     * <ul>
+     * <li>{@code sbn} &ge; 0
+     * <li>{@code sbn} &lt; {@code Z} </ul>
+     * 
+     * @param executor
+     *            An executor that runs the generation tasks
+     * @param sbns
+     *            The source block numbers of the source blocks whose intermediate symbols are generated
+     * @return a list of futures, one per provided source block number (in the same order), each one completing with
+     *         the respective source block encoder when its intermediate symbols are generated
+     * @exception IllegalArgumentException
+     *                If some provided source block number is invalid
+     * @exception java.util.concurrent.RejectedExecutionException
+     *                If the executor does not accept a task
+     * @exception NullPointerException
+     *                If {@code executor} or {@code sbns} are {@code null}
+     */
+    public List<Future<SourceBlockEncoder>> precomputeIntermediateSymbols(Executor executor, int... sbns) {
+
+        Objects.requireNonNull(executor);
+
+        // validate every source block number before submitting any task
+        final List<ArraySourceBlockEncoder> encoders = new ArrayList<>(sbns.length);
+        for (int sbn : sbns) {
+            encoders.add((ArraySourceBlockEncoder)sourceBlock(sbn));
+        }
+
+        final List<Future<SourceBlockEncoder>> futures = new ArrayList<>(encoders.size());
+        for (final ArraySourceBlockEncoder encoder : encoders) {
+            final FutureTask<SourceBlockEncoder> task = new FutureTask<>(new Callable<SourceBlockEncoder>() {
+
+                @Override
+                public SourceBlockEncoder call() {
+
+                    encoder.precomputeIntermediateSymbols();
+                    return encoder;
+                }
+            });
+
+            executor.execute(task);
+            futures.add(task);
+        }
+
+        return Collections.unmodifiableList(futures);
+    }
+
     /**
      * Returns an array of bytes containing the source data.
      * 
@@ -20,22 +20,25 @@ import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import net.fec.openrq.decoder.DataDecoder;
+import net.fec.openrq.decoder.DecodingEngine;
 import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockDecodingListener;
 import net.fec.openrq.decoder.SourceBlockState;
 import net.fec.openrq.parameters.FECParameters;
 import net.fec.openrq.parameters.ParameterChecker;
 import net.fec.openrq.util.collection.BitSetIterators;
 import net.fec.openrq.util.collection.ImmutableList;
-import net.fec.openrq.util.io.ByteBuffers.BufferType;
 import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
 import net.fec.openrq.util.rq.SystematicIndices;
 
@@ -44,9 +47,13 @@ import net.fec.openrq.util.rq.SystematicIndices;
  */
 final class ArraySourceBlockDecoder implements SourceBlockDecoder {
 
+    // the maximum number of symbols of a packet that are reserved together (tracked in the bits of a long)
+    private static final int SYMBOL_GROUP_SIZE = Long.SIZE;
+
     // requires valid arguments
     static ArraySourceBlockDecoder newDecoder(
-        ArrayDataDecoder dataDecoder,
+        DataDecoder dataDecoder,
+        DecodingContext context,
         final byte[] array,
         int arrayOff,
         FECParameters fecParams,
@@ -61,35 +68,69 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             SourceSymbol.class, new DataUtils.SourceSymbolSupplier<SourceSymbol>() {
 
                 @Override
-                public SourceSymbol get(int off, @SuppressWarnings("unused") int esi, int T) {
+                public SourceSymbol get(long off, @SuppressWarnings("unused") int esi, int T) {
 
-                    return ArraySourceSymbol.newSymbol(array, off, T);
+                    return ArraySourceSymbol.newSymbol(array, (int)off, T); // fits in the array
                 }
             });
 
-        return new ArraySourceBlockDecoder(dataDecoder, sbn, sourceSymbols, symbOver);
+        return new ArraySourceBlockDecoder(dataDecoder, context, array, arrayOff, sbn, sourceSymbols, symbOver);
+    }
+
+    // requires valid arguments
+    static ArraySourceBlockDecoder newDecoder(
+        DataDecoder dataDecoder,
+        DecodingContext context,
+        ImmutableList<SourceSymbol> sourceSymbols,
+        int sbn,
+        int symbOver)
+    {
+
+        return new ArraySourceBlockDecoder(dataDecoder, context, null, 0, sbn, sourceSymbols, symbOver);
     }
 
 
-    private final ArrayDataDecoder dataDecoder;
+    private final DataDecoder dataDecoder;
+    private final DecodingContext context;
+    private final byte[] array; // null if the source symbols are not backed by an array
+    private final int arrayOff; // the offset of the first source symbol in the array
 
     private final int sbn;
 
     private final SymbolsState symbolsState;
 
+    // creates the tuples of the recovered source symbols
+    private final Tuple.Factory tuples;
+
+    // only used by the incremental decoding engine (created on demand, guarded by the symbols state lock)
+    private IncrementalDecoder incrementalDecoder;
+
+    // only used by the permanent inactivation engine, to resume a failed decoding (guarded by the symbols state lock)
+    private DecodingSystem failedDecodingSystem;
+
 
     private ArraySourceBlockDecoder(
-        ArrayDataDecoder dataDecoder,
+        DataDecoder dataDecoder,
+        DecodingContext context,
+        byte[] array,
+        int arrayOff,
         int sbn,
         ImmutableList<SourceSymbol> sourceSymbols,
         int symbOver)
     {
 
         this.dataDecoder = Objects.requireNonNull(dataDecoder);
+        this.context = Objects.requireNonNull(context);
+        this.array = array;
+        this.arrayOff = arrayOff;
 
         this.sbn = sbn;
 
-        this.symbolsState = new SymbolsState(sourceSymbols, symbOver);
+        this.symbolsState = new SymbolsState(
+            sourceSymbols, dataDecoder.fecParameters().symbolSize(), symbOver, context.repairSymbolBudget());
+        this.tuples = new Tuple.Factory(SystematicIndices.ceil(sourceSymbols.size()));
+        this.incrementalDecoder = null;
+        this.failedDecodingSystem = null;
     }
 
     private FECParameters fecParameters() {
@@ -103,7 +144,7 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
     }
 
     @Override
-    public ArrayDataDecoder dataDecoder() {
+    public DataDecoder dataDecoder() {
 
         return dataDecoder;
     }
@@ -218,47 +259,98 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             throw new IllegalArgumentException("the provided packet is not compatible with this source block");
         }
 
-        symbolsState.lock();
-        try {
-            if (!symbolsState.isSourceBlockDecoded()) { // do nothing if already decoded
-                final ByteBuffer symbols = packet.symbols();
-                final int esi = packet.encodingSymbolID();
-                boolean putNewSymbol = false;
-
-                // put symbol data
-                switch (packet.symbolType()) {
-                    case SOURCE:
-                        for (int i = 0; i < packet.numberOfSymbols(); i++) {
-                            putNewSymbol |= putSourceData(esi + i, symbols, SourceSymbolDataType.TRANSPORT);
-                        }
-                    break;
+        return putSymbols(packet.symbolType(), packet.encodingSymbolID(), packet.numberOfSymbols(), packet.symbols());
+    }
 
-                    case REPAIR:
-                        for (int i = 0; i < packet.numberOfSymbols(); i++) {
-                            putNewSymbol |= putRepairData(esi + i, symbols);
-                        }
-                    break;
+    /*
+     * Puts the symbols of an encoding packet without requiring an encoding packet object. Requires a valid ESI and
+     * number of symbols, and a buffer with the data of every symbol starting at its position (which is modified).
+     */
+    SourceBlockState putSymbols(SymbolType type, int esi, int numSymbols, ByteBuffer symbols) {
 
-                    default:
-                        throw new AssertionError("unknown enum value");
+        /*
+         * The symbols data is copied outside of the critical section, so that multiple threads may put packets into
+         * the same source block concurrently. New symbols are reserved before being copied (into the data array, or
+         * into a slot of the repair symbols store), and committed afterwards.
+         *
+         * The new symbols are tracked in the bits of a long, so that no objects are created per packet; packets with
+         * more symbols are put in groups of symbols, and only the last group may start a decoding.
+         */
+        final int T = fecParameters().symbolSize();
+        final int start = symbols.position();
+
+        SourceBlockState state = null;
+        boolean wasDecoded = false;
+        boolean putNewSymbol = false;
+        boolean finished = false; // true if the source block became decoded or failed to be decoded
+        DecodingSystem asyncDecoding = null;
+
+        for (int first = 0; first < numSymbols; first += SYMBOL_GROUP_SIZE) {
+            final int groupESI = esi + first;
+            final int groupSize = Math.min(SYMBOL_GROUP_SIZE, numSymbols - first);
+
+            final long newSymbols; // relative to the first ESI in the group
+            final int firstSlot; // the slot of the first new repair symbol
+            symbolsState.lock();
+            try {
+                if (first == 0 && symbolsState.isSourceBlockDecoded()) { // do nothing if already decoded
+                    return symbolsState.sourceBlockState();
                 }
+                firstSlot = symbolsState.numRepairSymbols();
+                newSymbols = reserveSymbols(type, groupESI, groupSize);
+            }
+            finally {
+                symbolsState.unlock();
+            }
 
-                // 1. don't bother if no new symbols were added
-                // 2. the addition of a source symbol may have decoded the source block
-                // 3. enough (source/repair) symbols may have been received for a decode to start
-                if (putNewSymbol &&
-                    !symbolsState.isSourceBlockDecoded() &&
-                    symbolsState.haveEnoughSymbolsToDecode())
-                {
-                    decode();
+            symbols.position(start + first * T);
+            copySymbolsData(type, groupESI, symbols, newSymbols, firstSlot);
+
+            symbolsState.lock();
+            try {
+                // the source block may have been decoded meanwhile by another thread
+                if (first == 0) {
+                    wasDecoded = symbolsState.isSourceBlockDecoded();
                 }
-            }
 
-            return symbolsState.sourceBlockState();
-        }
-        finally {
-            symbolsState.unlock();
+                // reserved symbols must always be committed
+                commitSymbols(type, groupESI, newSymbols);
+                putNewSymbol |= (newSymbols != 0);
+
+                if (first + groupSize == numSymbols) { // the last group
+                    if (!wasDecoded) { // do nothing if already decoded
+                        // 1. don't bother if no new symbols were added
+                        // 2. the addition of a source symbol may have decoded the source block
+                        // 3. enough (source/repair) symbols may have been received for a decode to start
+                        // 4. a background decode may be already running (it will be retried if it fails)
+                        if (putNewSymbol) {
+                            if (symbolsState.isSourceBlockDecoded()) {
+                                releaseIncrementalDecoder();
+                                failedDecodingSystem = null; // free memory
+                                finished = true;
+                            }
+                            else if (symbolsState.haveEnoughSymbolsToDecode() && !symbolsState.isDecodingInProgress()) {
+                                if (context.decodingExecutor() == null) {
+                                    finished = decode();
+                                }
+                                else {
+                                    asyncDecoding = prepareAsyncDecoding();
+                                }
+                            }
+                        }
+                    }
+
+                    state = symbolsState.sourceBlockState();
+                }
+            }
+            finally {
+                symbolsState.unlock();
+            }
         }
+
+        if (asyncDecoding != null) submitAsyncDecoding(asyncDecoding);
+        if (finished) notifyListener(state);
+        return state;
     }
 
     @Override
@@ -287,6 +379,124 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
         }
     }
 
+    /*
+     * ===== Requires locked symbolsState! =====
+     */
+    // requires at most SYMBOL_GROUP_SIZE symbols, returns the bits of the reserved symbols (relative to the first ESI)
+    private long reserveSymbols(SymbolType type, int esi, int numSymbols) {
+
+        long newSymbols = 0L;
+        if (symbolsState.isSourceBlockDecoded()) { // a previous group of symbols may have decoded the source block
+            return newSymbols;
+        }
+
+        switch (type) {
+            case SOURCE:
+                for (int i = 0; i < numSymbols; i++) {
+                    if (symbolsState.reserveSourceSymbol(esi + i)) {
+                        newSymbols |= 1L << i;
+                    }
+                }
+            break;
+
+            case REPAIR:
+                // the new repair symbols are reserved in consecutive slots
+                for (int i = 0; i < numSymbols; i++) {
+                    if (!symbolsState.containsRepairSymbol(esi + i)) {
+                        symbolsState.reserveRepairSymbol(esi + i);
+                        newSymbols |= 1L << i;
+                    }
+                }
+            break;
+
+            default:
+                throw new AssertionError("unknown enum value");
+        }
+
+        return newSymbols;
+    }
+
+    // must be called without the symbols state lock
+    private void copySymbolsData(SymbolType type, int esi, ByteBuffer symbols, long newSymbols, int firstSlot) {
+
+        final int T = fecParameters().symbolSize();
+        final int start = symbols.position();
+
+        if (type == SymbolType.SOURCE) {
+            try {
+                for (long bits = newSymbols; bits != 0; bits &= bits - 1) {
+                    final int i = Long.numberOfTrailingZeros(bits);
+                    symbols.position(start + i * T);
+                    // the reserved source symbols are not accessed by other threads until they are committed
+                    symbolsState.putSourceSymbolData(esi + i, symbols);
+                }
+            }
+            catch (RuntimeException | Error e) {
+                symbolsState.lock();
+                try {
+                    for (long bits = newSymbols; bits != 0; bits &= bits - 1) {
+                        symbolsState.cancelSourceSymbol(esi + Long.numberOfTrailingZeros(bits));
+                    }
+                }
+                finally {
+                    symbolsState.unlock();
+                }
+                throw e;
+            }
+        }
+        else {
+            // the packet is known to contain every symbol, so the copies cannot fail
+            int slot = firstSlot;
+            for (long bits = newSymbols; bits != 0; bits &= bits - 1) {
+                symbols.position(start + Long.numberOfTrailingZeros(bits) * T);
+                symbolsState.putRepairSymbolData(slot++, symbols);
+            }
+        }
+    }
+
+    /*
+     * ===== Requires locked symbolsState! =====
+     */
+    private void commitSymbols(SymbolType type, int esi, long newSymbols) {
+
+        switch (type) {
+            case SOURCE:
+                for (long bits = newSymbols; bits != 0; bits &= bits - 1) {
+                    final int i = Long.numberOfTrailingZeros(bits);
+                    symbolsState.commitSourceSymbol(esi + i);
+                    eliminateSourceSymbol(esi + i);
+                }
+            break;
+
+            case REPAIR:
+                for (long bits = newSymbols; bits != 0; bits &= bits - 1) {
+                    symbolsState.commitRepairSymbol();
+                    eliminateRepairSymbol(esi + Long.numberOfTrailingZeros(bits));
+                }
+            break;
+
+            default:
+                throw new AssertionError("unknown enum value");
+        }
+    }
+
+    /*
+     * Returns true if the symbols data of an encoding packet has the required length. Requires a valid ESI and number
+     * of symbols, and does not require locked symbolsState (the source symbols never change).
+     */
+    boolean isValidSymbolsLength(SymbolType type, int esi, int numSymbols, int symbLen) {
+
+        final int T = fecParameters().symbolSize();
+        if (type == SymbolType.SOURCE) {
+            // only the last source symbol may be shorter than T
+            final int lastSize = symbolsState.getSourceSymbol(esi + numSymbols - 1).transportSize();
+            return symbLen >= (long)(numSymbols - 1) * T + lastSize;
+        }
+        else {
+            return symbLen == (long)numSymbols * T;
+        }
+    }
+
     private void checkSourceSymbolESI(int esi) {
 
         if (esi < 0 || esi >= K()) {
@@ -331,18 +541,235 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             return Collections.emptySet();
         }
         else {
+            final int numRepair = symbolsState.numRepairSymbols();
+
             // linked hash set preserves insertion ordering (while not being sorted)
-            return new LinkedHashSet<>(symbolsState.repairSymbolsESIs());
+            final Set<Integer> availableRepairSymbols = new LinkedHashSet<>(numRepair);
+            for (int slot = 0; slot < numRepair; slot++) {
+                availableRepairSymbols.add(symbolsState.repairSymbolESI(slot));
+            }
+
+            return availableRepairSymbols;
         }
     }
 
     /*
      * ===== Requires locked symbolsState! =====
      */
-    private void decode() {
+    // returns false if the source block was decoded by source symbols put meanwhile by other threads
+    private boolean decode() {
+
+        // received symbols are read and missing source symbols are written, so wait for those being put by other threads
+        symbolsState.setDecodingInProgress(true);
+        try {
+            symbolsState.awaitPendingSymbols();
+        }
+        finally {
+            symbolsState.setDecodingInProgress(false);
+        }
+        if (symbolsState.isSourceBlockDecoded()) {
+            return false;
+        }
 
         // generate intermediate symbols -- watch out for decoding failure
-        final byte[][] intermediate_symbols = generateIntermediateSymbols();
+        if (context.decodingEngine() == DecodingEngine.INCREMENTAL_ELIMINATION) {
+            final byte[][] intermediate_symbols = getIncrementalDecoder().solve();
+            recoverSourceSymbols(intermediate_symbols);
+            if (intermediate_symbols != null) {
+                incrementalDecoder = null; // cannot be used after a successful solve
+                context.symbolRowPool().release(intermediate_symbols);
+            }
+        }
+        else {
+            final DecodingSystem system = nextDecodingSystem();
+            final byte[][] intermediate_symbols = system.solve();
+            recoverSourceSymbols(intermediate_symbols);
+            keepOrReleaseDecodingSystem(system, intermediate_symbols);
+        }
+        return true;
+    }
+
+    /*
+     * ===== Requires locked symbolsState! =====
+     */
+    private IncrementalDecoder getIncrementalDecoder() {
+
+        if (incrementalDecoder == null) {
+            incrementalDecoder = new IncrementalDecoder(K(), fecParameters().symbolSize(), context.symbolRowPool());
+        }
+        return incrementalDecoder;
+    }
+
+    /*
+     * ===== Requires locked symbolsState! =====
+     */
+    private void releaseIncrementalDecoder() {
+
+        if (incrementalDecoder != null) {
+            incrementalDecoder.release(); // the rows can be reused by other decodings
+            incrementalDecoder = null;
+        }
+    }
+
+    /*
+     * ===== Requires locked symbolsState! =====
+     */
+    // requires valid ESI of a source symbol that was just added
+    private void eliminateSourceSymbol(int esi) {
+
+        if (context.decodingEngine() == DecodingEngine.INCREMENTAL_ELIMINATION &&
+            !symbolsState.isSourceBlockDecoded())
+        {
+            final byte[] symbol = context.symbolRowPool().acquire();
+            symbolsState.getSourceSymbol(esi).getCodeData(ByteBuffer.wrap(symbol));
+            getIncrementalDecoder().addSymbol(esi, symbol);
+        }
+    }
+
+    /*
+     * ===== Requires locked symbolsState! =====
+     */
+    // requires valid ESI of a repair symbol that was just added
+    private void eliminateRepairSymbol(int esi) {
+
+        if (context.decodingEngine() == DecodingEngine.INCREMENTAL_ELIMINATION &&
+            !symbolsState.isSourceBlockDecoded())
+        {
+            final int isi = SystematicIndices.getISI(esi, K(), SystematicIndices.ceil(K()));
+            final byte[] symbol = context.symbolRowPool().acquire();
+            symbolsState.getRepairSymbolData(symbolsState.repairSymbolSlot(esi), symbol);
+            getIncrementalDecoder().addSymbol(isi, symbol);
+        }
+    }
+
+    /*
+     * ===== Requires locked symbolsState! =====
+     */
+    // returns null if the source block was decoded by source symbols put meanwhile by other threads
+    private DecodingSystem prepareAsyncDecoding() {
+
+        // the data of the symbols being put by other threads is only available after they are committed
+        symbolsState.setDecodingInProgress(true);
+        symbolsState.awaitPendingSymbols();
+        if (symbolsState.isSourceBlockDecoded()) {
+            symbolsState.setDecodingInProgress(false);
+            return null;
+        }
+
+        // the decoding system is a copy of the received symbols, so it can be solved while new symbols are put
+        return nextDecodingSystem();
+    }
+
+    private void submitAsyncDecoding(final DecodingSystem system) {
+
+        try {
+            context.decodingExecutor().execute(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    byte[][] intermediate_symbols = null;
+                    try {
+                        intermediate_symbols = system.solve();
+                    }
+                    finally {
+                        finishAsyncDecoding(system, intermediate_symbols);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            symbolsState.lock();
+            try {
+                symbolsState.setDecodingInProgress(false);
+            }
+            finally {
+                symbolsState.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private void finishAsyncDecoding(DecodingSystem system, byte[][] intermediate_symbols) {
+
+        SourceBlockState state = null;
+        DecodingSystem retry = null;
+
+        symbolsState.lock();
+        try {
+            // missing source symbols are written when decoded, so wait for those being put by other threads
+            try {
+                symbolsState.awaitPendingSymbols();
+            }
+            finally {
+                symbolsState.setDecodingInProgress(false);
+            }
+
+            // the source block may have been decoded meanwhile by received source symbols
+            if (symbolsState.isSourceBlockDecoded()) {
+                system.releaseRows();
+            }
+            else {
+                recoverSourceSymbols(intermediate_symbols);
+                keepOrReleaseDecodingSystem(system, intermediate_symbols);
+                state = symbolsState.sourceBlockState();
+
+                // retry if more symbols were received while decoding
+                if (state == SourceBlockState.DECODING_FAILURE &&
+                    symbolsState.numSymbols() > system.numSymbols() &&
+                    symbolsState.haveEnoughSymbolsToDecode())
+                {
+                    retry = prepareAsyncDecoding();
+                }
+            }
+        }
+        finally {
+            symbolsState.unlock();
+        }
+
+        if (state != null) notifyListener(state);
+        if (retry != null) submitAsyncDecoding(retry);
+    }
+
+    private void notifyListener(SourceBlockState state) {
+
+        final SourceBlockDecodingListener listener = context.decodingListener();
+        if (listener != null) {
+            listener.sourceBlockDecodingFinished(this, state);
+        }
+    }
+
+    // returns true if a failed decoding is kept, to be resumed when more symbols are received
+    boolean hasResumableDecoding() {
+
+        symbolsState.lock();
+        try {
+            return failedDecodingSystem != null;
+        }
+        finally {
+            symbolsState.unlock();
+        }
+    }
+
+    /*
+     * ===== Requires locked symbolsState! =====
+     */
+    // must be called after recovering the source symbols, since the intermediate symbols are rows of the system
+    private void keepOrReleaseDecodingSystem(DecodingSystem system, byte[][] intermediate_symbols) {
+
+        // the rows of a kept system are not accounted for in a repair symbol budget, so they are released instead
+        if (intermediate_symbols == null && system.isResumable() && context.repairSymbolBudget() == null) {
+            failedDecodingSystem = system;
+        }
+        else {
+            system.releaseRows(); // the working memory can be reused by other decodings
+        }
+    }
+
+    /*
+     * ===== Requires locked symbolsState! =====
+     */
+    private void recoverSourceSymbols(byte[][] intermediate_symbols) {
 
         if (intermediate_symbols == null) {
             symbolsState.setSourceBlockDecodingFailure();
@@ -353,23 +780,73 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
              * every missing source symbol
              */
 
-            final int Kprime = SystematicIndices.ceil(K());
+            final int T = fecParameters().symbolSize();
+            final Tuple tuple = tuples.newTuple(0); // reused for every recovered symbol
+
+            if (array != null) {
+                // recover missing source symbols, writing them directly into the data array (without their padding)
+                for (int esi : missingSourceSymbols()) {
+                    final int length = symbolsState.getSourceSymbol(esi).transportSize();
+                    tuples.setTuple(tuple, esi);
+                    LinearSystem.enc(tuples, intermediate_symbols, tuple, array, arrayOff + esi * T, length);
+                    symbolsState.markSourceSymbolAsReceived(esi);
+                }
+            }
+            else {
+                // recover missing source symbols into a pooled row, and then put them into their source symbols
+                final SymbolRowPool pool = context.symbolRowPool();
+                final byte[] symbol = pool.acquire();
+                for (int esi : missingSourceSymbols()) {
+                    final int length = symbolsState.getSourceSymbol(esi).transportSize();
+                    tuples.setTuple(tuple, esi);
+                    LinearSystem.enc(tuples, intermediate_symbols, tuple, symbol, 0, length);
+                    symbolsState.putSourceSymbolData(esi, ByteBuffer.wrap(symbol, 0, length));
+                    symbolsState.markSourceSymbolAsReceived(esi);
+                }
+                pool.release(symbol);
+            }
+        }
+    }
+
+    /*
+     * ===== Requires locked symbolsState! =====
+     */
+    private DecodingSystem nextDecodingSystem() {
+
+        if (failedDecodingSystem == null) {
+            return newDecodingSystem();
+        }
 
-            // recover missing source symbols
-            for (int esi : missingSourceSymbols()) {
-                byte[] sourceSymbol = LinearSystem.enc(
-                    Kprime, intermediate_symbols, new Tuple(Kprime, esi), fecParameters().symbolSize());
+        // resume the failed decoding, by adding the symbols received since then
+        final DecodingSystem system = failedDecodingSystem;
+        failedDecodingSystem = null;
 
-                // write to data buffer
-                putSourceData(esi, ByteBuffer.wrap(sourceSymbol), SourceSymbolDataType.CODE);
+        final SymbolRowPool pool = context.symbolRowPool();
+        for (int esi : symbolsState.receivedSourceSymbols()) {
+            if (!system.containsSourceSymbol(esi)) {
+                final byte[] symbol = pool.acquire();
+                symbolsState.getSourceSymbol(esi).getCodeData(ByteBuffer.wrap(symbol));
+                system.addSourceSymbol(esi, symbol);
             }
         }
+
+        // repair symbols are stored in receiving order, so the new ones are in the last slots
+        final int Kprime = SystematicIndices.ceil(K());
+        for (int slot = system.numRepairSymbols(); slot < symbolsState.numRepairSymbols(); slot++) {
+            final int repairISI = SystematicIndices.getISI(symbolsState.repairSymbolESI(slot), K(), Kprime);
+            final byte[] symbol = pool.acquire();
+            symbolsState.getRepairSymbolData(slot, symbol);
+            system.addRepairSymbol(repairISI, symbol);
+        }
+
+        system.setNumSymbols(symbolsState.numSymbols());
+        return system;
     }
 
     /*
      * ===== Requires locked symbolsState! =====
      */
-    private final byte[][] generateIntermediateSymbols() {
+    private DecodingSystem newDecodingSystem() {
 
         // constraint matrix parameters
         final int Kprime = SystematicIndices.ceil(K());
@@ -377,7 +854,6 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
         int S = SystematicIndices.S(Ki);
         int H = SystematicIndices.H(Ki);
         int L = Kprime + S + H;
-        int T = fecParameters().symbolSize();
 
         // number of extra repair symbols to be used for the decoding process
         int overhead = symbolsState.numRepairSymbols() - symbolsState.numMissingSourceSymbols();
@@ -388,12 +864,20 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
         // generate the original constraint matrix and allocate memory for overhead rows
         ByteMatrix A = LinearSystem.generateConstraintMatrix(Kprime, overhead);
 
-        // initialize D
-        byte[][] D = new byte[M][T];
+        // initialize D with pooled rows (only the rows that are not overwritten below must be zeroed)
+        final SymbolRowPool pool = context.symbolRowPool();
+        byte[][] D = new byte[M][];
+        for (int row = 0; row < M; row++) {
+            // LDPC, HDPC and padding symbols are zero, source and repair symbols are copied
+            final boolean zero = row < S + H || (row >= S + H + K() && row < L);
+            D[row] = zero ? pool.acquireZeroed() : pool.acquire();
+        }
 
         // populate D with the received source symbols
+        final BitSet sourceSymbols = new BitSet(K());
         for (int esi : symbolsState.receivedSourceSymbols()) {
             symbolsState.getSourceSymbol(esi).getCodeData(ByteBuffer.wrap(D[S + H + esi]));
+            sourceSymbols.set(esi);
         }
 
         /*
@@ -402,15 +886,15 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
          * - populate D accordingly
          */
 
-        Iterator<Entry<Integer, RepairSymbol>> repairSymbolsIter = symbolsState.repairSymbols().iterator();
+        // repair symbols are read in receiving order, directly from their slots
+        int repairSlot = 0;
 
         // identify missing source symbols and replace their lines with "repair lines"
         for (Integer missingSrcESI : missingSourceSymbols()) {
 
-            Entry<Integer, RepairSymbol> next = repairSymbolsIter.next();
-            final int repairESI = next.getKey();
+            final int slot = repairSlot++;
+            final int repairESI = symbolsState.repairSymbolESI(slot);
             final int repairISI = SystematicIndices.getISI(repairESI, K(), Kprime);
-            final RepairSymbol repairSymbol = next.getValue();
 
             final int row = S + H + missingSrcESI;
 
@@ -423,16 +907,15 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             }
 
             // fill in missing source symbols in D with the repair symbols
-            D[row] = repairSymbol.copyOfData(BufferType.ARRAY_BACKED).array();
+            symbolsState.getRepairSymbolData(slot, D[row]);
         }
 
         // insert the values for overhead (repair) symbols
         for (int row = L; row < M; row++) {
 
-            Entry<Integer, RepairSymbol> next = repairSymbolsIter.next();
-            final int repairESI = next.getKey();
+            final int slot = repairSlot++;
+            final int repairESI = symbolsState.repairSymbolESI(slot);
             final int repairISI = SystematicIndices.getISI(repairESI, K(), Kprime);
-            final RepairSymbol repairSymbol = next.getValue();
 
             // generate the overhead lines
             Set<Integer> indexes = LinearSystem.encIndexes(Kprime, new Tuple(Kprime, repairISI));
@@ -443,7 +926,7 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             }
 
             // update D with the data for that symbol
-            D[row] = repairSymbol.copyOfData(BufferType.ARRAY_BACKED).array();
+            symbolsState.getRepairSymbolData(slot, D[row]);
         }
 
         /*
@@ -451,56 +934,98 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
          * we have the system of linear equations ready to be solved
          */
 
-        try {
-            return LinearSystem.PInactivationDecoding(A, D, Kprime);
-            // return MatrixUtilities.gaussElimination(constraint_matrix, D);
+        return new DecodingSystem(A, D, Kprime, pool, context.symbolOperationsPool(), context.symbolWorkingSetSize(),
+            sourceSymbols, symbolsState.numRepairSymbols(), symbolsState.numSymbols());
+    }
+
+
+    private static final class DecodingSystem {
+
+        private final LinearSystem.ResumableDecoding decoding;
+        private final BitSet sourceSymbols; // the ESIs of the source symbols in the system
+        private int numRepairSymbols; // the first repair symbols in receiving order are in the system
+        private int numSymbols;
+        private boolean resumable;
+
+
+        DecodingSystem(
+            ByteMatrix A,
+            byte[][] D,
+            int Kprime,
+            SymbolRowPool pool,
+            ForkJoinPool symbolOperationsPool,
+            int symbolWorkingSetSize,
+            BitSet sourceSymbols,
+            int numRepairSymbols,
+            int numSymbols)
+        {
+
+            this.decoding = new LinearSystem.ResumableDecoding(
+                A, D, Kprime, pool, symbolOperationsPool, symbolWorkingSetSize);
+            this.sourceSymbols = sourceSymbols;
+            this.numRepairSymbols = numRepairSymbols;
+            this.numSymbols = numSymbols;
+            this.resumable = false;
         }
-        catch (SingularMatrixException e) {
 
-            return null; // decoding failure
+        // the number of received symbols when this system was created (or last resumed)
+        int numSymbols() {
+
+            return numSymbols;
         }
-    }
 
-    /*
-     * ===== Requires locked symbolsState! =====
-     */
-    // requires valid ESI
-    private boolean putSourceData(int esi, ByteBuffer symbolData, SourceSymbolDataType dataType) {
+        void setNumSymbols(int numSymbols) {
 
-        if (symbolsState.containsSourceSymbol(esi)) { // if already received, just advance the buffer position
-            final int T = fecParameters().symbolSize();
-            symbolData.position(symbolData.position() + T);
-            return false;
+            this.numSymbols = numSymbols;
         }
-        else {
-            symbolsState.addSourceSymbol(esi, symbolData, dataType);
-            return true;
+
+        boolean containsSourceSymbol(int esi) {
+
+            return sourceSymbols.get(esi);
         }
-    }
 
-    /*
-     * ===== Requires locked symbolsState! =====
-     */
-    // requires valid ESI
-    private boolean putRepairData(int esi, ByteBuffer symbolData) {
+        int numRepairSymbols() {
 
-        if (symbolsState.containsRepairSymbol(esi)) { // if already received, just advance the buffer position
-            final int T = fecParameters().symbolSize();
-            symbolData.position(symbolData.position() + T);
-            return false;
+            return numRepairSymbols;
         }
-        else {
-            // add this repair symbol to the set of received repair symbols
-            symbolsState.addRepairSymbol(esi, symbolData);
-            return true;
+
+        void addSourceSymbol(int esi, byte[] symbol) {
+
+            decoding.addSymbol(esi, symbol);
+            sourceSymbols.set(esi);
         }
-    }
 
+        void addRepairSymbol(int isi, byte[] symbol) {
+
+            decoding.addSymbol(isi, symbol);
+            numRepairSymbols++;
+        }
+
+        // this system cannot be used after its rows are released
+        void releaseRows() {
+
+            decoding.releaseRows();
+        }
+
+        // true if the last call to solve() failed and the decoding can be resumed with more symbols
+        boolean isResumable() {
+
+            return resumable;
+        }
 
-    private static enum SourceSymbolDataType {
+        // returns null on decoding failure
+        byte[][] solve() {
 
-        CODE,
-        TRANSPORT
+            resumable = false;
+            try {
+                return decoding.solve();
+                // return MatrixUtilities.gaussElimination(constraint_matrix, D);
+            }
+            catch (SingularMatrixException e) {
+                resumable = true;
+                return null; // decoding failure
+            }
+        }
     }
 
     private static final class SymbolsState {
@@ -508,23 +1033,29 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
         private SourceBlockState sbState;
 
         private final ImmutableList<SourceSymbol> sourceSymbols;
-        private final Map<Integer, RepairSymbol> repairSymbols;
+        private final RepairSymbolArena repairSymbols;
 
         private final BitSet sourceSymbolsBitSet;
         private final Iterable<Integer> missingSourceSymbols;
         private final Iterable<Integer> receivedSourceSymbols;
 
+        // symbols being put without the lock (reserved, but not yet received)
+        private final BitSet pendingSourceSymbols;
+        private int numPendingRepairSymbols;
+
         private int symbolOverhead;
+        private boolean decodingInProgress;
 
         private final Lock symbolsStateLock;
+        private final Condition noPendingSymbols;
 
 
-        SymbolsState(ImmutableList<SourceSymbol> sourceSymbols, int symbOver) {
+        SymbolsState(ImmutableList<SourceSymbol> sourceSymbols, int T, int symbOver, RepairSymbolBudget budget) {
 
             this.sbState = SourceBlockState.INCOMPLETE;
 
             this.sourceSymbols = Objects.requireNonNull(sourceSymbols);
-            this.repairSymbols = new LinkedHashMap<>(); // preserved receiving ordering
+            this.repairSymbols = new RepairSymbolArena(T, budget); // preserved receiving ordering
 
             final int K = sourceSymbols.size();
 
@@ -532,9 +1063,14 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             this.missingSourceSymbols = new MissingSourceSymbolsIterable(sourceSymbolsBitSet, K);
             this.receivedSourceSymbols = new ReceivedSourceSymbolsIterable(sourceSymbolsBitSet);
 
+            this.pendingSourceSymbols = new BitSet(K);
+            this.numPendingRepairSymbols = 0;
+
             setSymbolOverhead(symbOver);
+            this.decodingInProgress = false;
 
             this.symbolsStateLock = new ReentrantLock(false); // non-fair lock
+            this.noPendingSymbols = symbolsStateLock.newCondition();
         }
 
         int K() {
@@ -580,33 +1116,73 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             return sourceSymbolsBitSet.get(esi);
         }
 
-        // requires valid parameter
-        void addSourceSymbol(int esi, ByteBuffer symbolData, SourceSymbolDataType dataType) {
+        /*
+         * requires valid parameter
+         * returns false if the symbol was already received or reserved
+         */
+        boolean reserveSourceSymbol(int esi) {
+
+            if (sourceSymbolsBitSet.get(esi) || pendingSourceSymbols.get(esi)) {
+                return false;
+            }
+            else {
+                pendingSourceSymbols.set(esi);
+                return true;
+            }
+        }
+
+        // requires a reserved symbol whose data was already put
+        void commitSourceSymbol(int esi) {
+
+            cancelSourceSymbol(esi);
+            markSourceSymbolAsReceived(esi);
+        }
+
+        // requires a reserved symbol
+        void cancelSourceSymbol(int esi) {
+
+            pendingSourceSymbols.clear(esi);
+            signalIfNoPendingSymbols();
+        }
+
+        // waits until every reserved symbol is committed or cancelled (releasing the lock while waiting)
+        void awaitPendingSymbols() {
+
+            while (hasPendingSymbols()) {
+                noPendingSymbols.awaitUninterruptibly();
+            }
+        }
+
+        private boolean hasPendingSymbols() {
+
+            return !pendingSourceSymbols.isEmpty() || numPendingRepairSymbols > 0;
+        }
+
+        private void signalIfNoPendingSymbols() {
+
+            if (!hasPendingSymbols()) {
+                noPendingSymbols.signalAll();
+            }
+        }
+
+        // requires valid parameter, and the symbol data to be already put
+        void markSourceSymbolAsReceived(int esi) {
 
-            putSourceSymbolData(esi, symbolData, dataType);
             sourceSymbolsBitSet.set(esi); // mark the symbol as received
             sbState = SourceBlockState.INCOMPLETE;
 
             if (numMissingSourceSymbols() == 0) {
                 sbState = SourceBlockState.DECODED;
-                repairSymbols.clear(); // free memory
+                if (numPendingRepairSymbols == 0) { // otherwise cleared when the last pending symbol is committed
+                    repairSymbols.clear(); // free memory
+                }
             }
         }
 
-        private void putSourceSymbolData(int esi, ByteBuffer symbolData, SourceSymbolDataType dataType) {
-
-            switch (dataType) {
-                case CODE:
-                    sourceSymbols.get(esi).putCodeData(symbolData);
-                break;
+        // only requires locked symbols state if the symbol is not reserved
+        void putSourceSymbolData(int esi, ByteBuffer symbolData) {
 
-                case TRANSPORT:
-                    sourceSymbols.get(esi).putTransportData(symbolData);
-                break;
-
-                default:
-                    throw new AssertionError("unknown enum type");
-            }
+            sourceSymbols.get(esi).putTransportData(symbolData);
         }
 
         // requires valid parameter
@@ -633,27 +1209,81 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
         // requires valid parameter
         boolean containsRepairSymbol(int esi) {
 
-            return !isSourceBlockDecoded() && repairSymbols.containsKey(esi);
+            return !isSourceBlockDecoded() && repairSymbols.contains(esi);
         }
 
         /*
          * requires valid parameter
-         * requires !isSourceBlockDecoded()
+         * requires !isSourceBlockDecoded() && !containsRepairSymbol(esi)
+         * returns the slot where the symbol data must be put (may be done without the lock) before committing
          */
-        void addRepairSymbol(int esi, ByteBuffer symbolData) {
+        int reserveRepairSymbol(int esi) {
 
-            repairSymbols.put(esi, RepairSymbol.copyData(symbolData));
-            sbState = SourceBlockState.INCOMPLETE;
+            numPendingRepairSymbols++;
+            return repairSymbols.add(esi);
+        }
+
+        // requires a reserved symbol whose data was already put
+        void commitRepairSymbol() {
+
+            numPendingRepairSymbols--;
+            signalIfNoPendingSymbols();
+            if (numPendingRepairSymbols == 0) { // the symbols data is not being written
+                if (isSourceBlockDecoded()) {
+                    repairSymbols.clear(); // free memory
+                }
+                else {
+                    repairSymbols.spillIfOverBudget();
+                }
+            }
+            if (!isSourceBlockDecoded()) {
+                sbState = SourceBlockState.INCOMPLETE;
+            }
+        }
+
+        /*
+         * requires a reserved symbol (the lock is not required)
+         * the position of the buffer is advanced by the symbol size
+         */
+        void putRepairSymbolData(int slot, ByteBuffer symbolData) {
+
+            repairSymbols.copyInto(slot, symbolData);
+        }
+
+        // requires valid parameter, returns -1 if the symbol was not received
+        int repairSymbolSlot(int esi) {
+
+            return repairSymbols.slotOf(esi);
+        }
+
+        // requires slot in [0, numRepairSymbols())
+        int repairSymbolESI(int slot) {
+
+            return repairSymbols.esi(slot);
+        }
+
+        /*
+         * requires slot in [0, numRepairSymbols())
+         * requires no pending symbols
+         */
+        void getRepairSymbolData(int slot, byte[] dst) {
+
+            repairSymbols.getData(slot, dst, 0);
+        }
+
+        int numSymbols() {
+
+            return sourceSymbolsBitSet.cardinality() + repairSymbols.size();
         }
 
-        Iterable<Entry<Integer, RepairSymbol>> repairSymbols() {
+        boolean isDecodingInProgress() {
 
-            return repairSymbols.entrySet();
+            return decodingInProgress;
         }
 
-        Set<Integer> repairSymbolsESIs() {
+        void setDecodingInProgress(boolean inProgress) {
 
-            return repairSymbols.keySet();
+            decodingInProgress = inProgress;
         }
 
         boolean haveEnoughSymbolsToDecode() {
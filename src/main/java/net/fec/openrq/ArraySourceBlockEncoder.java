@@ -16,14 +16,23 @@
 package net.fec.openrq;
 
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+import net.fec.openrq.encoder.DataEncoder;
 import net.fec.openrq.encoder.SourceBlockEncoder;
 import net.fec.openrq.parameters.FECParameters;
 import net.fec.openrq.parameters.ParameterChecker;
+import net.fec.openrq.parameters.ParameterIO;
 import net.fec.openrq.util.collection.ImmutableList;
+import net.fec.openrq.util.datatype.SizeOf;
 import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
 import net.fec.openrq.util.rq.IntermediateSymbolsDecoder;
 import net.fec.openrq.util.rq.SystematicIndices;
@@ -36,40 +45,65 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
     /*
      * Requires valid arguments.
      */
-    static ArraySourceBlockEncoder newEncoder(ArrayDataEncoder dataEncoder,
+    static ArraySourceBlockEncoder newEncoder(DataEncoder dataEncoder,
         final byte[] array, int arrayOff, FECParameters fecParams, int sbn) {
 
+        return newEncoder(dataEncoder, array, arrayOff, fecParams, sbn, 0);
+    }
+
+    /*
+     * Requires valid arguments. Symbol operations are run over stripes of the symbols that fit in the given working
+     * set size, or over whole symbols if it is 0.
+     */
+    static ArraySourceBlockEncoder newEncoder(DataEncoder dataEncoder,
+        final byte[] array, int arrayOff, FECParameters fecParams, int sbn, int symbolWorkingSetSize) {
+
         ImmutableList<SourceSymbol> sourceSymbols = DataUtils.partitionSourceBlock(
             sbn, fecParams, arrayOff,
             SourceSymbol.class, new DataUtils.SourceSymbolSupplier<SourceSymbol>() {
 
                 @Override
-                public SourceSymbol get(int off, @SuppressWarnings("unused") int esi, int T) {
+                public SourceSymbol get(long off, @SuppressWarnings("unused") int esi, int T) {
 
-                    return ArraySourceSymbol.newSymbol(array, off, T);
+                    return ArraySourceSymbol.newSymbol(array, (int)off, T); // fits in the array
                 }
             });
 
-        return new ArraySourceBlockEncoder(dataEncoder, sbn, sourceSymbols);
+        return new ArraySourceBlockEncoder(dataEncoder, sbn, sourceSymbols, symbolWorkingSetSize);
+    }
+
+    /*
+     * Requires valid arguments. The source symbols may be backed by other storage than an array.
+     */
+    static ArraySourceBlockEncoder newEncoder(DataEncoder dataEncoder, int sbn,
+        ImmutableList<SourceSymbol> sourceSymbols) {
+
+        return new ArraySourceBlockEncoder(dataEncoder, sbn, sourceSymbols, 0);
     }
 
 
-    private final ArrayDataEncoder dataEncoder;
+    private final DataEncoder dataEncoder;
     private final ImmutableList<SourceSymbol> sourceSymbols;
-    private byte[][] intermediateSymbols = null;
+    private volatile byte[][] intermediateSymbols = null;
+    private final Lock intermediateSymbolsLock;
 
     private final int sbn;
     private final int Kprime;
+    private final RepairSymbolGenerator repairGenerator;
+    private final int symbolWorkingSetSize;
 
 
-    private ArraySourceBlockEncoder(ArrayDataEncoder dataEncoder, int sbn,
-        ImmutableList<SourceSymbol> sourceSymbols) {
+    private ArraySourceBlockEncoder(DataEncoder dataEncoder, int sbn,
+        ImmutableList<SourceSymbol> sourceSymbols, int symbolWorkingSetSize) {
 
         this.dataEncoder = Objects.requireNonNull(dataEncoder);
         this.sourceSymbols = Objects.requireNonNull(sourceSymbols);
+        this.intermediateSymbolsLock = new ReentrantLock(false); // non-fair lock
 
         this.sbn = sbn;
         this.Kprime = SystematicIndices.ceil(K());
+        this.repairGenerator = new RepairSymbolGenerator(Kprime);
+        this.symbolWorkingSetSize = symbolWorkingSetSize;
     }
 
     private FECParameters fecParameters() {
@@ -85,21 +119,37 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
     // use only this method for access to the intermediate symbols
     private byte[][] getIntermediateSymbols() {
 
-        // Note: if multiple threads call this method concurrently, then
-        // no harm is done, only the fact that some threads may perform
-        // useless work
-
         byte[][] is = intermediateSymbols;
         if (is == null) {
-            is = generateIntermediateSymbols();
-            intermediateSymbols = is;
+            // only one thread generates the intermediate symbols, the other
+            // threads wait for them (instead of performing useless work)
+            intermediateSymbolsLock.lock();
+            try {
+                is = intermediateSymbols;
+                if (is == null) {
+                    is = generateIntermediateSymbols();
+                    intermediateSymbols = is;
+                }
+            }
+            finally {
+                intermediateSymbolsLock.unlock();
+            }
         }
 
         return is;
     }
 
+    /**
+     * Generates the intermediate symbols of this source block, if they were not yet generated. Concurrent encoding
+     * requests wait for the intermediate symbols instead of generating them again.
+     */
+    void precomputeIntermediateSymbols() {
+
+        getIntermediateSymbols();
+    }
+
     @Override
-    public ArrayDataEncoder dataEncoder() {
+    public DataEncoder dataEncoder() {
 
         return dataEncoder;
     }
@@ -176,18 +226,87 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
         checkRepairSymbolESI(esi);
         checkNumRepairSymbols(esi, numSymbols);
 
-        // retrieve repair symbols data
+        // generate repair symbols data
         final ByteBuffer symbols = ByteBuffer.allocate(numSymbols
                                                        * fecParameters().symbolSize());
-        for (int i = 0; i < numSymbols; i++) {
-            symbols.put(getRepairSymbol(esi + i).readOnlyData());
-        }
+        generateRepairSymbols(esi, numSymbols, symbols);
         symbols.flip();
 
         return EncodingPacket.newRepairPacket(sbn, esi,
             symbols.asReadOnlyBuffer(), numSymbols);
     }
 
+    // the following methods are exposed with a source block number by ArrayDataEncoder, instead of being added to the
+    // SourceBlockEncoder interface (which would break its implementations outside this library)
+
+    void writeRepairSymbols(int esi, int numSymbols, ByteBuffer buffer) {
+
+        checkRepairSymbolESI(esi);
+        checkNumRepairSymbols(esi, numSymbols);
+        if (buffer.isReadOnly()) throw new ReadOnlyBufferException();
+        if (buffer.remaining() < (long)numSymbols * fecParameters().symbolSize()) throw new BufferOverflowException();
+
+        generateRepairSymbols(esi, numSymbols, buffer);
+    }
+
+    void writeRepairSymbols(int esi, int numSymbols, byte[] array, int offset) {
+
+        checkRepairSymbolESI(esi);
+        checkNumRepairSymbols(esi, numSymbols);
+        final int T = fecParameters().symbolSize();
+        if (offset < 0 || offset > array.length || (long)numSymbols * T > array.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        final int isi = SystematicIndices.getISI(esi, K(), Kprime);
+        repairGenerator.generate(getIntermediateSymbols(), isi, numSymbols, T, array, offset);
+    }
+
+    void writeSourcePacket(int esi, ByteBuffer buffer) {
+
+        writeSourcePacket(esi, 1, buffer);
+    }
+
+    void writeSourcePacket(int esi, int numSymbols, ByteBuffer buffer) {
+
+        checkSourceSymbolESI(esi);
+        checkNumSourceSymbols(esi, numSymbols);
+        if (buffer.isReadOnly()) throw new ReadOnlyBufferException();
+
+        // must calculate the size beforehand (total size may be less than
+        // numSymbols * T)
+        int totalSize = 0;
+        for (int n = 0, ii = esi; n < numSymbols; n++, ii++) {
+            totalSize += getSourceSymbol(ii).transportSize();
+        }
+        if (buffer.remaining() < SizeOf.INT + SizeOf.INT + totalSize) throw new BufferOverflowException();
+
+        buffer.putInt(ParameterIO.buildFECpayloadID(sbn, esi));
+        buffer.putInt(totalSize);
+        for (int n = 0, ii = esi; n < numSymbols; n++, ii++) {
+            buffer.put(getSourceSymbol(ii).transportData());
+        }
+    }
+
+    void writeRepairPacket(int esi, ByteBuffer buffer) {
+
+        writeRepairPacket(esi, 1, buffer);
+    }
+
+    void writeRepairPacket(int esi, int numSymbols, ByteBuffer buffer) {
+
+        checkRepairSymbolESI(esi);
+        checkNumRepairSymbols(esi, numSymbols);
+        if (buffer.isReadOnly()) throw new ReadOnlyBufferException();
+
+        final long totalSize = (long)numSymbols * fecParameters().symbolSize();
+        if (buffer.remaining() < SizeOf.INT + SizeOf.INT + totalSize) throw new BufferOverflowException();
+
+        buffer.putInt(ParameterIO.buildFECpayloadID(sbn, esi));
+        buffer.putInt((int)totalSize);
+        generateRepairSymbols(esi, numSymbols, buffer);
+    }
+
     @Override
     public IterableBuilder newIterableBuilder() {
 
@@ -265,16 +384,21 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
     // requires valid ESI
     private RepairSymbol getRepairSymbol(int esi) {
 
-        // calculate ISI from ESI
-        final int isi = SystematicIndices.getISI(esi, K(), Kprime);
-
         // generate the repair symbol data
-        final int T = fecParameters().symbolSize();
-        byte[] enc_data = LinearSystem.enc(Kprime, getIntermediateSymbols(),
-            new Tuple(Kprime, isi), T);
+        final ByteBuffer enc_data = ByteBuffer.allocate(fecParameters().symbolSize());
+        generateRepairSymbols(esi, 1, enc_data);
+        enc_data.flip();
 
         // TODO should we store the repair symbols generated?
-        return RepairSymbol.wrapData(ByteBuffer.wrap(enc_data));
+        return RepairSymbol.wrapData(enc_data);
+    }
+
+    // requires valid ESI and number of symbols, and enough space in the buffer
+    private void generateRepairSymbols(int esi, int numSymbols, ByteBuffer buffer) {
+
+        // calculate ISI from ESI
+        final int isi = SystematicIndices.getISI(esi, K(), Kprime);
+        repairGenerator.generate(getIntermediateSymbols(), isi, numSymbols, fecParameters().symbolSize(), buffer);
     }
 
     private byte[][] initVectorD() {
@@ -303,7 +427,7 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
         // first try to obtain an optimized decoder that supports Kprime
         final IntermediateSymbolsDecoder isd = ISDManager.get(Kprime);
         if (isd != null) {
-            return isd.decode(D);
+            return ISDManager.decode(isd, D, symbolWorkingSetSize);
         }
         else { // if no optimized decoder is available, fall back to the
                // standard decoding process
@@ -314,8 +438,19 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
 
             // solve system of equations
             try {
-                return LinearSystem.PInactivationDecoding(constraint_matrix, D,
-                    Kprime);
+                if (ISDManager.isRecordingEnabled()) {
+                    // record the schedule so that next time an optimized
+                    // decoder is available for Kprime
+                    final List<ISDOperation> schedule = new ArrayList<>();
+                    final byte[][] C = LinearSystem.PInactivationDecoding(
+                        constraint_matrix, D, Kprime, schedule);
+                    ISDManager.register(Kprime, schedule);
+                    return C;
+                }
+                else {
+                    return LinearSystem.PInactivationDecoding(
+                        constraint_matrix, D, Kprime, symbolWorkingSetSize);
+                }
                 // return Utilities.gaussElimination(constraint_matrix, D);
             }
             catch (SingularMatrixException e) {
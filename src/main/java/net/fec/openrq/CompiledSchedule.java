@@ -0,0 +1,370 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.fec.openrq.util.math.OctetOps;
+
+
+/**
+ * A schedule of symbol operations compiled into flat opcode streams.
+ * <p>
+ * Every operation of a schedule is reduced to one of two primitive symbol operations:
+ * <ul>
+ * <li>an <em>addition run</em>, which adds a sequence of (multiplied) source symbols to the same destination symbol;
+ * <li>a <em>scaling</em>, which multiplies a symbol by a value.
+ * </ul>
+ * Symbol reorderings are resolved at compile time into a remapping of symbol indices, so the only reordering left to
+ * run is a single in-place permutation of the symbol references at the end of the schedule.
+ * <p>
+ * A compiled schedule is immutable, and running it allocates no memory, so it may be used concurrently by multiple
+ * threads over different vectors of symbols.
+ */
+final class CompiledSchedule {
+
+    /**
+     * Compiles the given schedule of operations over a vector of {@code L} symbols.
+     * 
+     * @param L
+     *            The number of symbols the schedule operates on
+     * @param ops
+     *            The operations to compile, in order
+     * @return a compiled schedule
+     */
+    static CompiledSchedule compile(int L, List<ISDOperation> ops) {
+
+        final Builder builder = new Builder(L);
+        for (ISDOperation op : ops) {
+            op.compile(builder);
+        }
+        return builder.build();
+    }
+
+
+    // opcodes
+    private static final int ADD_RUN = 0; // ADD_RUN, dst, n, src_1, ..., src_n (n multipliers)
+    private static final int SCALE = 1; // SCALE, row (1 multiplier)
+
+    private final int L;
+    private final int[] code;
+    private final byte[] mults;
+    private final int[] cycles; // len, idx_1, ..., idx_len (D[idx_k] = D[idx_k+1], D[idx_len] = D[idx_1])
+
+
+    private CompiledSchedule(int L, int[] code, byte[] mults, int[] cycles) {
+
+        this.L = L;
+        this.code = code;
+        this.mults = mults;
+        this.cycles = cycles;
+    }
+
+    /**
+     * Runs this schedule over the given vector of symbols. The symbol references inside the array may be permuted.
+     * 
+     * @param D
+     *            A vector of symbols
+     * @return the given array
+     * @exception IllegalArgumentException
+     *                If the number of symbols is different than the number of symbols of this schedule
+     */
+    byte[][] apply(byte[][] D) {
+
+        return apply(D, 0);
+    }
+
+    /**
+     * Runs this schedule over the given vector of symbols, in stripes of bytes such that the stripes of all symbols
+     * fit in the given working set size. The symbol references inside the array may be permuted.
+     * 
+     * @param D
+     *            A vector of symbols
+     * @param symbolWorkingSetSize
+     *            The maximum number of bytes of all symbols operated on at a time, or 0 if the symbols are to be
+     *            operated on as a whole
+     * @return the given array
+     * @exception IllegalArgumentException
+     *                If the number of symbols is different than the number of symbols of this schedule
+     */
+    byte[][] apply(byte[][] D, int symbolWorkingSetSize) {
+
+        if (D.length != L) throw new IllegalArgumentException("invalid number of symbols");
+
+        final int T = (D.length == 0) ? 0 : D[0].length;
+        final int stripeSize = LinearSystem.symbolStripeSize(T, L, symbolWorkingSetSize);
+        for (int off = 0; off < T; off += stripeSize) {
+            applyToRange(D, off, Math.min(stripeSize, T - off));
+        }
+        reorder(D);
+        return D;
+    }
+
+    /**
+     * Runs the symbol operations of this schedule over a range of bytes of every symbol in the given vector, without
+     * reordering the symbols. Running the schedule over disjoint ranges that cover all symbol bytes, followed by
+     * {@link #reorder(byte[][])}, is equivalent to {@link #apply(byte[][])}.
+     * 
+     * @param D
+     *            A vector of symbols
+     * @param off
+     *            The index of the first byte of every symbol to operate on
+     * @param len
+     *            The number of bytes of every symbol to operate on
+     * @exception IllegalArgumentException
+     *                If the number of symbols is different than the number of symbols of this schedule
+     */
+    void applyToRange(byte[][] D, int off, int len) {
+
+        if (D.length != L) throw new IllegalArgumentException("invalid number of symbols");
+
+        final int[] code = this.code;
+        final byte[] mults = this.mults;
+        int pc = 0;
+        int mc = 0;
+        while (pc < code.length) {
+            switch (code[pc]) {
+                case ADD_RUN: {
+                    final byte[] dst = D[code[pc + 1]];
+                    final int n = code[pc + 2];
+                    final int end = pc + 3 + n;
+                    int s = pc + 3;
+                    while (s < end) {
+                        // fuse two plain additions in a single pass over the destination
+                        if (s + 1 < end && mults[mc] == 1 && mults[mc + 1] == 1) {
+                            addInPlace(D[code[s]], D[code[s + 1]], dst, off, len);
+                            s += 2;
+                            mc += 2;
+                        }
+                        else {
+                            OctetOps.vectorVectorAdditionInPlace(mults[mc], D[code[s]], off, dst, off, len);
+                            s++;
+                            mc++;
+                        }
+                    }
+                    pc = end;
+                }
+                break;
+
+                case SCALE: {
+                    final byte[] row = D[code[pc + 1]];
+                    OctetOps.valueVectorProduct(mults[mc], row, off, row, off, len); // in place product
+                    pc += 2;
+                    mc++;
+                }
+                break;
+
+                default:
+                    // should never happen
+                    throw new AssertionError("unknown opcode");
+            }
+        }
+    }
+
+    /**
+     * Permutes the symbol references in the given vector, as required at the end of this schedule.
+     * 
+     * @param D
+     *            A vector of symbols
+     */
+    void reorder(byte[][] D) {
+
+        int i = 0;
+        while (i < cycles.length) {
+            final int len = cycles[i];
+            final int first = i + 1;
+            final int last = i + len;
+
+            final byte[] tmp = D[cycles[first]];
+            for (int k = first; k < last; k++) {
+                D[cycles[k]] = D[cycles[k + 1]];
+            }
+            D[cycles[last]] = tmp;
+
+            i = last + 1;
+        }
+    }
+
+    private static void addInPlace(byte[] src1, byte[] src2, byte[] dst, int off, int len) {
+
+        final int end = off + len;
+        for (int k = off; k < end; k++) {
+            dst[k] ^= src1[k] ^ src2[k];
+        }
+    }
+
+
+    /**
+     * Builds a compiled schedule from symbol operations expressed over <em>logical</em> symbol indices, which are
+     * mapped to physical indices in the vector of symbols (they only differ after a reordering operation).
+     */
+    static final class Builder {
+
+        private final int L;
+        private int[] logicalToPhysical;
+
+        private int[] code;
+        private int codeSize;
+        private byte[] mults;
+        private int multsSize;
+
+        // the pending addition run (its header is written to the code when a different operation arrives)
+        private int runDst;
+        private int runStart;
+
+
+        Builder(int L) {
+
+            this.L = L;
+            this.logicalToPhysical = new int[L];
+            for (int i = 0; i < L; i++) {
+                logicalToPhysical[i] = i;
+            }
+
+            this.code = new int[64];
+            this.codeSize = 0;
+            this.mults = new byte[64];
+            this.multsSize = 0;
+
+            this.runDst = -1;
+            this.runStart = -1;
+        }
+
+        /**
+         * Adds the product of {@code srcMult} and symbol {@code srcRow} to symbol {@code dstRow}.
+         */
+        void addition(byte srcMult, int srcRow, int dstRow) {
+
+            if (srcMult == 0) { // adding zeros has no effect
+                return;
+            }
+
+            final int src = logicalToPhysical[srcRow];
+            final int dst = logicalToPhysical[dstRow];
+            if (dst != runDst) {
+                endRun();
+                runDst = dst;
+                runStart = codeSize;
+                appendCode(ADD_RUN);
+                appendCode(dst);
+                appendCode(0); // the size of the run is set when the run ends
+            }
+            appendCode(src);
+            appendMult(srcMult);
+        }
+
+        /**
+         * Multiplies symbol {@code row} by {@code value}.
+         */
+        void product(byte value, int row) {
+
+            if (value == 1) { // multiplying by one has no effect
+                return;
+            }
+
+            endRun();
+            appendCode(SCALE);
+            appendCode(logicalToPhysical[row]);
+            appendMult(value);
+        }
+
+        /**
+         * Divides symbol {@code row} by {@code beta}.
+         */
+        void division(byte beta, int row) {
+
+            product(OctetOps.aDividedByB((byte)1, beta), row);
+        }
+
+        /**
+         * Reorders the symbols such that symbol {@code c[i]} becomes the previous symbol {@code d[i]}, for every
+         * {@code i} in {@code [0, L)}.
+         */
+        void reordering(int[] c, int[] d) {
+
+            final int[] newMap = new int[L];
+            for (int i = 0; i < L; i++) {
+                newMap[c[i]] = logicalToPhysical[d[i]];
+            }
+            logicalToPhysical = newMap;
+        }
+
+        CompiledSchedule build() {
+
+            endRun();
+            return new CompiledSchedule(
+                L,
+                Arrays.copyOf(code, codeSize),
+                Arrays.copyOf(mults, multsSize),
+                permutationCycles(logicalToPhysical));
+        }
+
+        private void endRun() {
+
+            if (runStart != -1) {
+                code[runStart + 2] = codeSize - (runStart + 3);
+                runStart = -1;
+                runDst = -1;
+            }
+        }
+
+        private void appendCode(int value) {
+
+            if (codeSize == code.length) {
+                code = Arrays.copyOf(code, 2 * code.length);
+            }
+            code[codeSize++] = value;
+        }
+
+        private void appendMult(byte value) {
+
+            if (multsSize == mults.length) {
+                mults = Arrays.copyOf(mults, 2 * mults.length);
+            }
+            mults[multsSize++] = value;
+        }
+
+        /*
+         * Decomposes the permutation D'[i] = D[map[i]] into cycles of references to move in place.
+         */
+        private static int[] permutationCycles(int[] map) {
+
+            final int L = map.length;
+            final boolean[] visited = new boolean[L];
+            final int[] cycles = new int[L + L];
+            int size = 0;
+
+            for (int i = 0; i < L; i++) {
+                if (!visited[i] && map[i] != i) {
+                    final int lenPos = size++;
+                    int len = 0;
+                    int j = i;
+                    while (!visited[j]) {
+                        visited[j] = true;
+                        cycles[size++] = j;
+                        len++;
+                        j = map[j];
+                    }
+                    cycles[lenPos] = len;
+                }
+            }
+
+            return Arrays.copyOf(cycles, size);
+        }
+    }
+}
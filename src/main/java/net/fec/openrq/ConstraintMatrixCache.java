@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+
+
+/**
+ * A bounded cache of constraint matrix templates, indexed by K' (see RFC 6330).
+ * <p>
+ * The LxL constraint matrix only depends on the value of K', so its LDPC, HDPC and LT rows are generated once per
+ * value of K' and stored as a template. Templates are never modified after being cached; callers must always work on
+ * a copy of a template (see {@link LinearSystem#generateConstraintMatrix(int, int)}).
+ * <p>
+ * This class is thread safe. When the cache is full, the least recently used template is evicted.
+ */
+final class ConstraintMatrixCache {
+
+    // enough for a few different block sizes being encoded/decoded at the same time
+    private static final int MAX_CACHED_TEMPLATES = 16;
+
+    private static final ConstraintMatrixCache INSTANCE = new ConstraintMatrixCache(MAX_CACHED_TEMPLATES);
+
+
+    /**
+     * Returns the constraint matrix template for the given value of K'. The returned matrix must <b>not</b> be
+     * modified.
+     * 
+     * @param Kprime
+     *            The number of source (and padding) symbols in an extended source block
+     * @return the constraint matrix template for the given value of K'
+     */
+    static ByteMatrix get(int Kprime) {
+
+        return INSTANCE.getTemplate(Kprime);
+    }
+
+
+    private final Map<Integer, ByteMatrix> templates;
+    private final Lock templatesLock;
+
+
+    /**
+     * Creates an empty cache. Use {@link #get(int)} instead, unless a separate cache is required.
+     * 
+     * @param maxTemplates
+     *            The maximum number of cached templates
+     */
+    ConstraintMatrixCache(final int maxTemplates) {
+
+        // access ordered map, for LRU eviction
+        this.templates = new LinkedHashMap<Integer, ByteMatrix>(maxTemplates + 1, 1.0f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ByteMatrix> eldest) {
+
+                return size() > maxTemplates;
+            }
+        };
+        this.templatesLock = new ReentrantLock(false); // non-fair lock
+    }
+
+    /**
+     * Returns the constraint matrix template for the given value of K', generating it if it is not cached. The
+     * returned matrix must <b>not</b> be modified.
+     * 
+     * @param Kprime
+     *            The number of source (and padding) symbols in an extended source block
+     * @return the constraint matrix template for the given value of K'
+     */
+    ByteMatrix getTemplate(int Kprime) {
+
+        ByteMatrix template = lookup(Kprime);
+        if (template == null) {
+            // the template is generated outside the lock so that other values of K' are not blocked;
+            // if multiple threads generate the same template concurrently, only one of them is kept
+            template = store(Kprime, LinearSystem.newConstraintMatrix(Kprime));
+        }
+
+        return template;
+    }
+
+    private ByteMatrix lookup(int Kprime) {
+
+        templatesLock.lock();
+        try {
+            return templates.get(Kprime);
+        }
+        finally {
+            templatesLock.unlock();
+        }
+    }
+
+    private ByteMatrix store(int Kprime, ByteMatrix template) {
+
+        templatesLock.lock();
+        try {
+            final ByteMatrix previous = templates.get(Kprime);
+            if (previous != null) {
+                return previous;
+            }
+            else {
+                templates.put(Kprime, template);
+                return template;
+            }
+        }
+        finally {
+            templatesLock.unlock();
+        }
+    }
+}
@@ -41,12 +41,12 @@ final class DataUtils {
 
     static interface SourceBlockSupplier<SB> {
 
-        SB get(int off, int sbn);
+        SB get(long off, int sbn);
     }
 
     static interface SourceSymbolSupplier<SS> {
 
-        SS get(int off, int esi, int T);
+        SS get(long off, int esi, int T);
     }
 
 
@@ -71,7 +71,7 @@ final class DataUtils {
      * @return an immutable list of source block encoders/decoders
      */
     static <SB> ImmutableList<SB> partitionSourceData(
-        FECParameters fecParams, int startOffset,
+        FECParameters fecParams, long startOffset,
         Class<SB> clazz, SourceBlockSupplier<SB> supplier) {
 
         final int Kt = fecParams.totalSymbols();
@@ -95,13 +95,13 @@ final class DataUtils {
         final int T = fecParams.symbolSize();
         // source block number (index)
         int sbn;
-        int off;
+        long off; // data lengths may exceed the range of int
 
-        for (sbn = 0, off = startOffset; sbn < ZL; sbn++, off += KL * T) { // first ZL
+        for (sbn = 0, off = startOffset; sbn < ZL; sbn++, off += (long)KL * T) { // first ZL
             srcBlocks[sbn] = supplier.get(off, sbn);
         }
 
-        for (; sbn < Z; sbn++, off += KS * T) { // last ZS
+        for (; sbn < Z; sbn++, off += (long)KS * T) { // last ZS
             srcBlocks[sbn] = supplier.get(off, sbn);
         }
 
@@ -131,7 +131,7 @@ final class DataUtils {
      * @return an immutable list of source symbols
      */
     static <SS> ImmutableList<SS> partitionSourceBlock(
-        int sbn, FECParameters fecParams, int startOffset,
+        int sbn, FECParameters fecParams, long startOffset,
         Class<SS> clazz, SourceSymbolSupplier<SS> supplier) {
 
         // number of source symbols
@@ -141,7 +141,8 @@ final class DataUtils {
         final SS[] srcSymbols = ArrayUtils.newArray(clazz, K);
 
         final int T = fecParams.symbolSize();
-        for (int esi = 0, off = startOffset; esi < K; esi++, off += T) {
+        long off = startOffset;
+        for (int esi = 0; esi < K; esi++, off += T) {
             srcSymbols[esi] = supplier.get(off, esi, T);
         }
 
@@ -332,6 +333,115 @@ final class DataUtils {
         return parsePacket(dec, sbn, esi, symbols, false);
     }
 
+    /**
+     * Puts into a decoder the encoding packets serialized back-to-back in a buffer, as in method
+     * {@link #parsePacket(DataDecoder, ByteBuffer, boolean)}, without creating objects per packet.
+     * <p>
+     * Packets with an invalid FEC payload ID or symbols data are skipped. If the symbols data length of a packet is
+     * invalid, the end of the packet is unknown, so no more packets are read and the buffer position is left at the
+     * start of that packet. Otherwise, the buffer position is advanced past the last packet.
+     * 
+     * @param dec
+     * @param packets
+     * @return the number of encoding packets put into the decoder
+     */
+    static int putPackets(DataDecoder dec, ByteBuffer packets) {
+
+        final int lim = packets.limit();
+        int numPut = 0;
+        try {
+            while (packets.remaining() >= SizeOf.INT + SizeOf.INT) {
+                final int start = packets.position();
+                final int fecPayloadID = packets.getInt();
+                final int symbLen = packets.getInt();
+                if (symbLen <= 0 || symbLen > packets.remaining()) {
+                    packets.position(start);
+                    break;
+                }
+
+                final int end = packets.position() + symbLen;
+                packets.limit(end);
+                if (putSymbols(dec, fecPayloadID, packets, symbLen)) {
+                    numPut++;
+                }
+                packets.limit(lim);
+                packets.position(end);
+            }
+        }
+        finally {
+            packets.limit(lim);
+        }
+
+        return numPut;
+    }
+
+    /**
+     * Puts into a decoder the encoding packets serialized in each buffer, as in method
+     * {@link #parsePacket(DataDecoder, ByteBuffer, boolean)}, without creating objects per packet. Invalid packets are
+     * skipped. The position of each buffer is advanced past the data read from it.
+     * 
+     * @param dec
+     * @param packets
+     * @return the number of encoding packets put into the decoder
+     */
+    static int putPackets(DataDecoder dec, ByteBuffer[] packets) {
+
+        int numPut = 0;
+        for (ByteBuffer packet : packets) {
+            if (packet.remaining() >= SizeOf.INT + SizeOf.INT) {
+                final int fecPayloadID = packet.getInt();
+                final int symbLen = packet.getInt();
+                if (symbLen > 0 && symbLen <= packet.remaining()) {
+                    final int lim = packet.limit();
+                    final int end = packet.position() + symbLen;
+                    packet.limit(end);
+                    try {
+                        if (putSymbols(dec, fecPayloadID, packet, symbLen)) {
+                            numPut++;
+                        }
+                    }
+                    finally {
+                        packet.limit(lim);
+                    }
+                    packet.position(end);
+                }
+            }
+        }
+
+        return numPut;
+    }
+
+    // returns false if the packet is invalid; the symbols buffer must end at the end of the symbols data
+    private static boolean putSymbols(DataDecoder dec, int fecPayloadID, ByteBuffer symbols, int symbLen) {
+
+        final int sbn = ParameterIO.extractSourceBlockNumber(fecPayloadID);
+        final int esi = ParameterIO.extractEncodingSymbolID(fecPayloadID);
+        if (sbn >= dec.numberOfSourceBlocks() || ParameterChecker.isEncodingSymbolIDOutOfBounds(esi)) {
+            return false;
+        }
+
+        // every data decoder is made of array source block decoders
+        final ArraySourceBlockDecoder sbDec = (ArraySourceBlockDecoder)dec.sourceBlock(sbn);
+        final int K = sbDec.numberOfSourceSymbols();
+        final int numSymbols = ExtraMath.ceilDiv(symbLen, dec.symbolSize());
+
+        final SymbolType type;
+        if (esi < K) {
+            if (numSymbols > K - esi) return false;
+            type = SymbolType.SOURCE;
+        }
+        else {
+            if (numSymbols > 1 + ParameterChecker.maxEncodingSymbolID() - esi) return false;
+            type = SymbolType.REPAIR;
+        }
+
+        if (!sbDec.isValidSymbolsLength(type, esi, numSymbols, symbLen)) {
+            return false;
+        }
+        sbDec.putSymbols(type, esi, numSymbols, symbols);
+        return true;
+    }
+
     // requires valid symbLen
     private static Parsed<EncodingPacket> parsePacket(DataDecoder dec, int sbn,
         int esi, ByteBuffer symbols, int symbLen, boolean copySymbols) {
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import net.fec.openrq.decoder.DecodingEngine;
+import net.fec.openrq.decoder.SourceBlockDecodingListener;
+import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.parameters.ParameterChecker;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+
+/**
+ * The decoding configuration and working memory shared by the source block decoders of a data decoder.
+ */
+final class DecodingContext {
+
+    /*
+     * Requires valid FEC parameters and non-negative symbol overhead.
+     */
+    static DecodingContext newContext(
+        FECParameters fecParams,
+        int symbOver,
+        DecodingEngine engine,
+        Executor decodingExecutor,
+        SourceBlockDecodingListener listener)
+    {
+
+        return newContext(fecParams, symbOver, engine, decodingExecutor, listener, null);
+    }
+
+    /*
+     * Requires valid FEC parameters and non-negative symbol overhead.
+     */
+    static DecodingContext newContext(
+        FECParameters fecParams,
+        int symbOver,
+        DecodingEngine engine,
+        Executor decodingExecutor,
+        SourceBlockDecodingListener listener,
+        RepairSymbolBudget repairSymbolBudget)
+    {
+
+        return newContext(fecParams, symbOver, engine, decodingExecutor, listener, repairSymbolBudget, null, 0);
+    }
+
+    /*
+     * Requires valid FEC parameters, non-negative symbol overhead and non-negative working set size.
+     */
+    static DecodingContext newContext(
+        FECParameters fecParams,
+        int symbOver,
+        DecodingEngine engine,
+        Executor decodingExecutor,
+        SourceBlockDecodingListener listener,
+        RepairSymbolBudget repairSymbolBudget,
+        ForkJoinPool symbolOperationsPool,
+        int symbolWorkingSetSize)
+    {
+
+        final SymbolRowPool pool = new SymbolRowPool(fecParams.symbolSize(), maxDecodingRows(fecParams, symbOver));
+        return new DecodingContext(
+            engine, decodingExecutor, listener, pool, repairSymbolBudget, symbolOperationsPool, symbolWorkingSetSize);
+    }
+
+    /*
+     * Returns the number of symbol rows needed to decode the largest source block with the given symbol overhead.
+     */
+    private static int maxDecodingRows(FECParameters fecParams, int symbOver) {
+
+        // (KL, KS, ZL, ZS) = Partition[Kt, Z]
+        final int KL = new Partition(fecParams.totalSymbols(), fecParams.numberOfSourceBlocks()).get(1);
+        final int Kprime = SystematicIndices.ceil(KL);
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int L = Kprime + SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+
+        return L + Math.min(symbOver, ParameterChecker.numRepairSymbolsPerBlock(KL));
+    }
+
+
+    private final DecodingEngine engine;
+    private final Executor decodingExecutor; // may be null
+    private final SourceBlockDecodingListener listener; // may be null
+
+    // working memory shared by the decodings of all source blocks
+    private final SymbolRowPool symbolRowPool;
+    private final RepairSymbolBudget repairSymbolBudget; // may be null
+    private final ForkJoinPool symbolOperationsPool; // may be null
+    private final int symbolWorkingSetSize;
+
+
+    private DecodingContext(
+        DecodingEngine engine,
+        Executor decodingExecutor,
+        SourceBlockDecodingListener listener,
+        SymbolRowPool symbolRowPool,
+        RepairSymbolBudget repairSymbolBudget,
+        ForkJoinPool symbolOperationsPool,
+        int symbolWorkingSetSize)
+    {
+
+        this.engine = Objects.requireNonNull(engine);
+        this.decodingExecutor = decodingExecutor;
+        this.listener = listener;
+        this.symbolRowPool = symbolRowPool;
+        this.repairSymbolBudget = repairSymbolBudget;
+        this.symbolOperationsPool = symbolOperationsPool;
+        this.symbolWorkingSetSize = symbolWorkingSetSize;
+    }
+
+    DecodingEngine decodingEngine() {
+
+        return engine;
+    }
+
+    /*
+     * Returns null if source blocks are to be decoded by the threads that put encoding packets.
+     */
+    Executor decodingExecutor() {
+
+        return decodingExecutor;
+    }
+
+    /*
+     * Returns null if there is no listener to be notified.
+     */
+    SourceBlockDecodingListener decodingListener() {
+
+        return listener;
+    }
+
+    SymbolRowPool symbolRowPool() {
+
+        return symbolRowPool;
+    }
+
+    /*
+     * Returns null if the memory used by received repair symbols is unbounded.
+     */
+    RepairSymbolBudget repairSymbolBudget() {
+
+        return repairSymbolBudget;
+    }
+
+    /*
+     * Returns null if the symbol operations of the last decoding phases are to be run by the decoding thread.
+     */
+    ForkJoinPool symbolOperationsPool() {
+
+        return symbolOperationsPool;
+    }
+
+    /*
+     * Returns 0 if the symbol operations of the last decoding phases are to be run over whole symbols.
+     */
+    int symbolWorkingSetSize() {
+
+        return symbolWorkingSetSize;
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import net.fec.openrq.DataUtils.SourceBlockSupplier;
+import net.fec.openrq.decoder.DataDecoder;
+import net.fec.openrq.decoder.DecodingEngine;
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockDecodingListener;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.util.collection.ImmutableList;
+
+
+/**
+ * A RaptorQ decoder for a data object stored in a file.
+ * <p>
+ * Each source block is mapped into memory, so that received and recovered source symbols are written directly into
+ * the file (through the operating system page cache) instead of being kept in the Java heap. Once a source block is
+ * decoded, its mapping is forced to the file and released. Data lengths up to
+ * {@link net.fec.openrq.parameters.ParameterChecker#maxDataLength()} are supported.
+ */
+public final class FileDataDecoder implements DataDecoder {
+
+    /**
+     * @param channel
+     *            A channel of the file where the source data is to be decoded (must be open for reading and writing)
+     * @param position
+     *            The position in the file where the source data begins
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbOver
+     *            Repair symbol overhead (must be non-negative)
+     * @param engine
+     *            The algorithm used to decode source blocks
+     * @param decodingExecutor
+     *            An executor that runs the decoding operations, or {@code null} if source blocks are decoded by the
+     *            threads that put encoding packets
+     * @param listener
+     *            A listener of finished decoding operations, or {@code null} if no listener is to be notified
+     * @param maxSegmentSize
+     *            The maximum size of each mapped region of the file
+     * @return a data decoder object that decodes source data into a file
+     * @throws IOException
+     *             If an I/O error occurs while mapping the file
+     * @exception NullPointerException
+     *                If {@code channel}, {@code fecParams} or {@code engine} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code position < 0 || symbOver < 0}
+     */
+    static FileDataDecoder newDecoder(
+        FileChannel channel,
+        long position,
+        FECParameters fecParams,
+        int symbOver,
+        DecodingEngine engine,
+        Executor decodingExecutor,
+        SourceBlockDecodingListener listener,
+        int maxSegmentSize) throws IOException
+    {
+
+        Objects.requireNonNull(channel);
+        Objects.requireNonNull(engine);
+        // throws NullPointerException if null fecParams
+        final long dataLength = fecParams.dataLength();
+        if (position < 0) {
+            throw new IllegalArgumentException("negative file position");
+        }
+        if (symbOver < 0) {
+            throw new IllegalArgumentException("negative symbol overhead");
+        }
+
+        // each source block is mapped separately, so that it can be released once decoded (the file grows if needed)
+        final int T = fecParams.symbolSize();
+        final MappedData[] blockData = new MappedData[fecParams.numberOfSourceBlocks()];
+        long off = 0;
+        for (int sbn = 0; sbn < blockData.length; sbn++) {
+            final long blockLength = Math.min((long)DataUtils.getK(fecParams, sbn) * T, dataLength - off);
+            blockData[sbn] = MappedData.map(channel, MapMode.READ_WRITE, position + off, blockLength, T, maxSegmentSize);
+            off += blockLength;
+        }
+
+        return new FileDataDecoder(blockData, position, fecParams, symbOver, engine, decodingExecutor, listener);
+    }
+
+
+    private final long position; // to return to the user
+
+    private final FECParameters fecParams;
+    private final ImmutableList<SourceBlockDecoder> srcBlockDecoders;
+
+    private final MappedData[] blockData;
+
+
+    private FileDataDecoder(
+        MappedData[] blockData,
+        long position,
+        FECParameters fecParams,
+        final int symbOver,
+        DecodingEngine engine,
+        Executor decodingExecutor,
+        final SourceBlockDecodingListener listener)
+    {
+
+        this.position = position;
+
+        this.fecParams = fecParams;
+        this.blockData = blockData;
+
+        // the mapping of a source block is released before the user listener is notified that it was decoded
+        final DecodingContext context = DecodingContext.newContext(
+            fecParams, symbOver, engine, decodingExecutor, new SourceBlockDecodingListener() {
+
+                @Override
+                public void sourceBlockDecodingFinished(SourceBlockDecoder decoder, SourceBlockState state) {
+
+                    if (state == SourceBlockState.DECODED) {
+                        releaseSourceBlock(decoder.sourceBlockNumber());
+                    }
+                    if (listener != null) {
+                        listener.sourceBlockDecodingFinished(decoder, state);
+                    }
+                }
+            });
+
+        this.srcBlockDecoders = DataUtils.partitionSourceData(
+            fecParams,
+            SourceBlockDecoder.class, new SourceBlockSupplier<SourceBlockDecoder>() {
+
+                @Override
+                public SourceBlockDecoder get(@SuppressWarnings("unused") long off, int sbn) {
+
+                    final MappedData data = FileDataDecoder.this.blockData[sbn];
+                    final ImmutableList<SourceSymbol> sourceSymbols = DataUtils.partitionSourceBlock(
+                        sbn, FileDataDecoder.this.fecParams,
+                        SourceSymbol.class, new DataUtils.SourceSymbolSupplier<SourceSymbol>() {
+
+                            @Override
+                            public SourceSymbol get(long symbolOff, @SuppressWarnings("unused") int esi, int T) {
+
+                                return data.newSymbol(symbolOff, T);
+                            }
+                        });
+
+                    return ArraySourceBlockDecoder.newDecoder(
+                        FileDataDecoder.this, context, sourceSymbols, sbn, symbOver);
+                }
+            });
+    }
+
+    /*
+     * A decoded source block is never written again, so its mapping is forced to the file and released.
+     */
+    private void releaseSourceBlock(int sbn) {
+
+        final MappedData data = blockData[sbn];
+        data.force();
+        data.release();
+    }
+
+    @Override
+    public FECParameters fecParameters() {
+
+        return fecParams;
+    }
+
+    @Override
+    public long dataLength() {
+
+        return fecParams.dataLength();
+    }
+
+    @Override
+    public int symbolSize() {
+
+        return fecParams.symbolSize();
+    }
+
+    @Override
+    public int numberOfSourceBlocks() {
+
+        return fecParams.numberOfSourceBlocks();
+    }
+
+    @Override
+    public boolean isDataDecoded() {
+
+        for (SourceBlockDecoder dec : srcBlockDecoders) {
+            if (!dec.isSourceBlockDecoded()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @exception IllegalArgumentException
+     *                If the provided source block number is invalid
+     */
+    @Override
+    public SourceBlockDecoder sourceBlock(int sbn) {
+
+        try {
+            return srcBlockDecoders.get(sbn); // list is random access
+        }
+        catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("invalid source block number");
+        }
+    }
+
+    @Override
+    public Iterable<SourceBlockDecoder> sourceBlockIterable() {
+
+        return srcBlockDecoders;
+    }
+
+    /**
+     * Returns the position in the file of the first byte of the source data.
+     * 
+     * @return the position in the file of the first byte of the source data
+     */
+    public long dataPosition() {
+
+        return position;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @exception NullPointerException
+     *                If {@code symbols} is {@code null}
+     */
+    @Override
+    public Parsed<EncodingPacket> parsePacket(int sbn, int esi, byte[] symbols, boolean copySymbols) {
+
+        return DataUtils.parsePacket(this, sbn, esi, symbols, copySymbols);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @exception IndexOutOfBoundsException
+     *                If the pre-conditions on the array offset and length do not hold
+     * @exception NullPointerException
+     *                If {@code symbols} is {@code null}
+     */
+    @Override
+    public Parsed<EncodingPacket> parsePacket(int sbn, int esi, byte[] symbols, int off, int len, boolean copySymbols) {
+
+        return DataUtils.parsePacket(this, sbn, esi, symbols, off, len, copySymbols);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @exception NullPointerException
+     *                If {@code symbols} is {@code null}
+     */
+    @Override
+    public Parsed<EncodingPacket> parsePacket(int sbn, int esi, ByteBuffer symbols, boolean copySymbols) {
+
+        return DataUtils.parsePacket(this, sbn, esi, symbols, copySymbols);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @exception NullPointerException
+     *                If {@code ser} is {@code null}
+     */
+    @Override
+    public Parsed<EncodingPacket> parsePacket(SerializablePacket ser, boolean copySymbols) {
+
+        return DataUtils.parsePacket(this, ser, copySymbols);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @exception NullPointerException
+     *                If {@code array} is {@code null}
+     */
+    @Override
+    public Parsed<EncodingPacket> parsePacket(byte[] array, boolean copySymbols) {
+
+        return DataUtils.parsePacket(this, array, copySymbols);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @exception IndexOutOfBoundsException
+     *                If the pre-conditions on the array offset and length do not hold
+     * @exception NullPointerException
+     *                If {@code array} is {@code null}
+     */
+    @Override
+    public Parsed<EncodingPacket> parsePacket(byte[] array, int off, int len, boolean copySymbols) {
+
+        return DataUtils.parsePacket(this, array, off, len, copySymbols);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @exception NullPointerException
+     *                If {@code buffer} is {@code null}
+     */
+    @Override
+    public Parsed<EncodingPacket> parsePacket(ByteBuffer buffer, boolean copySymbols) {
+
+        return DataUtils.parsePacket(this, buffer, copySymbols);
+    }
+
+    /**
+     * Puts into this decoder every encoding packet in a buffer that contains packets serialized back-to-back (as
+     * written by {@link EncodingPacket#writeTo(ByteBuffer)}), without creating an object per packet.
+     * <p>
+     * The headers of the packets are validated as in method {@link #parsePacket(ByteBuffer, boolean)}, and invalid
+     * packets are skipped. If the length of the symbols data of a packet is invalid (or if the buffer ends in the middle
+     * of a packet), no more packets are read and the buffer position is left at the start of that packet; otherwise,
+     * the buffer position is advanced past the last packet.
+     * 
+     * @param packets
+     *            A buffer containing serialized encoding packets
+     * @return the number of encoding packets put into this decoder
+     * @exception NullPointerException
+     *                If {@code packets} is {@code null}
+     */
+    public int putPackets(ByteBuffer packets) {
+
+        return DataUtils.putPackets(this, packets);
+    }
+
+    /**
+     * Puts into this decoder the encoding packet serialized in each buffer (as written by
+     * {@link EncodingPacket#writeTo(ByteBuffer)}), without creating an object per packet. This is useful for batches
+     * of datagrams received at once.
+     * <p>
+     * The headers of the packets are validated as in method {@link #parsePacket(ByteBuffer, boolean)}, and invalid
+     * packets are skipped. The position of each buffer is advanced past the data read from it.
+     * 
+     * @param packets
+     *            An array of buffers, each containing a serialized encoding packet
+     * @return the number of encoding packets put into this decoder
+     * @exception NullPointerException
+     *                If {@code packets} or any of its buffers are {@code null}
+     */
+    public int putPackets(ByteBuffer[] packets) {
+
+        return DataUtils.putPackets(this, packets);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws IOException
+     *             If an I/O error occurs while reading from the {@code DataInput} object
+     * @exception NullPointerException
+     *                If {@code in} is {@code null}
+     */
+    @Override
+    public Parsed<EncodingPacket> readPacketFrom(DataInput in) throws IOException {
+
+        return DataUtils.readPacketFrom(this, in);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws IOException
+     *             If an I/O error occurs while reading from the {@code ReadableByteChannel} object
+     * @exception NullPointerException
+     *                If {@code ch} is {@code null}
+     */
+    @Override
+    public Parsed<EncodingPacket> readPacketFrom(ReadableByteChannel ch) throws IOException {
+
+        return DataUtils.readPacketFrom(this, ch);
+    }
+}
+
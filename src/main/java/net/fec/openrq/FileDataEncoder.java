@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Objects;
+
+import net.fec.openrq.DataUtils.SourceBlockSupplier;
+import net.fec.openrq.encoder.DataEncoder;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.util.collection.ImmutableList;
+
+
+/**
+ * A RaptorQ encoder for a data object stored in a file.
+ * <p>
+ * The source data is mapped into memory, so that source symbols are read directly from the file (through the
+ * operating system page cache) instead of being loaded into the Java heap. Data lengths up to
+ * {@link net.fec.openrq.parameters.ParameterChecker#maxDataLength()} are supported.
+ */
+public final class FileDataEncoder implements DataEncoder {
+
+    /**
+     * @param channel
+     *            A channel of the file containing the source data to be encoded (only needs to be open for reading)
+     * @param position
+     *            The position in the file where the source data begins
+     * @param fecParams
+     *            FEC parameters that configure the returned data encoder object
+     * @param maxSegmentSize
+     *            The maximum size of each mapped region of the file
+     * @return a data encoder object backed by a file
+     * @throws IOException
+     *             If an I/O error occurs while mapping the file
+     * @exception NullPointerException
+     *                If {@code channel} or {@code fecParams} are {@code null}
+     * @exception IndexOutOfBoundsException
+     *                If {@code position < 0 || fecParams.dataLength() > (channel.size() - position)}
+     */
+    static FileDataEncoder newEncoder(FileChannel channel, long position, FECParameters fecParams, int maxSegmentSize)
+        throws IOException
+    {
+
+        Objects.requireNonNull(channel);
+        // throws NullPointerException if null fecParams
+        final long dataLength = fecParams.dataLength();
+        if (position < 0 || dataLength > channel.size() - position) {
+            throw new IndexOutOfBoundsException("the file does not contain the source data");
+        }
+
+        final MappedData data = MappedData.map(
+            channel, MapMode.READ_ONLY, position, dataLength, fecParams.symbolSize(), maxSegmentSize);
+        return new FileDataEncoder(data, position, fecParams);
+    }
+
+
+    private final long position; // to return to the user
+
+    private final FECParameters fecParams;
+    private final ImmutableList<SourceBlockEncoder> srcBlockEncoders;
+
+
+    private FileDataEncoder(final MappedData data, long position, FECParameters fecParams) {
+
+        this.position = position;
+
+        this.fecParams = fecParams;
+
+        this.srcBlockEncoders = DataUtils.partitionSourceData(
+            fecParams,
+            SourceBlockEncoder.class, new SourceBlockSupplier<SourceBlockEncoder>() {
+
+                @Override
+                public SourceBlockEncoder get(long off, int sbn) {
+
+                    final ImmutableList<SourceSymbol> sourceSymbols = DataUtils.partitionSourceBlock(
+                        sbn, FileDataEncoder.this.fecParams, off,
+                        SourceSymbol.class, new DataUtils.SourceSymbolSupplier<SourceSymbol>() {
+
+                            @Override
+                            public SourceSymbol get(long symbolOff, @SuppressWarnings("unused") int esi, int T) {
+
+                                return data.newSymbol(symbolOff, T);
+                            }
+                        });
+
+                    return ArraySourceBlockEncoder.newEncoder(FileDataEncoder.this, sbn, sourceSymbols);
+                }
+            });
+    }
+
+    @Override
+    public FECParameters fecParameters() {
+
+        return fecParams;
+    }
+
+    @Override
+    public long dataLength() {
+
+        return fecParams.dataLength();
+    }
+
+    @Override
+    public int symbolSize() {
+
+        return fecParams.symbolSize();
+    }
+
+    @Override
+    public int numberOfSourceBlocks() {
+
+        return fecParams.numberOfSourceBlocks();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @exception IllegalArgumentException
+     *                If the provided source block number is invalid
+     * @see #numberOfSourceBlocks()
+     */
+    @Override
+    public SourceBlockEncoder sourceBlock(int sbn) {
+
+        try {
+            return srcBlockEncoders.get(sbn); // list is random access
+        }
+        catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("invalid source block number");
+        }
+    }
+
+    @Override
+    public Iterable<SourceBlockEncoder> sourceBlockIterable() {
+
+        return srcBlockEncoders;
+    }
+
+    /**
+     * Returns the position in the file of the first byte of the source data.
+     * 
+     * @return the position in the file of the first byte of the source data
+     */
+    public long dataPosition() {
+
+        return position;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import net.fec.openrq.util.io.SafeStandardStreams;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+
+/**
+ * Offline generator of optimized decoders of intermediate symbols (ISDs).
+ * <p>
+ * For each requested value of K', the schedule of symbol operations that solves the constraint matrix is recorded
+ * and written to a file named "ISD_{K'}.dat". A file named "ISDs" listing every generated value of K' is also
+ * written. When both are placed in the resource folder of this package, the encoders replay the schedules instead of
+ * solving the constraint matrix.
+ * <p>
+ * Usage: {@code ISDGenerator <output_dir> [<K'> | <min_K'>-<max_K'>]...}
+ * <p>
+ * Values (and ranges) may also be separated by commas. If no values are given, schedules are generated for every K'
+ * in table 2 of RFC 6330. Values that are not K' are ignored (a range includes all values of K' inside it). The
+ * "generate-isds" Maven profile runs this generator on the build output.
+ */
+public final class ISDGenerator {
+
+    private static final PrintStream STDOUT = SafeStandardStreams.safeSTDOUT();
+    private static final PrintStream STDERR = SafeStandardStreams.safeSTDERR();
+
+    private static final String ISDS_FILE_NAME = "ISDs";
+
+
+    public static void main(String[] args) {
+
+        if (args.length < 1) {
+            STDERR.println("Usage: ISDGenerator <output_dir> [<K'> | <min_K'>-<max_K'>]...");
+            System.exit(1);
+        }
+
+        final Path outDir = Paths.get(args[0]);
+        final SortedSet<Integer> kPrimes = new TreeSet<>();
+        try {
+            if (args.length == 1) {
+                addKPrimes(kPrimes, 0, Integer.MAX_VALUE);
+            }
+            else {
+                for (int i = 1; i < args.length; i++) {
+                    parseKPrimes(kPrimes, args[i]);
+                }
+            }
+        }
+        catch (NumberFormatException e) {
+            STDERR.println("Invalid value of K': " + e.getMessage());
+            System.exit(1);
+        }
+
+        try {
+            generate(outDir, kPrimes);
+        }
+        catch (IOException | SingularMatrixException e) {
+            STDERR.println("Error while generating ISDs:");
+            e.printStackTrace(STDERR);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Generates the schedule files for the given values of K', and the file listing them, into the given directory.
+     * 
+     * @param outDir
+     *            The directory where the files are written to (it is created if needed)
+     * @param kPrimes
+     *            The values of K' for which schedules are generated
+     * @throws IOException
+     *             If an I/O error occurs while writing the files
+     * @throws SingularMatrixException
+     *             If a constraint matrix is singular (this should never happen)
+     */
+    static void generate(Path outDir, SortedSet<Integer> kPrimes) throws IOException, SingularMatrixException {
+
+        Files.createDirectories(outDir);
+        for (int Kprime : kPrimes) {
+            final long start = System.nanoTime();
+            final List<ISDOperation> schedule = LinearSystem.recordEncodingSchedule(Kprime);
+            writeSchedule(outDir.resolve(ISDManager.resourceName(Kprime)), schedule);
+            STDOUT.printf("K' = %d: %d operations (%d ms)%n",
+                Kprime, schedule.size(), (System.nanoTime() - start) / 1_000_000L);
+        }
+
+        final Path isdsFile = outDir.resolve(ISDS_FILE_NAME);
+        try (BufferedWriter writer = Files.newBufferedWriter(isdsFile, StandardCharsets.US_ASCII)) {
+            writer.write("# This file contains K' values for which an optimized decoder is available.");
+            writer.newLine();
+            writer.write("# It was generated by " + ISDGenerator.class.getName() + ".");
+            writer.newLine();
+            for (int Kprime : kPrimes) {
+                writer.write(Integer.toString(Kprime));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void writeSchedule(Path file, List<ISDOperation> schedule) throws IOException {
+
+        // try-with-resources (channel is automatically closed at the end)
+        try (WritableByteChannel ch = Channels.newChannel(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (ISDOperation op : schedule) {
+                op.serializeToChannel(ch);
+            }
+        }
+    }
+
+    private static void parseKPrimes(SortedSet<Integer> kPrimes, String arg) {
+
+        for (String value : arg.split(",")) {
+            final int sep = value.indexOf('-');
+            if (sep == -1) {
+                final int Kprime = Integer.parseInt(value.trim());
+                addKPrimes(kPrimes, Kprime, Kprime);
+            }
+            else {
+                final int min = Integer.parseInt(value.substring(0, sep).trim());
+                final int max = Integer.parseInt(value.substring(sep + 1).trim());
+                addKPrimes(kPrimes, min, max);
+            }
+        }
+    }
+
+    private static void addKPrimes(SortedSet<Integer> kPrimes, int min, int max) {
+
+        for (int i = 0; i < SystematicIndices.numKPrimes(); i++) {
+            final int Kprime = SystematicIndices.K(i);
+            if (min <= Kprime && Kprime <= max) {
+                kPrimes.add(Kprime);
+            }
+        }
+    }
+
+    private ISDGenerator() {
+
+        // not instantiable
+    }
+}
@@ -23,9 +23,14 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import net.fec.openrq.util.io.Resources;
 import net.fec.openrq.util.io.UncheckedIOException;
@@ -34,32 +39,44 @@ import net.fec.openrq.util.rq.SystematicIndices;
 
 
 /**
- * 
+ * Manages the optimized decoders of intermediate symbols (ISDs). An ISD replays a straight-line schedule of symbol
+ * operations that was previously recorded while solving the constraint matrix for a given value of K'. Schedules are
+ * compiled (see {@link CompiledSchedule}) when an ISD is created.
+ * <p>
+ * Schedules come from two sources:
+ * <ul>
+ * <li>resource files named "ISD_{K'}.dat", for each value of K' listed in the "ISDs" resource file (these are
+ * produced by {@link ISDGenerator}, and are only loaded when first needed);</li>
+ * <li>schedules recorded at runtime, when recording is enabled (see {@link #isRecordingEnabled()}).</li>
+ * </ul>
+ * <p>
+ * This class is thread safe.
  */
 final class ISDManager {
 
     private static final int MAX_K_PRIME_CHARS = "56403".length();
     private static final String K_PRIME_FORMAT = "[0-9]+";
     private static final String ISD_PREFIX = "ISD_";
+    private static final String ISD_SUFFIX = ".dat";
 
     private static final ISDManager INSTANCE;
     static {
-        final List<IntermediateSymbolsDecoder> isdsList = new ArrayList<>();
+        final Set<Integer> resourceKPrimes = new HashSet<>();
 
         final InputStream in = ISDManager.class.getResourceAsStream("ISDs");
         if (in == null) {
             System.err.println("Could not find \"Intermediate Symbols Decoders\" file");
         }
         else {
-            final BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-            try {
+            // try-with-resources (reader is automatically closed at the end)
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
                 String line;
                 int lineNumber = 0;
                 while ((line = reader.readLine()) != null) {
                     if (isValidKPrimeLine(line)) {
                         final int Kprime = Integer.parseInt(line); // should always succeed
                         if (SystematicIndices.containsKPrime(Kprime)) {
-                            isdsList.add(new ISD(Kprime));
+                            resourceKPrimes.add(Kprime);
                         }
                         else {
                             System.err.printf(
@@ -71,17 +88,13 @@ final class ISDManager {
                     lineNumber++;
                 }
             }
-            catch (UncheckedIOException e) {
-                System.err.println("Error while reading \"Intermediate Symbols Decoders\" file:");
-                e.getCause().printStackTrace(System.err);
-            }
             catch (IOException e) {
                 System.err.println("Error while reading \"Intermediate Symbols Decoders\" file:");
                 e.printStackTrace(System.err);
             }
         }
 
-        INSTANCE = new ISDManager(isdsList);
+        INSTANCE = new ISDManager(resourceKPrimes);
     }
 
 
@@ -94,6 +107,18 @@ final class ISDManager {
         return line.matches(K_PRIME_FORMAT);
     }
 
+    /**
+     * Returns the name of the resource file containing the schedule of an optimized decoder for the given value of K'.
+     * 
+     * @param Kprime
+     *            The number of source (and padding) symbols in an extended source block
+     * @return the name of the resource file containing the schedule of an optimized decoder
+     */
+    static String resourceName(int Kprime) {
+
+        return ISD_PREFIX + Kprime + ISD_SUFFIX;
+    }
+
     /**
      * Returns an optimized decoder for the given value of K' (see RFC 6330), or {@code null} if there is none
      * registered for the given value.
@@ -108,49 +133,188 @@ final class ISDManager {
         return INSTANCE.getDecoder(Kprime);
     }
 
+    /**
+     * Registers an optimized decoder that replays the given schedule, for the given value of K'. If a decoder is
+     * already registered for the given value, then that decoder is returned instead.
+     * 
+     * @param Kprime
+     *            The number of source (and padding) symbols in an extended source block
+     * @param schedule
+     *            The operations that were recorded while solving the constraint matrix for the given value of K'
+     * @return the optimized decoder that is registered for the given value of K'
+     */
+    static IntermediateSymbolsDecoder register(int Kprime, List<ISDOperation> schedule) {
+
+        return INSTANCE.store(new ISD(Kprime, schedule));
+    }
+
+    /**
+     * Returns {@code true} if encoding schedules are recorded at runtime. If so, the first time the intermediate
+     * symbols are generated for a value of K' without an optimized decoder, the schedule of operations is recorded
+     * and registered as a new optimized decoder, which is used from then on.
+     * 
+     * @return {@code true} if encoding schedules are recorded at runtime
+     */
+    static boolean isRecordingEnabled() {
+
+        return INSTANCE.getRecording();
+    }
+
+    /**
+     * Enables or disables the recording of encoding schedules at runtime (disabled by default). Previously recorded
+     * schedules are kept.
+     * 
+     * @param enable
+     *            Whether to enable or disable the recording
+     */
+    static void setRecordingEnabled(boolean enable) {
+
+        INSTANCE.setRecording(enable);
+    }
 
+    /**
+     * Decodes intermediate symbols with the given optimized decoder. The symbols are operated on in stripes of bytes
+     * such that the stripes of all symbols fit in the given working set size, if the decoder replays a schedule
+     * registered in this class.
+     * 
+     * @param isd
+     *            An optimized decoder returned by this class
+     * @param D
+     *            A set of source symbols of an extended source block
+     * @param symbolWorkingSetSize
+     *            The maximum number of bytes of all symbols operated on at a time, or 0 if the symbols are to be
+     *            operated on as a whole
+     * @return the intermediate symbols
+     */
+    static byte[][] decode(IntermediateSymbolsDecoder isd, byte[][] D, int symbolWorkingSetSize) {
+
+        if (isd instanceof ISD) {
+            return ((ISD)isd).decode(D, symbolWorkingSetSize);
+        }
+        else {
+            return isd.decode(D);
+        }
+    }
+
+
+    private final Set<Integer> resourceKPrimes;
     private final Map<Integer, IntermediateSymbolsDecoder> map;
+    private boolean recording;
+    private final Lock lock;
 
 
-    private ISDManager(Iterable<IntermediateSymbolsDecoder> decoders) {
+    private ISDManager(Set<Integer> resourceKPrimes) {
 
+        this.resourceKPrimes = Collections.unmodifiableSet(resourceKPrimes);
         this.map = new HashMap<>();
-        for (IntermediateSymbolsDecoder dec : decoders) {
-            map.put(dec.supportedKPrime(), dec);
-        }
+        this.recording = false;
+        this.lock = new ReentrantLock(false); // non-fair lock
     }
 
     private IntermediateSymbolsDecoder getDecoder(int Kprime) {
 
-        return map.get(Kprime);
+        IntermediateSymbolsDecoder isd = lookup(Kprime);
+        if (isd == null && resourceKPrimes.contains(Kprime)) {
+            // the resource is read outside the lock so that other values of K' are not blocked;
+            // if multiple threads read the same resource concurrently, only one decoder is kept
+            try {
+                isd = store(new ISD(Kprime, readSchedule(Kprime)));
+            }
+            catch (IOException e) {
+                System.err.printf("Error while reading \"Intermediate Symbols Decoder\" file for K' = %d:%n", Kprime);
+                e.printStackTrace(System.err);
+            }
+            catch (UncheckedIOException e) {
+                System.err.printf("Error while reading \"Intermediate Symbols Decoder\" file for K' = %d:%n", Kprime);
+                e.getCause().printStackTrace(System.err);
+            }
+        }
+
+        return isd;
     }
 
+    private IntermediateSymbolsDecoder lookup(int Kprime) {
 
-    private static final class ISD implements IntermediateSymbolsDecoder {
+        lock.lock();
+        try {
+            return map.get(Kprime);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
 
-        private final int Kprime;
-        private final List<ISDOperation> ops;
+    private IntermediateSymbolsDecoder store(IntermediateSymbolsDecoder isd) {
 
+        lock.lock();
+        try {
+            final IntermediateSymbolsDecoder previous = map.get(isd.supportedKPrime());
+            if (previous != null) {
+                return previous;
+            }
+            else {
+                map.put(isd.supportedKPrime(), isd);
+                return isd;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
 
-        ISD(int Kprime) throws IOException {
+    private boolean getRecording() {
 
-            this.Kprime = Kprime;
-            this.ops = new ArrayList<>();
+        lock.lock();
+        try {
+            return recording;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
 
-            // try-with-resources (channel is automatically closed at the end)
-            try (ReadableByteChannel ch = Resources.openResourceChannel(getClass(), resourceName(Kprime))) {
-                while (true) {
-                    ops.add(ISDOps.readOperation(ch));
-                }
-            }
-            catch (EOFException e) {
-                // do nothing, we expect this exception to occur
+    private void setRecording(boolean enable) {
+
+        lock.lock();
+        try {
+            recording = enable;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private static List<ISDOperation> readSchedule(int Kprime) throws IOException {
+
+        final List<ISDOperation> ops = new ArrayList<>();
+
+        // try-with-resources (channel is automatically closed at the end)
+        try (ReadableByteChannel ch = Resources.openResourceChannel(ISDManager.class, resourceName(Kprime))) {
+            while (true) {
+                ops.add(ISDOps.readOperation(ch));
             }
         }
+        catch (EOFException e) {
+            // do nothing, we expect this exception to occur
+        }
+
+        return ops;
+    }
 
-        private static String resourceName(int Kprime) {
 
-            return ISD_PREFIX + Kprime + ".dat";
+    private static final class ISD implements IntermediateSymbolsDecoder {
+
+        private final int Kprime;
+        private final CompiledSchedule schedule;
+
+
+        ISD(int Kprime, List<ISDOperation> ops) {
+
+            final int Ki = SystematicIndices.getKIndex(Kprime);
+            final int L = Kprime + SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+
+            this.Kprime = Kprime;
+            this.schedule = CompiledSchedule.compile(L, ops);
         }
 
         @Override
@@ -162,11 +326,12 @@ final class ISDManager {
         @Override
         public final byte[][] decode(byte[][] D) {
 
-            byte[][] symbols = D;
-            for (ISDOperation op : ops) {
-                symbols = op.apply(symbols);
-            }
-            return symbols;
+            return schedule.apply(D);
+        }
+
+        byte[][] decode(byte[][] D, int symbolWorkingSetSize) {
+
+            return schedule.apply(D, symbolWorkingSetSize);
         }
     }
 }
@@ -28,4 +28,6 @@ interface ISDOperation {
     byte[][] apply(byte[][] D);
 
     void serializeToChannel(WritableByteChannel ch) throws IOException;
+
+    void compile(CompiledSchedule.Builder builder);
 }
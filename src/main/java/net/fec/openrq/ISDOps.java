@@ -24,9 +24,11 @@ import java.util.Arrays;
 import java.util.Objects;
 
 import net.fec.openrq.util.array.ArrayIO;
+import net.fec.openrq.util.array.ArrayUtils;
 import net.fec.openrq.util.datatype.UnsignedTypes;
 import net.fec.openrq.util.io.ExtraChannels;
 import net.fec.openrq.util.linearalgebra.LinearAlgebra;
+import net.fec.openrq.util.linearalgebra.io.ByteVectorIterator;
 import net.fec.openrq.util.linearalgebra.matrix.ByteMatrices;
 import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
 import net.fec.openrq.util.linearalgebra.matrix.dense.RowIndirected2DByteMatrix;
@@ -155,10 +157,16 @@ final class ISDOps {
         @Override
         public byte[][] apply(byte[][] D) {
 
-            OctetOps.vectorVectorAddition(srcMult, D[srcRow], D[dstRow], D[dstRow]);
+            OctetOps.vectorVectorAdditionInPlace(srcMult, D[srcRow], D[dstRow]);
             return D;
         }
 
+        @Override
+        public void compile(CompiledSchedule.Builder builder) {
+
+            builder.addition(srcMult, srcRow, dstRow);
+        }
+
         @Override
         public void serializeToChannel(WritableByteChannel ch) throws IOException {
 
@@ -215,6 +223,12 @@ final class ISDOps {
             return D;
         }
 
+        @Override
+        public void compile(CompiledSchedule.Builder builder) {
+
+            builder.division(beta, row);
+        }
+
         @Override
         public void serializeToChannel(WritableByteChannel ch) throws IOException {
 
@@ -291,6 +305,58 @@ final class ISDOps {
             return D;
         }
 
+        /*
+         * Same as MatrixUtilities.reduceToRowEchelonForm, but the operations on the symbols are compiled instead.
+         */
+        @Override
+        public void compile(CompiledSchedule.Builder builder) {
+
+            final ByteMatrix A = AMatrix();
+            final int[] d = dArray();
+
+            int lead = fromCol;
+            for (int r = fromRow; r < toRow; r++) {
+                if (lead >= toCol) {
+                    return;
+                }
+
+                int i = r;
+                while (A.isZeroAt(i, lead)) {
+                    i++;
+                    if (i == toRow) {
+                        i = r;
+                        lead++;
+                        if (lead >= toCol) {
+                            return;
+                        }
+                    }
+                }
+
+                if (i != r) {
+                    A.swapRows(i, r);
+                    ArrayUtils.swapInts(d, i, r);
+                }
+
+                byte beta = A.get(r, lead);
+                if (beta != 0) {
+                    A.divideRowInPlace(r, beta);
+                    builder.division(beta, d[r]);
+                }
+
+                for (i = fromRow; i < toRow; i++) {
+                    if (i != r) {
+                        beta = A.get(i, lead);
+                        if (beta != 0) {
+                            A.addRowsInPlace(beta, r, i);
+                            builder.addition(beta, d[r], d[i]);
+                        }
+                    }
+                }
+
+                lead++;
+            }
+        }
+
         @Override
         public void serializeToChannel(WritableByteChannel ch) throws IOException {
 
@@ -363,6 +429,31 @@ final class ISDOps {
             return D;
         }
 
+        /*
+         * X is lower triangular, so the product can be computed in place, from the last row to the first one (each
+         * row only depends on itself and on the previous rows, which still hold their original values).
+         */
+        @Override
+        public void compile(CompiledSchedule.Builder builder) {
+
+            for (int row = Xrows - 1; row >= 0; row--) {
+                final byte diag = X.get(row, row);
+                builder.product(diag, d[row]);
+
+                final ByteVectorIterator it = X.nonZeroRowIterator(row, 0, Xcols);
+                while (it.hasNext()) {
+                    it.next();
+                    final int col = it.index();
+                    if (col > row) {
+                        throw new IllegalStateException("matrix X is not lower triangular");
+                    }
+                    else if (col < row) {
+                        builder.addition(it.get(), d[col], d[row]);
+                    }
+                }
+            }
+        }
+
         private int Dcols(byte[][] D) {
 
             return (D.length == 0) ? 0 : D[0].length;
@@ -443,6 +534,12 @@ final class ISDOps {
             return C;
         }
 
+        @Override
+        public void compile(CompiledSchedule.Builder builder) {
+
+            builder.reordering(c, d);
+        }
+
         @Override
         public void serializeToChannel(WritableByteChannel ch) throws IOException {
 
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.Arrays;
+
+import net.fec.openrq.util.linearalgebra.io.ByteVectorIterator;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.math.OctetOps;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+
+/**
+ * A decoder of intermediate symbols that performs Gaussian elimination incrementally, as encoding symbols are added.
+ * <p>
+ * The binary rows of the decoding matrix (the LDPC rows, the rows of the padding symbols and the rows of the added
+ * encoding symbols) are kept in reduced row echelon form over GF(2), and the HDPC rows are kept reduced against them.
+ * Each added encoding symbol is eliminated on arrival, so solving the system only requires eliminating a small dense
+ * system over the columns without a binary pivot (at most H of them), followed by a back-substitution of those
+ * columns into the binary pivot rows.
+ * <p>
+ * The elimination state is kept if the system cannot be solved yet, so that adding more encoding symbols resumes the
+ * elimination where it stopped. The symbol rows are taken from a pool, and are released back into it when the
+ * decoder is no longer needed. This class is not thread-safe.
+ */
+final class IncrementalDecoder {
+
+    private final int L;
+    private final int H;
+    private final int T;
+    private final int Kprime;
+    private final int words; // number of longs per binary row
+    private final SymbolRowPool pool;
+
+    // binary pivot rows (in reduced row echelon form) and their symbols, indexed by pivot column
+    private final long[][] rows;
+    private final byte[][] symbols;
+    private final int[] pivots; // pivot columns in order of insertion
+    private int rank;
+
+    // HDPC rows and their symbols, zero at every pivot column
+    private final byte[][] hdpcRows;
+    private final byte[][] hdpcSymbols;
+
+
+    /**
+     * @param K
+     *            The number of source symbols in the source block
+     * @param T
+     *            The symbol size
+     * @param pool
+     *            The pool of symbol rows of size {@code T}
+     */
+    IncrementalDecoder(int K, int T, SymbolRowPool pool) {
+
+        this.Kprime = SystematicIndices.ceil(K);
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int S = SystematicIndices.S(Ki);
+        this.H = SystematicIndices.H(Ki);
+        this.L = Kprime + S + H;
+        this.T = T;
+        this.words = (L + 63) >>> 6;
+        this.pool = pool;
+
+        this.rows = new long[L][];
+        this.symbols = new byte[L][];
+        this.pivots = new int[L];
+        this.rank = 0;
+
+        final ByteMatrix A = LinearSystem.generateConstraintMatrix(Kprime);
+
+        this.hdpcRows = new byte[H][L];
+        this.hdpcSymbols = new byte[H][];
+        for (int h = 0; h < H; h++) {
+            hdpcSymbols[h] = pool.acquireZeroed();
+            final ByteVectorIterator it = A.nonZeroRowIterator(S + h);
+            while (it.hasNext()) {
+                it.next();
+                hdpcRows[h][it.index()] = it.get();
+            }
+        }
+
+        // the LDPC rows are binary
+        for (int row = 0; row < S; row++) {
+            final long[] r = new long[words];
+            final ByteVectorIterator it = A.nonZeroRowIterator(row);
+            while (it.hasNext()) {
+                it.next();
+                setBit(r, it.index());
+            }
+            addRow(r, pool.acquireZeroed());
+        }
+
+        // the padding symbols are known to be zero
+        for (int isi = K; isi < Kprime; isi++) {
+            addSymbol(isi, pool.acquireZeroed());
+        }
+    }
+
+    /**
+     * Adds an encoding symbol to the system and eliminates it against the previously added symbols. The provided array
+     * must be a row of the pool, and becomes owned by this decoder.
+     * 
+     * @param isi
+     *            The internal symbol identifier of the encoding symbol
+     * @param symbol
+     *            The encoding symbol data (with {@code T} bytes)
+     * @return {@code true} if the symbol increased the rank of the system, {@code false} if it was redundant
+     */
+    boolean addSymbol(long isi, byte[] symbol) {
+
+        final long[] r = new long[words];
+        for (int col : LinearSystem.encIndexes(Kprime, new Tuple(Kprime, isi))) {
+            setBit(r, col);
+        }
+
+        final boolean added = addRow(r, symbol);
+        if (!added) {
+            pool.release(symbol);
+        }
+        return added;
+    }
+
+    /**
+     * Returns the number of columns that have no binary pivot. The system cannot be solved while this number is greater
+     * than the number of HDPC rows.
+     * 
+     * @return the number of columns that have no binary pivot
+     */
+    int numFreeColumns() {
+
+        return L - rank;
+    }
+
+    /**
+     * Solves the system for the intermediate symbols. If the system cannot be solved, the elimination state is left
+     * untouched and more symbols may be added. If the system is solved, the symbol rows are reused for the
+     * intermediate symbols, which are then owned by the caller (and may be released into the pool), and this decoder
+     * must not be used anymore.
+     * 
+     * @return the intermediate symbols, or {@code null} if the system cannot be solved yet
+     */
+    byte[][] solve() {
+
+        final int f = L - rank;
+        if (f > H) return null;
+
+        final int[] free = new int[f];
+        for (int col = 0, k = 0; col < L; col++) {
+            if (rows[col] == null) free[k++] = col;
+        }
+
+        // copy the HDPC rows over the free columns, so that the state is kept if the system cannot be solved
+        final byte[][] G = new byte[H][f];
+        final byte[][] B = new byte[H][];
+        for (int h = 0; h < H; h++) {
+            for (int k = 0; k < f; k++) {
+                G[h][k] = hdpcRows[h][free[k]];
+            }
+            B[h] = pool.acquire();
+            System.arraycopy(hdpcSymbols[h], 0, B[h], 0, T);
+        }
+
+        // Gaussian elimination of the dense system
+        for (int k = 0; k < f; k++) {
+            int h = k;
+            while (h < H && G[h][k] == 0) {
+                h++;
+            }
+            if (h == H) { // singular
+                pool.release(B);
+                return null;
+            }
+
+            swap(G, h, k);
+            swap(B, h, k);
+
+            final byte beta = G[k][k];
+            if (beta != 1) {
+                OctetOps.valueVectorDivision(beta, G[k], G[k]);
+                OctetOps.valueVectorDivision(beta, B[k], B[k]);
+            }
+
+            for (int i = 0; i < H; i++) {
+                final byte m = G[i][k];
+                if (i != k && m != 0) {
+                    OctetOps.vectorVectorAdditionInPlace(m, G[k], G[i]);
+                    OctetOps.vectorVectorAdditionInPlace(m, B[k], B[i]);
+                }
+            }
+        }
+
+        // back-substitution of the free columns into the pivot rows
+        final byte[][] C = new byte[L][];
+        for (int k = 0; k < f; k++) {
+            C[free[k]] = B[k];
+        }
+        for (int i = 0; i < rank; i++) {
+            final int p = pivots[i];
+            final byte[] symbol = symbols[p];
+            for (int k = 0; k < f; k++) {
+                if (testBit(rows[p], free[k])) {
+                    OctetOps.vectorVectorAdditionInPlace(B[k], symbol);
+                }
+            }
+            C[p] = symbol;
+        }
+
+        // the unused rows are released, and the intermediate symbols are no longer owned by this decoder
+        pool.release(Arrays.copyOfRange(B, f, H));
+        pool.release(hdpcSymbols);
+        Arrays.fill(hdpcSymbols, null);
+        Arrays.fill(symbols, null);
+
+        return C;
+    }
+
+    /**
+     * Releases the symbol rows owned by this decoder into the pool. This decoder must not be used afterwards.
+     */
+    void release() {
+
+        pool.release(symbols);
+        pool.release(hdpcSymbols);
+        Arrays.fill(symbols, null);
+        Arrays.fill(hdpcSymbols, null);
+    }
+
+    private boolean addRow(long[] r, byte[] symbol) {
+
+        // reduce the row against the pivot rows (which are zero at every other pivot column)
+        for (int col = nextSetBit(r, 0); col >= 0; col = nextSetBit(r, col + 1)) {
+            if (rows[col] != null) {
+                xor(rows[col], r);
+                OctetOps.vectorVectorAdditionInPlace(symbols[col], symbol);
+            }
+        }
+
+        final int p = nextSetBit(r, 0);
+        if (p == -1) return false; // redundant row
+
+        // eliminate the new pivot column from the other pivot rows and from the HDPC rows
+        for (int i = 0; i < rank; i++) {
+            final int q = pivots[i];
+            if (testBit(rows[q], p)) {
+                xor(r, rows[q]);
+                OctetOps.vectorVectorAdditionInPlace(symbol, symbols[q]);
+            }
+        }
+        for (int h = 0; h < H; h++) {
+            final byte m = hdpcRows[h][p];
+            if (m != 0) {
+                final byte[] hdpcRow = hdpcRows[h];
+                for (int col = p; col >= 0; col = nextSetBit(r, col + 1)) {
+                    hdpcRow[col] ^= m;
+                }
+                OctetOps.vectorVectorAdditionInPlace(m, symbol, hdpcSymbols[h]);
+            }
+        }
+
+        rows[p] = r;
+        symbols[p] = symbol;
+        pivots[rank++] = p;
+        return true;
+    }
+
+    private static void xor(long[] src, long[] dst) {
+
+        for (int w = 0; w < dst.length; w++) {
+            dst[w] ^= src[w];
+        }
+    }
+
+    private static void setBit(long[] r, int col) {
+
+        r[col >>> 6] |= 1L << col;
+    }
+
+    private static boolean testBit(long[] r, int col) {
+
+        return (r[col >>> 6] & (1L << col)) != 0;
+    }
+
+    private static int nextSetBit(long[] r, int from) {
+
+        int w = from >>> 6;
+        if (w >= r.length) return -1;
+
+        long word = r[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == r.length) return -1;
+            word = r[w];
+        }
+    }
+
+    private static void swap(byte[][] m, int i, int j) {
+
+        final byte[] tmp = m[i];
+        m[i] = m[j];
+        m[j] = tmp;
+    }
+}
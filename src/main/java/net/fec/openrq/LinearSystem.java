@@ -17,14 +17,13 @@ package net.fec.openrq;
 
 
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 import net.fec.openrq.util.array.ArrayUtils;
@@ -47,15 +46,49 @@ final class LinearSystem {
 
     private static final Factory DENSE_FACTORY = LinearAlgebra.BASIC2D_FACTORY;
     private static final Factory SPARSE_FACTORY = LinearAlgebra.CRS_FACTORY;
+    private static final Factory BIT_PACKED_FACTORY = LinearAlgebra.BIT_PACKED_FACTORY;
 
     // there is no benefit for a dense matrix in all values of K
     private static final long A_SPARSE_THRESHOLD = 0L;
     private static final long MT_SPARSE_THRESHOLD = 0L;
 
+    // the constraint matrix is bit-packed (all but the HDPC rows are binary) unless it would take more than 32 MiB
+    private static final long A_BIT_PACKED_THRESHOLD = 1L << 28;
+
+    // symbol stripes are aligned to cache lines
+    private static final int SYMBOL_STRIPE_ALIGNMENT = 64;
+
     private static final boolean PRINTING_CODE_ENABLED = false; // DEBUG
     private static final PrintStream TIMER_PRINTABLE = System.out; // DEBUG
 
 
+
+    /**
+     * Returns the size of the stripes of bytes that operations over the given number of symbols are run over at a
+     * time, such that the stripes of all symbols fit in the given working set size (stripes are never smaller than a
+     * cache line, though).
+     * 
+     * @param T
+     *            The size of the symbols
+     * @param numSymbols
+     *            The number of symbols operated on
+     * @param workingSetSize
+     *            The maximum number of bytes of all symbols operated on at a time, or 0 if symbol operations are run
+     *            over whole symbols
+     * @return the size of the stripes of bytes that symbol operations are run over at a time
+     */
+    static int symbolStripeSize(int T, int numSymbols, int workingSetSize) {
+
+        if (workingSetSize == 0 || numSymbols == 0) {
+            return T;
+        }
+        else {
+            // stripes are a multiple of the cache line size
+            final int stripeSize = (workingSetSize / numSymbols) & -SYMBOL_STRIPE_ALIGNMENT;
+            return Math.max(SYMBOL_STRIPE_ALIGNMENT, Math.min(T, stripeSize));
+        }
+    }
+
     private static void debugPrintln() {
 
         if (PRINTING_CODE_ENABLED) {
@@ -79,9 +112,13 @@ final class LinearSystem {
 
     private static Factory getMatrixAfactory(int L, int overheadRows) {
 
-        if ((long)L * (L + overheadRows) < A_SPARSE_THRESHOLD) {
+        final long entries = (long)L * (L + overheadRows);
+        if (entries < A_SPARSE_THRESHOLD) {
             return DENSE_FACTORY;
         }
+        else if (entries <= A_BIT_PACKED_THRESHOLD) {
+            return BIT_PACKED_FACTORY;
+        }
         else {
             return SPARSE_FACTORY;
         }
@@ -286,7 +323,8 @@ final class LinearSystem {
     }
 
     /**
-     * Generates the constraint matrix.
+     * Generates the constraint matrix. The returned matrix is a copy of a cached template, with
+     * {@code overheadRows} additional (zeroed) rows, and may be freely modified.
      * 
      * @param Kprime
      * @param overheadRows
@@ -294,6 +332,40 @@ final class LinearSystem {
      */
     static ByteMatrix generateConstraintMatrix(int Kprime, int overheadRows) {
 
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int L = Kprime + SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+
+        // the constraint matrix depends only on K', so we copy a template that is generated once per K'
+        final ByteMatrix template = ConstraintMatrixCache.get(Kprime);
+
+        // the template is stored in the factory chosen for L rows, but the copy needs the factory chosen for its
+        // actual number of rows, which differs when the overhead rows cross a threshold
+        final Factory factory = getMatrixAfactory(L, overheadRows);
+        if (factory == template.factory()) {
+            return template.resizeRows(L + overheadRows); // copies the rows directly
+        }
+        else {
+            final ByteMatrix A = factory.createMatrix(L + overheadRows, L);
+            for (int row = 0; row < L; row++) {
+                final ByteVectorIterator it = template.nonZeroRowIterator(row);
+                while (it.hasNext()) {
+                    it.next();
+                    A.set(row, it.index(), it.get());
+                }
+            }
+            return A;
+        }
+    }
+
+    /**
+     * Generates a new LxL constraint matrix from scratch. Use {@link #generateConstraintMatrix(int, int)} instead,
+     * unless a new template is required.
+     * 
+     * @param Kprime
+     * @return a new constraint matrix
+     */
+    static ByteMatrix newConstraintMatrix(int Kprime) {
+
         // calculate necessary parameters
         final int Ki = SystematicIndices.getKIndex(Kprime);
         final int S = SystematicIndices.S(Ki);
@@ -307,7 +379,7 @@ final class LinearSystem {
         TimerUtils.beginTimer(); // DEBUG
 
         // allocate memory for the constraint matrix
-        ByteMatrix A = getMatrixAfactory(L, overheadRows).createMatrix(L + overheadRows, L);
+        ByteMatrix A = getMatrixAfactory(L, 0).createMatrix(L, L);
 
         /*
          * upper half
@@ -435,14 +507,35 @@ final class LinearSystem {
      */
     static byte[] enc(int Kprime, byte[][] C, Tuple tuple, int T) {
 
+        // allocate memory for the encoding symbol
+        final byte[] result = new byte[T];
+        enc(new Tuple.Factory(Kprime), C, tuple, result, 0, T);
+        return result;
+    }
+
+    /**
+     * Encodes a source symbol directly into a region of an array, taking the parameters that only depend on K' from
+     * the factory of the tuple, so that they are not computed again for every symbol. Only the first {@code length}
+     * bytes of the symbol are written, which allows the padding of the last source symbol of a source block to be
+     * discarded.
+     * 
+     * @param tuples
+     *            The factory of the tuple (and of the other tuples of the source block)
+     * @param C
+     * @param tuple
+     * @param dst
+     *            The array where the encoding symbol is written to
+     * @param dstPos
+     *            The index in the array of the first written byte
+     * @param length
+     *            The number of bytes of the encoding symbol to write (at most the symbol size)
+     */
+    static void enc(Tuple.Factory tuples, byte[][] C, Tuple tuple, byte[] dst, int dstPos, int length) {
+
         // necessary parameters
-        final int Ki = SystematicIndices.getKIndex(Kprime);
-        final int S = SystematicIndices.S(Ki);
-        final int H = SystematicIndices.H(Ki);
-        final int W = SystematicIndices.W(Ki);
-        final long L = Kprime + S + H;
-        final long P = L - W;
-        final int P1 = (int)MatrixUtilities.ceilPrime(P);
+        final int W = tuples.getW();
+        final int P = tuples.getP();
+        final int P1 = tuples.getP1();
         final long d = tuple.getD();
         final int a = (int)tuple.getA();
 
@@ -453,8 +546,8 @@ final class LinearSystem {
 
         int b1 = (int)tuple.getB1();
 
-        // allocate memory and initialize the encoding symbol
-        final byte[] result = Arrays.copyOf(C[b], T);
+        // initialize the encoding symbol
+        System.arraycopy(C[b], 0, dst, dstPos, length);
 
         /*
          * encoding -- refer to section 5.3.5.3 of RFC 6330
@@ -463,13 +556,13 @@ final class LinearSystem {
         for (long j = 1; j < d; j++)
         {
             b = (b + a) % W;
-            OctetOps.vectorVectorAddition(C[b], result, result);
+            OctetOps.vectorVectorAdditionInPlace(C[b], 0, dst, dstPos, length);
         }
 
         while (b1 >= P)
             b1 = (b1 + a1) % P1;
 
-        OctetOps.vectorVectorAddition(C[W + b1], result, result);
+        OctetOps.vectorVectorAdditionInPlace(C[W + b1], 0, dst, dstPos, length);
 
         for (long j = 1; j < d1; j++)
         {
@@ -477,10 +570,67 @@ final class LinearSystem {
                 b1 = (b1 + a1) % P1;
             while (b1 >= P);
 
-            OctetOps.vectorVectorAddition(C[W + b1], result, result);
+            OctetOps.vectorVectorAdditionInPlace(C[W + b1], 0, dst, dstPos, length);
         }
+    }
 
-        return result;
+    /**
+     * Encodes a source symbol directly into a buffer, starting at its current position, which is left unchanged. The
+     * buffer may be a direct buffer, since the symbol is accumulated in place without an intermediate array.
+     * 
+     * @param tuples
+     *            The factory of the tuple (and of the other tuples of the source block)
+     * @param C
+     * @param tuple
+     * @param dst
+     *            The buffer where the encoding symbol is written to
+     * @param length
+     *            The number of bytes of the encoding symbol to write (at most the symbol size)
+     */
+    static void enc(Tuple.Factory tuples, byte[][] C, Tuple tuple, ByteBuffer dst, int length) {
+
+        // necessary parameters
+        final int W = tuples.getW();
+        final int P = tuples.getP();
+        final int P1 = tuples.getP1();
+        final long d = tuple.getD();
+        final int a = (int)tuple.getA();
+
+        int b = (int)tuple.getB();
+
+        final long d1 = tuple.getD1();
+        final int a1 = (int)tuple.getA1();
+
+        int b1 = (int)tuple.getB1();
+
+        // initialize the encoding symbol
+        final int dstPos = dst.position();
+        dst.put(C[b], 0, length);
+        dst.position(dstPos);
+
+        /*
+         * encoding -- refer to section 5.3.5.3 of RFC 6330
+         */
+
+        for (long j = 1; j < d; j++)
+        {
+            b = (b + a) % W;
+            OctetOps.vectorVectorAdditionInPlace(C[b], 0, dst, dstPos, length);
+        }
+
+        while (b1 >= P)
+            b1 = (b1 + a1) % P1;
+
+        OctetOps.vectorVectorAdditionInPlace(C[W + b1], 0, dst, dstPos, length);
+
+        for (long j = 1; j < d1; j++)
+        {
+            do
+                b1 = (b1 + a1) % P1;
+            while (b1 >= P);
+
+            OctetOps.vectorVectorAdditionInPlace(C[W + b1], 0, dst, dstPos, length);
+        }
     }
 
     /**
@@ -500,6 +650,90 @@ final class LinearSystem {
         throws SingularMatrixException
     {
 
+        return PInactivationDecoding(A, D, Kprime, 0);
+    }
+
+    /**
+     * Solves the decoding system of linear equations using the permanent inactivation technique. The symbol operations
+     * of the last phases are run over stripes of bytes of the symbols that fit in the given working set size.
+     * 
+     * @param A
+     *            The constraint matrix
+     * @param D
+     *            The vector with available symbols (each row of the matrix contains one symbol)
+     * @param Kprime
+     *            The total number of source symbols for decoding
+     * @param symbolWorkingSetSize
+     *            The maximum number of bytes of all symbols operated on at a time, or 0 if symbol operations are to be
+     *            run over whole symbols
+     * @return the intermediate symbols
+     * @throws SingularMatrixException
+     *             If the decoding fails
+     */
+    static byte[][] PInactivationDecoding(ByteMatrix A, byte[][] D, int Kprime, int symbolWorkingSetSize)
+        throws SingularMatrixException
+    {
+
+        return PInactivationDecoding(A, D, Kprime, null, symbolWorkingSetSize);
+    }
+
+    /**
+     * Records the schedule of symbol operations that solves the constraint matrix for the given value of K'. Since the
+     * operations do not depend on the symbol values, the system is solved over symbols of size zero.
+     * 
+     * @param Kprime
+     *            The number of source (and padding) symbols in an extended source block
+     * @return the schedule of symbol operations for the given value of K'
+     * @throws SingularMatrixException
+     *             If the constraint matrix is singular (this should never happen)
+     */
+    static List<ISDOperation> recordEncodingSchedule(int Kprime) throws SingularMatrixException {
+
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int L = Kprime + SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+
+        final List<ISDOperation> schedule = new ArrayList<>();
+        PInactivationDecoding(generateConstraintMatrix(Kprime), new byte[L][0], Kprime, schedule);
+        return schedule;
+    }
+
+    /**
+     * Solves the decoding system of linear equations using the permanent inactivation technique, while recording
+     * every operation performed on the symbols of D.
+     * <p>
+     * The recorded schedule only depends on the constraint matrix, so it can be replayed on any vector D for the same
+     * matrix (e.g. the encoding of any source block with the same K'), without solving the system again.
+     * 
+     * @param A
+     *            The constraint matrix
+     * @param D
+     *            The vector with available symbols (each row of the matrix contains one symbol)
+     * @param Kprime
+     *            The total number of source symbols for decoding
+     * @param schedule
+     *            A list where the operations on the symbols are appended to, or {@code null} if no recording is
+     *            required
+     * @return the intermediate symbols
+     * @throws SingularMatrixException
+     *             If the decoding fails
+     */
+    static byte[][] PInactivationDecoding(ByteMatrix A, byte[][] D, int Kprime, List<ISDOperation> schedule)
+        throws SingularMatrixException
+    {
+
+        // symbol operations are not planned while recording, so there is no working set
+        return PInactivationDecoding(A, D, Kprime, schedule, 0);
+    }
+
+    private static byte[][] PInactivationDecoding(
+        ByteMatrix A,
+        byte[][] D,
+        int Kprime,
+        List<ISDOperation> schedule,
+        int symbolWorkingSetSize)
+        throws SingularMatrixException
+    {
+
         // decoding parameters
         int Ki = SystematicIndices.getKIndex(Kprime);
         int S = SystematicIndices.S(Ki);
@@ -512,7 +746,7 @@ final class LinearSystem {
         // ISDCodeWriter.instance().prepare(); // DEBUG
         // ISDCodeWriter.instance().writeKprimeCode(Kprime); // DEBUG
 
-        return pidPhase1(A, D, Kprime, S, H, L, P, M);
+        return pidPhase1(A, D, Kprime, S, H, L, P, M, schedule, null, symbolWorkingSetSize);
     }
 
     private static byte[][] pidPhase1(
@@ -523,7 +757,10 @@ final class LinearSystem {
         final int H,
         final int L,
         final int P,
-        final int M)
+        final int M,
+        final List<ISDOperation> schedule,
+        final ResumableDecoding resumable,
+        final int symbolWorkingSetSize)
         throws SingularMatrixException
     {
 
@@ -533,7 +770,6 @@ final class LinearSystem {
         long swapRowsNanos = 0L; // DEBUG
         long swapColumnsNanos = 0L; // DEBUG
         long addMultiplyNanos = 0L; // DEBUG
-        long countNonZerosNanos = 0L; // DEBUG
 
         TimerUtils.beginTimer(); // DEBUG
 
@@ -564,285 +800,80 @@ final class LinearSystem {
         // (these should be chosen first)
         int nonHDPCRows = S + Kprime;
 
-        // maps the index of a row to an object Row (which stores that row's characteristics)
-        final Map<Integer, Row> rows = new HashMap<>(M + 1, 1.0f);
-        for (int row = 0; row < M; row++) {
-            // retrieve the number of non-zeros in the row
-            final int nonZeros = A.nonZerosInRow(row, 0, L - u); // exclude last u columns
-            // is this a HDPC row?
-            final boolean isHDPC = (row >= S && row < S + H);
-
-            // this is an optimization
-            if (nonZeros == 2 && !isHDPC) {
-                int originalDegree = 0;
-                final Set<Integer> nodes = new HashSet<>(2 + 1, 1.0f); // we already know there are only 2 non zeros
+        // keeps the number of non-zeros in V of each row (rows are identified by their original index, as in d)
+        final PivotSelector rows = new PivotSelector(A, S, H, L, P, M);
 
-                ByteVectorIterator it = A.nonZeroRowIterator(row, 0, L - u);
-                while (it.hasNext()) {
-                    it.next();
-                    originalDegree += OctetOps.UNSIGN(it.get()); // add to the degree of this row
-                    nodes.add(it.index()); // add the column index to the nodes
-                }
-
-                rows.put(row, new Row(row, nonZeros, originalDegree, isHDPC, nodes));
-            }
-            else {
-                int originalDegree = 0;
-
-                ByteVectorIterator it = A.nonZeroRowIterator(row, 0, L - u);
-                while (it.hasNext()) {
-                    it.next();
-                    originalDegree += OctetOps.UNSIGN(it.get()); // add to the degree of this row
-                }
-
-                rows.put(row, new Row(row, nonZeros, originalDegree, isHDPC));
-            }
+        // the current position of each row (the inverse of d)
+        final int[] rowPos = new int[M];
+        for (int row = 0; row < M; row++) {
+            rowPos[row] = row;
         }
 
+        // the rows below the chosen row in each step (original indices)
+        final int[] rowsBelow = new int[M];
+
         TimerUtils.markTimestamp(); // DEBUG
         initNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
 
         // at most L steps
         while (i + u != L)
         {
-            // the degree of the 'currently chosen' row
-            int minDegree = 256 * L;
-
-            // number of non-zeros in the 'currently chosen' row
-            int r = L + 1;
-
-            // currently chosen row
-            Row chosenRow = null;
-
-            // decoding failure?
-            boolean allZeros = true;
-
-            // there is a row with exactly two ones
-            boolean two1s = false;
-
             /*
              * find r
              */
 
             TimerUtils.beginTimer(); // DEBUG
 
-            for (Row row : rows.values()) {
-                if (row.nonZeros != 0) allZeros = false;
-                if (row.isHDPC && chosenRowsCounter < nonHDPCRows) continue;
-
-                // if it's an edge, then it must have exactly two 1's
-                if (row.nodes != null) two1s = true;
+            if (chosenRowsCounter >= nonHDPCRows) {
+                rows.queueHDPCRows();
+            }
 
-                if (row.nonZeros < r && row.nonZeros > 0) {
-                    chosenRow = row;
-                    r = chosenRow.nonZeros;
-                    minDegree = chosenRow.originalDegree;
-                }
-                else if (row.nonZeros == r && row.originalDegree < minDegree) {
-                    chosenRow = row;
-                    minDegree = chosenRow.originalDegree;
-                }
+            // currently chosen row (original index)
+            int chosenRow = rows.minimumRow();
+            if (chosenRow == -1) {
+                // the remaining rows that are not HDPC have no non-zeros in V, so try the HDPC rows
+                rows.queueHDPCRows();
+                chosenRow = rows.minimumRow();
             }
 
             TimerUtils.markTimestamp(); // DEBUG
             findRNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
 
-            if (allZeros) {// DECODING FAILURE
-                throw new SingularMatrixException(
-                    "Decoding Failure - PI Decoding @ Phase 1: All entries in V are zero.");
+            if (chosenRow == -1) {// DECODING FAILURE
+                if (resumable == null) {
+                    throw new SingularMatrixException(
+                        "Decoding Failure - PI Decoding @ Phase 1: All entries in V are zero.");
+                }
+
+                // the remaining columns of V are all zeros, so they are inactivated instead; the decoding then fails
+                // in the second phase, from where it can be resumed after more rows are added
+                u = L - i;
+                break;
             }
 
+            // number of non-zeros in the 'currently chosen' row
+            final int r = rows.nonZeros(chosenRow);
+
             /*
              * choose the row
              */
 
             TimerUtils.beginTimer(); // DEBUG
 
-            if (r == 2 && two1s) {
-
-                /*
-                 * create graph
-                 */
-
-                // allocate memory
-                Map<Integer, Set<Integer>> graph = new HashMap<>(L - u - i + 1, 1.0f);
-
-                // lets go through all the rows... (yet again!)
-                for (Row row : rows.values())
-                {
-                    // is this row an edge?
-                    if (row.nodes != null)
-                    {
-                        // get the nodes connected through this edge
-                        Integer[] edge = row.nodes.toArray(new Integer[2]);
-                        int node1 = edge[0];
-                        int node2 = edge[1];
-
-                        // node1 already in graph?
-                        if (graph.keySet().contains(node1))
-                        { // it is
-
-                            // then lets add node 2 to its neighbours
-                            graph.get(node1).add(node2);
-                        }
-                        else
-                        { // it isn't
-
-                            // allocate memory for its neighbours
-                            Set<Integer> edges = new HashSet<>(L - u - i + 1, 1.0f);
-
-                            // add node 2 to its neighbours
-                            edges.add(node2);
-
-                            // finally, add node 1 to the graph along with its neighbours
-                            graph.put(node1, edges);
-                        }
-
-                        // node2 already in graph?
-                        if (graph.keySet().contains(node2))
-                        { // it is
-
-                            // then lets add node 1 to its neighbours
-                            graph.get(node2).add(node1);
-                        }
-                        else
-                        { // it isn't
-
-                            // allocate memory for its neighbours
-                            Set<Integer> edges = new HashSet<>(L - u - i + 1, 1.0f);
-
-                            // add node 1 to its neighbours
-                            edges.add(node1);
-
-                            // finally, add node 2 to the graph along with its neighbours
-                            graph.put(node2, edges);
-                        }
-                    }
-                    else continue;
-                }
-
-                /*
-                 * the graph is complete, now we must
-                 * find the maximum size component
-                 */
-
-                // set of visited nodes
-                Set<Integer> visited = null;
-
-                /*
-                 * TODO Optimization: I already searched, and there are optimized algorithms to find connected
-                 * components. Then we just find and use the best one available...
-                 */
-
-                // what is the size of the largest component we've already found
-                int maximumSize = 0;
-
-                // the maximum size component
-                Set<Integer> greatestComponent = null;
-
-                // which nodes have already been used (either in visited or in toVisit)
-                Set<Integer> used = new HashSet<>(L - u - i + 1, 1.0f);
-
-                // iterates the nodes in the graph
-                Iterator<Map.Entry<Integer, Set<Integer>>> it = graph.entrySet().iterator();
-
-                // let's iterate through the nodes in the graph, looking for the maximum
-                // size component. we will be doing a breadth first search // TODO optimize this with a better
-                // algorithm?
-                while (it.hasNext())
-                {
-                    // get our initial node
-                    Map.Entry<Integer, Set<Integer>> node = it.next();
-                    int initialNode = node.getKey();
-
-                    // we can't have used it before!
-                    if (used.contains(initialNode)) continue;
-
-                    // what are the edges of our initial node?
-                    Integer[] edges = node.getValue().toArray(new Integer[node.getValue().size()]);
-
-                    // allocate memory for the set of visited nodes
-                    visited = new HashSet<>(L - u - i + 1, 1.0f);
-
-                    // the set of nodes we must still visit
-                    List<Integer> toVisit = new LinkedList<>();
-
-                    // add the initial node to the set of used and visited nodes
-                    visited.add(initialNode);
-                    used.add(initialNode);
-
-                    // add my edges to the set of nodes we must visit
-                    // and also put them in the used set
-                    for (Integer edge : edges)
-                    {
-                        toVisit.add(edge);
-                        used.add(edge);
-                    }
-
-                    // start the search!
-                    while (toVisit.size() != 0)
-                    {
-                        // the node we are visiting
-                        int no = toVisit.remove(0);
-
-                        // add node to visited set
-                        visited.add(no);
-
-                        // queue edges to be visited (if they haven't been already
-                        for (Integer edge : graph.get(no))
-                            if (!visited.contains(edge)) toVisit.add(edge);
-                    }
-
-                    // is the number of visited nodes, greater than the 'currently' largest component?
-                    if (visited.size() > maximumSize)
-                    { // it is! we've found a greater component then...
-
-                        // update the maximum size
-                        maximumSize = visited.size();
-
-                        // update our greatest component
-                        greatestComponent = visited;
-                    }
-                    else continue;
-                }
-
-                /*
-                 * we've found the maximum size connected component -- 'greatestComponent'
-                 */
-
-                // let's choose the row
-                for (Row row : rows.values())
-                {
-                    // is it a node in the graph?
-                    if (row.nodes != null)
-                    { // it is
-
-                        // get the nodes connected through this edge
-                        Integer[] edge = row.nodes.toArray(new Integer[2]);
-                        int node1 = edge[0];
-                        int node2 = edge[1];
-
-                        // is this row an edge in the maximum size component?
-                        if (greatestComponent.contains(node1) && greatestComponent.contains(node2))
-                        {
-                            chosenRow = row;
-                            break;
-                        }
-                        else continue;
-                    }
-                    else continue;
+            if (r == 2) {
+                // if there are rows with exactly two ones, then choose one that is an edge
+                // in a maximum size component of the graph defined by those rows
+                final int edgeRow = rows.maximumComponentEdge();
+                if (edgeRow != -1) {
+                    chosenRow = edgeRow;
                 }
 
-                chosenRowsCounter++;
-
                 TimerUtils.markTimestamp(); // DEBUG
                 chooseRowNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
             }
-            else {
 
-                // already chosen (in 'find r')
-                chosenRowsCounter++;
-            }
+            chosenRowsCounter++;
+            rows.choose(chosenRow);
 
             /*
              * a row has been chosen! -- 'chosenRow'
@@ -853,7 +884,7 @@ final class LinearSystem {
              * with the chosen row so that the chosen row is the first row that intersects V."
              */
 
-            final int chosenRowPos = chosenRow.position;
+            final int chosenRowPos = rowPos[chosenRow];
 
             // if the chosen row is not 'i' already
             if (chosenRowPos != i) {
@@ -868,11 +899,9 @@ final class LinearSystem {
                 // decoding process - swap in d
                 ArrayUtils.swapInts(d, i, chosenRowPos);
 
-                // update values in 'rows' map
-                Row other = rows.remove(i);
-                rows.put(chosenRowPos, other);
-                other.position = chosenRowPos;
-                chosenRow.position = i;
+                // update the positions of the swapped rows
+                rowPos[d[i]] = i;
+                rowPos[d[chosenRowPos]] = chosenRowPos;
 
                 TimerUtils.markTimestamp(); // DEBUG
                 swapRowsNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
@@ -925,6 +954,12 @@ final class LinearSystem {
             TimerUtils.markTimestamp(); // DEBUG
             swapColumnsNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
 
+            // the first column of V and the last r-1 columns of V are about to leave V
+            rows.columnLeftV(c[i]);
+            for (int col = L - u - r + 1; col < L - u; col++) {
+                rows.columnLeftV(c[col]);
+            }
+
             /*
              * "... if a row below the chosen row has entry beta in the first column of V, and the chosen
              * row has entry alpha in the first column of V, then beta/alpha multiplied by the chosen
@@ -936,10 +971,13 @@ final class LinearSystem {
             // "the chosen row has entry alpha in the first column of V"
             final byte alpha = A.get(i, i);
 
-            // let's look at all rows below the chosen one
-            for (int row = i + 1; row < M; row++)
+            // only the rows below the chosen one that have a non-zero in the first column of V need to be looked at
+            final int numBelow = rows.availableRowsWithNonZero(c[i], rowsBelow);
+            for (int k = 0; k < numBelow; k++)
             // Page35@RFC6330 1st Par.
             {
+                final int row = rowPos[rowsBelow[k]];
+
                 // "if a row below the chosen row has entry beta in the first column of V"
                 final byte beta = A.get(row, i);
 
@@ -961,9 +999,11 @@ final class LinearSystem {
                     A.addRowsInPlace(betaOverAlpha, i, row);
 
                     // decoding process - D[d[row]] + (betaOverAlpha * D[d[i]])
-                    OctetOps.vectorVectorAddition(betaOverAlpha, D[d[i]], D[d[row]], D[d[row]]);
+                    OctetOps.vectorVectorAdditionInPlace(betaOverAlpha, D[d[i]], D[d[row]]);
 
-                    // ISDCodeWriter.instance().writePhase1Code(betaOverAlpha, d[i], d[row]); // DEBUG
+                    if (schedule != null) {
+                        schedule.add(ISDOps.newPhase1Operation(betaOverAlpha, d[i], d[row]));
+                    }
                 }
             }
 
@@ -975,31 +1015,6 @@ final class LinearSystem {
              */
             i++;
             u += r - 1;
-
-            TimerUtils.beginTimer(); // DEBUG
-
-            // update nonZeros
-            for (Row row : rows.values()) {
-                // update the non zero count
-                row.nonZeros = A.nonZerosInRow(row.position, i, L - u);
-
-                if (row.nonZeros != 2 || row.isHDPC) {
-                    row.nodes = null;
-                }
-                else {
-                    final Set<Integer> nodes = new HashSet<>(2 + 1, 1.0f); // we know there will only be two non zeros
-                    ByteVectorIterator it = A.nonZeroRowIterator(row.position, i, L - u);
-                    while (it.hasNext()) {
-                        it.next();
-                        nodes.add(it.index()); // add node to this edge (column index)
-                    }
-
-                    row.nodes = nodes;
-                }
-            }
-
-            TimerUtils.markTimestamp(); // DEBUG
-            countNonZerosNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
         }
 
         // DEBUG
@@ -1011,9 +1026,11 @@ final class LinearSystem {
         debugPrintlnMillis("  swap rows", swapRowsNanos);
         debugPrintlnMillis("  swap columns", swapColumnsNanos);
         debugPrintlnMillis("  add/mult row", addMultiplyNanos);
-        debugPrintlnMillis("  count nonzeros", countNonZerosNanos);
 
-        return pidPhase2(A, X, D, d, c, L, M, i, u);
+        if (resumable != null) {
+            return resumable.resumeFromPhase2(X, c, d, i, u);
+        }
+        return pidPhase2(A, X, D, d, c, L, M, i, u, schedule, symbolWorkingSetSize);
     }
 
     private static byte[][] pidPhase2(
@@ -1025,7 +1042,9 @@ final class LinearSystem {
         final int L,
         final int M,
         final int i,
-        final int u)
+        final int u,
+        final List<ISDOperation> schedule,
+        final int symbolWorkingSetSize)
         throws SingularMatrixException
     {
 
@@ -1037,7 +1056,12 @@ final class LinearSystem {
          * rows and i columns."
          */
 
-        // ISDCodeWriter.instance().writePhase2Code(A, i, M, L - u, L, d); // DEBUG MUST be called before decoding code!
+        // must be recorded before the reduction, since it modifies both A and d
+        if (schedule != null) {
+            // only U_lower is needed (the first i columns of the last M - i rows are all zeros)
+            schedule.add(ISDOps.newPhase2Operation(
+                copyOfRegion(A, i, M, L - u, L), 0, M - i, 0, u, Arrays.copyOfRange(d, i, M)));
+        }
 
         /*
          * "Gaussian elimination is performed in the second phase on U_lower either to determine that its rank is
@@ -1062,7 +1086,7 @@ final class LinearSystem {
         TimerUtils.markTimestamp();
         debugPrintlnMillis("2nd", TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS));
 
-        return pidPhase3(A, X, D, d, c, L, i);
+        return pidPhase3(A, X, D, d, c, L, i, schedule, symbolWorkingSetSize);
     }
 
     private static byte[][] pidPhase3(
@@ -1072,11 +1096,47 @@ final class LinearSystem {
         final int[] d,
         final int[] c,
         final int L,
-        final int i)
+        final int i,
+        final List<ISDOperation> schedule,
+        final int symbolWorkingSetSize)
     {
 
         TimerUtils.beginTimer(); // DEBUG
 
+        // a recorded schedule needs every symbol operation, otherwise they are all run at the end of the fifth phase
+        final SymbolOperationPlan plan = (schedule == null) ? new SymbolOperationPlan(D.length) : null;
+
+        // A can be safely re-assigned because only its first i rows are used from now on
+        A = multiplyByX(A, X, D, d, L, i, null, plan);
+
+        if (schedule != null) {
+            schedule.add(ISDOps.newPhase3Operation(copyOfRegion(X, 0, i, 0, i), i, i, Arrays.copyOf(d, d.length)));
+        }
+
+        // DEBUG
+        TimerUtils.markTimestamp();
+        debugPrintlnMillis("3rd", TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS));
+
+        return pidPhase4(A, D, d, c, L, i, schedule, plan, null, symbolWorkingSetSize);
+    }
+
+    /*
+     * Returns the product of X by the first i rows of A, and multiplies X by the first i rows of D in place. The first
+     * i rows of A (and D) are not modified by the second phase, so this may also be done before it. If a pool is
+     * given, the rows of the product are taken from it, and the replaced rows of D are released into it. If a plan is
+     * given, the product of X by D is only recorded into it.
+     */
+    private static ByteMatrix multiplyByX(
+        ByteMatrix A,
+        ByteMatrix X,
+        byte[][] D,
+        int[] d,
+        int L,
+        int i,
+        SymbolRowPool pool,
+        SymbolOperationPlan plan)
+    {
+
         /*
          * "... the matrix X is multiplied with the submatrix of A consisting of the first i rows of A."
          */
@@ -1086,28 +1146,47 @@ final class LinearSystem {
         final int Xrows = Arows;
         final int Xcols = Arows;
 
-        // A can be safely re-assigned because the product matrix has the same dimensions of A
-        A = X.multiply(A, 0, Xrows, 0, Xcols, 0, Arows, 0, Acols);
+        final ByteMatrix product = X.multiply(A, 0, Xrows, 0, Xcols, 0, Arows, 0, Acols);
 
         // decoding process
-        final int Drows = Xrows;
-        final int Dcols = (D.length == 0) ? 0 : D[0].length;
-        final byte[][] DShallowCopy = Arrays.copyOf(D, D.length);
-        final ByteMatrix DM = new RowIndirected2DByteMatrix(Drows, Dcols, DShallowCopy, d);
-
-        for (int row = 0; row < Xrows; row++) {
-            // multiply X[row] by D
-            BasicByteVector prod = (BasicByteVector)X.multiplyRow(row, DM, 0, Xcols, LinearAlgebra.BASIC2D_FACTORY);
-            D[d[row]] = prod.getInternalArray();
+        if (plan != null) {
+            plan.multiplication(X, Xrows, Xcols, d);
         }
+        else if (pool == null) {
+            final int Drows = Xrows;
+            final int Dcols = (D.length == 0) ? 0 : D[0].length;
+            final byte[][] DShallowCopy = Arrays.copyOf(D, D.length);
+            final ByteMatrix DM = new RowIndirected2DByteMatrix(Drows, Dcols, DShallowCopy, d);
+
+            for (int row = 0; row < Xrows; row++) {
+                // multiply X[row] by D
+                BasicByteVector prod = (BasicByteVector)X.multiplyRow(row, DM, 0, Xcols, LinearAlgebra.BASIC2D_FACTORY);
+                D[d[row]] = prod.getInternalArray();
+            }
+        }
+        else {
+            // the products can only replace the rows of D after all of them are computed
+            final byte[][] prods = new byte[Xrows][];
+            for (int row = 0; row < Xrows; row++) {
+                // multiply X[row] by D
+                prods[row] = pool.acquireZeroed();
+                final ByteVectorIterator it = X.nonZeroRowIterator(row, 0, Xcols);
+                while (it.hasNext()) {
+                    it.next();
+                    OctetOps.vectorVectorAdditionInPlace(it.get(), D[d[it.index()]], prods[row]);
+                }
+            }
 
-        // ISDCodeWriter.instance().writePhase3Code(X, Xrows, Xcols, d); // DEBUG
-
-        // DEBUG
-        TimerUtils.markTimestamp();
-        debugPrintlnMillis("3rd", TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS));
+            // swap the products with the replaced rows, and release the latter
+            for (int row = 0; row < Xrows; row++) {
+                final byte[] replaced = D[d[row]];
+                D[d[row]] = prods[row];
+                prods[row] = replaced;
+            }
+            pool.release(prods);
+        }
 
-        return pidPhase4(A, D, d, c, L, i);
+        return product;
     }
 
     private static byte[][] pidPhase4(
@@ -1116,7 +1195,11 @@ final class LinearSystem {
         final int[] d,
         final int[] c,
         final int L,
-        final int i)
+        final int i,
+        final List<ISDOperation> schedule,
+        final SymbolOperationPlan plan,
+        final ForkJoinPool symbolOperationsPool,
+        final int symbolWorkingSetSize)
     {
 
         TimerUtils.beginTimer(); // DEBUG
@@ -1142,10 +1225,17 @@ final class LinearSystem {
                 // (no need to actually "zerofy" it, since this part of the matrix will not be used again)
                 // it.set((byte)0);
 
-                // ISDCodeWriter.instance().writePhase4Code(b, d[j], d[row]); // DEBUG
+                if (schedule != null) {
+                    schedule.add(ISDOps.newPhase4Operation(b, d[j], d[row]));
+                }
 
                 // decoding process - (beta * D[d[j]]) + D[d[row]]
-                OctetOps.vectorVectorAddition(b, D[d[j]], D[d[row]], D[d[row]]);
+                if (plan != null) {
+                    plan.addition(b, d[j], d[row]);
+                }
+                else {
+                    OctetOps.vectorVectorAdditionInPlace(b, D[d[j]], D[d[row]]);
+                }
             }
         }
 
@@ -1153,7 +1243,7 @@ final class LinearSystem {
         TimerUtils.markTimestamp();
         debugPrintlnMillis("4th", TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS));
 
-        return pidPhase5(A, D, d, c, L, i);
+        return pidPhase5(A, D, d, c, L, i, schedule, plan, symbolOperationsPool, symbolWorkingSetSize);
     }
 
     private static byte[][] pidPhase5(
@@ -1162,7 +1252,11 @@ final class LinearSystem {
         final int[] d,
         final int[] c,
         final int L,
-        final int i)
+        final int i,
+        final List<ISDOperation> schedule,
+        final SymbolOperationPlan plan,
+        final ForkJoinPool symbolOperationsPool,
+        final int symbolWorkingSetSize)
     {
 
         TimerUtils.beginTimer(); // DEBUG
@@ -1175,10 +1269,17 @@ final class LinearSystem {
                 // "then divide row j of A by A[j,j]."
                 A.divideRowInPlace(j, beta);
 
-                // ISDCodeWriter.instance().writePhase5Code_1(beta, d[j]); // DEBUG
+                if (schedule != null) {
+                    schedule.add(ISDOps.newPhase5_1Operation(beta, d[j]));
+                }
 
                 // decoding process - D[d[j]] / beta
-                OctetOps.valueVectorDivision(beta, D[d[j]], D[d[j]]); // in place division
+                if (plan != null) {
+                    plan.division(beta, d[j]);
+                }
+                else {
+                    OctetOps.valueVectorDivision(beta, D[d[j]], D[d[j]]); // in place division
+                }
             }
 
             // "For eL from 1 to j-1"
@@ -1194,13 +1295,26 @@ final class LinearSystem {
                 // because it will not be used again.
                 // A.addRowsInPlace(beta, eL, j);
 
-                // ISDCodeWriter.instance().writePhase5Code_2(beta, d[eL], d[j]); // DEBUG
+                if (schedule != null) {
+                    schedule.add(ISDOps.newPhase5_2Operation(beta, d[eL], d[j]));
+                }
 
                 // decoding process - (beta * D[d[eL]]) + D[d[j]]
-                OctetOps.vectorVectorAddition(beta, D[d[eL]], D[d[j]], D[d[j]]);
+                if (plan != null) {
+                    plan.addition(beta, d[eL], d[j]);
+                }
+                else {
+                    OctetOps.vectorVectorAdditionInPlace(beta, D[d[eL]], D[d[j]]);
+                }
             }
         }
 
+        // run the symbol operations of the third, fourth and fifth phases in a single pass over each symbol
+        if (plan != null) {
+            final int T = (D.length == 0) ? 0 : D[0].length;
+            plan.execute(D, symbolOperationsPool, symbolStripeSize(T, D.length, symbolWorkingSetSize));
+        }
+
         // DEBUG
         TimerUtils.markTimestamp();
         debugPrintlnMillis("5th", TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS));
@@ -1212,12 +1326,331 @@ final class LinearSystem {
             C[c[index]] = D[d[index]];
         }
 
-        // ISDCodeWriter.instance().writeReorderCode(L, c, d); // DEBUG
-        // ISDCodeWriter.instance().generateCode(); // DEBUG
+        if (schedule != null) {
+            schedule.add(ISDOps.newReorderOperation(L, Arrays.copyOf(c, L), Arrays.copyOf(d, L)));
+        }
 
         return C;
     }
 
+    /*
+     * Returns a (sparse) copy of a region of the given matrix, by iterating only over its non-zero entries.
+     */
+    private static ByteMatrix copyOfRegion(ByteMatrix M, int fromRow, int toRow, int fromCol, int toCol) {
+
+        final ByteMatrix region = SPARSE_FACTORY.createMatrix(toRow - fromRow, toCol - fromCol);
+        for (int row = fromRow; row < toRow; row++) {
+            final ByteVectorIterator it = M.nonZeroRowIterator(row, fromCol, toCol);
+            while (it.hasNext()) {
+                it.next();
+                region.set(row - fromRow, it.index() - fromCol, it.get());
+            }
+        }
+
+        return region;
+    }
+
+
+    /**
+     * A permanent inactivation decoding that can be resumed after a decoding failure.
+     * <p>
+     * The state left by the first phase is kept after a failed attempt: the ordering of rows and columns, the first i
+     * rows of A and D (already multiplied by X, as in the third phase, which does not depend on the second phase), and
+     * the rows of U_lower as reduced by the second phase. Rows that are added afterwards are reduced by the first i
+     * rows of A, so that they only intersect U, and are appended to U_lower. The next attempt then only needs to
+     * eliminate the new rows to resolve the remaining rank deficit of U_lower, before finishing with the fourth and
+     * fifth phases.
+     * <p>
+     * The constraint matrix and the vector of symbols given to an instance are modified by it. Instances of this class
+     * are not thread safe.
+     */
+    static final class ResumableDecoding {
+
+        private ByteMatrix A;
+        private byte[][] D;
+        private final int Kprime;
+        private final int L;
+        private final SymbolRowPool pool; // may be null
+        private final ForkJoinPool symbolOperationsPool; // may be null
+        private final int symbolWorkingSetSize;
+
+        // rows added since the last attempt
+        private final List<Set<Integer>> pendingRows;
+        private final List<byte[]> pendingSymbols;
+
+        // state after the first phase (upperA is null until then)
+        private ByteMatrix upperA; // the first i rows of A multiplied by X
+        private int[] c;
+        private int[] cInverse;
+        private int[] d;
+        private int i;
+        private int u;
+
+        private int rankDeficit;
+        private int rowsSinceLastReduction;
+        private boolean solved;
+
+
+        /**
+         * @param A
+         *            The constraint matrix
+         * @param D
+         *            The vector with available symbols (each row of the matrix contains one symbol)
+         * @param Kprime
+         *            The total number of source symbols for decoding
+         */
+        ResumableDecoding(ByteMatrix A, byte[][] D, int Kprime) {
+
+            this(A, D, Kprime, null);
+        }
+
+        /**
+         * @param A
+         *            The constraint matrix
+         * @param D
+         *            The vector with available symbols (each row of the matrix contains one symbol)
+         * @param Kprime
+         *            The total number of source symbols for decoding
+         * @param pool
+         *            A pool of symbol rows used as working memory, or {@code null} if new rows are to be allocated
+         */
+        ResumableDecoding(ByteMatrix A, byte[][] D, int Kprime, SymbolRowPool pool) {
+
+            this(A, D, Kprime, pool, null, 0);
+        }
+
+        /**
+         * @param A
+         *            The constraint matrix
+         * @param D
+         *            The vector with available symbols (each row of the matrix contains one symbol)
+         * @param Kprime
+         *            The total number of source symbols for decoding
+         * @param pool
+         *            A pool of symbol rows used as working memory, or {@code null} if new rows are to be allocated
+         * @param symbolOperationsPool
+         *            A pool where the symbol operations of the last phases are run in parallel, or {@code null} if
+         *            they are to be run by the solving thread
+         * @param symbolWorkingSetSize
+         *            The maximum number of bytes of all symbols operated on at a time in the last phases, or 0 if
+         *            symbol operations are to be run over whole symbols
+         */
+        ResumableDecoding(
+            ByteMatrix A,
+            byte[][] D,
+            int Kprime,
+            SymbolRowPool pool,
+            ForkJoinPool symbolOperationsPool,
+            int symbolWorkingSetSize)
+        {
+
+            this.A = A;
+            this.D = D;
+            this.Kprime = Kprime;
+            this.pool = pool;
+            this.symbolOperationsPool = symbolOperationsPool;
+            this.symbolWorkingSetSize = symbolWorkingSetSize;
+
+            final int Ki = SystematicIndices.getKIndex(Kprime);
+            this.L = Kprime + SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+
+            this.pendingRows = new ArrayList<>();
+            this.pendingSymbols = new ArrayList<>();
+
+            this.upperA = null;
+            this.rankDeficit = 0;
+            this.rowsSinceLastReduction = 0;
+            this.solved = false;
+        }
+
+        /**
+         * Adds a row to the system, for an encoding symbol that was not previously part of it. The row is only
+         * reduced in the next call to {@link #solve()}.
+         * 
+         * @param isi
+         *            The internal symbol identifier of the encoding symbol
+         * @param symbol
+         *            The data of the encoding symbol (the array is modified by this object)
+         */
+        void addSymbol(long isi, byte[] symbol) {
+
+            pendingRows.add(encIndexes(Kprime, new Tuple(Kprime, isi)));
+            pendingSymbols.add(symbol);
+        }
+
+        /**
+         * Returns the rank deficit of U_lower after the last attempt to solve the system. At least this many rows must
+         * be added for the next attempt to succeed.
+         * 
+         * @return the rank deficit of U_lower after the last attempt to solve the system
+         */
+        int rankDeficit() {
+
+            return rankDeficit;
+        }
+
+        /**
+         * Solves the system, resuming the previous attempt if there was one. After a successful call, this object
+         * must not be used again.
+         * 
+         * @return the intermediate symbols
+         * @throws SingularMatrixException
+         *             If the decoding fails (it may be resumed after more rows are added)
+         */
+        byte[][] solve() throws SingularMatrixException {
+
+            if (solved) throw new IllegalStateException("the system is already solved");
+
+            appendPendingRows();
+            if (upperA == null) { // first attempt
+                final int Ki = SystematicIndices.getKIndex(Kprime);
+                final int S = SystematicIndices.S(Ki);
+                final int H = SystematicIndices.H(Ki);
+                final int P = L - SystematicIndices.W(Ki);
+
+                return pidPhase1(A, D, Kprime, S, H, L, P, A.rows(), null, this, symbolWorkingSetSize);
+            }
+            else {
+                // the rank of U_lower can only increase by one for each added row
+                if (rowsSinceLastReduction < rankDeficit) {
+                    throw new SingularMatrixException(
+                        "Decoding Failure - PI Decoding @ Phase 2: U_lower's rank is less than u.");
+                }
+
+                return phase2();
+            }
+        }
+
+        /**
+         * Releases the symbol rows of this system (including the added symbols) into the pool given at construction,
+         * if any. Neither this object nor the intermediate symbols returned by {@link #solve()} can be used
+         * afterwards.
+         */
+        void releaseRows() {
+
+            if (pool != null) {
+                pool.release(D);
+                pool.release(pendingSymbols.toArray(new byte[pendingSymbols.size()][]));
+            }
+            D = null;
+            pendingRows.clear();
+            pendingSymbols.clear();
+            solved = true;
+        }
+
+        // called at the end of the first phase
+        private byte[][] resumeFromPhase2(ByteMatrix X, int[] c, int[] d, int i, int u)
+            throws SingularMatrixException
+        {
+
+            this.upperA = multiplyByX(A, X, D, d, L, i, pool, null);
+            this.c = c;
+            this.d = d;
+            this.i = i;
+            this.u = u;
+
+            return phase2();
+        }
+
+        private byte[][] phase2() throws SingularMatrixException {
+
+            final int M = A.rows();
+
+            // same as the second phase, but without the recording of a schedule
+            MatrixUtilities.reduceToRowEchelonForm(A, i, M, i, L, d, D);
+
+            rankDeficit = u - MatrixUtilities.nonZeroRows(A, i, M, i, L);
+            rowsSinceLastReduction = 0;
+            if (rankDeficit > 0) {
+                throw new SingularMatrixException(
+                    "Decoding Failure - PI Decoding @ Phase 2: U_lower's rank is less than u.");
+            }
+
+            solved = true;
+            // the third phase is already done, so only the operations of the last two phases are planned
+            final SymbolOperationPlan plan = new SymbolOperationPlan(D.length);
+            return pidPhase4(upperA, D, d, c, L, i, null, plan, symbolOperationsPool, symbolWorkingSetSize);
+        }
+
+        private void appendPendingRows() {
+
+            final int numRows = pendingRows.size();
+            if (numRows == 0) {
+                return;
+            }
+
+            final int M = A.rows();
+            A = A.resizeRows(M + numRows);
+            D = Arrays.copyOf(D, M + numRows);
+            if (upperA != null) {
+                d = Arrays.copyOf(d, M + numRows);
+            }
+
+            for (int n = 0; n < numRows; n++) {
+                final int row = M + n;
+                final byte[] symbol = pendingSymbols.get(n);
+                D[row] = symbol;
+
+                if (upperA == null) { // the first phase has not started yet, so the row is added as is
+                    for (Integer col : pendingRows.get(n)) {
+                        A.set(row, col, (byte)1);
+                    }
+                }
+                else {
+                    d[row] = row;
+                    reduceRow(pendingRows.get(n), symbol, row);
+                }
+            }
+
+            rowsSinceLastReduction += numRows;
+            pendingRows.clear();
+            pendingSymbols.clear();
+        }
+
+        /*
+         * The first i columns of the first i rows of A form a lower triangular matrix (the product of X by a diagonal
+         * matrix), so a new row is reduced by those rows from the last to the first, in order to clear its non-zeros
+         * in the first i columns.
+         */
+        private void reduceRow(Set<Integer> indexes, byte[] symbol, int row) {
+
+            if (cInverse == null) {
+                cInverse = new int[L];
+                for (int col = 0; col < L; col++) {
+                    cInverse[c[col]] = col;
+                }
+            }
+
+            // the new row with the current ordering of columns
+            final byte[] newRow = new byte[L];
+            for (Integer col : indexes) {
+                newRow[cInverse[col]] = 1;
+            }
+
+            for (int k = i - 1; k >= 0; k--) {
+                if (newRow[k] != 0) {
+                    final byte beta = OctetOps.aDividedByB(newRow[k], upperA.get(k, k));
+
+                    final ByteVectorIterator it = upperA.nonZeroRowIterator(k, 0, L);
+                    while (it.hasNext()) {
+                        it.next();
+                        final int j = it.index();
+                        newRow[j] = OctetOps.aPlusB(newRow[j], OctetOps.aTimesB(beta, it.get()));
+                    }
+
+                    // decoding process - symbol + (beta * D[d[k]])
+                    OctetOps.vectorVectorAdditionInPlace(beta, D[d[k]], symbol);
+                }
+            }
+
+            for (int j = i; j < L; j++) {
+                if (newRow[j] != 0) {
+                    A.set(row, j, newRow[j]);
+                }
+            }
+        }
+    }
+
     private LinearSystem() {
 
         // not instantiable
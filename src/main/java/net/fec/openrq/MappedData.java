@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+
+/**
+ * Source data in a region of a file, mapped into memory in segments.
+ * <p>
+ * A single mapped buffer is limited to {@link Integer#MAX_VALUE} bytes, so the data is mapped into consecutive
+ * segments whose size is a multiple of the symbol size. Since source blocks are made of whole symbols, every source
+ * symbol lies within a single segment.
+ */
+final class MappedData {
+
+    // large enough for few segments, small enough to find address space for each one
+    static final int DEFAULT_MAX_SEGMENT_SIZE = 1 << 30;
+
+
+    /**
+     * Maps a region of a file into memory.
+     * 
+     * @param channel
+     *            A channel of the file
+     * @param mode
+     *            The mapping mode
+     * @param position
+     *            The position in the file where the data begins
+     * @param dataLength
+     *            The length of the data
+     * @param T
+     *            The symbol size
+     * @param maxSegmentSize
+     *            The maximum size of each mapped segment (must be at least {@code T})
+     * @return the mapped data
+     * @throws IOException
+     *             If an I/O error occurs while mapping the file
+     */
+    static MappedData map(FileChannel channel, MapMode mode, long position, long dataLength, int T, int maxSegmentSize)
+        throws IOException
+    {
+
+        final int segmentSize = (maxSegmentSize / T) * T;
+        final int numSegments = (int)((dataLength + segmentSize - 1) / segmentSize);
+
+        final MappedByteBuffer[] segments = new MappedByteBuffer[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            final long off = (long)i * segmentSize;
+            segments[i] = channel.map(mode, position + off, Math.min(segmentSize, dataLength - off));
+        }
+
+        return new MappedData(segments, segmentSize);
+    }
+
+
+    private volatile MappedByteBuffer[] segments; // null after being released
+    private final int segmentSize;
+
+
+    private MappedData(MappedByteBuffer[] segments, int segmentSize) {
+
+        this.segments = segments;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns a source symbol backed by the mapped data.
+     * 
+     * @param off
+     *            The offset of the symbol in the data (must be a multiple of {@code T})
+     * @param T
+     *            The symbol size
+     * @return a source symbol backed by the mapped data
+     */
+    MappedSourceSymbol newSymbol(long off, int T) {
+
+        return MappedSourceSymbol.newSymbol(this, (int)(off / segmentSize), (int)(off % segmentSize), T);
+    }
+
+    // requires valid index
+    ByteBuffer segment(int index) {
+
+        return segments()[index];
+    }
+
+    // requires valid index
+    int segmentLength(int index) {
+
+        return segments()[index].capacity();
+    }
+
+    /**
+     * Writes any changes made to the mapped data to the file.
+     * 
+     * @exception IllegalStateException
+     *                If the data was already released
+     */
+    void force() {
+
+        for (MappedByteBuffer seg : segments()) {
+            seg.force();
+        }
+    }
+
+    /**
+     * Drops the references to the mapped segments, so that they are unmapped once garbage collected (the Java API has
+     * no means of unmapping a buffer explicitly). Any later access to the data throws an {@code IllegalStateException}.
+     */
+    void release() {
+
+        segments = null;
+    }
+
+    private MappedByteBuffer[] segments() {
+
+        final MappedByteBuffer[] segs = segments;
+        if (segs == null) throw new IllegalStateException("the mapped data was released");
+        return segs;
+    }
+}
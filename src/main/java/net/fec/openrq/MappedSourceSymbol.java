@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import net.fec.openrq.util.io.BufferOperation;
+import net.fec.openrq.util.io.ByteBuffers;
+
+
+/**
+ * A source symbol backed by a region of a segment of {@link MappedData}, which is shared with other symbols. The
+ * position and limit of the shared segment are never changed, so symbols may be used concurrently.
+ * <p>
+ * If the data is mapped read-only, attempts to put data into the symbol throw a
+ * {@link java.nio.ReadOnlyBufferException}. After the data is released, any access to the symbol data throws an
+ * {@code IllegalStateException}.
+ */
+final class MappedSourceSymbol implements SourceSymbol {
+
+    /*
+     * Requires valid parameters.
+     */
+    static MappedSourceSymbol newSymbol(MappedData data, int segment, int symbolOff, int symbolSize) {
+
+        final int transportSize = Math.min(symbolSize, data.segmentLength(segment) - symbolOff);
+        return new MappedSourceSymbol(data, segment, symbolOff, symbolSize, transportSize);
+    }
+
+
+    private final MappedData data;
+    private final int segment;
+    private final int symbolOff;
+
+    private final int codeSize;
+    private final int transportSize;
+
+
+    private MappedSourceSymbol(MappedData data, int segment, int symbolOff, int codeSize, int transportSize) {
+
+        this.data = Objects.requireNonNull(data);
+        this.segment = segment;
+        this.symbolOff = symbolOff;
+
+        this.codeSize = codeSize;
+        this.transportSize = transportSize;
+    }
+
+    // a new view of the transport data, created on demand to avoid keeping one buffer per symbol
+    private ByteBuffer transportBuffer() {
+
+        final ByteBuffer buf = data.segment(segment).duplicate();
+        buf.limit(symbolOff + transportSize).position(symbolOff);
+        return buf;
+    }
+
+    @Override
+    public int codeSize() {
+
+        return codeSize;
+    }
+
+    @Override
+    public void getCodeData(ByteBuffer dst) {
+
+        getCodeData(dst, BufferOperation.ADVANCE_POSITION);
+    }
+
+    @Override
+    public void getCodeData(ByteBuffer dst, BufferOperation op) {
+
+        final int pos = dst.position();
+        final int lim = dst.limit();
+        final int remaining = lim - pos;
+        if (remaining < codeSize()) throw new BufferOverflowException();
+
+        dst.put(transportBuffer());
+        ByteBuffers.putZeros(dst, codeSize() - transportSize());
+
+        op.apply(dst, pos, dst.position());
+    }
+
+    @Override
+    public void putCodeData(ByteBuffer src) {
+
+        putCodeData(src, BufferOperation.ADVANCE_POSITION);
+    }
+
+    @Override
+    public void putCodeData(ByteBuffer src, BufferOperation op) {
+
+        final int pos = src.position();
+        putTransportData(src, BufferOperation.ADVANCE_POSITION);
+        src.position(pos + codeSize()); // always advance by codeSize() bytes
+        op.apply(src, pos, src.position());
+    }
+
+    @Override
+    public int transportSize() {
+
+        return transportSize;
+    }
+
+    @Override
+    public ByteBuffer transportData() {
+
+        return transportBuffer().slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public void putTransportData(ByteBuffer src) {
+
+        putTransportData(src, BufferOperation.ADVANCE_POSITION);
+    }
+
+    @Override
+    public void putTransportData(ByteBuffer src, BufferOperation op) {
+
+        ByteBuffers.copy(src, op, transportBuffer(), BufferOperation.ADVANCE_POSITION, transportSize());
+    }
+}
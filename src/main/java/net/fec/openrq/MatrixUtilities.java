@@ -198,9 +198,22 @@ final class MatrixUtilities {
         return result;
     }
 
+    // the number of consecutive pivots whose operations on the symbols are batched
+    private static final int ELIMINATION_BLOCK_SIZE = 8;
+
+    // the number of pivots whose symbol sums are precomputed together in a lookup table
+    private static final int TABLE_BITS = 4;
+
+
     /**
      * Performs Gaussian elimination on a region of a matrix A and reduces the matrix region to a reduced row echelon
      * form. The operations are also performed in matrix D, with indices in d.
+     * <p>
+     * The operations on the matrix A are performed pivot by pivot, skipping zero multipliers, but the operations on
+     * the symbols of D are batched over blocks of consecutive pivots, so that each row of D is updated once per block
+     * instead of once per pivot. When enough rows are added a binary combination of the pivot rows of a block, the
+     * sums of the pivot rows are precomputed in lookup tables (as in the "Method of Four Russians"), and each of those
+     * rows is updated with a few table lookups.
      * 
      * @param A
      * @param fromRow
@@ -219,10 +232,14 @@ final class MatrixUtilities {
         int[] d,
         byte[][] D) {
 
+        final int symbolSize = (fromRow < toRow && D.length > 0) ? D[d[fromRow]].length : 0;
+        final PivotBlock block = new PivotBlock(toRow - fromRow, symbolSize);
+
         int lead = fromCol;
+        rows:
         for (int r = fromRow; r < toRow; r++) {
             if (lead >= toCol) {
-                return;
+                break;
             }
 
             int i = r;
@@ -232,7 +249,7 @@ final class MatrixUtilities {
                     i = r;
                     lead++;
                     if (lead >= toCol) {
-                        return;
+                        break rows;
                     }
                 }
             }
@@ -241,30 +258,248 @@ final class MatrixUtilities {
                 A.swapRows(i, r);
                 // decoding process - swap d[i] with d[r] in d
                 ArrayUtils.swapInts(d, i, r);
+                block.swapRows(i - fromRow, r - fromRow);
             }
 
+            // the pivot row must be up to date before it is divided and added to the other rows
+            final int dIndex = d[r];
+            block.applyPending(r - fromRow, D[dIndex]);
+
             byte beta = A.get(r, lead);
             if (beta != 0) {
                 A.divideRowInPlace(r, beta);
                 // decoding process - divide D[d[r]] by U_lower[r][lead]
                 // byte[] / beta
-                final int dIndex = d[r];
                 OctetOps.valueVectorDivision(beta, D[dIndex], D[dIndex]); // in place division
             }
+            final int pivot = block.addPivot(D[dIndex]);
 
             for (i = fromRow; i < toRow; i++) {
                 if (i != r) {
                     beta = A.get(i, lead);
-
-                    // U_lower[i] - (U_lower[i][lead] * U_lower[r])
-                    // NOTE: here, subtraction is the same as addition
-                    A.addRowsInPlace(beta, r, i);
-                    // decoding process - D[d[i]] - (U_lower[i][lead] * D[d[r]])
-                    OctetOps.vectorVectorAddition(beta, D[d[r]], D[d[i]], D[d[i]]);
+                    if (beta != 0) {
+                        // U_lower[i] - (U_lower[i][lead] * U_lower[r])
+                        // NOTE: here, subtraction is the same as addition
+                        A.addRowsInPlace(beta, r, i);
+                        // decoding process - D[d[i]] - (U_lower[i][lead] * D[d[r]]), deferred to the end of the block
+                        block.addPending(i - fromRow, pivot, beta);
+                    }
                 }
             }
 
             lead++;
+
+            if (block.isFull()) {
+                block.flush(D, d, fromRow);
+            }
+        }
+
+        block.flush(D, d, fromRow);
+    }
+
+
+    /*
+     * The symbol operations of a block of consecutive pivots of a Gaussian elimination.
+     * 
+     * In each step of the elimination, the pivot row is divided and then added, multiplied by some value, to the other
+     * rows. The pivot row is only changed by later steps, so every addition of a step uses the same symbol: the pivot
+     * row right after its division. These symbols are copied when each pivot is added, and every row accumulates the
+     * multipliers of the pivots added to it. At the end of the block, the multiples of the copied pivots are added to
+     * each row at once, in any order. A row that becomes a pivot must first receive its pending additions, since its
+     * symbol is copied.
+     */
+    private static final class PivotBlock {
+
+        private final byte[][] pivots; // the symbols of the pivots in the block, after their division
+        private int numPivots;
+
+        // the pending multipliers of each row (by position in the region), and how many are non-zero
+        private final byte[][] pending;
+        private final int[] numPending;
+
+        // lookup tables with the sums of each combination of TABLE_BITS pivots, created on demand
+        private byte[][][] tables;
+
+
+        PivotBlock(int numRows, int symbolSize) {
+
+            this.pivots = new byte[ELIMINATION_BLOCK_SIZE][symbolSize];
+            this.numPivots = 0;
+
+            this.pending = new byte[numRows][ELIMINATION_BLOCK_SIZE];
+            this.numPending = new int[numRows];
+
+            this.tables = null;
+        }
+
+        boolean isFull() {
+
+            return numPivots == ELIMINATION_BLOCK_SIZE;
+        }
+
+        void swapRows(int pos1, int pos2) {
+
+            ArrayUtils.swapObjects(pending, pos1, pos2);
+            ArrayUtils.swapInts(numPending, pos1, pos2);
+        }
+
+        /*
+         * Copies the symbol of the next pivot, and returns its index in the block.
+         */
+        int addPivot(byte[] symbol) {
+
+            System.arraycopy(symbol, 0, pivots[numPivots], 0, symbol.length);
+            return numPivots++;
+        }
+
+        void addPending(int pos, int pivot, byte multiplier) {
+
+            pending[pos][pivot] = multiplier;
+            numPending[pos]++;
+        }
+
+        /*
+         * Adds the pending multiples of the pivots to the symbol of the row in the given position, one by one.
+         */
+        void applyPending(int pos, byte[] symbol) {
+
+            if (numPending[pos] > 0) {
+                final byte[] multipliers = pending[pos];
+                for (int p = 0; p < numPivots; p++) {
+                    if (multipliers[p] != 0) {
+                        OctetOps.vectorVectorAdditionInPlace(multipliers[p], pivots[p], symbol);
+                        multipliers[p] = 0;
+                    }
+                }
+                numPending[pos] = 0;
+            }
+        }
+
+        /*
+         * Adds the pending multiples of the pivots to the symbols of every row, and starts a new block.
+         */
+        void flush(byte[][] D, int[] d, int fromRow) {
+
+            if (numPivots == 0) {
+                return;
+            }
+
+            final boolean useTables = buildTablesIfWorthwhile();
+            for (int pos = 0; pos < pending.length; pos++) {
+                if (numPending[pos] > 0) {
+                    final byte[] symbol = D[d[fromRow + pos]];
+                    if (useTables && isBinary(pending[pos])) {
+                        applyPendingFromTables(pos, symbol);
+                    }
+                    else {
+                        applyPending(pos, symbol);
+                    }
+                }
+            }
+
+            numPivots = 0;
+        }
+
+        private boolean isBinary(byte[] multipliers) {
+
+            for (int p = 0; p < numPivots; p++) {
+                if (multipliers[p] != 0 && multipliers[p] != 1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int tableMask(byte[] multipliers, int table) {
+
+            final int first = table * TABLE_BITS;
+            final int end = Math.min(numPivots, first + TABLE_BITS);
+
+            int mask = 0;
+            for (int p = first; p < end; p++) {
+                if (multipliers[p] != 0) {
+                    mask |= 1 << (p - first);
+                }
+            }
+            return mask;
+        }
+
+        private int numTables() {
+
+            return (numPivots + TABLE_BITS - 1) / TABLE_BITS;
+        }
+
+        /*
+         * Builds the lookup tables if they save more symbol additions than they cost, and returns true if they were
+         * built.
+         */
+        private boolean buildTablesIfWorthwhile() {
+
+            // without tables, a binary row needs one addition per pivot; with them, one per table
+            long saved = 0;
+            for (int pos = 0; pos < pending.length; pos++) {
+                if (numPending[pos] > 1 && isBinary(pending[pos])) {
+                    saved += numPending[pos];
+                    for (int t = 0; t < numTables(); t++) {
+                        if (tableMask(pending[pos], t) != 0) {
+                            saved--;
+                        }
+                    }
+                }
+            }
+
+            // each table entry that is not a single pivot costs one addition
+            final long cost = numTables() * ((1 << TABLE_BITS) - 1 - TABLE_BITS);
+            if (saved <= cost || pivots[0].length == 0) {
+                return false;
+            }
+
+            if (tables == null) {
+                tables = new byte[ELIMINATION_BLOCK_SIZE / TABLE_BITS][1 << TABLE_BITS][];
+            }
+            for (int t = 0; t < numTables(); t++) {
+                final byte[][] table = tables[t];
+                final int tablePivots = Math.min(numPivots - t * TABLE_BITS, TABLE_BITS);
+                for (int mask = 1; mask < (1 << tablePivots); mask++) {
+                    final int lowBit = mask & -mask;
+                    if (mask != lowBit) {
+                        // the sum of the pivots in the mask is the sum of the pivots in a smaller mask plus one pivot
+                        if (table[mask] == null) {
+                            table[mask] = new byte[pivots[0].length];
+                        }
+                        OctetOps.vectorVectorAddition(
+                            tableEntry(t, mask ^ lowBit), pivots[t * TABLE_BITS + Integer.numberOfTrailingZeros(mask)],
+                            table[mask]);
+                    }
+                }
+            }
+            return true;
+        }
+
+        private byte[] tableEntry(int table, int mask) {
+
+            if ((mask & (mask - 1)) == 0) { // a single pivot
+                return pivots[table * TABLE_BITS + Integer.numberOfTrailingZeros(mask)];
+            }
+            else {
+                return tables[table][mask];
+            }
+        }
+
+        private void applyPendingFromTables(int pos, byte[] symbol) {
+
+            final byte[] multipliers = pending[pos];
+            for (int t = 0; t < numTables(); t++) {
+                final int mask = tableMask(multipliers, t);
+                if (mask != 0) {
+                    OctetOps.vectorVectorAdditionInPlace(tableEntry(t, mask), symbol);
+                }
+            }
+
+            for (int p = 0; p < numPivots; p++) {
+                multipliers[p] = 0;
+            }
+            numPending[pos] = 0;
         }
     }
 
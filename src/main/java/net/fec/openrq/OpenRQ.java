@@ -17,8 +17,22 @@
 package net.fec.openrq;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
 import net.fec.openrq.decoder.DataDecoder;
+import net.fec.openrq.decoder.DecodingEngine;
 import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockDecodingListener;
+import net.fec.openrq.decoder.SourceBlockState;
 import net.fec.openrq.encoder.DataEncoder;
 import net.fec.openrq.parameters.FECParameters;
 import net.fec.openrq.parameters.ParameterChecker;
@@ -83,6 +97,141 @@ public final class OpenRQ {
         return ArrayDataEncoder.newEncoder(data, offset, fecParams);
     }
 
+    /**
+     * Returns a {@link DataEncoder} object with an array of bytes as the source data, configured according to the
+     * provided FEC parameters, and that runs symbol operations over stripes of bytes of the symbols bounded by the
+     * provided working set size.
+     * <p>
+     * The symbol operations that generate the intermediate symbols of a source block are normally run one symbol at a
+     * time over whole symbols. With this encoder, the symbols are instead split into stripes of bytes that are operated
+     * on one at a time, such that the stripes of all symbols of a source block fit in the given size. Setting it to
+     * about the size of a CPU cache keeps the symbols in that cache, which may benefit the encoding of large source
+     * blocks with large symbols. Stripes are never smaller than 64 bytes, and very small stripes make symbol operations
+     * slower.
+     * <p>
+     * Note that the maximum supported data length is {@link Integer#MAX_VALUE}.
+     * 
+     * @param data
+     *            An array of bytes containing the source data to be encoded
+     * @param fecParams
+     *            FEC parameters that configure the returned data encoder object
+     * @param symbolWorkingSetSize
+     *            The maximum number of bytes of all symbols operated on at a time, or 0 if symbol operations are to be
+     *            run over whole symbols
+     * @return a data encoder object backed by an array of bytes
+     * @exception NullPointerException
+     *                If {@code data} or {@code fecParams} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || symbolWorkingSetSize < 0}
+     * @exception IndexOutOfBoundsException
+     *                If {@code fecParams.dataLength() > data.length}
+     */
+    public static ArrayDataEncoder newEncoder(byte[] data, FECParameters fecParams, int symbolWorkingSetSize) {
+
+        // exceptions are checked inside the invoked method
+        return ArrayDataEncoder.newEncoder(data, 0, fecParams, symbolWorkingSetSize);
+    }
+
+    /**
+     * Returns a {@link DataEncoder} object with a file as the source data, configured according to the provided FEC
+     * parameters. The source data begins at the start of the file.
+     * <p>
+     * The file is mapped into memory, and closed before this method returns (the mapping remains valid). Data lengths
+     * up to {@link ParameterChecker#maxDataLength()} are supported. The file must not be modified or truncated while the
+     * returned encoder is in use.
+     * 
+     * @param file
+     *            The path of a file containing the source data to be encoded
+     * @param fecParams
+     *            FEC parameters that configure the returned data encoder object
+     * @return a data encoder object backed by a file
+     * @throws IOException
+     *             If an I/O error occurs while opening or mapping the file
+     * @exception NullPointerException
+     *                If {@code file} or {@code fecParams} are {@code null}
+     * @exception IndexOutOfBoundsException
+     *                If {@code fecParams.dataLength()} is greater than the size of the file
+     */
+    public static FileDataEncoder newEncoder(Path file, FECParameters fecParams) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return newEncoder(channel, 0, fecParams);
+        }
+    }
+
+    /**
+     * Returns a {@link DataEncoder} object with a region of a file as the source data, configured according to the
+     * provided FEC parameters.
+     * <p>
+     * The file is mapped into memory, and the channel may be closed after this method returns (the mapping remains
+     * valid). Data lengths up to {@link ParameterChecker#maxDataLength()} are supported. The file must not be modified
+     * or truncated while the returned encoder is in use.
+     * 
+     * @param channel
+     *            A channel of the file containing the source data to be encoded (only needs to be open for reading)
+     * @param position
+     *            The position in the file where the source data begins
+     * @param fecParams
+     *            FEC parameters that configure the returned data encoder object
+     * @return a data encoder object backed by a file
+     * @throws IOException
+     *             If an I/O error occurs while mapping the file
+     * @exception NullPointerException
+     *                If {@code channel} or {@code fecParams} are {@code null}
+     * @exception IndexOutOfBoundsException
+     *                If {@code position < 0 || fecParams.dataLength() > (channel.size() - position)}
+     */
+    public static FileDataEncoder newEncoder(FileChannel channel, long position, FECParameters fecParams)
+        throws IOException
+    {
+
+        // exceptions are checked inside the invoked method
+        return FileDataEncoder.newEncoder(channel, position, fecParams, MappedData.DEFAULT_MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns a {@link DataEncoder} object that reads the source data incrementally from a channel, configured according
+     * to the provided FEC parameters.
+     * <p>
+     * Source blocks are read one at a time, in increasing order of source block number, and only the most recently read
+     * source block is kept by the returned encoder, so the memory needed to encode the source data is about the size of
+     * a single source block. Refer to the {@link StreamDataEncoder} class header for details. Data lengths up to
+     * {@link ParameterChecker#maxDataLength()} are supported.
+     * 
+     * @param channel
+     *            A channel from which the source data is read
+     * @param fecParams
+     *            FEC parameters that configure the returned data encoder object
+     * @return a data encoder object that reads the source data from a channel
+     * @exception NullPointerException
+     *                If {@code channel} or {@code fecParams} are {@code null}
+     */
+    public static StreamDataEncoder newEncoder(ReadableByteChannel channel, FECParameters fecParams) {
+
+        // exceptions are checked inside the invoked method
+        return StreamDataEncoder.newEncoder(channel, fecParams);
+    }
+
+    /**
+     * Returns a {@link DataEncoder} object that reads the source data incrementally from an input stream, configured
+     * according to the provided FEC parameters.
+     * <p>
+     * Calling this method has the same effect as calling {@link #newEncoder(ReadableByteChannel, FECParameters)
+     * newEncoder(Channels.newChannel(in), fecParams)}.
+     * 
+     * @param in
+     *            An input stream from which the source data is read
+     * @param fecParams
+     *            FEC parameters that configure the returned data encoder object
+     * @return a data encoder object that reads the source data from an input stream
+     * @exception NullPointerException
+     *                If {@code in} or {@code fecParams} are {@code null}
+     */
+    public static StreamDataEncoder newEncoder(InputStream in, FECParameters fecParams) {
+
+        return newEncoder(Channels.newChannel(in), fecParams);
+    }
+
     /**
      * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
      * provided FEC parameters and symbol overhead. All source block decoders will initially be configured with the
@@ -110,6 +259,310 @@ public final class OpenRQ {
         return ArrayDataDecoder.newDecoder(fecParams, symbolOverhead);
     }
 
+    /**
+     * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
+     * provided FEC parameters and symbol overhead, and that decodes source blocks in the background using the provided
+     * executor.
+     * <p>
+     * Putting an encoding packet into a source block decoder only stores its symbols. Once enough symbols are
+     * available, the source block decoder submits a decoding operation to the executor and returns immediately, so
+     * that other encoding packets (for the same or other source blocks) can be put while the source block is being
+     * decoded. Until the decoding operation finishes, the state of the source block remains
+     * {@link SourceBlockState#INCOMPLETE} (or {@link SourceBlockState#DECODING_FAILURE} if a previous decoding
+     * operation failed). If a decoding operation fails and more symbols were received in the meantime, a new decoding
+     * operation is submitted.
+     * <p>
+     * The provided listener, if not {@code null}, is notified each time a source block becomes decoded or fails to be
+     * decoded.
+     * <p>
+     * For information on the symbol overhead value, refer to the section on
+     * <a href="decoder/SourceBlockDecoder.html#symbol-overhead"><em>Symbol overhead</em></a> in the
+     * {@link SourceBlockDecoder} class header.
+     * <p>
+     * Note that the maximum supported data length is {@link Integer#MAX_VALUE}.
+     * 
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbolOverhead
+     *            Symbol overhead (must be non-negative)
+     * @param decodingExecutor
+     *            An executor that runs the decoding operations of source blocks
+     * @param listener
+     *            A listener of finished decoding operations (may be {@code null})
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} or {@code decodingExecutor} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || symbolOverhead < 0}
+     */
+    public static ArrayDataDecoder newDecoder(
+        FECParameters fecParams,
+        int symbolOverhead,
+        Executor decodingExecutor,
+        SourceBlockDecodingListener listener)
+    {
+
+        // exceptions are checked inside the invoked method
+        return ArrayDataDecoder.newDecoder(fecParams, symbolOverhead, DecodingEngine.PERMANENT_INACTIVATION,
+            Objects.requireNonNull(decodingExecutor), listener);
+    }
+
+    /**
+     * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
+     * provided FEC parameters and symbol overhead, and that decodes source blocks using the provided decoding engine.
+     * All source block decoders will initially be configured with the provided symbol overhead value.
+     * <p>
+     * With the {@link DecodingEngine#INCREMENTAL_ELIMINATION} engine, each received encoding symbol is eliminated by the
+     * thread that puts its encoding packet, and a failed decoding operation keeps its elimination work for the next
+     * attempt.
+     * <p>
+     * For information on the symbol overhead value, refer to the section on
+     * <a href="decoder/SourceBlockDecoder.html#symbol-overhead"><em>Symbol overhead</em></a> in the
+     * {@link SourceBlockDecoder} class header.
+     * <p>
+     * Note that the maximum supported data length is {@link Integer#MAX_VALUE}.
+     * 
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbolOverhead
+     *            Symbol overhead (must be non-negative)
+     * @param engine
+     *            The algorithm used to decode source blocks
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} or {@code engine} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || symbolOverhead < 0}
+     */
+    public static ArrayDataDecoder newDecoder(FECParameters fecParams, int symbolOverhead, DecodingEngine engine) {
+
+        // exceptions are checked inside the invoked method
+        return ArrayDataDecoder.newDecoder(fecParams, symbolOverhead, engine, null, null);
+    }
+
+    /**
+     * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
+     * provided FEC parameters and symbol overhead, and that bounds the memory used by received repair symbols. All
+     * source block decoders will initially be configured with the provided symbol overhead value.
+     * <p>
+     * The received repair symbols of every source block that is not yet decoded are stored in chunks, whose total size
+     * is accounted against the provided memory budget. When the budget is exceeded, the full chunks of the source block
+     * receiving symbols are spilled into a temporary file, created in the provided directory when first needed, and
+     * read back when the source block is decoded. Once a source block is decoded, its repair symbols are released, both
+     * from memory and from the file, and the file is closed and deleted once no source block has spilled symbols left
+     * (in particular, once all source blocks are decoded). Similarly to the {@code maxDBMem} argument of
+     * {@link FECParameters#deriveParameters(long, int, long)}, which bounds the memory needed to decode each source
+     * block, this budget bounds the memory taken by the symbols waiting to be decoded across all source blocks (each
+     * source block may still keep a partially filled chunk of at most 64 KiB, or one symbol, in memory).
+     * <p>
+     * For information on the symbol overhead value, refer to the section on
+     * <a href="decoder/SourceBlockDecoder.html#symbol-overhead"><em>Symbol overhead</em></a> in the
+     * {@link SourceBlockDecoder} class header.
+     * <p>
+     * Note that the maximum supported data length is {@link Integer#MAX_VALUE}.
+     * 
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbolOverhead
+     *            Symbol overhead (must be non-negative)
+     * @param memoryBudget
+     *            The maximum number of bytes of repair symbols kept in memory (must be non-negative)
+     * @param spillDirectory
+     *            The directory where repair symbols are spilled, or {@code null} for the default temporary-file
+     *            directory
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} is {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || symbolOverhead < 0 || memoryBudget < 0}
+     */
+    public static ArrayDataDecoder newDecoder(
+        FECParameters fecParams,
+        int symbolOverhead,
+        long memoryBudget,
+        Path spillDirectory)
+    {
+
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("negative memory budget");
+        }
+        // other exceptions are checked inside the invoked method
+        return ArrayDataDecoder.newDecoder(fecParams, symbolOverhead, DecodingEngine.PERMANENT_INACTIVATION, null, null,
+            new RepairSymbolBudget(memoryBudget, spillDirectory));
+    }
+
+    /**
+     * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
+     * provided FEC parameters and symbol overhead, and that runs the symbol operations completing the decoding of each
+     * source block in parallel in the provided pool. All source block decoders will initially be configured with the
+     * provided symbol overhead value.
+     * <p>
+     * Once the system of linear equations of a source block is solved, the symbol operations of its last decoding
+     * phases are computed in a single pass over each symbol. With this decoder, the symbols are split into disjoint
+     * slices of bytes, which are computed in parallel in the provided pool; this mostly benefits the decoding of large
+     * source blocks with large symbols. The pool is only used by the returned decoder, so decoders of different data
+     * objects may use different pools, or none at all.
+     * <p>
+     * For information on the symbol overhead value, refer to the section on
+     * <a href="decoder/SourceBlockDecoder.html#symbol-overhead"><em>Symbol overhead</em></a> in the
+     * {@link SourceBlockDecoder} class header.
+     * <p>
+     * Note that the maximum supported data length is {@link Integer#MAX_VALUE}.
+     * 
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbolOverhead
+     *            Symbol overhead (must be non-negative)
+     * @param symbolOperationsPool
+     *            A pool where symbol operations are run in parallel
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} or {@code symbolOperationsPool} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || symbolOverhead < 0}
+     */
+    public static ArrayDataDecoder newDecoder(
+        FECParameters fecParams,
+        int symbolOverhead,
+        ForkJoinPool symbolOperationsPool)
+    {
+
+        // exceptions are checked inside the invoked method
+        return ArrayDataDecoder.newDecoder(fecParams, symbolOverhead, DecodingEngine.PERMANENT_INACTIVATION, null, null,
+            null, Objects.requireNonNull(symbolOperationsPool), 0);
+    }
+
+    /**
+     * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
+     * provided FEC parameters and symbol overhead, and that runs the symbol operations completing the decoding of each
+     * source block over stripes of bytes of the symbols bounded by the provided working set size, optionally in
+     * parallel in the provided pool. All source block decoders will initially be configured with the provided symbol
+     * overhead value.
+     * <p>
+     * Once the system of linear equations of a source block is solved, the symbol operations of its last decoding
+     * phases are computed in a single pass over each symbol. With this decoder, the symbols are instead split into
+     * stripes of bytes that are operated on one at a time, such that the stripes of all symbols of a source block fit
+     * in the given size. Setting it to about the size of a CPU cache keeps the symbols in that cache, which may benefit
+     * the decoding of large source blocks with large symbols. Stripes are never smaller than 64 bytes, and very small
+     * stripes make symbol operations slower. If a pool is provided, disjoint slices of the symbols are also computed in
+     * parallel in the pool, as in {@link #newDecoder(FECParameters, int, ForkJoinPool)}.
+     * <p>
+     * For information on the symbol overhead value, refer to the section on
+     * <a href="decoder/SourceBlockDecoder.html#symbol-overhead"><em>Symbol overhead</em></a> in the
+     * {@link SourceBlockDecoder} class header.
+     * <p>
+     * Note that the maximum supported data length is {@link Integer#MAX_VALUE}.
+     * 
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbolOverhead
+     *            Symbol overhead (must be non-negative)
+     * @param symbolOperationsPool
+     *            A pool where symbol operations are run in parallel, or {@code null} if they are to be run by the
+     *            decoding thread
+     * @param symbolWorkingSetSize
+     *            The maximum number of bytes of all symbols operated on at a time, or 0 if symbol operations are to be
+     *            run over whole symbols
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} is {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || symbolOverhead < 0 ||
+     *                symbolWorkingSetSize < 0}
+     */
+    public static ArrayDataDecoder newDecoder(
+        FECParameters fecParams,
+        int symbolOverhead,
+        ForkJoinPool symbolOperationsPool,
+        int symbolWorkingSetSize)
+    {
+
+        // exceptions are checked inside the invoked method
+        return ArrayDataDecoder.newDecoder(fecParams, symbolOverhead, DecodingEngine.PERMANENT_INACTIVATION, null, null,
+            null, symbolOperationsPool, symbolWorkingSetSize);
+    }
+
+    /**
+     * Returns a {@link DataDecoder} object that decodes source data into a file, configured according to the provided
+     * FEC parameters and symbol overhead. The source data begins at the start of the file, which is created if it does
+     * not exist. All source block decoders will initially be configured with the provided symbol overhead value.
+     * <p>
+     * Each source block is mapped into memory, and the file is closed before this method returns (the mappings remain
+     * valid). Received and recovered source symbols are written directly into the file, and the mapping of each source
+     * block is forced to the file and released once the source block is decoded. Data lengths up to
+     * {@link ParameterChecker#maxDataLength()} are supported.
+     * <p>
+     * For information on the symbol overhead value, refer to the section on
+     * <a href="decoder/SourceBlockDecoder.html#symbol-overhead"><em>Symbol overhead</em></a> in the
+     * {@link SourceBlockDecoder} class header.
+     * 
+     * @param file
+     *            The path of the file where the source data is to be decoded
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbolOverhead
+     *            Symbol overhead (must be non-negative)
+     * @return a data decoder object that decodes source data into a file
+     * @throws IOException
+     *             If an I/O error occurs while opening or mapping the file
+     * @exception NullPointerException
+     *                If {@code file} or {@code fecParams} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code symbolOverhead < 0}
+     */
+    public static FileDataDecoder newDecoder(Path file, FECParameters fecParams, int symbolOverhead)
+        throws IOException
+    {
+
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            return newDecoder(channel, 0, fecParams, symbolOverhead);
+        }
+    }
+
+    /**
+     * Returns a {@link DataDecoder} object that decodes source data into a region of a file, configured according to
+     * the provided FEC parameters and symbol overhead. All source block decoders will initially be configured with the
+     * provided symbol overhead value.
+     * <p>
+     * Each source block is mapped into memory (the file grows if needed), and the channel may be closed after this
+     * method returns (the mappings remain valid). Received and recovered source symbols are written directly into the
+     * file, and the mapping of each source block is forced to the file and released once the source block is decoded.
+     * Data lengths up to {@link ParameterChecker#maxDataLength()} are supported.
+     * <p>
+     * For information on the symbol overhead value, refer to the section on
+     * <a href="decoder/SourceBlockDecoder.html#symbol-overhead"><em>Symbol overhead</em></a> in the
+     * {@link SourceBlockDecoder} class header.
+     * 
+     * @param channel
+     *            A channel of the file where the source data is to be decoded (must be open for reading and writing)
+     * @param position
+     *            The position in the file where the source data begins
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbolOverhead
+     *            Symbol overhead (must be non-negative)
+     * @return a data decoder object that decodes source data into a file
+     * @throws IOException
+     *             If an I/O error occurs while mapping the file
+     * @exception NullPointerException
+     *                If {@code channel} or {@code fecParams} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code position < 0 || symbolOverhead < 0}
+     */
+    public static FileDataDecoder newDecoder(
+        FileChannel channel,
+        long position,
+        FECParameters fecParams,
+        int symbolOverhead) throws IOException
+    {
+
+        // exceptions are checked inside the invoked method
+        return FileDataDecoder.newDecoder(channel, position, fecParams, symbolOverhead,
+            DecodingEngine.PERMANENT_INACTIVATION, null, null, MappedData.DEFAULT_MAX_SEGMENT_SIZE);
+    }
+
     /**
      * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
      * provided FEC parameters. The symbol overhead value will be set to {@code 0}, and all source block decoders will
@@ -223,6 +676,34 @@ public final class OpenRQ {
         return (int)Math.ceil(temp_var);
     }
 
+    /**
+     * Enables or disables the recording of encoding schedules (disabled by default).
+     * <p>
+     * Encoding a source block requires solving a system of linear equations that only depends on the number of source
+     * symbols in the block. When recording is enabled, the first encoding of a source block with a given number of
+     * source symbols records the schedule of operations used to solve the system, and subsequent encodings of source
+     * blocks with the same number of source symbols replay that schedule instead, which is faster. Recorded schedules
+     * are kept in memory, even after recording is disabled.
+     * 
+     * @param enable
+     *            Whether to enable or disable the recording of encoding schedules
+     */
+    public static void setEncodingScheduleRecording(boolean enable) {
+
+        ISDManager.setRecordingEnabled(enable);
+    }
+
+    /**
+     * Returns {@code true} if the recording of encoding schedules is enabled.
+     * 
+     * @return {@code true} if the recording of encoding schedules is enabled
+     * @see #setEncodingScheduleRecording(boolean)
+     */
+    public static boolean isEncodingScheduleRecordingEnabled() {
+
+        return ISDManager.isRecordingEnabled();
+    }
+
     private OpenRQ() {
 
         // not instantiable
@@ -0,0 +1,611 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.Arrays;
+
+import net.fec.openrq.util.linearalgebra.io.ByteVectorIterator;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.math.OctetOps;
+
+
+/**
+ * Keeps track of the number of non-zeros in submatrix V of each row of the constraint matrix, during the first phase
+ * of the PI decoding (see section 5.4.2.2 of RFC 6330), in order to choose the pivot rows.
+ * <p>
+ * Rows are identified by their <em>original</em> index in the constraint matrix (the same index used for the vector D),
+ * and columns are identified by their original index as well (the same index used for the vector c).
+ * <p>
+ * Rows that were not chosen yet are kept in bucket queues indexed by their number of non-zeros in V. Inside each
+ * bucket, rows are ordered by their original degree, so that a row with the minimum number of non-zeros and the
+ * minimum original degree can be chosen without scanning all rows.
+ * <p>
+ * The non-zero counts are updated incrementally: during the first phase, the entries of a row inside V never change
+ * while their columns remain in V (the chosen row only has non-zeros in the first column of V and in the columns
+ * that move into U), so the count of a row only decreases when a column where the row has a non-zero leaves V.
+ * <p>
+ * The rows with exactly two non-zeros in V (excluding HDPC rows) are also kept as the edges of a graph whose nodes
+ * are the columns of V. Its connected components are tracked with a union-find structure over the columns, which is
+ * updated incrementally as edges are added. Union-find does not support removals, so when an edge is removed only
+ * the component it belonged to is marked, and rebuilt from its own edges before the next query; the other components
+ * remain valid. The components with at least one edge are kept in a heap ordered by size, whose stale entries are
+ * skipped lazily, so that an edge in a maximum size component is found without scanning every edge.
+ */
+final class PivotSelector {
+
+    private final int S;
+    private final int H;
+
+    // per row (original index)
+    private final int[] nonZeros;
+    private final int[] rank; // the position of the row when sorted by original degree
+    private final boolean[] chosen;
+
+    // per rank
+    private final int[] rowOfRank;
+
+    // rows (original indices) with a non-zero in each column (original index) that is initially inside V
+    private final int[] colStart;
+    private final int[] colRows;
+
+    // columns (original indices) initially inside V with a non-zero in each row (original index)
+    private final int[] rowStart;
+    private final int[] rowCols;
+
+    // per column (original index)
+    private final boolean[] inV;
+
+    // per number of non-zeros, a binary heap of ranks (may contain stale entries, which are skipped lazily)
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+    private int minBucket;
+
+    private boolean hdpcQueued;
+
+    // the graph of rows with exactly two non-zeros in V
+    private final int[] edgeNodes; // two columns per row (original indices)
+
+    // union-find over the columns, with the members of each component linked in a circular list
+    private final int[] parent;
+    private final int[] componentSize;
+    private final int[] componentEdge; // per root, a row that is an edge in the component
+    private final int[] nextMember;
+
+    // columns whose components lost an edge, and must be rebuilt before the next query
+    private int[] dirtyNodes;
+    private int numDirtyNodes;
+    private final int[] rebuildPass; // per column, the last pass in which its component was rebuilt
+    private int currentPass;
+    private final int[] members; // scratch space for the members of a rebuilt component
+
+    // a binary max-heap of components with at least one edge, keyed by (size << 32 | root); may contain stale entries
+    private long[] components;
+    private int numComponents;
+
+
+    /**
+     * Creates a new pivot selector for the given constraint matrix, before the first step of the first phase.
+     * 
+     * @param A
+     *            The constraint matrix
+     * @param S
+     *            The number of LDPC rows
+     * @param H
+     *            The number of HDPC rows
+     * @param L
+     *            The number of columns of the constraint matrix
+     * @param P
+     *            The number of PI symbols (the initial number of columns of U)
+     * @param M
+     *            The number of rows of the constraint matrix
+     */
+    PivotSelector(ByteMatrix A, int S, int H, int L, int P, int M) {
+
+        this.S = S;
+        this.H = H;
+
+        final int numVCols = L - P;
+
+        this.nonZeros = new int[M];
+        this.chosen = new boolean[M];
+        final int[] originalDegree = new int[M];
+        final int[] colCounts = new int[numVCols + 1];
+
+        for (int row = 0; row < M; row++) {
+            final ByteVectorIterator it = A.nonZeroRowIterator(row, 0, numVCols);
+            while (it.hasNext()) {
+                it.next();
+                originalDegree[row] += OctetOps.UNSIGN(it.get());
+                colCounts[it.index() + 1]++;
+                nonZeros[row]++;
+            }
+        }
+
+        // column incidence lists, in compressed form
+        this.colStart = colCounts;
+        for (int col = 0; col < numVCols; col++) {
+            colStart[col + 1] += colStart[col];
+        }
+        this.colRows = new int[colStart[numVCols]];
+        final int[] colFill = Arrays.copyOf(colStart, numVCols);
+        for (int row = 0; row < M; row++) {
+            final ByteVectorIterator it = A.nonZeroRowIterator(row, 0, numVCols);
+            while (it.hasNext()) {
+                it.next();
+                colRows[colFill[it.index()]++] = row;
+            }
+        }
+
+        // row incidence lists, in compressed form
+        this.rowStart = new int[M + 1];
+        for (int row = 0; row < M; row++) {
+            rowStart[row + 1] = rowStart[row] + nonZeros[row];
+        }
+        this.rowCols = new int[rowStart[M]];
+        final int[] rowFill = Arrays.copyOf(rowStart, M);
+        for (int col = 0; col < numVCols; col++) {
+            for (int k = colStart[col]; k < colStart[col + 1]; k++) {
+                rowCols[rowFill[colRows[k]]++] = col;
+            }
+        }
+        this.inV = new boolean[numVCols];
+        Arrays.fill(inV, true);
+
+        // rank the rows by original degree (ties are broken by the row index)
+        final long[] keys = new long[M];
+        for (int row = 0; row < M; row++) {
+            keys[row] = ((long)originalDegree[row] << 32) | row;
+        }
+        Arrays.sort(keys);
+        this.rank = new int[M];
+        this.rowOfRank = new int[M];
+        for (int k = 0; k < M; k++) {
+            final int row = (int)keys[k];
+            rank[row] = k;
+            rowOfRank[k] = row;
+        }
+
+        this.buckets = new int[L + 1][];
+        this.bucketSizes = new int[L + 1];
+        this.minBucket = L + 1;
+
+        // HDPC rows are only queued after the other rows are chosen
+        this.hdpcQueued = false;
+        for (int k = 0; k < M; k++) {
+            final int row = rowOfRank[k];
+            if (!isHDPC(row)) {
+                enqueue(row);
+            }
+        }
+
+        this.edgeNodes = new int[2 * M];
+
+        this.parent = new int[numVCols];
+        this.componentSize = new int[numVCols];
+        this.componentEdge = new int[numVCols];
+        this.nextMember = new int[numVCols];
+        for (int col = 0; col < numVCols; col++) {
+            resetNode(col);
+        }
+
+        this.dirtyNodes = new int[16];
+        this.numDirtyNodes = 0;
+        this.rebuildPass = new int[numVCols];
+        this.currentPass = 0;
+        this.members = new int[numVCols];
+
+        this.components = new long[16];
+        this.numComponents = 0;
+
+        for (int row = 0; row < M; row++) {
+            if (isEdge(row)) {
+                addEdge(row);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the given row is a HDPC row.
+     * 
+     * @param row
+     *            The original index of a row
+     * @return {@code true} if the given row is a HDPC row
+     */
+    boolean isHDPC(int row) {
+
+        return row >= S && row < S + H;
+    }
+
+    /**
+     * Returns the number of non-zeros in V of the given row.
+     * 
+     * @param row
+     *            The original index of a row
+     * @return the number of non-zeros in V of the given row
+     */
+    int nonZeros(int row) {
+
+        return nonZeros[row];
+    }
+
+    /**
+     * Makes the HDPC rows available to be chosen by {@link #minimumRow()}.
+     */
+    void queueHDPCRows() {
+
+        if (!hdpcQueued) {
+            hdpcQueued = true;
+            for (int row = S; row < S + H; row++) {
+                if (!chosen[row]) {
+                    enqueue(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the row, among the ones that were not chosen yet, with the minimum (positive) number of non-zeros in V
+     * and, among those, with the minimum original degree. HDPC rows are not considered before
+     * {@link #queueHDPCRows()} is called.
+     * 
+     * @return the original index of the row with the minimum number of non-zeros in V, or -1 if every row that may be
+     *         chosen has no non-zeros in V
+     */
+    int minimumRow() {
+
+        for (int b = Math.max(minBucket, 1); b < buckets.length; b++) {
+            while (bucketSizes[b] > 0) {
+                final int row = rowOfRank[buckets[b][0]];
+                if (!chosen[row] && nonZeros[row] == b) {
+                    minBucket = b;
+                    return row;
+                }
+                else { // stale entry
+                    pop(b);
+                }
+            }
+        }
+
+        minBucket = buckets.length;
+        return -1;
+    }
+
+    /**
+     * Marks the given row as chosen.
+     * 
+     * @param row
+     *            The original index of a row
+     */
+    void choose(int row) {
+
+        if (isEdge(row)) {
+            removeEdge(row);
+        }
+        chosen[row] = true;
+    }
+
+    /**
+     * Returns a row with exactly two non-zeros in V that is an edge in a maximum size component of the graph defined
+     * by all such rows (HDPC rows are not considered).
+     * 
+     * @return the original index of a row that is an edge in a maximum size component, or -1 if there are no rows
+     *         with exactly two non-zeros in V
+     */
+    int maximumComponentEdge() {
+
+        if (numDirtyNodes > 0) {
+            rebuildDirtyComponents();
+        }
+
+        while (numComponents > 0) {
+            final long top = components[0];
+            final int root = (int)top;
+            final int size = (int)(top >>> 32);
+            if (parent[root] == root && componentSize[root] == size) {
+                return componentEdge[root];
+            }
+            else { // stale entry
+                popComponent();
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Updates the number of non-zeros in V of the rows that were not chosen yet, after a column leaves V.
+     * 
+     * @param col
+     *            The original index of a column
+     */
+    void columnLeftV(int col) {
+
+        if (col + 1 < colStart.length) {
+            inV[col] = false;
+            for (int k = colStart[col]; k < colStart[col + 1]; k++) {
+                final int row = colRows[k];
+                if (!chosen[row]) {
+                    if (isEdge(row)) {
+                        removeEdge(row);
+                    }
+                    nonZeros[row]--;
+                    if (hdpcQueued || !isHDPC(row)) {
+                        enqueue(row);
+                    }
+
+                    if (isEdge(row)) {
+                        addEdge(row);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies into the given array the rows that were not chosen yet and have a non-zero in the given column, which
+     * must still be inside V.
+     * 
+     * @param col
+     *            The original index of a column
+     * @param dst
+     *            An array where the original indices of the rows are copied to (with enough room for every row)
+     * @return the number of copied rows
+     */
+    int availableRowsWithNonZero(int col, int[] dst) {
+
+        int n = 0;
+        if (col + 1 < colStart.length) {
+            for (int k = colStart[col]; k < colStart[col + 1]; k++) {
+                final int row = colRows[k];
+                if (!chosen[row]) {
+                    dst[n++] = row;
+                }
+            }
+        }
+        return n;
+    }
+
+    private boolean isEdge(int row) {
+
+        return !chosen[row] && nonZeros[row] == 2 && !isHDPC(row);
+    }
+
+    private void addEdge(int row) {
+
+        // find the two columns of the row that are still inside V
+        int n = 0;
+        for (int k = rowStart[row]; n < 2; k++) {
+            if (inV[rowCols[k]]) {
+                edgeNodes[2 * row + n++] = rowCols[k];
+            }
+        }
+
+        pushComponent(union(row));
+    }
+
+    /*
+     * The edge must be removed while its two columns are still inside V.
+     */
+    private void removeEdge(int row) {
+
+        if (numDirtyNodes == dirtyNodes.length) {
+            dirtyNodes = Arrays.copyOf(dirtyNodes, 2 * dirtyNodes.length);
+        }
+        dirtyNodes[numDirtyNodes++] = edgeNodes[2 * row];
+    }
+
+    /*
+     * Union-find does not support removals, so each component that lost an edge is split back into single nodes and
+     * recomputed from the remaining edges between its members (every edge joins two nodes of the same component).
+     */
+    private void rebuildDirtyComponents() {
+
+        currentPass++;
+        for (int k = 0; k < numDirtyNodes; k++) {
+            final int node = dirtyNodes[k];
+            if (rebuildPass[node] == currentPass) {
+                continue; // its component was already rebuilt
+            }
+
+            // collect the members of the component, and split them into single nodes
+            final int root = find(node);
+            int n = 0;
+            int member = root;
+            do {
+                members[n++] = member;
+                member = nextMember[member];
+            }
+            while (member != root);
+
+            for (int m = 0; m < n; m++) {
+                resetNode(members[m]);
+                rebuildPass[members[m]] = currentPass;
+            }
+
+            // join the members again with the edges that remain, each one visited from its first column
+            for (int m = 0; m < n; m++) {
+                final int col = members[m];
+                if (inV[col]) {
+                    for (int r = colStart[col]; r < colStart[col + 1]; r++) {
+                        final int row = colRows[r];
+                        if (isEdge(row) && edgeNodes[2 * row] == col) {
+                            union(row);
+                        }
+                    }
+                }
+            }
+
+            for (int m = 0; m < n; m++) {
+                if (parent[members[m]] == members[m] && componentSize[members[m]] > 1) {
+                    pushComponent(members[m]);
+                }
+            }
+        }
+        numDirtyNodes = 0;
+    }
+
+    private void resetNode(int node) {
+
+        parent[node] = node;
+        componentSize[node] = 1;
+        nextMember[node] = node;
+    }
+
+    private int find(int node) {
+
+        int x = node;
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]]; // path halving
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /*
+     * Returns the root of the component of the edge.
+     */
+    private int union(int edgeRow) {
+
+        int root1 = find(edgeNodes[2 * edgeRow]);
+        int root2 = find(edgeNodes[2 * edgeRow + 1]);
+        if (root1 != root2) {
+            // union by size
+            if (componentSize[root1] < componentSize[root2]) {
+                final int tmp = root1;
+                root1 = root2;
+                root2 = tmp;
+            }
+            parent[root2] = root1;
+            componentSize[root1] += componentSize[root2];
+
+            // splice the circular lists of members
+            final int next1 = nextMember[root1];
+            nextMember[root1] = nextMember[root2];
+            nextMember[root2] = next1;
+        }
+
+        componentEdge[root1] = edgeRow;
+        return root1;
+    }
+
+    private void pushComponent(int root) {
+
+        final long key = ((long)componentSize[root] << 32) | root;
+
+        if (numComponents == components.length) {
+            components = Arrays.copyOf(components, 2 * components.length);
+        }
+
+        // sift up
+        int pos = numComponents++;
+        while (pos > 0) {
+            final int parent = (pos - 1) >>> 1;
+            if (components[parent] >= key) {
+                break;
+            }
+            components[pos] = components[parent];
+            pos = parent;
+        }
+        components[pos] = key;
+    }
+
+    private void popComponent() {
+
+        final int size = --numComponents;
+        final long key = components[size];
+
+        // sift down
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && components[child + 1] > components[child]) {
+                child++;
+            }
+            if (key >= components[child]) {
+                break;
+            }
+            components[pos] = components[child];
+            pos = child;
+        }
+        if (size > 0) {
+            components[pos] = key;
+        }
+    }
+
+    private void enqueue(int row) {
+
+        final int b = nonZeros[row];
+        if (b == 0) {
+            return; // rows without non-zeros are never chosen
+        }
+
+        int[] heap = buckets[b];
+        if (heap == null) {
+            heap = buckets[b] = new int[4];
+        }
+        else if (bucketSizes[b] == heap.length) {
+            heap = buckets[b] = Arrays.copyOf(heap, 2 * heap.length);
+        }
+
+        // sift up
+        final int key = rank[row];
+        int pos = bucketSizes[b]++;
+        while (pos > 0) {
+            final int parent = (pos - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = key;
+
+        if (b < minBucket) {
+            minBucket = b;
+        }
+    }
+
+    private void pop(int b) {
+
+        final int[] heap = buckets[b];
+        final int size = --bucketSizes[b];
+        final int key = heap[size];
+
+        // sift down
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (key <= heap[child]) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        if (size > 0) {
+            heap[pos] = key;
+        }
+    }
+}
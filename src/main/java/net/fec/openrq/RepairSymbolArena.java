@@ -0,0 +1,282 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * A compact store of the repair symbols received by a source block decoder.
+ * <p>
+ * Symbols are kept in slots numbered in receiving order. The data of the symbols is stored in large chunks of
+ * consecutive slots, and their encoding symbol identifiers are stored in an array indexed by slot (plus a hash table
+ * of slots indexed by ESI), so that no objects are created per symbol.
+ * <p>
+ * If a {@link RepairSymbolBudget} is provided, the memory of the chunks is accounted for in it, and full chunks can be
+ * spilled into its file when the budget is exceeded. Spilled chunks are always the first ones, in slot order.
+ * <p>
+ * Instances of this class are not thread safe, except for copying the data of new symbols with
+ * {@link #copyInto(int, ByteBuffer)}, which may be done concurrently with other uses of this arena.
+ */
+final class RepairSymbolArena {
+
+    // approximate size of each chunk of symbols data
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int NO_SLOT = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+
+    private final int T;
+    private final int chunkShift; // the number of slots in a chunk is a power of two
+    private final int chunkMask;
+
+    private final RepairSymbolBudget budget; // may be null
+
+    private volatile byte[][] chunks; // spilled chunks are null (volatile for the concurrent copies of symbols data)
+    private long[] spillPositions; // the position in the spill file of each spilled chunk
+    private int numSpilledChunks;
+    private int[] esis; // the ESI in each slot
+    private int size;
+
+    private int[] table; // the slot of each ESI (open addressing with linear probing)
+
+
+    /**
+     * @param T
+     *            The size of the symbols
+     */
+    RepairSymbolArena(int T) {
+
+        this(T, null);
+    }
+
+    /**
+     * @param T
+     *            The size of the symbols
+     * @param budget
+     *            A memory budget shared with other arenas, or {@code null} if the memory of this arena is unbounded
+     */
+    RepairSymbolArena(int T, RepairSymbolBudget budget) {
+
+        this.T = T;
+        final int slotsPerChunk = Integer.highestOneBit(Math.max(1, CHUNK_SIZE / Math.max(1, T)));
+        this.chunkShift = Integer.numberOfTrailingZeros(slotsPerChunk);
+        this.chunkMask = slotsPerChunk - 1;
+        this.budget = budget;
+
+        clear();
+    }
+
+    /**
+     * Returns the number of stored symbols.
+     * 
+     * @return the number of stored symbols
+     */
+    int size() {
+
+        return size;
+    }
+
+    /**
+     * Returns the encoding symbol identifier of the symbol in the given slot.
+     * 
+     * @param slot
+     *            A slot index in {@code [0, size())}
+     * @return the encoding symbol identifier of the symbol in the given slot
+     */
+    int esi(int slot) {
+
+        return esis[slot];
+    }
+
+    /**
+     * Returns {@code true} if a symbol with the given encoding symbol identifier is stored.
+     * 
+     * @param esi
+     *            An encoding symbol identifier
+     * @return {@code true} if a symbol with the given encoding symbol identifier is stored
+     */
+    boolean contains(int esi) {
+
+        return slotOf(esi) != NO_SLOT;
+    }
+
+    /**
+     * Returns the slot of the symbol with the given encoding symbol identifier, or -1 if there is no such symbol.
+     * 
+     * @param esi
+     *            An encoding symbol identifier
+     * @return the slot of the symbol with the given encoding symbol identifier, or -1 if there is no such symbol
+     */
+    int slotOf(int esi) {
+
+        final int mask = table.length - 1;
+        for (int h = hash(esi) & mask;; h = (h + 1) & mask) {
+            final int slot = table[h];
+            if (slot == NO_SLOT || esis[slot] == esi) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Adds a symbol with a new encoding symbol identifier, in the next slot. The data of the symbol must be copied
+     * with {@link #copyInto(int, ByteBuffer)} before being read.
+     * 
+     * @param esi
+     *            The encoding symbol identifier of a symbol that is not stored yet
+     * @return the slot of the new symbol
+     */
+    int add(int esi) {
+
+        final int slot = size;
+        if (slot == esis.length) {
+            esis = Arrays.copyOf(esis, 2 * slot);
+        }
+        if ((slot >>> chunkShift) == chunks.length) {
+            chunks = Arrays.copyOf(chunks, 2 * chunks.length);
+        }
+        if ((slot & chunkMask) == 0) {
+            chunks[slot >>> chunkShift] = new byte[chunkBytes()];
+            if (budget != null) budget.allocate(chunkBytes());
+        }
+
+        esis[slot] = esi;
+        size++;
+        if (2 * size > table.length) {
+            rehash(2 * table.length);
+        }
+        else {
+            insert(table, slot);
+        }
+
+        return slot;
+    }
+
+    /**
+     * Copies the data of a new symbol from a buffer into its slot. This may be done concurrently with other uses of
+     * this arena, as long as the slot is not spilled or cleared meanwhile.
+     * 
+     * @param slot
+     *            The slot returned when the symbol was added
+     * @param src
+     *            A buffer with at least {@code T} bytes remaining, whose position is advanced by {@code T}
+     */
+    void copyInto(int slot, ByteBuffer src) {
+
+        src.get(chunks[slot >>> chunkShift], (slot & chunkMask) * T, T);
+    }
+
+    /**
+     * Copies the data of the symbol in the given slot into an array.
+     * 
+     * @param slot
+     *            A slot index in {@code [0, size())}
+     * @param dst
+     *            The array where the data is copied to
+     * @param off
+     *            The index in the array of the first copied byte
+     */
+    void getData(int slot, byte[] dst, int off) {
+
+        final int chunk = slot >>> chunkShift;
+        if (chunk < numSpilledChunks) {
+            budget.read(spillPositions[chunk] + (long)(slot & chunkMask) * T, dst, off, T);
+        }
+        else {
+            System.arraycopy(chunks[chunk], (slot & chunkMask) * T, dst, off, T);
+        }
+    }
+
+    /**
+     * If the memory budget is exceeded, writes every full chunk into the spill file and releases its memory. Must not
+     * be called while data is being copied into the slots.
+     * 
+     * @exception net.fec.openrq.util.io.UncheckedIOException
+     *                If an I/O error occurs while writing the spill file
+     */
+    void spillIfOverBudget() {
+
+        if (budget != null && budget.isExceeded()) {
+            final int numFullChunks = size >>> chunkShift;
+            if (numFullChunks > spillPositions.length) {
+                spillPositions = Arrays.copyOf(spillPositions, Math.max(numFullChunks, 2 * spillPositions.length));
+            }
+            for (int c = numSpilledChunks; c < numFullChunks; c++) {
+                spillPositions[c] = budget.spill(chunks[c]);
+                chunks[c] = null; // free memory
+                numSpilledChunks = c + 1;
+            }
+        }
+    }
+
+    /**
+     * Removes every symbol, and releases the memory (and the spill file regions) used by them.
+     */
+    void clear() {
+
+        if (budget != null && chunks != null) {
+            for (int c = 0; c < numSpilledChunks; c++) {
+                budget.release(spillPositions[c]);
+            }
+            for (int c = numSpilledChunks; c < chunks.length && chunks[c] != null; c++) {
+                budget.free(chunkBytes());
+            }
+        }
+
+        this.chunks = new byte[1][];
+        this.spillPositions = new long[0];
+        this.numSpilledChunks = 0;
+        this.esis = new int[INITIAL_CAPACITY];
+        this.size = 0;
+        this.table = new int[2 * INITIAL_CAPACITY];
+        Arrays.fill(table, NO_SLOT);
+    }
+
+    private int chunkBytes() {
+
+        return (chunkMask + 1) * T;
+    }
+
+    private void rehash(int tableSize) {
+
+        final int[] newTable = new int[tableSize];
+        Arrays.fill(newTable, NO_SLOT);
+        for (int slot = 0; slot < size; slot++) {
+            insert(newTable, slot);
+        }
+        table = newTable;
+    }
+
+    private void insert(int[] tab, int slot) {
+
+        final int mask = tab.length - 1;
+        int h = hash(esis[slot]) & mask;
+        while (tab[h] != NO_SLOT) {
+            h = (h + 1) & mask;
+        }
+        tab[h] = slot;
+    }
+
+    private static int hash(int esi) {
+
+        final int h = esi * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.fec.openrq.util.io.UncheckedIOException;
+
+
+/**
+ * A memory budget for the repair symbols stored by the source block decoders of a data decoder, with a spill file for
+ * the chunks of symbols that do not fit in it.
+ * <p>
+ * The memory used by the in-memory chunks of every {@link RepairSymbolArena} sharing this budget is accounted for.
+ * When the budget is exceeded, arenas write their full chunks into the spill file and release them. All spilled chunks
+ * have the same size, so the file regions of released chunks are simply reused by later ones.
+ * <p>
+ * The spill file is created when first needed, and closed once every spilled chunk is released (which happens when all
+ * source blocks with spilled chunks are decoded). It is deleted when closed or, on some platforms, as soon as it is
+ * opened. A later spill creates a new file. Instances of this class are thread safe.
+ */
+final class RepairSymbolBudget {
+
+    private final long maxBytes;
+    private final Path spillDirectory; // may be null
+
+    // guarded by the lock
+    private long usedBytes;
+    private FileChannel spillFile; // created on demand
+    private long spillFileEnd;
+    private long[] freePositions; // released regions of the spill file
+    private int numFreePositions;
+    private int numSpilledChunks; // the chunks in the spill file that are not yet released
+    private final Lock lock;
+
+
+    /**
+     * @param maxBytes
+     *            The maximum number of bytes of in-memory repair symbols
+     * @param spillDirectory
+     *            The directory where the spill file is created, or {@code null} for the default temporary-file
+     *            directory
+     */
+    RepairSymbolBudget(long maxBytes, Path spillDirectory) {
+
+        this.maxBytes = maxBytes;
+        this.spillDirectory = spillDirectory;
+
+        this.usedBytes = 0;
+        this.spillFile = null;
+        this.spillFileEnd = 0;
+        this.freePositions = new long[16];
+        this.numFreePositions = 0;
+        this.numSpilledChunks = 0;
+        this.lock = new ReentrantLock(false); // non-fair lock
+    }
+
+    /**
+     * Accounts for a chunk of symbols allocated in memory.
+     * 
+     * @param numBytes
+     *            The size of the chunk
+     */
+    void allocate(int numBytes) {
+
+        lock.lock();
+        try {
+            usedBytes += numBytes;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Accounts for a chunk of symbols released from memory.
+     * 
+     * @param numBytes
+     *            The size of the chunk
+     */
+    void free(int numBytes) {
+
+        lock.lock();
+        try {
+            usedBytes -= numBytes;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the memory used by the in-memory chunks exceeds this budget.
+     * 
+     * @return {@code true} if the memory used by the in-memory chunks exceeds this budget
+     */
+    boolean isExceeded() {
+
+        lock.lock();
+        try {
+            return usedBytes > maxBytes;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a chunk of symbols into the spill file, and releases its memory from this budget.
+     * 
+     * @param chunk
+     *            A chunk of symbols
+     * @return the position of the chunk in the spill file
+     * @exception UncheckedIOException
+     *                If an I/O error occurs while creating or writing the spill file
+     */
+    long spill(byte[] chunk) {
+
+        final FileChannel file;
+        final long position;
+        lock.lock();
+        try {
+            file = spillFile();
+            if (numFreePositions > 0) {
+                position = freePositions[--numFreePositions];
+            }
+            else {
+                position = spillFileEnd;
+                spillFileEnd += chunk.length;
+            }
+            numSpilledChunks++;
+            usedBytes -= chunk.length;
+        }
+        finally {
+            lock.unlock();
+        }
+
+        // positional writes into distinct regions may run concurrently
+        try {
+            final ByteBuffer buf = ByteBuffer.wrap(chunk);
+            while (buf.hasRemaining()) {
+                file.write(buf, position + buf.position());
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return position;
+    }
+
+    /**
+     * Reads part of a spilled chunk into an array.
+     * 
+     * @param position
+     *            The position in the spill file of the first byte to read
+     * @param dst
+     *            The array where the data is copied to
+     * @param off
+     *            The index in the array of the first copied byte
+     * @param len
+     *            The number of bytes to copy
+     * @exception UncheckedIOException
+     *                If an I/O error occurs while reading the spill file
+     */
+    void read(long position, byte[] dst, int off, int len) {
+
+        final FileChannel file;
+        lock.lock();
+        try {
+            file = spillFile;
+        }
+        finally {
+            lock.unlock();
+        }
+
+        try {
+            final ByteBuffer buf = ByteBuffer.wrap(dst, off, len);
+            while (buf.hasRemaining()) {
+                if (file.read(buf, position + (buf.position() - off)) < 0) {
+                    throw new EOFException("truncated spill file");
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Releases the region of a spilled chunk, so that it can be reused by another chunk. The spill file is closed (and
+     * deleted) when the last spilled chunk is released.
+     * 
+     * @param position
+     *            The position of the chunk in the spill file
+     * @exception UncheckedIOException
+     *                If an I/O error occurs while closing the spill file
+     */
+    void release(long position) {
+
+        lock.lock();
+        try {
+            if (--numSpilledChunks == 0) {
+                // no chunk can be read anymore, and a new file is created by the next spill
+                closeSpillFile();
+            }
+            else {
+                if (numFreePositions == freePositions.length) {
+                    freePositions = Arrays.copyOf(freePositions, 2 * numFreePositions);
+                }
+                freePositions[numFreePositions++] = position;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the spill file is open, which is the case while some spilled chunk is not released.
+     * 
+     * @return {@code true} if the spill file is open
+     */
+    boolean hasSpillFile() {
+
+        lock.lock();
+        try {
+            return spillFile != null;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * ===== Requires the lock! =====
+     */
+    private FileChannel spillFile() {
+
+        if (spillFile == null) {
+            try {
+                final Path path;
+                if (spillDirectory == null) {
+                    path = Files.createTempFile("openrq-", ".spill");
+                }
+                else {
+                    path = Files.createTempFile(spillDirectory, "openrq-", ".spill");
+                }
+                spillFile = FileChannel.open(path,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return spillFile;
+    }
+
+    /*
+     * ===== Requires the lock! =====
+     */
+    private void closeSpillFile() {
+
+        final FileChannel file = spillFile;
+        spillFile = null;
+        spillFileEnd = 0;
+        numFreePositions = 0;
+        try {
+            file.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Generates encoding symbols from the intermediate symbols of a source block, as defined in section 5.3.5.3 of RFC
+ * 6330.
+ * <p>
+ * The parameters that only depend on K' are computed once at construction time, and a single tuple is reused for
+ * every symbol in a range, so that generating a range of symbols allocates nothing per symbol. Instances of this
+ * class are immutable and may be shared by multiple threads.
+ */
+final class RepairSymbolGenerator {
+
+    private final Tuple.Factory tuples;
+
+
+    /**
+     * @param Kprime
+     *            The number of source (and padding) symbols in an extended source block
+     */
+    RepairSymbolGenerator(int Kprime) {
+
+        this.tuples = new Tuple.Factory(Kprime);
+    }
+
+    /**
+     * Writes a range of consecutive encoding symbols into an array. The symbols are written one after the other,
+     * starting at the given offset.
+     * 
+     * @param C
+     *            The intermediate symbols
+     * @param firstISI
+     *            The internal symbol identifier of the first encoding symbol
+     * @param numSymbols
+     *            The number of encoding symbols to write
+     * @param T
+     *            The symbol size
+     * @param dst
+     *            The array where the encoding symbols are written to
+     * @param off
+     *            The index in the array of the first byte of the first encoding symbol
+     */
+    void generate(byte[][] C, long firstISI, int numSymbols, int T, byte[] dst, int off) {
+
+        final Tuple tuple = tuples.newTuple(firstISI);
+        for (int n = 0, pos = off; n < numSymbols; n++, pos += T) {
+            tuples.setTuple(tuple, firstISI + n);
+            LinearSystem.enc(tuples, C, tuple, dst, pos, T);
+        }
+    }
+
+    /**
+     * Writes a range of consecutive encoding symbols into a buffer, advancing its position by
+     * {@code numSymbols * T} bytes. The buffer must not be read-only and must have enough bytes remaining.
+     * 
+     * @param C
+     *            The intermediate symbols
+     * @param firstISI
+     *            The internal symbol identifier of the first encoding symbol
+     * @param numSymbols
+     *            The number of encoding symbols to write
+     * @param T
+     *            The symbol size
+     * @param dst
+     *            The buffer where the encoding symbols are written to
+     */
+    void generate(byte[][] C, long firstISI, int numSymbols, int T, ByteBuffer dst) {
+
+        if (dst.hasArray()) {
+            // write directly into the backing array
+            generate(C, firstISI, numSymbols, T, dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + numSymbols * T);
+        }
+        else {
+            // accumulate each symbol in place, without an intermediate array
+            final Tuple tuple = tuples.newTuple(firstISI);
+            for (long X = firstISI, end = firstISI + numSymbols; X < end; X++) {
+                tuples.setTuple(tuple, X);
+                LinearSystem.enc(tuples, C, tuple, dst, T);
+                dst.position(dst.position() + T);
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.fec.openrq.encoder.DataEncoder;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.util.io.ExtraChannels;
+import net.fec.openrq.util.io.UncheckedIOException;
+
+
+/**
+ * A RaptorQ encoder for a data object read incrementally from a channel.
+ * <p>
+ * Source blocks are read from the channel one at a time, in increasing order of source block number, and only the
+ * most recently read source block is kept by this encoder. Once the encoder of a source block is no longer referenced
+ * by the caller, its memory can be reclaimed, so the memory needed to encode the data object is about the size of a
+ * single source block, regardless of the data length.
+ * <p>
+ * Since the data length is part of the FEC parameters, it must be known before the data is read. The channel must
+ * provide at least {@code fecParameters().dataLength()} bytes; any bytes beyond the source data are not read.
+ */
+public final class StreamDataEncoder implements DataEncoder {
+
+    /**
+     * @param channel
+     *            A channel from which the source data is read
+     * @param fecParams
+     *            FEC parameters that configure the returned data encoder object
+     * @return a data encoder object that reads the source data from a channel
+     * @exception NullPointerException
+     *                If {@code channel} or {@code fecParams} are {@code null}
+     */
+    static StreamDataEncoder newEncoder(ReadableByteChannel channel, FECParameters fecParams) {
+
+        return new StreamDataEncoder(Objects.requireNonNull(channel), Objects.requireNonNull(fecParams));
+    }
+
+
+    private final ReadableByteChannel channel;
+    private final FECParameters fecParams;
+
+    // guarded by the lock
+    private int nextSBN;
+    private long nextOff; // the offset in the data of the next source block
+    private SourceBlockEncoder current; // the most recently read source block, or null if none was read
+    private final Lock lock;
+
+
+    private StreamDataEncoder(ReadableByteChannel channel, FECParameters fecParams) {
+
+        this.channel = channel;
+        this.fecParams = fecParams;
+
+        this.nextSBN = 0;
+        this.nextOff = 0;
+        this.current = null;
+        this.lock = new ReentrantLock(false); // non-fair lock
+    }
+
+    @Override
+    public FECParameters fecParameters() {
+
+        return fecParams;
+    }
+
+    @Override
+    public long dataLength() {
+
+        return fecParams.dataLength();
+    }
+
+    @Override
+    public int symbolSize() {
+
+        return fecParams.symbolSize();
+    }
+
+    @Override
+    public int numberOfSourceBlocks() {
+
+        return fecParams.numberOfSourceBlocks();
+    }
+
+    /**
+     * Returns {@code true} if there are source blocks left to be read from the channel.
+     * 
+     * @return {@code true} if there are source blocks left to be read from the channel
+     */
+    public boolean hasNextSourceBlock() {
+
+        lock.lock();
+        try {
+            return nextSBN < numberOfSourceBlocks();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the next source block from the channel, and returns an encoder object for it. This encoder no longer keeps
+     * the previously read source block.
+     * 
+     * @return an encoder object for the next source block
+     * @throws EOFException
+     *             If the channel reaches end-of-stream before the whole source block is read
+     * @throws IOException
+     *             If an I/O error occurs while reading from the channel (the position of the channel is then unknown,
+     *             so no further source blocks should be read)
+     * @exception NoSuchElementException
+     *                If every source block was already read
+     */
+    public SourceBlockEncoder nextSourceBlock() throws IOException {
+
+        lock.lock();
+        try {
+            if (nextSBN >= numberOfSourceBlocks()) {
+                throw new NoSuchElementException("every source block was already read");
+            }
+            current = null; // the previous source block can be reclaimed while the next one is read
+
+            final int sbn = nextSBN;
+            final int blockLength = (int)Math.min( // a source block always fits in an array
+                (long)DataUtils.getK(fecParams, sbn) * symbolSize(), dataLength() - nextOff);
+
+            final byte[] blockData = new byte[blockLength];
+            ExtraChannels.readBytes(channel, ByteBuffer.wrap(blockData));
+
+            current = ArraySourceBlockEncoder.newEncoder(this, blockData, 0, fecParams, sbn);
+            nextSBN++;
+            nextOff += blockLength;
+            return current;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the source block was not read yet, the source blocks up to it are read from the channel (and the skipped ones
+     * are discarded). Source blocks read before the most recent one are no longer available.
+     * 
+     * @exception IllegalArgumentException
+     *                If the provided source block number is invalid
+     * @exception IllegalStateException
+     *                If the source block was read before the most recently read source block
+     * @exception UncheckedIOException
+     *                If an I/O error occurs while reading from the channel
+     */
+    @Override
+    public SourceBlockEncoder sourceBlock(int sbn) {
+
+        if (sbn < 0 || sbn >= numberOfSourceBlocks()) {
+            throw new IllegalArgumentException("invalid source block number");
+        }
+
+        lock.lock();
+        try {
+            if (sbn < nextSBN - 1 || (sbn == nextSBN - 1 && current == null)) {
+                throw new IllegalStateException("the source block is no longer available");
+            }
+            while (nextSBN <= sbn) {
+                nextSourceBlock();
+            }
+            return current;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned iterable reads the source blocks that were not read yet from the channel, one at a time, so it can
+     * only be iterated once.
+     * <p>
+     * The iterators throw an {@link UncheckedIOException} if an I/O error occurs while reading from the channel.
+     */
+    @Override
+    public Iterable<SourceBlockEncoder> sourceBlockIterable() {
+
+        return new Iterable<SourceBlockEncoder>() {
+
+            @Override
+            public Iterator<SourceBlockEncoder> iterator() {
+
+                return new SourceBlockIterator();
+            }
+        };
+    }
+
+
+    private final class SourceBlockIterator implements Iterator<SourceBlockEncoder> {
+
+        @Override
+        public boolean hasNext() {
+
+            return hasNextSourceBlock();
+        }
+
+        @Override
+        public SourceBlockEncoder next() {
+
+            try {
+                return nextSourceBlock();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void remove() {
+
+            throw new UnsupportedOperationException();
+        }
+    }
+}
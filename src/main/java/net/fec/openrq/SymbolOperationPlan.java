@@ -0,0 +1,473 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.fec.openrq.util.linearalgebra.io.ByteVectorIterator;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.math.OctetOps;
+
+
+/**
+ * A plan of symbol operations that are recorded while solving a system, and only run over the symbols at the end.
+ * <p>
+ * Every recorded operation is folded into a linear combination per destination symbol, whose terms are either the
+ * <em>original</em> value of a symbol (its value before the plan) or the <em>final</em> value of a symbol (its value
+ * after the plan). Divisions scale the terms of the combination, and terms over the same value are merged, so that
+ * terms that cancel each other are dropped. When the plan is run, each modified symbol is computed in a single pass,
+ * with its terms sorted by source symbol.
+ * <p>
+ * Reading the current value of a modified symbol reads its final value, so that symbol cannot be modified afterwards.
+ * A plan is run at most once, over the same vector of symbols its operations were recorded for.
+ */
+final class SymbolOperationPlan {
+
+    // a term is (key << 8 | multiplier), with key being (symbol << 1 | FINAL) or (symbol << 1 | ORIGINAL)
+    private static final int ORIGINAL = 0;
+    private static final int FINAL = 1;
+
+    // the index of the term of the original value of a symbol computed in place, if there is no such term
+    private static final int NO_SELF_TERM = -1;
+    // the index of the term of the original value of a symbol computed into a new array (the term is not special)
+    private static final int NEW_ARRAY = -2;
+
+    // the minimum number of bytes of each symbol computed by a parallel task
+    private static final int MIN_SLICE_SIZE = 256;
+    private static final int CACHE_LINE_SIZE = 64;
+
+    private final long[][] terms; // the combination of each symbol, or null if the symbol is not modified
+    private final int[] numTerms;
+    private final long[] lastModified; // the order of the last modification of each symbol
+    private final boolean[] finalRead; // the final value of the symbol was read
+    private final boolean[] originalRead; // the original value of the symbol was read by another symbol
+    private long numOperations;
+
+
+    /**
+     * @param numSymbols
+     *            The number of symbols the operations are recorded for
+     */
+    SymbolOperationPlan(int numSymbols) {
+
+        this.terms = new long[numSymbols][];
+        this.numTerms = new int[numSymbols];
+        this.lastModified = new long[numSymbols];
+        this.finalRead = new boolean[numSymbols];
+        this.originalRead = new boolean[numSymbols];
+        this.numOperations = 0;
+    }
+
+    /**
+     * Adds the product of {@code srcMult} and symbol {@code srcRow} to symbol {@code dstRow}.
+     * 
+     * @param srcMult
+     *            The multiplier of the source symbol
+     * @param srcRow
+     *            The index of the source symbol
+     * @param dstRow
+     *            The index of the destination symbol
+     * @exception IllegalArgumentException
+     *                If the source and destination symbols are the same
+     * @exception IllegalStateException
+     *                If the final value of the destination symbol was already read
+     */
+    void addition(byte srcMult, int srcRow, int dstRow) {
+
+        if (srcRow == dstRow) throw new IllegalArgumentException("source and destination symbols are the same");
+        if (srcMult == 0) { // adding zeros has no effect
+            return;
+        }
+
+        checkModifiable(dstRow);
+        final int key = currentValueKey(srcRow, dstRow);
+        startCombination(dstRow);
+        appendTerm(dstRow, key, srcMult);
+        lastModified[dstRow] = ++numOperations;
+    }
+
+    /**
+     * Divides symbol {@code row} by {@code beta}.
+     * 
+     * @param beta
+     *            A non-zero divisor
+     * @param row
+     *            The index of the symbol
+     * @exception IllegalStateException
+     *                If the final value of the symbol was already read
+     */
+    void division(byte beta, int row) {
+
+        if (beta == 1) { // dividing by one has no effect
+            return;
+        }
+
+        checkModifiable(row);
+        startCombination(row);
+
+        final byte inverse = OctetOps.aDividedByB((byte)1, beta);
+        final long[] rowTerms = terms[row];
+        for (int t = 0; t < numTerms[row]; t++) {
+            rowTerms[t] = term(key(rowTerms[t]), OctetOps.aTimesB(inverse, multiplier(rowTerms[t])));
+        }
+        lastModified[row] = ++numOperations;
+    }
+
+    /**
+     * Replaces the symbols {@code d[0]} to {@code d[rows - 1]} by the product of the given matrix with the symbols
+     * {@code d[0]} to {@code d[cols - 1]}. Every product reads the values of the symbols before any of them is
+     * replaced.
+     * 
+     * @param X
+     *            A matrix
+     * @param rows
+     *            The number of rows of the matrix in the product
+     * @param cols
+     *            The number of columns of the matrix in the product
+     * @param d
+     *            The indices of the symbols
+     * @exception IllegalStateException
+     *                If a replaced symbol was already modified
+     */
+    void multiplication(ByteMatrix X, int rows, int cols, int[] d) {
+
+        for (int row = 0; row < rows; row++) {
+            if (terms[d[row]] != null) throw new IllegalStateException("a replaced symbol was already modified");
+        }
+
+        // read every source value before replacing any symbol
+        final long[][] products = new long[rows][];
+        final int[] numProducts = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            long[] rowTerms = new long[Math.max(1, X.nonZerosInRow(row, 0, cols))];
+            int n = 0;
+
+            final ByteVectorIterator it = X.nonZeroRowIterator(row, 0, cols);
+            while (it.hasNext()) {
+                it.next();
+                if (n == rowTerms.length) {
+                    rowTerms = Arrays.copyOf(rowTerms, 2 * n);
+                }
+                rowTerms[n++] = term(currentValueKey(d[it.index()], d[row]), it.get());
+            }
+            products[row] = rowTerms;
+            numProducts[row] = n;
+        }
+
+        for (int row = 0; row < rows; row++) {
+            terms[d[row]] = products[row];
+            numTerms[d[row]] = numProducts[row];
+            lastModified[d[row]] = ++numOperations;
+        }
+    }
+
+    /**
+     * Runs every recorded operation over the given symbols. Modified symbols are computed in place, except those whose
+     * original value is read by other symbols, which are replaced by new arrays.
+     * 
+     * @param D
+     *            The symbols the operations were recorded for
+     */
+    void execute(byte[][] D) {
+
+        execute(D, null, 0);
+    }
+
+    /**
+     * Runs every recorded operation over the given symbols, in parallel over disjoint slices of the symbols if a pool
+     * is given. Each slice is computed one stripe at a time: every operation is run over a stripe of bytes of the
+     * symbols before moving on to the next stripe, so that the stripes of all symbols may fit in a cache. Modified
+     * symbols are computed in place, except those whose original value is read by other symbols, which are replaced by
+     * new arrays.
+     * 
+     * @param D
+     *            The symbols the operations were recorded for
+     * @param pool
+     *            A pool where slices of the symbols are computed in parallel, or {@code null} if the operations are
+     *            to be run on the calling thread
+     * @param stripeSize
+     *            The number of bytes of each symbol in a stripe, or 0 if every slice is computed as a single stripe
+     */
+    void execute(byte[][] D, ForkJoinPool pool, int stripeSize) {
+
+        // a symbol is computed after every symbol whose final value it reads, since these were modified before the
+        // read, and so before the last modification of the symbol
+        final int[] order = modifiedSymbolsByLastModification();
+        final int T = (order.length == 0) ? 0 : D[order[0]].length;
+        final byte[][] original = Arrays.copyOf(D, D.length);
+
+        // the destination arrays are set before running the operations, so that every slice writes into them
+        final int[] selfTerms = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            final int row = order[k];
+            mergeTerms(row);
+            if (originalRead[row]) {
+                D[row] = new byte[T];
+                selfTerms[k] = NEW_ARRAY;
+            }
+            else {
+                selfTerms[k] = indexOfKey(terms[row], numTerms[row], valueKey(row, ORIGINAL));
+            }
+        }
+
+        final int numSlices = (pool == null) ? 1 : Math.min(pool.getParallelism(), T / MIN_SLICE_SIZE);
+        if (numSlices <= 1) {
+            executeSlice(order, selfTerms, D, original, 0, T, stripeSize);
+        }
+        else {
+            // slices are aligned to cache lines
+            final int sliceSize = ((T + numSlices - 1) / numSlices + CACHE_LINE_SIZE - 1) & -CACHE_LINE_SIZE;
+            final List<SliceTask> tasks = new ArrayList<>(numSlices);
+            for (int off = 0; off < T; off += sliceSize) {
+                final int len = Math.min(sliceSize, T - off);
+                tasks.add(new SliceTask(order, selfTerms, D, original, off, len, stripeSize));
+            }
+            for (SliceTask task : tasks) {
+                pool.execute(task);
+            }
+            for (SliceTask task : tasks) {
+                task.join();
+            }
+        }
+
+        for (int row : order) {
+            terms[row] = null;
+        }
+    }
+
+    private void executeSlice(
+        int[] order,
+        int[] selfTerms,
+        byte[][] D,
+        byte[][] original,
+        int off,
+        int len,
+        int stripeSize)
+    {
+
+        final int stripe = (stripeSize <= 0) ? len : stripeSize;
+        final int end = off + len;
+        for (int stripeOff = off; stripeOff < end; stripeOff += stripe) {
+            executeStripe(order, selfTerms, D, original, stripeOff, Math.min(stripe, end - stripeOff));
+        }
+    }
+
+    private void executeStripe(int[] order, int[] selfTerms, byte[][] D, byte[][] original, int off, int len) {
+
+        for (int k = 0; k < order.length; k++) {
+            final int row = order[k];
+            final long[] rowTerms = terms[row];
+            final int n = numTerms[row];
+            final int selfTerm = selfTerms[k];
+
+            final byte[] dst = D[row];
+            if (selfTerm == NO_SELF_TERM) {
+                Arrays.fill(dst, off, off + len, (byte)0);
+            }
+            else if (selfTerm != NEW_ARRAY) {
+                final byte mult = multiplier(rowTerms[selfTerm]);
+                if (mult != 1) {
+                    OctetOps.valueVectorProduct(mult, dst, off, dst, off, len); // in place product
+                }
+            }
+
+            int t = 0;
+            while (t < n) {
+                if (t == selfTerm) {
+                    t++;
+                }
+                else {
+                    final int next = (t + 1 == selfTerm) ? t + 2 : t + 1;
+                    // fuse two plain additions in a single pass over the destination
+                    if (next < n && multiplier(rowTerms[t]) == 1 && multiplier(rowTerms[next]) == 1) {
+                        addInPlace(
+                            source(D, original, rowTerms[t]), source(D, original, rowTerms[next]), dst, off, len);
+                        t = next + 1;
+                    }
+                    else {
+                        OctetOps.vectorVectorAdditionInPlace(
+                            multiplier(rowTerms[t]), source(D, original, rowTerms[t]), off, dst, off, len);
+                        t++;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the key of the current value of a symbol read by another symbol.
+     */
+    private int currentValueKey(int srcRow, int dstRow) {
+
+        if (terms[srcRow] == null) {
+            if (srcRow != dstRow) {
+                originalRead[srcRow] = true;
+            }
+            return valueKey(srcRow, ORIGINAL);
+        }
+        else {
+            finalRead[srcRow] = true;
+            return valueKey(srcRow, FINAL);
+        }
+    }
+
+    private void checkModifiable(int row) {
+
+        if (finalRead[row]) throw new IllegalStateException("the final value of the symbol was already read");
+    }
+
+    /*
+     * Starts the combination of an unmodified symbol with its original value.
+     */
+    private void startCombination(int row) {
+
+        if (terms[row] == null) {
+            terms[row] = new long[4];
+            numTerms[row] = 0;
+            appendTerm(row, valueKey(row, ORIGINAL), (byte)1);
+        }
+    }
+
+    private void appendTerm(int row, int key, byte mult) {
+
+        if (numTerms[row] == terms[row].length) {
+            terms[row] = Arrays.copyOf(terms[row], 2 * numTerms[row]);
+        }
+        terms[row][numTerms[row]++] = term(key, mult);
+    }
+
+    /*
+     * Sorts the terms of a symbol by key, adds the multipliers of equal keys, and drops the terms that cancel out.
+     */
+    private void mergeTerms(int row) {
+
+        final long[] rowTerms = terms[row];
+        Arrays.sort(rowTerms, 0, numTerms[row]);
+
+        int n = 0;
+        for (int t = 0; t < numTerms[row]; t++) {
+            if (n > 0 && key(rowTerms[n - 1]) == key(rowTerms[t])) {
+                rowTerms[n - 1] ^= multiplier(rowTerms[t]) & 0xFF; // addition in GF(256)
+                if (multiplier(rowTerms[n - 1]) == 0) {
+                    n--;
+                }
+            }
+            else {
+                rowTerms[n++] = rowTerms[t];
+            }
+        }
+        numTerms[row] = n;
+    }
+
+    private int[] modifiedSymbolsByLastModification() {
+
+        final long[] modified = new long[terms.length];
+        int n = 0;
+        for (int row = 0; row < terms.length; row++) {
+            if (terms[row] != null) {
+                modified[n++] = (lastModified[row] << 32) | row;
+            }
+        }
+        Arrays.sort(modified, 0, n);
+
+        final int[] order = new int[n];
+        for (int k = 0; k < n; k++) {
+            order[k] = (int)modified[k];
+        }
+        return order;
+    }
+
+    private static int indexOfKey(long[] rowTerms, int n, int key) {
+
+        for (int t = 0; t < n; t++) {
+            if (key(rowTerms[t]) == key) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] source(byte[][] D, byte[][] original, long term) {
+
+        final int key = key(term);
+        return ((key & 1) == FINAL) ? D[key >>> 1] : original[key >>> 1];
+    }
+
+    private static void addInPlace(byte[] src1, byte[] src2, byte[] dst, int off, int len) {
+
+        final int end = off + len;
+        for (int k = off; k < end; k++) {
+            dst[k] ^= src1[k] ^ src2[k];
+        }
+    }
+
+    private static int valueKey(int row, int value) {
+
+        return (row << 1) | value;
+    }
+
+    private static long term(int key, byte mult) {
+
+        return ((long)key << 8) | (mult & 0xFF);
+    }
+
+    private static int key(long term) {
+
+        return (int)(term >>> 8);
+    }
+
+    private static byte multiplier(long term) {
+
+        return (byte)term;
+    }
+
+
+    private final class SliceTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] order;
+        private final int[] selfTerms;
+        private final byte[][] D;
+        private final byte[][] original;
+        private final int off;
+        private final int len;
+        private final int stripeSize;
+
+
+        SliceTask(int[] order, int[] selfTerms, byte[][] D, byte[][] original, int off, int len, int stripeSize) {
+
+            this.order = order;
+            this.selfTerms = selfTerms;
+            this.D = D;
+            this.original = original;
+            this.off = off;
+            this.len = len;
+            this.stripeSize = stripeSize;
+        }
+
+        @Override
+        protected void compute() {
+
+            executeSlice(order, selfTerms, D, original, off, len, stripeSize);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * A bounded pool of symbol rows (arrays of {@code T} bytes), used as working memory by decoding operations.
+ * <p>
+ * Decoding a source block requires about L symbol rows (see RFC 6330), which are only needed until the missing source
+ * symbols are recovered. Releasing those rows into a pool allows later decodings of source blocks with the same symbol
+ * size to reuse them, instead of allocating (and zeroing) new ones every time.
+ * <p>
+ * This class is thread safe. When the pool is full, released rows are simply discarded.
+ */
+final class SymbolRowPool {
+
+    private final int T;
+    private final byte[][] rows; // the free rows are in [0, numRows)
+    private int numRows;
+
+    private final Lock rowsLock;
+
+
+    /**
+     * @param T
+     *            The size of the symbol rows
+     * @param maxRows
+     *            The maximum number of free rows kept in the pool
+     */
+    SymbolRowPool(int T, int maxRows) {
+
+        this.T = T;
+        this.rows = new byte[maxRows][];
+        this.numRows = 0;
+
+        this.rowsLock = new ReentrantLock(false); // non-fair lock
+    }
+
+    /**
+     * Returns a row of {@code T} bytes with undefined contents.
+     * 
+     * @return a row of {@code T} bytes with undefined contents
+     */
+    byte[] acquire() {
+
+        final byte[] row = poll();
+        return (row == null) ? new byte[T] : row;
+    }
+
+    /**
+     * Returns a row of {@code T} zero bytes.
+     * 
+     * @return a row of {@code T} zero bytes
+     */
+    byte[] acquireZeroed() {
+
+        final byte[] row = poll();
+        if (row == null) {
+            return new byte[T];
+        }
+        else {
+            Arrays.fill(row, (byte)0);
+            return row;
+        }
+    }
+
+    /**
+     * Releases the given rows into the pool. Null rows and rows with a size different from {@code T} are ignored. The
+     * released rows must not be used afterwards by the caller.
+     * 
+     * @param released
+     *            The rows to release (each row must not be released more than once)
+     */
+    void release(byte[]... released) {
+
+        rowsLock.lock();
+        try {
+            for (byte[] row : released) {
+                if (numRows == rows.length) {
+                    return; // discard the remaining rows
+                }
+                if (row != null && row.length == T) {
+                    rows[numRows++] = row;
+                }
+            }
+        }
+        finally {
+            rowsLock.unlock();
+        }
+    }
+
+    // returns null if the pool is empty
+    private byte[] poll() {
+
+        rowsLock.lock();
+        try {
+            if (numRows == 0) {
+                return null;
+            }
+            else {
+                final byte[] row = rows[--numRows];
+                rows[numRows] = null;
+                return row;
+            }
+        }
+        finally {
+            rowsLock.unlock();
+        }
+    }
+}
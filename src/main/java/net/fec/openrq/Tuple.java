@@ -26,36 +26,32 @@ import net.fec.openrq.util.rq.SystematicIndices;
  */
 final class Tuple {
 
-    private final long d, a, b, d1, a1, b1;
+    private long d, a, b, d1, a1, b1; // only modified by the factory of the tuple
 
 
     Tuple(int Kprime, long X) {
 
-        int Ki = SystematicIndices.getKIndex(Kprime);
-        int S = SystematicIndices.S(Ki);
-        int H = SystematicIndices.H(Ki);
-        int W = SystematicIndices.W(Ki);
-        int L = Kprime + S + H;
-        int J = SystematicIndices.J(Ki);
-        int P = L - W;
-        long P1 = MatrixUtilities.ceilPrime(P);
+        this(new Factory(Kprime), X);
+    }
+
+    private Tuple(Factory factory, long X) {
 
-        long A = 53591 + J * 997;
-        if (A % 2 == 0) A++;
+        set(factory, X);
+    }
 
-        long B = 10267 * (J + 1);
+    private void set(Factory factory, long X) {
 
-        long y = (B + X * A) % 4294967296L; // 2^^32
+        long y = (factory.B + X * factory.A) % 4294967296L; // 2^^32
 
         long v = Rand.rand(y, 0, 1048576L); // 2^^20
 
-        this.d = Deg.deg(v, W);
-        this.a = 1 + Rand.rand(y, 1, W - 1);
-        this.b = Rand.rand(y, 2, W);
+        this.d = Deg.deg(v, factory.W);
+        this.a = 1 + Rand.rand(y, 1, factory.W - 1);
+        this.b = Rand.rand(y, 2, factory.W);
         if (this.d < 4) d1 = 2 + Rand.rand(X, 3, 2L);
         else d1 = 2;
-        this.a1 = 1 + Rand.rand(X, 4, P1 - 1);
-        this.b1 = Rand.rand(X, 5, P1);
+        this.a1 = 1 + Rand.rand(X, 4, factory.P1 - 1);
+        this.b1 = Rand.rand(X, 5, factory.P1);
     }
 
     long getD() {
@@ -87,4 +83,90 @@ final class Tuple {
 
         return b1;
     }
+
+    /**
+     * Creates the tuples of a source block, computing only once the parameters that depend on K' (refer to section
+     * 5.3.5.4 of RFC 6330). Instances of this class are immutable and may be shared by multiple threads.
+     */
+    static final class Factory {
+
+        private final int W;
+        private final int P;
+        private final int P1;
+        private final long A;
+        private final long B;
+
+
+        /**
+         * @param Kprime
+         *            The number of source (and padding) symbols in an extended source block
+         */
+        Factory(int Kprime) {
+
+            int Ki = SystematicIndices.getKIndex(Kprime);
+            int S = SystematicIndices.S(Ki);
+            int H = SystematicIndices.H(Ki);
+            int J = SystematicIndices.J(Ki);
+            int L = Kprime + S + H;
+
+            this.W = SystematicIndices.W(Ki);
+            this.P = L - W;
+            this.P1 = (int)MatrixUtilities.ceilPrime(P);
+
+            long A = 53591 + J * 997;
+            if (A % 2 == 0) A++;
+            this.A = A;
+            this.B = 10267 * (J + 1);
+        }
+
+        /**
+         * Returns the tuple of the encoding symbol with the given internal symbol identifier.
+         * 
+         * @param X
+         *            The internal symbol identifier
+         * @return the tuple of the encoding symbol
+         */
+        Tuple newTuple(long X) {
+
+            return new Tuple(this, X);
+        }
+
+        /**
+         * Replaces the contents of a tuple (created by this factory) with the tuple of another encoding symbol, so
+         * that a single tuple can be reused when generating a range of symbols.
+         * 
+         * @param tuple
+         *            A tuple created by this factory
+         * @param X
+         *            The internal symbol identifier
+         */
+        void setTuple(Tuple tuple, long X) {
+
+            tuple.set(this, X);
+        }
+
+        /**
+         * @return the number of LT intermediate symbols
+         */
+        int getW() {
+
+            return W;
+        }
+
+        /**
+         * @return the number of PI intermediate symbols
+         */
+        int getP() {
+
+            return P;
+        }
+
+        /**
+         * @return the smallest prime number greater than or equal to P
+         */
+        int getP1() {
+
+            return P1;
+        }
+    }
 }
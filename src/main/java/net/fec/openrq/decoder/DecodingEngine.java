@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.decoder;
+
+/**
+ * An enum value indicating the algorithm used by source block decoders to decode source blocks.
+ */
+public enum DecodingEngine {
+
+    /**
+     * Source blocks are decoded in a single operation, once enough encoding symbols are available, by the permanent
+     * inactivation decoding algorithm of RFC 6330. This is the default decoding engine.
+     */
+    PERMANENT_INACTIVATION,
+
+    /**
+     * Encoding symbols are eliminated by Gaussian elimination as they are received, so that decoding is spread over the
+     * reception of encoding packets, and only a small elimination step remains once enough encoding symbols are
+     * available. This engine reduces the decoding time after the reception of the last encoding packet, at the cost of
+     * more memory (in the order of L<sup>2</sup>/8 bytes per source block being decoded, with L being slightly larger
+     * than the number of source symbols) and of more total processing.
+     */
+    INCREMENTAL_ELIMINATION
+}
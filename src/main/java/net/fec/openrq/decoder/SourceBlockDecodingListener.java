@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.decoder;
+
+/**
+ * A listener that is notified when a source block decoder finishes decoding its source block, or fails to decode it.
+ * <p>
+ * Listeners are notified by the thread that completes the decoding, which is either a thread that put an encoding
+ * packet into the source block decoder, or a thread of the executor that runs the decoding operations (if the data
+ * decoder was created with one). Therefore, implementations of this interface must be thread-safe and should return
+ * quickly.
+ */
+public interface SourceBlockDecodingListener {
+
+    /**
+     * Called when a source block becomes decoded, or when a decoding operation fails to decode a source block.
+     * <p>
+     * A source block may fail to be decoded multiple times (each time more encoding symbols are received), but it is
+     * decoded at most once.
+     * 
+     * @param decoder
+     *            The source block decoder whose source block was decoded (or failed to be decoded)
+     * @param state
+     *            Either {@link SourceBlockState#DECODED} or {@link SourceBlockState#DECODING_FAILURE}
+     */
+    public void sourceBlockDecodingFinished(SourceBlockDecoder decoder, SourceBlockState state);
+}
@@ -38,6 +38,7 @@ package net.fec.openrq.util.linearalgebra;
 
 import net.fec.openrq.util.linearalgebra.factory.Basic1DFactory;
 import net.fec.openrq.util.linearalgebra.factory.Basic2DFactory;
+import net.fec.openrq.util.linearalgebra.factory.BitPackedFactory;
 import net.fec.openrq.util.linearalgebra.factory.CCSFactory;
 import net.fec.openrq.util.linearalgebra.factory.CRSFactory;
 import net.fec.openrq.util.linearalgebra.factory.Factory;
@@ -88,6 +89,11 @@ public final class LinearAlgebra {
      */
     public static final Factory CCS_FACTORY = new CCSFactory();
 
+    /**
+     * The {@link net.fec.openrq.util.linearalgebra.factory.BitPackedFactory} singleton instance.
+     */
+    public static final Factory BIT_PACKED_FACTORY = new BitPackedFactory();
+
     /**
      * The default dense factory singleton instance. References the {@link LinearAlgebra#BASIC2D_FACTORY}.
      */
@@ -109,5 +115,6 @@ public final class LinearAlgebra {
     public static final Factory FACTORIES[] = {BASIC1D_FACTORY,
                                                BASIC2D_FACTORY,
                                                CRS_FACTORY,
-                                               CCS_FACTORY};
+                                               CCS_FACTORY,
+                                               BIT_PACKED_FACTORY};
 }
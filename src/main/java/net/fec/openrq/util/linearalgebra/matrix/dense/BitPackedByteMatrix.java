@@ -0,0 +1,794 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.util.linearalgebra.matrix.dense;
+
+
+import static net.fec.openrq.util.math.OctetOps.aTimesB;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import net.fec.openrq.util.array.ArrayUtils;
+import net.fec.openrq.util.checking.Indexables;
+import net.fec.openrq.util.linearalgebra.LinearAlgebra;
+import net.fec.openrq.util.linearalgebra.factory.Factory;
+import net.fec.openrq.util.linearalgebra.io.ByteVectorIterator;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrices;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.linearalgebra.matrix.source.MatrixSource;
+import net.fec.openrq.util.linearalgebra.serialize.Serialization;
+import net.fec.openrq.util.linearalgebra.serialize.Serialization.Type;
+import net.fec.openrq.util.linearalgebra.vector.ByteVector;
+import net.fec.openrq.util.math.OctetOps;
+
+
+/**
+ * A dense matrix that stores each row whose entries are all zeros or ones as a bitset (one bit per entry, packed in
+ * {@code long} words), and every other row as an array of bytes.
+ * <p>
+ * Binary rows use 8 times less memory than byte rows, and additions of binary rows are performed 64 columns at a time.
+ * A binary row is converted into a byte row as soon as an entry other than zero or one is stored in it, and it is only
+ * converted back into a binary row when it is cleared.
+ */
+public class BitPackedByteMatrix extends AbstractBasicByteMatrix implements DenseByteMatrix {
+
+    private static final int WORD_SHIFT = 6; // 64 bits per word
+    private static final int WORD_BITS = 1 << WORD_SHIFT;
+
+
+    private static int numWords(int columns) {
+
+        return (columns + WORD_BITS - 1) >>> WORD_SHIFT;
+    }
+
+    private static int wordIndex(int column) {
+
+        return column >>> WORD_SHIFT;
+    }
+
+    // the mask of the bits of a word at or after a column
+    private static long fromMask(int fromColumn) {
+
+        return -1L << fromColumn; // the shift distance is taken modulo 64
+    }
+
+    // the mask of the bits of a word before a column (all bits if the column is at a word boundary)
+    private static long toMask(int toColumn) {
+
+        return -1L >>> -toColumn; // the shift distance is taken modulo 64
+    }
+
+    private static boolean isBinary(byte[] row) {
+
+        for (byte b : row) {
+            if (b != 0 && b != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] pack(byte[] row) {
+
+        final long[] bitRow = new long[numWords(row.length)];
+        for (int j = 0; j < row.length; j++) {
+            if (row[j] != 0) {
+                bitRow[wordIndex(j)] |= 1L << j;
+            }
+        }
+        return bitRow;
+    }
+
+
+    // for each row, exactly one of these is non-null
+    private final long[][] bitRows;
+    private final byte[][] byteRows;
+
+
+    public BitPackedByteMatrix() {
+
+        this(0, 0);
+    }
+
+    public BitPackedByteMatrix(ByteMatrix matrix) {
+
+        this(ByteMatrices.asMatrixSource(matrix));
+    }
+
+    public BitPackedByteMatrix(MatrixSource source) {
+
+        this(source.rows(), source.columns());
+
+        for (int i = 0; i < rows(); i++) {
+            for (int j = 0; j < columns(); j++) {
+                safeSet(i, j, source.get(i, j));
+            }
+        }
+    }
+
+    public BitPackedByteMatrix(int rows, int columns) {
+
+        this(rows, columns, new long[rows][numWords(columns)], new byte[rows][]);
+    }
+
+    public BitPackedByteMatrix(int rows, int columns, byte array[]) {
+
+        this(rows, columns);
+
+        if (array.length != (long)rows * columns) {
+            throw new IllegalArgumentException("array length must be equal to rows * columns");
+        }
+
+        for (int i = 0; i < rows; i++) {
+            setRow(i, Arrays.copyOfRange(array, i * columns, (i + 1) * columns));
+        }
+    }
+
+    /**
+     * Creates a matrix with the entries of an array. The byte rows of the matrix may share the rows of the array.
+     * 
+     * @param array
+     *            The source 2D array
+     */
+    public BitPackedByteMatrix(byte array[][]) {
+
+        this(array.length, array.length == 0 ? 0 : array[0].length);
+
+        for (int i = 0; i < rows(); i++) {
+            setRow(i, array[i]);
+        }
+    }
+
+    private BitPackedByteMatrix(int rows, int columns, long[][] bitRows, byte[][] byteRows) {
+
+        super(LinearAlgebra.BIT_PACKED_FACTORY, rows, columns);
+        this.bitRows = bitRows;
+        this.byteRows = byteRows;
+    }
+
+    /**
+     * Returns {@code true} if every entry of a row is stored as a single bit.
+     * 
+     * @param i
+     *            The index of a row
+     * @return {@code true} if every entry of a row is stored as a single bit
+     */
+    public boolean isBinaryRow(int i) {
+
+        Indexables.checkIndexBounds(i, rows());
+
+        return bitRows[i] != null;
+    }
+
+    /*
+     * Stores the given array as row i, packing it if it is binary (otherwise, the array is shared with this matrix).
+     */
+    private void setRow(int i, byte[] row) {
+
+        if (isBinary(row)) {
+            bitRows[i] = pack(row);
+            byteRows[i] = null;
+        }
+        else {
+            bitRows[i] = null;
+            byteRows[i] = row;
+        }
+    }
+
+    private static byte[] unpack(long[] bitRow, int columns) {
+
+        final byte[] row = new byte[columns];
+        for (int j = nextNonZero(bitRow, 0, columns); j < columns; j = nextNonZero(bitRow, j + 1, columns)) {
+            row[j] = 1;
+        }
+        return row;
+    }
+
+    /*
+     * Converts the binary row i into a byte row, and returns the latter.
+     */
+    private byte[] unpack(int i) {
+
+        final byte[] row = unpack(bitRows[i], columns());
+        bitRows[i] = null;
+        byteRows[i] = row;
+        return row;
+    }
+
+    // returns the column of the first non-zero entry in [from, to), or "to" if there is none
+    private static int nextNonZero(long[] bitRow, int from, int to) {
+
+        if (from >= to) {
+            return to;
+        }
+
+        int w = wordIndex(from);
+        long word = bitRow[w] & fromMask(from);
+        while (word == 0) {
+            if (++w << WORD_SHIFT >= to) {
+                return to;
+            }
+            word = bitRow[w];
+        }
+
+        return Math.min((w << WORD_SHIFT) + Long.numberOfTrailingZeros(word), to);
+    }
+
+    // returns the column of the first non-zero entry in [from, to), or "to" if there is none
+    private static int nextNonZero(byte[] byteRow, int from, int to) {
+
+        int j = from;
+        while (j < to && byteRow[j] == 0) {
+            j++;
+        }
+        return j;
+    }
+
+    // returns the column of the first non-zero entry in [from, to) of row i, or "to" if there is none
+    private int nextNonZero(int i, int from, int to) {
+
+        final long[] bitRow = bitRows[i];
+        if (bitRow != null) {
+            return nextNonZero(bitRow, from, to);
+        }
+        else {
+            return nextNonZero(byteRows[i], from, to);
+        }
+    }
+
+    @Override
+    public byte safeGet(int i, int j) {
+
+        final long[] bitRow = bitRows[i];
+        if (bitRow != null) {
+            return (byte)((bitRow[wordIndex(j)] >>> j) & 1);
+        }
+        else {
+            return byteRows[i][j];
+        }
+    }
+
+    @Override
+    public void safeSet(int i, int j, byte value) {
+
+        final long[] bitRow = bitRows[i];
+        if (bitRow != null) {
+            if (value == 0) {
+                bitRow[wordIndex(j)] &= ~(1L << j);
+            }
+            else if (value == 1) {
+                bitRow[wordIndex(j)] |= 1L << j;
+            }
+            else {
+                unpack(i)[j] = value;
+            }
+        }
+        else {
+            byteRows[i][j] = value;
+        }
+    }
+
+    @Override
+    public void clear() {
+
+        for (int i = 0; i < rows(); i++) {
+            clearRow(i);
+        }
+    }
+
+    @Override
+    public void clearRow(int i) {
+
+        Indexables.checkIndexBounds(i, rows());
+
+        if (bitRows[i] != null) {
+            Arrays.fill(bitRows[i], 0L);
+        }
+        else {
+            bitRows[i] = new long[numWords(columns())];
+            byteRows[i] = null;
+        }
+    }
+
+    @Override
+    public void swapRows(int i, int j) {
+
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkIndexBounds(j, rows());
+
+        if (i != j) {
+            ArrayUtils.swapObjects(bitRows, i, j);
+            ArrayUtils.swapObjects(byteRows, i, j);
+        }
+    }
+
+    @Override
+    public void swapColumns(int i, int j) {
+
+        Indexables.checkIndexBounds(i, columns());
+        Indexables.checkIndexBounds(j, columns());
+
+        if (i != j) {
+            final int wi = wordIndex(i);
+            final int wj = wordIndex(j);
+            for (int row = 0; row < rows(); row++) {
+                final long[] bitRow = bitRows[row];
+                if (bitRow != null) {
+                    // the bits only need to be flipped if they differ
+                    if (((bitRow[wi] >>> i) & 1) != ((bitRow[wj] >>> j) & 1)) {
+                        bitRow[wi] ^= 1L << i;
+                        bitRow[wj] ^= 1L << j;
+                    }
+                }
+                else {
+                    ArrayUtils.swapBytes(byteRows[row], i, j);
+                }
+            }
+        }
+    }
+
+    @Override
+    public ByteMatrix copy() {
+
+        final long[][] bitRowsCopy = new long[rows()][];
+        final byte[][] byteRowsCopy = new byte[rows()][];
+        for (int i = 0; i < rows(); i++) {
+            copyRow(i, bitRowsCopy, byteRowsCopy, i);
+        }
+
+        return new BitPackedByteMatrix(rows(), columns(), bitRowsCopy, byteRowsCopy);
+    }
+
+    @Override
+    public ByteMatrix resize(int rows, int columns, Factory factory) {
+
+        // if only the number of rows changes, the rows can be copied directly
+        if (factory == factory() && columns == columns() && rows >= 0) {
+            final long[][] bitRowsCopy = new long[rows][];
+            final byte[][] byteRowsCopy = new byte[rows][];
+            for (int i = 0; i < rows; i++) {
+                if (i < rows()) {
+                    copyRow(i, bitRowsCopy, byteRowsCopy, i);
+                }
+                else {
+                    bitRowsCopy[i] = new long[numWords(columns)];
+                }
+            }
+
+            return new BitPackedByteMatrix(rows, columns, bitRowsCopy, byteRowsCopy);
+        }
+        else {
+            return super.resize(rows, columns, factory);
+        }
+    }
+
+    private void copyRow(int i, long[][] bitRowsCopy, byte[][] byteRowsCopy, int copyRow) {
+
+        if (bitRows[i] != null) {
+            bitRowsCopy[copyRow] = bitRows[i].clone();
+        }
+        else {
+            byteRowsCopy[copyRow] = byteRows[i].clone();
+        }
+    }
+
+    @Override
+    public byte[][] toArray() {
+
+        final byte[][] result = new byte[rows()][];
+        for (int i = 0; i < rows(); i++) {
+            if (bitRows[i] != null) {
+                result[i] = unpack(bitRows[i], columns());
+            }
+            else {
+                result[i] = byteRows[i].clone();
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean nonZeroAt(int i, int j) {
+
+        checkBounds(i, j);
+
+        return safeGet(i, j) != 0;
+    }
+
+    @Override
+    public int nonZerosInRow(int i) {
+
+        return nonZerosInRow(i, 0, columns());
+    }
+
+    @Override
+    public int nonZerosInRow(int i, int fromColumn, int toColumn) {
+
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+
+        if (fromColumn == toColumn) {
+            return 0;
+        }
+
+        final long[] bitRow = bitRows[i];
+        if (bitRow != null) {
+            final int fw = wordIndex(fromColumn);
+            final int lw = wordIndex(toColumn - 1);
+            if (fw == lw) {
+                return Long.bitCount(bitRow[fw] & fromMask(fromColumn) & toMask(toColumn));
+            }
+
+            int count = Long.bitCount(bitRow[fw] & fromMask(fromColumn));
+            for (int w = fw + 1; w < lw; w++) {
+                count += Long.bitCount(bitRow[w]);
+            }
+            return count + Long.bitCount(bitRow[lw] & toMask(toColumn));
+        }
+        else {
+            final byte[] byteRow = byteRows[i];
+            int count = 0;
+            for (int j = fromColumn; j < toColumn; j++) {
+                if (byteRow[j] != 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public int[] nonZeroPositionsInRow(int i) {
+
+        return nonZeroPositionsInRow(i, 0, columns());
+    }
+
+    @Override
+    public int[] nonZeroPositionsInRow(int i, int fromColumn, int toColumn) {
+
+        final int[] positions = new int[nonZerosInRow(i, fromColumn, toColumn)];
+        for (int n = 0, j = nextNonZero(i, fromColumn, toColumn); j < toColumn; j = nextNonZero(i, j + 1, toColumn)) {
+            positions[n++] = j;
+        }
+
+        return positions;
+    }
+
+    @Override
+    public void addRowsInPlace(int srcRow, int destRow) {
+
+        addRowsInPlace((byte)1, srcRow, destRow, 0, columns());
+    }
+
+    @Override
+    public void addRowsInPlace(int srcRow, int destRow, int fromColumn, int toColumn) {
+
+        addRowsInPlace((byte)1, srcRow, destRow, fromColumn, toColumn);
+    }
+
+    @Override
+    public void addRowsInPlace(byte srcMultiplier, int srcRow, int destRow) {
+
+        addRowsInPlace(srcMultiplier, srcRow, destRow, 0, columns());
+    }
+
+    @Override
+    public void addRowsInPlace(byte srcMultiplier, int srcRow, int destRow, int fromColumn, int toColumn) {
+
+        Indexables.checkIndexBounds(srcRow, rows());
+        Indexables.checkIndexBounds(destRow, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+
+        if (srcMultiplier == 0 || fromColumn == toColumn) {
+            return; // nothing needs to be added to the destination row
+        }
+
+        final long[] srcBits = bitRows[srcRow];
+        if (srcBits != null) {
+            if (srcMultiplier == 1 && bitRows[destRow] != null) {
+                xorBits(srcBits, bitRows[destRow], fromColumn, toColumn);
+            }
+            else {
+                // the sum is not binary, unless the source row is zero in the range
+                byte[] destBytes = byteRows[destRow];
+                int j = nextNonZero(srcBits, fromColumn, toColumn);
+                if (j < toColumn && destBytes == null) {
+                    destBytes = unpack(destRow);
+                }
+                for (; j < toColumn; j = nextNonZero(srcBits, j + 1, toColumn)) {
+                    destBytes[j] ^= srcMultiplier;
+                }
+            }
+        }
+        else {
+            final byte[] srcBytes = byteRows[srcRow];
+            final byte[] destBytes = (byteRows[destRow] != null) ? byteRows[destRow] : unpack(destRow);
+            OctetOps.vectorVectorAdditionInPlace(
+                srcMultiplier, srcBytes, fromColumn, destBytes, fromColumn, toColumn - fromColumn);
+        }
+    }
+
+    // requires a non-empty range
+    private static void xorBits(long[] srcBits, long[] destBits, int fromColumn, int toColumn) {
+
+        final int fw = wordIndex(fromColumn);
+        final int lw = wordIndex(toColumn - 1);
+        if (fw == lw) {
+            destBits[fw] ^= srcBits[fw] & fromMask(fromColumn) & toMask(toColumn);
+        }
+        else {
+            destBits[fw] ^= srcBits[fw] & fromMask(fromColumn);
+            for (int w = fw + 1; w < lw; w++) {
+                destBits[w] ^= srcBits[w];
+            }
+            destBits[lw] ^= srcBits[lw] & toMask(toColumn);
+        }
+    }
+
+    @Override
+    public void divideRowInPlace(int i, byte value) {
+
+        divideRowInPlace(i, value, 0, columns());
+    }
+
+    @Override
+    public void divideRowInPlace(int i, byte value, int fromColumn, int toColumn) {
+
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+
+        if (value == 1) {
+            return; // the row is not changed
+        }
+
+        final byte[] byteRow = (byteRows[i] != null) ? byteRows[i] : unpack(i);
+        OctetOps.valueVectorDivision(value, byteRow, fromColumn, byteRow, fromColumn, toColumn - fromColumn);
+    }
+
+    @Override
+    public ByteMatrix multiply(ByteMatrix matrix, Factory factory) {
+
+        ensureArgumentIsNotNull(matrix, "matrix");
+
+        if (columns() != matrix.rows()) {
+            fail("Wrong matrix dimensions: " + matrix.rows() + "x" + matrix.columns() +
+                 ". Should be: " + columns() + "x_.");
+        }
+
+        return multiply(matrix, 0, rows(), 0, columns(), 0, matrix.rows(), 0, matrix.columns(), factory);
+    }
+
+    @Override
+    public ByteMatrix multiply(
+        ByteMatrix matrix,
+        int fromThisRow,
+        int toThisRow,
+        int fromThisColumn,
+        int toThisColumn,
+        int fromOtherRow,
+        int toOtherRow,
+        int fromOtherColumn,
+        int toOtherColumn,
+        Factory factory)
+    {
+
+        ensureFactoryIsNotNull(factory);
+        ensureArgumentIsNotNull(matrix, "matrix");
+        Indexables.checkFromToBounds(fromThisRow, toThisRow, rows());
+        Indexables.checkFromToBounds(fromThisColumn, toThisColumn, columns());
+        Indexables.checkFromToBounds(fromOtherRow, toOtherRow, matrix.rows());
+        Indexables.checkFromToBounds(fromOtherColumn, toOtherColumn, matrix.columns());
+
+        if ((toThisColumn - fromThisColumn) != (toOtherRow - fromOtherRow)) {
+            fail("Wrong matrix dimensions: " +
+                 (toOtherRow - fromOtherRow) + "x" + (toOtherColumn - fromOtherColumn) +
+                 ". Should be: " + (toThisColumn - fromThisColumn) + "x_.");
+        }
+
+        final int resultRows = toThisRow - fromThisRow;
+        final int resultColumns = toOtherColumn - fromOtherColumn;
+
+        // each row of the product is the sum of the rows of the other matrix multiplied by the non-zeros of a row
+        final byte[][] product = new byte[resultRows][];
+        for (int i = fromThisRow; i < toThisRow; i++) {
+            product[i - fromThisRow] = multiplyRow(
+                i, fromThisColumn, toThisColumn, matrix, fromOtherRow, fromOtherColumn, toOtherColumn);
+        }
+
+        if (factory == factory()) {
+            final BitPackedByteMatrix result = new BitPackedByteMatrix(resultRows, resultColumns);
+            for (int i = 0; i < resultRows; i++) {
+                result.setRow(i, product[i]);
+            }
+            return result;
+        }
+        else {
+            final ByteMatrix result = factory.createMatrix(resultRows, resultColumns);
+            for (int i = 0; i < resultRows; i++) {
+                for (int j = 0; j < resultColumns; j++) {
+                    if (product[i][j] != 0) {
+                        result.set(i, j, product[i][j]);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public ByteVector multiplyRow(int i, ByteMatrix matrix, Factory factory) {
+
+        ensureArgumentIsNotNull(matrix, "matrix");
+
+        if (columns() != matrix.rows()) {
+            fail("Wrong matrix dimensions: " + matrix.rows() + "x" + matrix.columns() +
+                 ". Should be: " + columns() + "x_.");
+        }
+
+        return multiplyRow(i, matrix, 0, columns(), factory);
+    }
+
+    @Override
+    public ByteVector multiplyRow(int i, ByteMatrix matrix, int fromColumn, int toColumn, Factory factory) {
+
+        ensureFactoryIsNotNull(factory);
+        ensureArgumentIsNotNull(matrix, "matrix");
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+
+        if ((toColumn - fromColumn) != matrix.rows()) {
+            fail("Wrong matrix dimensions: " + matrix.rows() + "x" + matrix.columns() +
+                 ". Should be: " + (toColumn - fromColumn) + "x_.");
+        }
+
+        return factory.createVector(multiplyRow(i, fromColumn, toColumn, matrix, 0, 0, matrix.columns()));
+    }
+
+    /*
+     * Returns the product of the entries of row i in [fromColumn, toColumn) by the rows of the given matrix starting
+     * at fromOtherRow, restricted to the columns in [fromOtherColumn, toOtherColumn).
+     */
+    private byte[] multiplyRow(
+        int i,
+        int fromColumn,
+        int toColumn,
+        ByteMatrix matrix,
+        int fromOtherRow,
+        int fromOtherColumn,
+        int toOtherColumn)
+    {
+
+        final byte[] result = new byte[toOtherColumn - fromOtherColumn];
+        for (int k = nextNonZero(i, fromColumn, toColumn); k < toColumn; k = nextNonZero(i, k + 1, toColumn)) {
+            final byte value = safeGet(i, k);
+            final int otherRow = fromOtherRow + (k - fromColumn);
+
+            if (matrix instanceof BitPackedByteMatrix) {
+                ((BitPackedByteMatrix)matrix).addRowTo(value, otherRow, fromOtherColumn, toOtherColumn, result);
+            }
+            else {
+                final ByteVectorIterator it = matrix.nonZeroRowIterator(otherRow, fromOtherColumn, toOtherColumn);
+                while (it.hasNext()) {
+                    it.next();
+                    result[it.index() - fromOtherColumn] ^= aTimesB(value, it.get());
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /*
+     * Adds the entries of row i in [fromColumn, toColumn), multiplied by a value, to an array (from its first index).
+     */
+    private void addRowTo(byte multiplier, int i, int fromColumn, int toColumn, byte[] dest) {
+
+        final long[] bitRow = bitRows[i];
+        if (bitRow != null) {
+            int j = nextNonZero(bitRow, fromColumn, toColumn);
+            while (j < toColumn) {
+                dest[j - fromColumn] ^= multiplier;
+                j = nextNonZero(bitRow, j + 1, toColumn);
+            }
+        }
+        else {
+            OctetOps.vectorVectorAdditionInPlace(multiplier, byteRows[i], fromColumn, dest, 0, toColumn - fromColumn);
+        }
+    }
+
+    @Override
+    public ByteVectorIterator nonZeroRowIterator(int i) {
+
+        return nonZeroRowIterator(i, 0, columns());
+    }
+
+    @Override
+    public ByteVectorIterator nonZeroRowIterator(int i, int fromColumn, int toColumn) {
+
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+
+        return new NonZeroRowIterator(i, fromColumn, toColumn);
+    }
+
+
+    /*
+     * Skips the zero words of binary rows. The current representation of the row is checked at each step, since
+     * setting an entry may convert a binary row into a byte row.
+     */
+    private final class NonZeroRowIterator extends ByteVectorIterator {
+
+        private final int i;
+        private final int end;
+        private int cursor;
+        private int nextCursor;
+
+
+        NonZeroRowIterator(int i, int fromColumn, int toColumn) {
+
+            super(toColumn - fromColumn);
+
+            this.i = i;
+            this.end = toColumn;
+            this.cursor = -1;
+            this.nextCursor = nextNonZero(i, fromColumn, toColumn);
+        }
+
+        @Override
+        public int index() {
+
+            return cursor;
+        }
+
+        @Override
+        public byte get() {
+
+            return safeGet(i, cursor);
+        }
+
+        @Override
+        public void set(byte value) {
+
+            safeSet(i, cursor, value);
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            return nextCursor < end;
+        }
+
+        @Override
+        public Byte next() {
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            cursor = nextCursor;
+            nextCursor = nextNonZero(i, cursor + 1, end);
+            return get();
+        }
+    }
+
+
+    @Override
+    protected Type getSerializationType() {
+
+        return Serialization.Type.DENSE_2D_MATRIX;
+    }
+}
@@ -479,6 +479,18 @@ public class CRSByteMatrix extends AbstractCompressedByteMatrix implements Spars
         return new CRSByteMatrix(rows(), columns(), sparseRows.copy());
     }
 
+    @Override
+    public ByteMatrix resize(int rows, int columns, Factory factory) {
+
+        // if only the number of rows changes, the compressed rows can be copied directly
+        if (factory == factory() && columns == columns() && rows >= 0) {
+            return new CRSByteMatrix(rows, columns, sparseRows.copy(rows));
+        }
+        else {
+            return super.resize(rows, columns, factory);
+        }
+    }
+
     @Override
     public boolean nonZeroAt(int i, int j) {
 
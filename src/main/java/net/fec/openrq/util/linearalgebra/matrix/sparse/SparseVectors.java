@@ -72,6 +72,21 @@ final class SparseVectors {
         return new SparseVectors($vectors, empty);
     }
 
+    // copies the first vectors and appends empty vectors if more vectors than the existing ones are requested
+    SparseVectors copy(int numVectors) {
+
+        ByteVector[] $vectors = new ByteVector[numVectors];
+        final int numCopied = Math.min(numVectors, this.vectors.length);
+        for (int i = 0; i < numCopied; i++) {
+            $vectors[i] = this.vectors[i].copy(); // empty vectors return themselves on copy()
+        }
+        for (int i = numCopied; i < numVectors; i++) {
+            $vectors[i] = empty;
+        }
+
+        return new SparseVectors($vectors, empty);
+    }
+
     void initializeVector(int index, VectorSource source) {
 
         vectors[index] = new CompressedByteVector(source);
@@ -135,8 +135,9 @@ public final class OctetOps {
                 Arrays.fill(result, resPos, resEnd, (byte)0); // uses from and to indexes
             }
             else {
+                final byte[] prodRow = productRow(value);
                 for (int rr = resPos, vv = vecPos; rr < resEnd; rr++, vv++) {
-                    result[rr] = aTimesB(value, vector[vv]);
+                    result[rr] = prodRow[UNSIGN(vector[vv])];
                 }
             }
         }
@@ -159,11 +160,22 @@ public final class OctetOps {
             ByteBuffers.putZeros(result, length, BufferOperation.RESTORE_POSITION);
         }
         else {
+            final byte[] prodRow = productRow(value);
+            final int sol = SizeOf.LONG;
             final int vPos = vector.position();
             final int rPos = result.position();
+
             final int rEnd = rPos + length;
-            for (int vv = vPos, rr = rPos; rr < rEnd; vv++, rr++) {
-                result.put(rr, aTimesB(value, vector.get(vv))); // absolute access to buffer
+            final int rLongEnd = rPos + ((length / sol) * sol);
+
+            int vv = vPos;
+            int rr = rPos;
+            for (; rr < rLongEnd; vv += sol, rr += sol) {
+                result.putLong(rr, productAsLong(prodRow, vector, vv)); // absolute access to buffer
+            }
+
+            for (; rr < rEnd; vv++, rr++) {
+                result.put(rr, prodRow[UNSIGN(vector.get(vv))]); // absolute access to buffer
             }
         }
     }
@@ -191,9 +203,11 @@ public final class OctetOps {
             }
         }
         else {
+            // dividing by a value is the same as multiplying by its inverse
+            final byte[] quotRow = productRow(inverse(value));
             final int resEnd = resPos + length;
             for (int rr = resPos, vv = vecPos; rr < resEnd; rr++, vv++) {
-                result[rr] = aDividedByB(vector[vv], value);
+                result[rr] = quotRow[UNSIGN(vector[vv])];
             }
         }
     }
@@ -212,6 +226,8 @@ public final class OctetOps {
             }
         }
         else {
+            // dividing by a value is the same as multiplying by its inverse
+            final byte[] quotRow = productRow(inverse(value));
             final int sol = SizeOf.LONG;
             final int vPos = vector.position();
             final int rPos = result.position();
@@ -222,12 +238,12 @@ public final class OctetOps {
             int vv = vPos;
             int rr = rPos;
             for (; rr < rLongEnd; vv += sol, rr += sol) {
-                final long quot = divisionAsLong(value, vector, vv);
+                final long quot = productAsLong(quotRow, vector, vv);
                 result.putLong(rr, quot);
             }
 
             for (; rr < rEnd; vv++, rr++) {
-                final byte quot = aDividedByB(vector.get(vv), value);
+                final byte quot = quotRow[UNSIGN(vector.get(vv))];
                 result.put(rr, quot);
             }
         }
@@ -302,10 +318,151 @@ public final class OctetOps {
         if (vec1Multiplier == 1) {
             vectorVectorAddition(vector1, vecPos1, vector2, vecPos2, result, resPos, length);
         }
+        else if (vector2 == result && vecPos2 == resPos) { // in-place addition
+            vectorVectorAdditionInPlace(vec1Multiplier, vector1, vecPos1, result, resPos, length);
+        }
         else {
+            final byte[] prodRow = productRow(vec1Multiplier);
             final int resEnd = resPos + length;
             for (int v1 = vecPos1, v2 = vecPos2, r = resPos; r < resEnd; v1++, v2++, r++) {
-                result[r] = aPlusB(aTimesB(vec1Multiplier, vector1[v1]), vector2[v2]);
+                result[r] = aPlusB(prodRow[UNSIGN(vector1[v1])], vector2[v2]);
+            }
+        }
+    }
+
+    /**
+     * Adds {@code vector1} to {@code vector2}, storing the sum in {@code vector2}.
+     * 
+     * @param vector1
+     *            The vector to add
+     * @param vector2
+     *            The vector to which {@code vector1} is added (and where the sum is stored)
+     */
+    public static void vectorVectorAdditionInPlace(byte[] vector1, byte[] vector2) {
+
+        vectorVectorAdditionInPlace(vector1, 0, vector2, 0, vector2.length);
+    }
+
+    /**
+     * Adds a region of {@code vector1} to a region of {@code vector2}, storing the sum in {@code vector2}.
+     * 
+     * @param vector1
+     *            The vector to add
+     * @param vecPos1
+     *            The index of the first element of {@code vector1} to add
+     * @param vector2
+     *            The vector to which {@code vector1} is added (and where the sum is stored)
+     * @param vecPos2
+     *            The index of the first element of {@code vector2} to store a sum
+     * @param length
+     *            The number of elements to add
+     */
+    public static void vectorVectorAdditionInPlace(byte[] vector1, int vecPos1, byte[] vector2, int vecPos2, int length) {
+
+        // a single load-xor-store per element, with no table lookups, which the JIT compiler may vectorize (reading
+        // longs from an array requires either assembling them from bytes, which is slower, or creating buffer views)
+        final int end2 = vecPos2 + length;
+        for (int v1 = vecPos1, v2 = vecPos2; v2 < end2; v1++, v2++) {
+            vector2[v2] ^= vector1[v1];
+        }
+    }
+
+    /**
+     * Adds a region of {@code vector1} to a region of {@code vector2}, storing the sum in {@code vector2}. The
+     * buffer is accessed with absolute indexes, so its position is not modified and it may be a direct buffer.
+     * 
+     * @param vector1
+     *            The vector to add
+     * @param vecPos1
+     *            The index of the first element of {@code vector1} to add
+     * @param vector2
+     *            The buffer to which {@code vector1} is added (and where the sum is stored)
+     * @param vecPos2
+     *            The index in the buffer of the first element to store a sum
+     * @param length
+     *            The number of elements to add
+     */
+    public static void vectorVectorAdditionInPlace(
+        byte[] vector1,
+        int vecPos1,
+        ByteBuffer vector2,
+        int vecPos2,
+        int length)
+    {
+
+        final int sol = SizeOf.LONG;
+        // the array is read in the byte order of the buffer, so that the sum of each long is stored unchanged
+        final boolean bigEndian = (vector2.order() == ByteOrder.BIG_ENDIAN);
+
+        final int end2 = vecPos2 + length;
+        final int longEnd2 = vecPos2 + ((length / sol) * sol);
+
+        int v1 = vecPos1;
+        int v2 = vecPos2;
+        for (; v2 < longEnd2; v1 += sol, v2 += sol) {
+            vector2.putLong(v2, aLongPlusBLong(getLong(vector1, v1, bigEndian), vector2.getLong(v2)));
+        }
+
+        for (; v2 < end2; v1++, v2++) {
+            vector2.put(v2, aPlusB(vector1[v1], vector2.get(v2)));
+        }
+    }
+
+    /**
+     * Adds the product of {@code vec1Multiplier} and {@code vector1} to {@code vector2}, storing the sum in
+     * {@code vector2}.
+     * 
+     * @param vec1Multiplier
+     *            The value by which {@code vector1} is multiplied
+     * @param vector1
+     *            The vector to multiply and add
+     * @param vector2
+     *            The vector to which the product is added (and where the sum is stored)
+     */
+    public static void vectorVectorAdditionInPlace(byte vec1Multiplier, byte[] vector1, byte[] vector2) {
+
+        vectorVectorAdditionInPlace(vec1Multiplier, vector1, 0, vector2, 0, vector2.length);
+    }
+
+    /**
+     * Adds the product of {@code vec1Multiplier} and a region of {@code vector1} to a region of {@code vector2},
+     * storing the sum in {@code vector2}.
+     * 
+     * @param vec1Multiplier
+     *            The value by which {@code vector1} is multiplied
+     * @param vector1
+     *            The vector to multiply and add
+     * @param vecPos1
+     *            The index of the first element of {@code vector1} to multiply and add
+     * @param vector2
+     *            The vector to which the product is added (and where the sum is stored)
+     * @param vecPos2
+     *            The index of the first element of {@code vector2} to store a sum
+     * @param length
+     *            The number of elements to multiply and add
+     */
+    public static void vectorVectorAdditionInPlace(
+        byte vec1Multiplier,
+        byte[] vector1,
+        int vecPos1,
+        byte[] vector2,
+        int vecPos2,
+        int length)
+    {
+
+        if (vec1Multiplier == 0) { // adding zeros has no effect
+            return;
+        }
+        else if (vec1Multiplier == 1) { // no need to multiply, just add
+            vectorVectorAdditionInPlace(vector1, vecPos1, vector2, vecPos2, length);
+        }
+        else {
+            // the products of the multiplier by every possible octet are looked up in a single row
+            // of the multiplication table, which fits easily in the L1 cache
+            final byte[] prodRow = productRow(vec1Multiplier);
+            final int end2 = vecPos2 + length;
+            for (int v1 = vecPos1, v2 = vecPos2; v2 < end2; v1++, v2++) {
+                vector2[v2] ^= prodRow[UNSIGN(vector1[v1])];
             }
         }
     }
@@ -332,6 +489,7 @@ public final class OctetOps {
             vectorVectorAddition(vector1, vector2, result, length);
         }
         else {
+            final byte[] prodRow = productRow(vec1Multiplier);
             final int sol = SizeOf.LONG;
             final int v1Pos = vector1.position();
             final int v2Pos = vector2.position();
@@ -344,13 +502,13 @@ public final class OctetOps {
             int v2 = v2Pos;
             int rr = rPos;
             for (; rr < rLongEnd; v1 += sol, v2 += sol, rr += sol) {
-                final long prod = productAsLong(vec1Multiplier, vector1, v1);
+                final long prod = productAsLong(prodRow, vector1, v1);
                 final long sum = aLongPlusBLong(prod, vector2.getLong(v2));
                 result.putLong(rr, sum);
             }
 
             for (; rr < rEnd; v1++, v2++, rr++) {
-                final byte prod = aTimesB(vec1Multiplier, vector1.get(v1));
+                final byte prod = prodRow[UNSIGN(vector1.get(v1))];
                 final byte sum = aPlusB(prod, vector2.get(v2));
                 result.put(rr, sum);
             }
@@ -358,47 +516,58 @@ public final class OctetOps {
     }
 
     /*
-     * Reads 8 bytes, multiplying each one by the multiplier,
-     * and stores the products inside one long value.
+     * Reads 8 bytes in a single long, multiplying each one by the multiplier whose products are stored in the
+     * given row of the multiplication table, and stores the products inside one long value.
+     * Since each byte is mapped independently, the byte order of the buffer is irrelevant.
      */
-    private static long productAsLong(byte multiplier, ByteBuffer vector, int vecPos) {
+    private static long productAsLong(byte[] prodRow, ByteBuffer vector, int vecPos) {
+
+        final long bytes = vector.getLong(vecPos);
 
         long ret = 0L;
-        if (vector.order() == ByteOrder.BIG_ENDIAN) {
-            for (int n = SizeOf.LONG - 1, vv = vecPos; n >= 0; n--, vv++) {
-                ret |= (aTimesB(multiplier, vector.get(vv)) & 0xFFL) << (n * Byte.SIZE);
-            }
-        }
-        else {
-            for (int n = 0, vv = vecPos; n < SizeOf.LONG; n++, vv++) {
-                ret |= (aTimesB(multiplier, vector.get(vv)) & 0xFFL) << (n * Byte.SIZE);
-            }
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            ret |= (prodRow[(int)(bytes >>> shift) & 0xFF] & 0xFFL) << shift;
         }
 
         return ret;
     }
 
     /*
-     * Reads 8 bytes, dividing each one by the divisor,
-     * and stores the quotients inside one long value.
+     * Returns the long made of the 8 bytes of the array starting at the given index, in the given byte order.
      */
-    private static long divisionAsLong(byte divisor, ByteBuffer vector, int vecPos) {
+    private static long getLong(byte[] array, int index, boolean bigEndian) {
 
         long ret = 0L;
-        if (vector.order() == ByteOrder.BIG_ENDIAN) {
-            for (int n = SizeOf.LONG - 1, vv = vecPos; n >= 0; n--, vv++) {
-                ret |= (aDividedByB(vector.get(vv), divisor) & 0xFFL) << (n * Byte.SIZE);
+        if (bigEndian) {
+            for (int i = index, end = index + SizeOf.LONG; i < end; i++) {
+                ret = (ret << Byte.SIZE) | (array[i] & 0xFFL);
             }
         }
         else {
-            for (int n = 0, vv = vecPos; n < SizeOf.LONG; n++, vv++) {
-                ret |= (aDividedByB(vector.get(vv), divisor) & 0xFFL) << (n * Byte.SIZE);
+            for (int i = index + SizeOf.LONG - 1; i >= index; i--) {
+                ret = (ret << Byte.SIZE) | (array[i] & 0xFFL);
             }
         }
 
         return ret;
     }
 
+    /*
+     * Returns the row of the multiplication table with the products of the given value by every octet.
+     */
+    private static byte[] productRow(byte value) {
+
+        return MULT_TABLE[UNSIGN(value)];
+    }
+
+    /*
+     * Returns the multiplicative inverse of a non-zero value.
+     */
+    private static byte inverse(byte value) {
+
+        return aDividedByB((byte)1, value);
+    }
+
     private static int getExp(int i) {
 
         return EXP_TABLE[i];
@@ -111,6 +111,11 @@ public final class SystematicIndices {
         return false;
     }
 
+    public static int numKPrimes() {
+
+        return table2.length;
+    }
+
 
     private static final int table2[][] = {
                                            {10, 254, 7, 10, 17},
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockDecodingListener;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * Checks that source blocks are decoded in the background by data decoders created with an executor.
+ */
+public class AsyncDecodingTest {
+
+    private static final int SYMBOL_SIZE = 16;
+    private static final int NUM_SOURCE_BLOCKS = 4;
+    private static final int DATA_LENGTH = NUM_SOURCE_BLOCKS * 200 * SYMBOL_SIZE;
+
+    private static ExecutorService executor;
+
+
+    @BeforeClass
+    public static void setUp() {
+
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void testAsyncDecoding() throws InterruptedException {
+
+        final FECParameters fecParams = FECParameters.newParameters(DATA_LENGTH, SYMBOL_SIZE, NUM_SOURCE_BLOCKS);
+        final byte[] data = TestingCommon.randomBytes(DATA_LENGTH, TestingCommon.newSeededRandom());
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParams);
+
+        final CountDownLatch decoded = new CountDownLatch(NUM_SOURCE_BLOCKS);
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 2, executor, new SourceBlockDecodingListener() {
+
+            @Override
+            public void sourceBlockDecodingFinished(SourceBlockDecoder decoder, SourceBlockState state) {
+
+                if (state == SourceBlockState.DECODED) {
+                    decoded.countDown();
+                }
+            }
+        });
+
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final SourceBlockDecoder sbDec = dec.sourceBlock(sbEnc.sourceBlockNumber());
+            final int K = sbEnc.numberOfSourceSymbols();
+
+            // lose every third source symbol, and send enough repair symbols to replace them
+            int lost = 0;
+            for (int esi = 0; esi < K; esi++) {
+                if (esi % 3 == 0) {
+                    lost++;
+                }
+                else {
+                    sbDec.putEncodingPacket(sbEnc.sourcePacket(esi));
+                }
+            }
+            for (int esi = K; esi < K + lost + sbDec.symbolOverhead(); esi++) {
+                sbDec.putEncodingPacket(sbEnc.repairPacket(esi));
+            }
+        }
+
+        assertTrue("source blocks were not decoded in time", decoded.await(30, TimeUnit.SECONDS));
+        for (SourceBlockDecoder sbDec : dec.sourceBlockIterable()) {
+            assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        }
+        assertArrayEquals(data, dec.dataArray());
+    }
+}
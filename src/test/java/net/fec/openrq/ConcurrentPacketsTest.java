@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that encoding packets can be put concurrently into the same source block decoder.
+ */
+public class ConcurrentPacketsTest {
+
+    private static final int SYMBOL_SIZE = 64;
+    private static final int K = 1000;
+    private static final int NUM_THREADS = 4;
+
+
+    @Test
+    public void testConcurrentPuts() throws InterruptedException, ExecutionException {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final int F = K * SYMBOL_SIZE - 5; // the last source symbol is padded
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 1);
+        final byte[] data = TestingCommon.randomBytes(F, rand);
+        final SourceBlockEncoder enc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+
+        // lose about a fifth of the source symbols, and send every packet twice
+        final List<EncodingPacket> packets = new ArrayList<>();
+        for (int esi = 0; esi < K; esi++) {
+            if (rand.nextInt(5) != 0) {
+                packets.add(enc.sourcePacket(esi));
+                packets.add(enc.sourcePacket(esi));
+            }
+        }
+        for (int esi = K; esi < K + K / 4; esi++) {
+            packets.add(enc.repairPacket(esi));
+            packets.add(enc.repairPacket(esi));
+        }
+        Collections.shuffle(packets, rand);
+
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 2);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < NUM_THREADS; t++) {
+                final int first = t;
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() {
+
+                        for (int p = first; p < packets.size(); p += NUM_THREADS) {
+                            sbDec.putEncodingPacket(packets.get(p));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testMultipleSymbolsRepairPackets() {
+
+        final int F = K * SYMBOL_SIZE;
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 1);
+        final byte[] data = TestingCommon.randomBytes(F, TestingCommon.newSeededRandom());
+        final SourceBlockEncoder enc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 2);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+        sbDec.putEncodingPacket(enc.sourcePacket(0, K / 2));
+        sbDec.putEncodingPacket(enc.repairPacket(K, K / 2 + 2));
+
+        assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        assertArrayEquals(data, dec.dataArray());
+    }
+}
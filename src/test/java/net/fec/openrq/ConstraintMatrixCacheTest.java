@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that constraint matrix templates are shared, evicted in LRU order, and never modified through their copies.
+ */
+public class ConstraintMatrixCacheTest {
+
+    private static final int NUM_THREADS = 8;
+
+
+    @Test
+    public void testLRUEviction() {
+
+        final int K1 = SystematicIndices.ceil(10);
+        final int K2 = SystematicIndices.ceil(20);
+        final int K3 = SystematicIndices.ceil(30);
+        final ConstraintMatrixCache cache = new ConstraintMatrixCache(2);
+
+        final ByteMatrix template1 = cache.getTemplate(K1);
+        final ByteMatrix template2 = cache.getTemplate(K2);
+        assertSame(template1, cache.getTemplate(K1)); // K2 is now the least recently used
+
+        cache.getTemplate(K3);
+        assertSame(template1, cache.getTemplate(K1));
+        final ByteMatrix newTemplate2 = cache.getTemplate(K2); // evicted, so generated again
+        assertNotSame(template2, newTemplate2);
+        assertEquals(template2, newTemplate2);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+
+        final int[] Kprimes = {SystematicIndices.ceil(10), SystematicIndices.ceil(101), SystematicIndices.ceil(300)};
+        final ConstraintMatrixCache cache = new ConstraintMatrixCache(Kprimes.length);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            final List<Future<ByteMatrix[]>> futures = new ArrayList<>();
+            for (int t = 0; t < NUM_THREADS; t++) {
+                futures.add(executor.submit(new Callable<ByteMatrix[]>() {
+
+                    @Override
+                    public ByteMatrix[] call() throws Exception {
+
+                        start.await();
+                        final ByteMatrix[] templates = new ByteMatrix[Kprimes.length];
+                        for (int k = 0; k < Kprimes.length; k++) {
+                            templates[k] = cache.getTemplate(Kprimes[k]);
+                        }
+                        return templates;
+                    }
+                }));
+            }
+            start.countDown();
+
+            // every thread gets the same template, even when some of them generated it concurrently
+            final ByteMatrix[] expected = futures.get(0).get();
+            for (Future<ByteMatrix[]> future : futures) {
+                final ByteMatrix[] templates = future.get();
+                for (int k = 0; k < Kprimes.length; k++) {
+                    assertSame(expected[k], templates[k]);
+                }
+            }
+            for (int k = 0; k < Kprimes.length; k++) {
+                assertEquals(LinearSystem.newConstraintMatrix(Kprimes[k]), expected[k]);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCopiesDoNotAliasTemplate() {
+
+        final int Kprime = SystematicIndices.ceil(101);
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int L = Kprime + SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+        final int overheadRows = 3;
+
+        final ByteMatrix template = ConstraintMatrixCache.get(Kprime);
+        final ByteMatrix expected = template.copy();
+
+        final ByteMatrix A = LinearSystem.generateConstraintMatrix(Kprime, overheadRows);
+        assertEquals(L + overheadRows, A.rows());
+        assertEquals(L, A.columns());
+        for (int row = 0; row < L; row++) {
+            assertEquals(template.getRow(row), A.getRow(row));
+        }
+
+        // modify the copy as a decoder does
+        A.swapRows(0, L + 1);
+        A.set(L, 0, (byte)7);
+        A.set(1, 1, (byte)(A.get(1, 1) + 1));
+        A.addRowsInPlace(2, 3);
+
+        assertEquals(expected, template);
+        assertEquals(expected, LinearSystem.generateConstraintMatrix(Kprime, 0));
+        final ByteMatrix other = LinearSystem.generateConstraintMatrix(Kprime, overheadRows);
+        for (int row = 0; row < L; row++) {
+            assertEquals(template.getRow(row), other.getRow(row));
+        }
+        for (int row = L; row < L + overheadRows; row++) {
+            assertEquals(0, other.nonZerosInRow(row));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.decoder.DecodingEngine;
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockDecodingListener;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Checks that file data decoders write the source data into their files.
+ */
+public class FileDataDecoderTest {
+
+    private static final int SYMBOL_SIZE = 100;
+    private static final int HEADER_SIZE = 7; // the data does not begin at the start of the file
+
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void testDecodesIntoFile() throws IOException {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final int F = 3000 * SYMBOL_SIZE - 42; // the last source symbol is padded
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 3);
+        final byte[] data = TestingCommon.randomBytes(F, rand);
+        final byte[] header = TestingCommon.randomBytes(HEADER_SIZE, rand);
+
+        final Path file = Files.write(folder.newFile().toPath(), header);
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParams);
+
+        final AtomicInteger numDecoded = new AtomicInteger();
+        final SourceBlockDecodingListener listener = new SourceBlockDecodingListener() {
+
+            @Override
+            public void sourceBlockDecodingFinished(SourceBlockDecoder decoder, SourceBlockState state) {
+
+                if (state == SourceBlockState.DECODED) {
+                    numDecoded.incrementAndGet();
+                }
+            }
+        };
+
+        final FileDataDecoder dec;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // small segments, so that source blocks span several of them
+            dec = FileDataDecoder.newDecoder(channel, HEADER_SIZE, fecParams, 0,
+                DecodingEngine.PERMANENT_INACTIVATION, null, listener, 12345);
+        }
+        assertEquals(HEADER_SIZE, dec.dataPosition());
+
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final SourceBlockDecoder sbDec = dec.sourceBlock(sbEnc.sourceBlockNumber());
+            final int K = sbEnc.numberOfSourceSymbols();
+
+            // the last source block is only decoded with received source symbols
+            final boolean lastBlock = sbEnc.sourceBlockNumber() == enc.numberOfSourceBlocks() - 1;
+            for (int esi = 0; esi < K; esi++) {
+                if (lastBlock || esi % 4 != 0) {
+                    sbDec.putEncodingPacket(sbEnc.sourcePacket(esi));
+                }
+            }
+            for (int esi = K; !sbDec.isSourceBlockDecoded(); esi++) {
+                sbDec.putEncodingPacket(sbEnc.repairPacket(esi));
+            }
+
+            // packets put after the source block is decoded do not access its released mapping
+            assertEquals(SourceBlockState.DECODED, sbDec.putEncodingPacket(sbEnc.sourcePacket(0)));
+        }
+
+        assertTrue(dec.isDataDecoded());
+        assertEquals(enc.numberOfSourceBlocks(), numDecoded.get());
+
+        final byte[] contents = Files.readAllBytes(file);
+        assertEquals(HEADER_SIZE + F, contents.length);
+        assertArrayEquals(header, Arrays.copyOf(contents, HEADER_SIZE));
+        assertArrayEquals(data, Arrays.copyOfRange(contents, HEADER_SIZE, contents.length));
+    }
+
+    @Test
+    public void testCreatesFile() throws IOException {
+
+        final int F = 1234;
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 1);
+        final byte[] data = TestingCommon.randomBytes(F, TestingCommon.newSeededRandom());
+        final Path file = folder.getRoot().toPath().resolve("decoded");
+        assertFalse(Files.exists(file));
+
+        final FileDataDecoder dec = OpenRQ.newDecoder(file, fecParams, 0);
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+        for (int esi = 0; !sbDec.isSourceBlockDecoded(); esi++) {
+            sbDec.putEncodingPacket(sbEnc.repairPacket(sbEnc.numberOfSourceSymbols() + esi));
+        }
+
+        assertArrayEquals(data, Files.readAllBytes(file));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Checks that file data encoders produce the same encoding packets as array data encoders.
+ */
+public class FileDataEncoderTest {
+
+    private static final int SYMBOL_SIZE = 100;
+    private static final int HEADER_SIZE = 7; // the data does not begin at the start of the file
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void testSameAsArrayEncoder() throws IOException {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final int F = 3000 * SYMBOL_SIZE - 42; // the last source symbol is padded
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 3);
+        final byte[] data = TestingCommon.randomBytes(F, rand);
+        final Path file = writeFile(data);
+
+        final ArrayDataEncoder arrayEnc = OpenRQ.newEncoder(data, fecParams);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // small segments, so that source blocks span several of them
+            final FileDataEncoder fileEnc = FileDataEncoder.newEncoder(channel, HEADER_SIZE, fecParams, 12345);
+            assertEquals(HEADER_SIZE, fileEnc.dataPosition());
+
+            final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0);
+            for (SourceBlockEncoder sbEnc : fileEnc.sourceBlockIterable()) {
+                final int sbn = sbEnc.sourceBlockNumber();
+                final SourceBlockEncoder arraySbEnc = arrayEnc.sourceBlock(sbn);
+                final SourceBlockDecoder sbDec = dec.sourceBlock(sbn);
+
+                final int K = sbEnc.numberOfSourceSymbols();
+                for (int esi = 0; esi < K; esi++) {
+                    final EncodingPacket packet = sbEnc.sourcePacket(esi);
+                    assertArrayEquals(arraySbEnc.sourcePacket(esi).asArray(), packet.asArray());
+                    if (esi % 4 != 0) {
+                        sbDec.putEncodingPacket(packet);
+                    }
+                }
+                for (int esi = K; esi < K + K / 4; esi++) {
+                    final EncodingPacket packet = sbEnc.repairPacket(esi);
+                    assertArrayEquals(arraySbEnc.repairPacket(esi).asArray(), packet.asArray());
+                    sbDec.putEncodingPacket(packet);
+                }
+            }
+            assertArrayEquals(data, dec.dataArray());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testFileTooSmall() throws IOException {
+
+        final int F = 1000;
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 1);
+        final Path file = writeFile(new byte[F - 1]);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OpenRQ.newEncoder(channel, HEADER_SIZE, fecParams);
+        }
+    }
+
+    private Path writeFile(byte[] data) throws IOException {
+
+        final byte[] contents = new byte[HEADER_SIZE + data.length];
+        System.arraycopy(data, 0, contents, HEADER_SIZE, data.length);
+        return Files.write(folder.newFile().toPath(), contents);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Checks that replaying a recorded encoding schedule produces the same intermediate symbols as solving the constraint
+ * matrix.
+ */
+@RunWith(Parameterized.class)
+public class ISDScheduleTest {
+
+    private static final int SYMBOL_SIZE = 16;
+    private static final int STRIPED_SYMBOL_SIZE = 200;
+
+
+    @Parameters(name = "Kprime = {0}")
+    public static Collection<Object[]> getKPrimes() {
+
+        final List<Object[]> list = new ArrayList<>();
+        for (int Kprime : new int[] {10, 101, 1002}) {
+            list.add(new Object[] {SystematicIndices.ceil(Kprime)});
+        }
+        return list;
+    }
+
+
+    private final int Kprime;
+
+
+    public ISDScheduleTest(int Kprime) {
+
+        this.Kprime = Kprime;
+    }
+
+    @Test
+    public void testRecordedSchedule() throws SingularMatrixException {
+
+        final List<ISDOperation> schedule = LinearSystem.recordEncodingSchedule(Kprime);
+        checkSchedule(schedule);
+    }
+
+    @Test
+    public void testSerializedSchedule() throws SingularMatrixException, IOException {
+
+        final List<ISDOperation> schedule = LinearSystem.recordEncodingSchedule(Kprime);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (WritableByteChannel ch = Channels.newChannel(out)) {
+            for (ISDOperation op : schedule) {
+                op.serializeToChannel(ch);
+            }
+        }
+
+        final List<ISDOperation> readSchedule = new ArrayList<>();
+        try (ReadableByteChannel ch = Channels.newChannel(new ByteArrayInputStream(out.toByteArray()))) {
+            while (true) {
+                readSchedule.add(ISDOps.readOperation(ch));
+            }
+        }
+        catch (EOFException e) {
+            // expected
+        }
+
+        assertEquals(schedule.size(), readSchedule.size());
+        checkSchedule(readSchedule);
+    }
+
+    @Test
+    public void testStripedSymbolOperations() throws SingularMatrixException {
+
+        final List<ISDOperation> schedule = LinearSystem.recordEncodingSchedule(Kprime);
+
+        // the smallest stripes, with a shorter last one
+        checkSchedule(schedule, STRIPED_SYMBOL_SIZE, 1);
+    }
+
+    private void checkSchedule(List<ISDOperation> schedule) throws SingularMatrixException {
+
+        checkSchedule(schedule, SYMBOL_SIZE, 0);
+    }
+
+    private void checkSchedule(List<ISDOperation> schedule, int symbolSize, int workingSetSize)
+        throws SingularMatrixException
+    {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int S = SystematicIndices.S(Ki);
+        final int H = SystematicIndices.H(Ki);
+        final int L = Kprime + S + H;
+
+        final byte[][] D = new byte[L][];
+        for (int row = 0; row < L; row++) {
+            D[row] = (row < S + H) ? new byte[symbolSize] : TestingCommon.randomBytes(symbolSize, rand);
+        }
+
+        final byte[][] expected = LinearSystem.PInactivationDecoding(
+            LinearSystem.generateConstraintMatrix(Kprime), deepCopy(D), Kprime);
+
+        assertArrayEquals(expected, replay(schedule, deepCopy(D)));
+        assertArrayEquals(expected, CompiledSchedule.compile(L, schedule).apply(deepCopy(D), workingSetSize));
+        assertArrayEquals(expected, LinearSystem.PInactivationDecoding(
+            LinearSystem.generateConstraintMatrix(Kprime), deepCopy(D), Kprime, workingSetSize));
+    }
+
+    private static byte[][] replay(List<ISDOperation> schedule, byte[][] D) {
+
+        byte[][] symbols = D;
+        for (ISDOperation op : schedule) {
+            symbols = op.apply(symbols);
+        }
+        return symbols;
+    }
+
+    private static byte[][] deepCopy(byte[][] D) {
+
+        final byte[][] copy = new byte[D.length][];
+        for (int i = 0; i < D.length; i++) {
+            copy[i] = Arrays.copyOf(D[i], D[i].length);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.decoder.DecodingEngine;
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Checks that source blocks are correctly decoded by the incremental decoding engine.
+ */
+@RunWith(Parameterized.class)
+public class IncrementalDecoderTest {
+
+    private static final int SYMBOL_SIZE = 16;
+
+
+    @Parameters(name = "K = {0}")
+    public static Collection<Object[]> getKs() {
+
+        final List<Object[]> list = new ArrayList<>();
+        for (int K : new int[] {1, 10, 101, 1002}) {
+            list.add(new Object[] {K});
+        }
+        return list;
+    }
+
+
+    private final int K;
+
+
+    public IncrementalDecoderTest(int K) {
+
+        this.K = K;
+    }
+
+    @Test
+    public void testDecodeWithLosses() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final int F = K * SYMBOL_SIZE - 3; // the last source symbol is padded
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 1);
+        final byte[] data = TestingCommon.randomBytes(F, rand);
+        final SourceBlockEncoder enc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+
+        // zero overhead decoders fail from time to time, and must succeed with later symbols
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0, DecodingEngine.INCREMENTAL_ELIMINATION);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+
+        // lose about a third of the source symbols
+        for (int esi = 0; esi < K; esi++) {
+            if (rand.nextInt(3) != 0) {
+                sbDec.putEncodingPacket(enc.sourcePacket(esi));
+            }
+        }
+
+        int esi = K;
+        while (!sbDec.isSourceBlockDecoded()) {
+            sbDec.putEncodingPacket(enc.repairPacket(esi++));
+        }
+
+        assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testDecodeRepairSymbolsOnly() {
+
+        final int F = K * SYMBOL_SIZE;
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 1);
+        final byte[] data = TestingCommon.randomBytes(F, TestingCommon.newSeededRandom());
+        final SourceBlockEncoder enc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 2, DecodingEngine.INCREMENTAL_ELIMINATION);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+        for (int esi = K; esi < 2 * K + 2; esi++) {
+            sbDec.putEncodingPacket(enc.repairPacket(esi));
+        }
+
+        assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        assertArrayEquals(data, dec.dataArray());
+    }
+}
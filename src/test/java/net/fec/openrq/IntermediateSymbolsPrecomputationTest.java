@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * Checks that the intermediate symbols precomputed in parallel produce the same repair symbols as the ones generated
+ * on demand.
+ */
+public class IntermediateSymbolsPrecomputationTest {
+
+    private static final int SYMBOL_SIZE = 16;
+    private static final int NUM_SOURCE_BLOCKS = 6;
+    private static final int DATA_LENGTH = NUM_SOURCE_BLOCKS * 100 * SYMBOL_SIZE;
+
+    private static ExecutorService executor;
+    private static byte[] data;
+
+
+    @BeforeClass
+    public static void setUp() {
+
+        executor = Executors.newFixedThreadPool(4);
+        data = TestingCommon.randomBytes(DATA_LENGTH, TestingCommon.newSeededRandom());
+    }
+
+    @AfterClass
+    public static void tearDown() {
+
+        executor.shutdown();
+    }
+
+    private static ArrayDataEncoder newEncoder() {
+
+        return OpenRQ.newEncoder(data, FECParameters.newParameters(DATA_LENGTH, SYMBOL_SIZE, NUM_SOURCE_BLOCKS));
+    }
+
+    @Test
+    public void testAllSourceBlocks() throws InterruptedException, ExecutionException {
+
+        final ArrayDataEncoder enc = newEncoder();
+        final List<Future<SourceBlockEncoder>> futures = enc.precomputeIntermediateSymbols(executor);
+        assertEquals(NUM_SOURCE_BLOCKS, futures.size());
+
+        for (int sbn = 0; sbn < NUM_SOURCE_BLOCKS; sbn++) {
+            // repair symbols may be requested while the intermediate symbols are being generated
+            checkRepairPacket(enc.sourceBlock(sbn));
+            assertSame(enc.sourceBlock(sbn), futures.get(sbn).get());
+        }
+    }
+
+    @Test
+    public void testSelectedSourceBlocks() throws InterruptedException, ExecutionException {
+
+        final ArrayDataEncoder enc = newEncoder();
+        final List<Future<SourceBlockEncoder>> futures = enc.precomputeIntermediateSymbols(executor, 4, 1);
+        assertEquals(2, futures.size());
+        assertSame(enc.sourceBlock(4), futures.get(0).get());
+        assertSame(enc.sourceBlock(1), futures.get(1).get());
+
+        checkRepairPacket(enc.sourceBlock(4));
+        checkRepairPacket(enc.sourceBlock(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSourceBlock() {
+
+        newEncoder().precomputeIntermediateSymbols(executor, 0, NUM_SOURCE_BLOCKS);
+    }
+
+    private static void checkRepairPacket(SourceBlockEncoder sbEnc) {
+
+        final int esi = sbEnc.numberOfSourceSymbols();
+        final SourceBlockEncoder expected = newEncoder().sourceBlock(sbEnc.sourceBlockNumber());
+        assertEquals(expected.repairPacket(esi, 10).asBuffer(), sbEnc.repairPacket(esi, 10).asBuffer());
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.util.array.ArrayUtils;
+import net.fec.openrq.util.linearalgebra.LinearAlgebra;
+import net.fec.openrq.util.linearalgebra.factory.Factory;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.math.OctetOps;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that the blocked Gaussian elimination produces the same matrix and symbols as a plain one.
+ */
+public class MatrixUtilitiesTest {
+
+    private static final int ROWS = 70;
+    private static final int COLUMNS = 60;
+    private static final int SYMBOL_SIZE = 24;
+
+    // the eliminated region
+    private static final int FROM_ROW = 5;
+    private static final int FROM_COL = 7;
+
+
+    @Test
+    public void testBinaryMatrix() {
+
+        // only binary rows in the region, so that the lookup tables are used
+        checkSameAsPlainElimination(LinearAlgebra.BIT_PACKED_FACTORY, ROWS, 0);
+    }
+
+    @Test
+    public void testMostlyBinaryMatrix() {
+
+        checkSameAsPlainElimination(LinearAlgebra.BIT_PACKED_FACTORY, 5, 0);
+    }
+
+    @Test
+    public void testNonBinaryMatrix() {
+
+        checkSameAsPlainElimination(LinearAlgebra.BASIC2D_FACTORY, 2, 0);
+    }
+
+    @Test
+    public void testRankDeficientMatrix() {
+
+        // some columns are all zeros, so that the elimination finishes early
+        checkSameAsPlainElimination(LinearAlgebra.CRS_FACTORY, 5, 10);
+    }
+
+    private static void checkSameAsPlainElimination(Factory factory, int nonBinaryRowPeriod, int zeroColumns) {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final ByteMatrix A = factory.createMatrix(ROWS, COLUMNS);
+        for (int i = 0; i < ROWS; i++) {
+            for (int j = 0; j < COLUMNS - zeroColumns; j++) {
+                if (i % nonBinaryRowPeriod == 0) {
+                    A.set(i, j, (byte)rand.nextInt(256));
+                }
+                else if (rand.nextInt(3) == 0) {
+                    A.set(i, j, (byte)1);
+                }
+            }
+        }
+
+        final int[] d = new int[ROWS];
+        final byte[][] D = new byte[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            d[i] = ROWS - 1 - i; // symbols are indexed through d
+            D[i] = TestingCommon.randomBytes(SYMBOL_SIZE, rand);
+        }
+
+        final ByteMatrix expectedA = A.copy();
+        final int[] expectedD = d.clone();
+        final byte[][] expectedSymbols = copyOf(D);
+        plainReduceToRowEchelonForm(expectedA, FROM_ROW, ROWS, FROM_COL, COLUMNS, expectedD, expectedSymbols);
+
+        MatrixUtilities.reduceToRowEchelonForm(A, FROM_ROW, ROWS, FROM_COL, COLUMNS, d, D);
+
+        assertEquals(expectedA, A);
+        assertArrayEquals(expectedD, d);
+        for (int i = 0; i < ROWS; i++) {
+            assertArrayEquals(expectedSymbols[i], D[i]);
+        }
+    }
+
+    private static byte[][] copyOf(byte[][] D) {
+
+        final byte[][] copy = new byte[D.length][];
+        for (int i = 0; i < D.length; i++) {
+            copy[i] = D[i].clone();
+        }
+        return copy;
+    }
+
+    // performs every symbol operation as soon as the matrix operation
+    private static void plainReduceToRowEchelonForm(
+        ByteMatrix A,
+        int fromRow,
+        int toRow,
+        int fromCol,
+        int toCol,
+        int[] d,
+        byte[][] D)
+    {
+
+        int lead = fromCol;
+        for (int r = fromRow; r < toRow; r++) {
+            if (lead >= toCol) {
+                return;
+            }
+
+            int i = r;
+            while (A.isZeroAt(i, lead)) {
+                i++;
+                if (i == toRow) {
+                    i = r;
+                    lead++;
+                    if (lead >= toCol) {
+                        return;
+                    }
+                }
+            }
+
+            if (i != r) {
+                A.swapRows(i, r);
+                ArrayUtils.swapInts(d, i, r);
+            }
+
+            byte beta = A.get(r, lead);
+            A.divideRowInPlace(r, beta);
+            OctetOps.valueVectorDivision(beta, D[d[r]], D[d[r]]);
+
+            for (i = fromRow; i < toRow; i++) {
+                if (i != r) {
+                    beta = A.get(i, lead);
+                    A.addRowsInPlace(beta, r, i);
+                    OctetOps.vectorVectorAdditionInPlace(beta, D[d[r]], D[d[i]]);
+                }
+            }
+
+            lead++;
+        }
+    }
+}
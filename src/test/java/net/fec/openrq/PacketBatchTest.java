@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that batches of serialized encoding packets are put into data decoders, skipping invalid packets.
+ */
+public class PacketBatchTest {
+
+    private static final int SYMBOL_SIZE = 32;
+    private static final int F = 300 * SYMBOL_SIZE - 7; // the last source symbol is shorter
+    private static final FECParameters FEC_PARAMS = FECParameters.newParameters(F, SYMBOL_SIZE, 2);
+
+
+    @Test
+    public void testBackToBackPackets() {
+
+        final byte[] data = TestingCommon.randomBytes(F, TestingCommon.newSeededRandom());
+        final List<EncodingPacket> packets = newPackets(data);
+
+        int size = 0;
+        for (EncodingPacket packet : packets) {
+            size += 8 + packet.symbolsLength();
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size + 16 + 9);
+        for (EncodingPacket packet : packets) {
+            packet.writeTo(buffer);
+        }
+        // a packet with an invalid source block number, which is skipped
+        buffer.putInt(255 << 24).putInt(8).putLong(0);
+        // a truncated packet, where reading stops
+        final int truncatedPos = buffer.position();
+        buffer.putInt(0).putInt(1 + SYMBOL_SIZE).put((byte)1);
+        buffer.flip();
+
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(FEC_PARAMS, 0);
+        assertEquals(packets.size(), dec.putPackets(buffer));
+        assertEquals(truncatedPos, buffer.position());
+
+        assertTrue(dec.isDataDecoded());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testPacketPerBuffer() {
+
+        final byte[] data = TestingCommon.randomBytes(F, TestingCommon.newSeededRandom());
+        final List<EncodingPacket> packets = newPackets(data);
+
+        final ByteBuffer[] buffers = new ByteBuffer[packets.size() + 1];
+        for (int i = 0; i < packets.size(); i++) {
+            buffers[i] = ByteBuffer.wrap(packets.get(i).asArray());
+        }
+        // a repair packet whose symbols data is not a multiple of the symbol size
+        final EncodingPacket repair = packets.get(packets.size() - 1);
+        final byte[] shortRepair = repair.asArray();
+        ByteBuffer.wrap(shortRepair).putInt(4, repair.symbolsLength() - 1);
+        buffers[packets.size()] = ByteBuffer.wrap(shortRepair);
+
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(FEC_PARAMS, 0);
+        assertEquals(packets.size(), dec.putPackets(buffers));
+        for (ByteBuffer buf : buffers) {
+            assertFalse(buf.position() == 0);
+        }
+
+        assertTrue(dec.isDataDecoded());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testNoAllocationPerPacket() {
+
+        final com.sun.management.ThreadMXBean threads;
+        try {
+            threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        }
+        catch (ClassCastException e) {
+            assumeTrue(false);
+            return;
+        }
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        // a single large source block, so that the repair packets never complete it
+        final int T = 16;
+        final int K = 5000;
+        final FECParameters fecParams = FECParameters.newParameters(K * T, T, 1);
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0);
+
+        // the warm-up packets grow the repair symbols store to its capacity for the measured packets
+        final int numWarmUp = 1100;
+        final int numMeasured = 900;
+        final ByteBuffer warmUp = repairPackets(K, numWarmUp, T);
+        final ByteBuffer measured = repairPackets(K + numWarmUp, numMeasured, T);
+        assertEquals(numWarmUp, dec.putPackets(warmUp));
+
+        final long tid = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(tid);
+        final int numPut = dec.putPackets(measured);
+        final long allocated = threads.getThreadAllocatedBytes(tid) - before;
+
+        assertEquals(numMeasured, numPut);
+        // no object is smaller than 8 bytes, so this allows for a few one-off allocations (e.g. by class loading) but
+        // not for an allocation per packet
+        assertTrue("allocated " + allocated + " bytes", allocated < 8L * numMeasured);
+    }
+
+    // back-to-back packets with a single repair symbol each, with arbitrary symbols data
+    private static ByteBuffer repairPackets(int firstESI, int numPackets, int T) {
+
+        final ByteBuffer buffer = ByteBuffer.allocate(numPackets * (8 + T));
+        for (int i = 0; i < numPackets; i++) {
+            buffer.putInt(firstESI + i).putInt(T).put(new byte[T]);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // the source packets of every source block with a few missing symbols, plus repair packets to recover them
+    private static List<EncodingPacket> newPackets(byte[] data) {
+
+        final List<EncodingPacket> packets = new ArrayList<>();
+        for (SourceBlockEncoder sbEnc : OpenRQ.newEncoder(data, FEC_PARAMS).sourceBlockIterable()) {
+            final int K = sbEnc.numberOfSourceSymbols();
+            packets.add(sbEnc.sourcePacket(0, 10));
+            packets.add(sbEnc.sourcePacket(20, K - 20)); // includes the shorter last symbol
+            packets.add(sbEnc.repairPacket(K, 15));
+        }
+        return packets;
+    }
+}
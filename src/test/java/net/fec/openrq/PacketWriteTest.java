@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that encoding packets written directly into buffers by a data encoder are equal to the ones written by
+ * encoding packet objects.
+ */
+public class PacketWriteTest {
+
+    private static final int SYMBOL_SIZE = 32;
+    private static final int K = 10;
+
+
+    private static ArrayDataEncoder newEncoder() {
+
+        final int F = K * SYMBOL_SIZE - 7; // the last source symbol is shorter
+        final byte[] data = TestingCommon.randomBytes(F, TestingCommon.newSeededRandom());
+        return OpenRQ.newEncoder(data, FECParameters.newParameters(F, SYMBOL_SIZE, 1));
+    }
+
+    @Test
+    public void testWriteSourcePackets() {
+
+        final ArrayDataEncoder enc = newEncoder();
+        final SourceBlockEncoder sbEnc = enc.sourceBlock(0);
+        for (boolean direct : new boolean[] {false, true}) {
+            final ByteBuffer buffer = newBuffer(direct);
+
+            buffer.clear();
+            enc.writeSourcePacket(0, K - 1, buffer);
+            checkWritten(sbEnc.sourcePacket(K - 1), buffer);
+
+            buffer.clear();
+            enc.writeSourcePacket(0, 2, K - 2, buffer);
+            checkWritten(sbEnc.sourcePacket(2, K - 2), buffer);
+        }
+    }
+
+    @Test
+    public void testWriteRepairPackets() {
+
+        final ArrayDataEncoder enc = newEncoder();
+        final SourceBlockEncoder sbEnc = enc.sourceBlock(0);
+        for (boolean direct : new boolean[] {false, true}) {
+            final ByteBuffer buffer = newBuffer(direct);
+
+            buffer.clear();
+            enc.writeRepairPacket(0, K + 5, buffer);
+            checkWritten(sbEnc.repairPacket(K + 5), buffer);
+
+            buffer.clear();
+            enc.writeRepairPacket(0, K, 20, buffer);
+            checkWritten(sbEnc.repairPacket(K, 20), buffer);
+        }
+    }
+
+    @Test
+    public void testWriteIntoSmallBuffer() {
+
+        final ArrayDataEncoder enc = newEncoder();
+        final ByteBuffer buffer = ByteBuffer.allocate(8 + 2 * SYMBOL_SIZE - 1);
+        try {
+            enc.writeRepairPacket(0, K, 2, buffer);
+            fail("expected BufferOverflowException");
+        }
+        catch (BufferOverflowException e) {
+            // nothing must have been written
+            assertEquals(0, buffer.position());
+        }
+
+        try {
+            enc.writeSourcePacket(0, 0, 2, buffer);
+            fail("expected BufferOverflowException");
+        }
+        catch (BufferOverflowException e) {
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testWriteIntoReadOnlyBuffer() {
+
+        newEncoder().writeRepairPacket(0, K, ByteBuffer.allocate(8 + SYMBOL_SIZE).asReadOnlyBuffer());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteWithInvalidSourceBlockNumber() {
+
+        newEncoder().writeRepairPacket(1, K, ByteBuffer.allocate(8 + SYMBOL_SIZE));
+    }
+
+    private static ByteBuffer newBuffer(boolean direct) {
+
+        final int capacity = 8 + 20 * SYMBOL_SIZE + 3;
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static void checkWritten(EncodingPacket packet, ByteBuffer buffer) {
+
+        final ByteBuffer expected = packet.asBuffer();
+        assertEquals(expected.remaining(), buffer.position());
+
+        buffer.flip();
+        assertEquals(expected, buffer);
+    }
+}
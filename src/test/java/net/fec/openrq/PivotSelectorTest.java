@@ -0,0 +1,323 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.util.linearalgebra.LinearAlgebra;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.math.OctetOps;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that the rows chosen by a pivot selector are the same as the ones found by scanning every row of the
+ * constraint matrix, as in the first phase of the PI decoding.
+ */
+public class PivotSelectorTest {
+
+    private static final int S = 3;
+    private static final int H = 2;
+    private static final int L = 16;
+    private static final int P = 4;
+    private static final int M = L + 2; // with some overhead rows
+    private static final int NUM_MATRICES = 300;
+
+
+    @Test
+    public void testRandomMatrices() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        int numComponentSteps = 0;
+        for (int n = 0; n < NUM_MATRICES; n++) {
+            // sparse matrices have many rows with two non-zeros in V
+            final ByteMatrix A = randomMatrix(rand, 2 + rand.nextInt(4));
+            numComponentSteps += checkFirstPhase(A);
+        }
+
+        assertTrue("expected rows with two non-zeros in V", numComponentSteps > 0);
+    }
+
+    @Test
+    public void testTieBreakByOriginalDegree() {
+
+        final ByteMatrix A = LinearAlgebra.CRS_FACTORY.createMatrix(M, L);
+        // rows 0, 1 and 6 have the same number of non-zeros in V, but row 6 has the minimum original degree
+        A.set(0, 0, (byte)9);
+        A.set(0, 1, (byte)1);
+        A.set(0, 2, (byte)1);
+        A.set(1, 3, (byte)200);
+        A.set(1, 4, (byte)1);
+        A.set(1, 5, (byte)1);
+        A.set(6, 6, (byte)1);
+        A.set(6, 7, (byte)1);
+        A.set(6, 8, (byte)2);
+        // rows with more non-zeros in V are not chosen, despite their smaller original degree
+        A.set(7, 0, (byte)1);
+        A.set(7, 3, (byte)1);
+        A.set(7, 6, (byte)1);
+        A.set(7, 9, (byte)1);
+
+        final PivotSelector rows = new PivotSelector(A, S, H, L, P, M);
+        assertEquals(6, rows.minimumRow());
+        assertEquals(3, rows.nonZeros(6));
+        assertEquals(6, bruteForceMinimumRow(A, new boolean[M], inV(), false));
+
+        checkFirstPhase(A);
+    }
+
+    @Test
+    public void testHDPCFallback() {
+
+        final ByteMatrix A = LinearAlgebra.CRS_FACTORY.createMatrix(M, L);
+        // only a HDPC row has non-zeros in V
+        A.set(S, 2, (byte)1);
+        A.set(S, 5, (byte)3);
+        A.set(S + 1, 1, (byte)4);
+        A.set(S + 1, 2, (byte)4);
+        A.set(S + 1, 7, (byte)4);
+
+        final PivotSelector rows = new PivotSelector(A, S, H, L, P, M);
+        assertEquals(-1, rows.minimumRow());
+        assertEquals(-1, rows.maximumComponentEdge()); // HDPC rows are never edges
+
+        rows.queueHDPCRows();
+        assertEquals(S, rows.minimumRow());
+        assertEquals(S, bruteForceMinimumRow(A, new boolean[M], inV(), true));
+
+        checkFirstPhase(A);
+    }
+
+    @Test
+    public void testAllZeroV() {
+
+        final ByteMatrix A = LinearAlgebra.CRS_FACTORY.createMatrix(M, L);
+        // only the columns of U have non-zeros
+        for (int row = 0; row < M; row++) {
+            A.set(row, L - 1 - row % P, (byte)1);
+        }
+
+        final PivotSelector rows = new PivotSelector(A, S, H, L, P, M);
+        assertEquals(-1, rows.minimumRow());
+        rows.queueHDPCRows();
+        assertEquals(-1, rows.minimumRow());
+        assertEquals(-1, rows.maximumComponentEdge());
+        assertEquals(-1, bruteForceMinimumRow(A, new boolean[M], inV(), true));
+    }
+
+    /*
+     * Runs the first phase over the given matrix, comparing every chosen row with a scan of every row, and returns
+     * the number of steps where an edge in a maximum size component was chosen.
+     */
+    private static int checkFirstPhase(ByteMatrix A) {
+
+        final PivotSelector rows = new PivotSelector(A, S, H, L, P, M);
+        final boolean[] chosen = new boolean[M];
+        final boolean[] inV = inV();
+        boolean hdpcQueued = false;
+        int numComponentSteps = 0;
+
+        for (int step = 0;; step++) {
+            if (step >= M - H) {
+                rows.queueHDPCRows();
+                hdpcQueued = true;
+            }
+
+            int chosenRow = rows.minimumRow();
+            int expectedRow = bruteForceMinimumRow(A, chosen, inV, hdpcQueued);
+            assertEquals(expectedRow, chosenRow);
+            if (chosenRow == -1) {
+                // the remaining rows that are not HDPC have no non-zeros in V, so try the HDPC rows
+                rows.queueHDPCRows();
+                hdpcQueued = true;
+                chosenRow = rows.minimumRow();
+                expectedRow = bruteForceMinimumRow(A, chosen, inV, hdpcQueued);
+                assertEquals(expectedRow, chosenRow);
+            }
+            if (chosenRow == -1) {
+                return numComponentSteps;
+            }
+
+            final int r = rows.nonZeros(chosenRow);
+            assertEquals(nonZerosInV(A, chosenRow, inV), r);
+
+            if (r == 2) {
+                final int edgeRow = rows.maximumComponentEdge();
+                final int[] componentSizes = bruteForceComponentSizes(A, chosen, inV);
+                int maxSize = 0;
+                for (int row = 0; row < M; row++) {
+                    maxSize = Math.max(maxSize, componentSizes[row]);
+                }
+
+                if (maxSize == 0) {
+                    assertEquals(-1, edgeRow);
+                }
+                else {
+                    assertEquals(maxSize, componentSizes[edgeRow]);
+                    chosenRow = edgeRow;
+                    numComponentSteps++;
+                }
+            }
+
+            rows.choose(chosenRow);
+            chosen[chosenRow] = true;
+
+            // the columns where the chosen row has non-zeros leave V
+            for (int col = 0; col < L - P; col++) {
+                if (inV[col] && A.get(chosenRow, col) != 0) {
+                    inV[col] = false;
+                    rows.columnLeftV(col);
+                }
+            }
+        }
+    }
+
+    private static int bruteForceMinimumRow(ByteMatrix A, boolean[] chosen, boolean[] inV, boolean hdpcQueued) {
+
+        int bestRow = -1;
+        int bestNonZeros = Integer.MAX_VALUE;
+        int bestDegree = Integer.MAX_VALUE;
+        for (int row = 0; row < M; row++) {
+            if (chosen[row] || (!hdpcQueued && isHDPC(row))) {
+                continue;
+            }
+
+            final int nonZeros = nonZerosInV(A, row, inV);
+            final int degree = originalDegree(A, row);
+            if (nonZeros > 0 && (nonZeros < bestNonZeros || (nonZeros == bestNonZeros && degree < bestDegree))) {
+                bestRow = row;
+                bestNonZeros = nonZeros;
+                bestDegree = degree;
+            }
+        }
+        return bestRow;
+    }
+
+    /*
+     * Returns, for each row that is an edge of the graph defined by the rows with two non-zeros in V, the number of
+     * nodes in its component (or zero for rows that are not edges).
+     */
+    private static int[] bruteForceComponentSizes(ByteMatrix A, boolean[] chosen, boolean[] inV) {
+
+        // label the components of the columns by propagating the minimum label through the edges
+        final int[] label = new int[L];
+        for (int col = 0; col < L; col++) {
+            label[col] = col;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int row = 0; row < M; row++) {
+                final int[] cols = edgeColumns(A, row, chosen, inV);
+                if (cols != null) {
+                    final int min = Math.min(label[cols[0]], label[cols[1]]);
+                    if (label[cols[0]] != min || label[cols[1]] != min) {
+                        label[cols[0]] = label[cols[1]] = min;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        final int[] sizes = new int[M];
+        for (int row = 0; row < M; row++) {
+            final int[] cols = edgeColumns(A, row, chosen, inV);
+            if (cols != null) {
+                final boolean[] inComponent = new boolean[L];
+                for (int other = 0; other < M; other++) {
+                    final int[] otherCols = edgeColumns(A, other, chosen, inV);
+                    if (otherCols != null && label[otherCols[0]] == label[cols[0]]) {
+                        inComponent[otherCols[0]] = inComponent[otherCols[1]] = true;
+                    }
+                }
+                for (int col = 0; col < L; col++) {
+                    sizes[row] += inComponent[col] ? 1 : 0;
+                }
+            }
+        }
+        return sizes;
+    }
+
+    private static int[] edgeColumns(ByteMatrix A, int row, boolean[] chosen, boolean[] inV) {
+
+        if (chosen[row] || isHDPC(row) || nonZerosInV(A, row, inV) != 2) {
+            return null;
+        }
+
+        final int[] cols = new int[2];
+        int n = 0;
+        for (int col = 0; col < L - P; col++) {
+            if (inV[col] && A.get(row, col) != 0) {
+                cols[n++] = col;
+            }
+        }
+        return cols;
+    }
+
+    private static int nonZerosInV(ByteMatrix A, int row, boolean[] inV) {
+
+        int n = 0;
+        for (int col = 0; col < L - P; col++) {
+            if (inV[col] && A.get(row, col) != 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static int originalDegree(ByteMatrix A, int row) {
+
+        int degree = 0;
+        for (int col = 0; col < L - P; col++) {
+            degree += OctetOps.UNSIGN(A.get(row, col));
+        }
+        return degree;
+    }
+
+    private static boolean isHDPC(int row) {
+
+        return row >= S && row < S + H;
+    }
+
+    private static boolean[] inV() {
+
+        final boolean[] inV = new boolean[L - P];
+        for (int col = 0; col < L - P; col++) {
+            inV[col] = true;
+        }
+        return inV;
+    }
+
+    private static ByteMatrix randomMatrix(Random rand, int rowDensity) {
+
+        final ByteMatrix A = LinearAlgebra.CRS_FACTORY.createMatrix(M, L);
+        for (int row = 0; row < M; row++) {
+            // HDPC rows are dense
+            final int numNonZeros = isHDPC(row) ? L / 2 : 1 + rand.nextInt(rowDensity);
+            for (int k = 0; k < numNonZeros; k++) {
+                final byte value = (byte)(rand.nextBoolean() ? 1 : 1 + rand.nextInt(255));
+                A.set(row, rand.nextInt(L), value);
+            }
+        }
+        return A;
+    }
+}
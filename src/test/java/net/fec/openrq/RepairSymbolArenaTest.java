@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the storage of repair symbols in a {@link RepairSymbolArena}.
+ */
+public class RepairSymbolArenaTest {
+
+    // many symbols per chunk, and a single symbol per chunk
+    private static final int SMALL_T = 48;
+    private static final int LARGE_T = 100 * 1024;
+
+
+    @Test
+    public void testManySymbolsPerChunk() {
+
+        testAddAndGet(SMALL_T, 10000);
+    }
+
+    @Test
+    public void testOneSymbolPerChunk() {
+
+        testAddAndGet(LARGE_T, 20);
+    }
+
+    @Test
+    public void testClear() {
+
+        final RepairSymbolArena arena = new RepairSymbolArena(SMALL_T);
+        for (int esi = 0; esi < 100; esi++) {
+            arena.add(esi);
+        }
+
+        arena.clear();
+        assertEquals(0, arena.size());
+        assertFalse(arena.contains(0));
+        assertEquals(-1, arena.slotOf(99));
+    }
+
+    private static void testAddAndGet(int T, int numSymbols) {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final RepairSymbolArena arena = new RepairSymbolArena(T);
+
+        // use sparse ESIs, in no particular order
+        final int[] esis = new int[numSymbols];
+        final byte[][] symbols = new byte[numSymbols][];
+        for (int i = 0; i < numSymbols; i++) {
+            esis[i] = (i * 7919) % (numSymbols * 3) + 100;
+            symbols[i] = TestingCommon.randomBytes(T, rand);
+
+            assertEquals(i, arena.add(esis[i]));
+            final ByteBuffer src = ByteBuffer.wrap(symbols[i]);
+            arena.copyInto(i, src);
+            assertEquals(0, src.remaining());
+        }
+
+        assertEquals(numSymbols, arena.size());
+        for (int i = 0; i < numSymbols; i++) {
+            assertTrue(arena.contains(esis[i]));
+            assertEquals(i, arena.slotOf(esis[i]));
+            assertEquals(esis[i], arena.esi(i));
+
+            final byte[] data = new byte[T + 1];
+            arena.getData(i, data, 1);
+            assertArrayEquals(symbols[i], Arrays.copyOfRange(data, 1, T + 1));
+        }
+        assertFalse(arena.contains(0));
+        assertEquals(-1, arena.slotOf(99));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.decoder.DecodingEngine;
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the spilling of repair symbols by arenas that share a {@link RepairSymbolBudget}, and decodings with a bounded
+ * memory for repair symbols.
+ */
+public class RepairSymbolBudgetTest {
+
+    private static final int SYMBOL_SIZE = 1000; // 64 symbols per arena chunk
+
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void testSharedSpill() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final RepairSymbolBudget budget = new RepairSymbolBudget(100 * 1024, folder.getRoot().toPath());
+        final RepairSymbolArena arena1 = new RepairSymbolArena(SYMBOL_SIZE, budget);
+        final RepairSymbolArena arena2 = new RepairSymbolArena(SYMBOL_SIZE, budget);
+
+        final byte[][] symbols1 = addSymbols(arena1, 300, rand);
+        assertTrue(budget.isExceeded());
+        arena1.spillIfOverBudget(); // the last chunk is not full, so it is kept in memory
+        assertFalse(budget.isExceeded());
+        checkSymbols(arena1, symbols1);
+
+        // the first arena releases every spilled chunk, so the second one spills into a new file
+        arena1.clear();
+        assertFalse(budget.hasSpillFile());
+        final byte[][] symbols2 = addSymbols(arena2, 500, rand);
+        arena2.spillIfOverBudget();
+        assertFalse(budget.isExceeded());
+        checkSymbols(arena2, symbols2);
+
+        // the spill file is closed and deleted once every spilled chunk is released
+        assertTrue(budget.hasSpillFile());
+        arena2.clear();
+        assertFalse(budget.hasSpillFile());
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testDecodeWithZeroBudget() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final int F = 2000 * SYMBOL_SIZE;
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 2);
+        final byte[] data = TestingCommon.randomBytes(F, rand);
+
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParams);
+        final RepairSymbolBudget budget = new RepairSymbolBudget(0, folder.getRoot().toPath());
+        final ArrayDataDecoder dec = ArrayDataDecoder.newDecoder(
+            fecParams, 1, DecodingEngine.PERMANENT_INACTIVATION, null, null, budget);
+
+        // interleave the repair packets of both source blocks, so that they spill concurrently
+        for (int n = 0; !dec.isDataDecoded(); n++) {
+            for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+                final SourceBlockDecoder sbDec = dec.sourceBlock(sbEnc.sourceBlockNumber());
+                final int K = sbEnc.numberOfSourceSymbols();
+                if (n < K && n % 3 != 0) {
+                    sbDec.putEncodingPacket(sbEnc.sourcePacket(n));
+                }
+                sbDec.putEncodingPacket(sbEnc.repairPacket(K + n));
+            }
+        }
+
+        assertArrayEquals(data, dec.dataArray());
+
+        // every spilled chunk was released when its source block was decoded, so the spill file is deleted
+        assertFalse(budget.hasSpillFile());
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testFailedDecodingReleasesRows() {
+
+        final int K = 10;
+        final FECParameters fecParams = FECParameters.newParameters(K * SYMBOL_SIZE, SYMBOL_SIZE, 1);
+        final byte[] data = TestingCommon.randomBytes(K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+        final RepairSymbolBudget budget = new RepairSymbolBudget(Long.MAX_VALUE, folder.getRoot().toPath());
+
+        // look for K repair symbols that fail to be decoded (whether decoding fails only depends on their ESIs)
+        for (int first = K;; first++) {
+            final ArraySourceBlockDecoder withoutBudget = failedDecoder(fecParams, sbEnc, first, null);
+            if (withoutBudget != null) {
+                assertTrue(withoutBudget.hasResumableDecoding());
+
+                // the rows of the failed decoding are not kept, since they are not accounted for in the budget
+                final ArraySourceBlockDecoder withBudget = failedDecoder(fecParams, sbEnc, first, budget);
+                assertEquals(SourceBlockState.DECODING_FAILURE, withBudget.latestState());
+                assertFalse(withBudget.hasResumableDecoding());
+
+                // the decoding is still retried with more symbols
+                withBudget.putEncodingPacket(sbEnc.repairPacket(first + K));
+                withBudget.putEncodingPacket(sbEnc.repairPacket(first + K + 1));
+                assertEquals(SourceBlockState.DECODED, withBudget.latestState());
+                return;
+            }
+        }
+    }
+
+    // returns null if the repair symbols are decoded
+    private static ArraySourceBlockDecoder failedDecoder(
+        FECParameters fecParams,
+        SourceBlockEncoder sbEnc,
+        int firstESI,
+        RepairSymbolBudget budget)
+    {
+
+        final ArrayDataDecoder dec = ArrayDataDecoder.newDecoder(
+            fecParams, 0, DecodingEngine.PERMANENT_INACTIVATION, null, null, budget);
+        final ArraySourceBlockDecoder sbDec = (ArraySourceBlockDecoder)dec.sourceBlock(0);
+        final int K = sbDec.numberOfSourceSymbols();
+        for (int esi = firstESI; esi < firstESI + K; esi++) {
+            sbDec.putEncodingPacket(sbEnc.repairPacket(esi));
+        }
+        return (sbDec.latestState() == SourceBlockState.DECODING_FAILURE) ? sbDec : null;
+    }
+
+    private static byte[][] addSymbols(RepairSymbolArena arena, int numSymbols, Random rand) {
+
+        final byte[][] symbols = new byte[numSymbols][];
+        for (int i = 0; i < numSymbols; i++) {
+            symbols[i] = TestingCommon.randomBytes(SYMBOL_SIZE, rand);
+            arena.copyInto(arena.add(i), ByteBuffer.wrap(symbols[i]));
+        }
+        return symbols;
+    }
+
+    private static void checkSymbols(RepairSymbolArena arena, byte[][] symbols) {
+
+        final byte[] data = new byte[SYMBOL_SIZE];
+        for (int slot = 0; slot < symbols.length; slot++) {
+            arena.getData(slot, data, 0);
+            assertArrayEquals(symbols[slot], data);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that repair symbols generated in batches are equal to the ones generated one by one.
+ */
+public class RepairSymbolGeneratorTest {
+
+    private static final int SYMBOL_SIZE = 16;
+    private static final int NUM_SYMBOLS = 50;
+
+
+    @Test
+    public void testGeneratorMatchesEnc() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        for (int K : new int[] {10, 101, 1002}) {
+            final int Kprime = SystematicIndices.ceil(K);
+            final int Ki = SystematicIndices.getKIndex(Kprime);
+            final int L = Kprime + SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+
+            final byte[][] C = new byte[L][];
+            for (int i = 0; i < L; i++) {
+                C[i] = TestingCommon.randomBytes(SYMBOL_SIZE, rand);
+            }
+
+            final int firstISI = Kprime + 7;
+            final byte[] actual = new byte[3 + NUM_SYMBOLS * SYMBOL_SIZE];
+            new RepairSymbolGenerator(Kprime).generate(C, firstISI, NUM_SYMBOLS, SYMBOL_SIZE, actual, 3);
+
+            for (int n = 0; n < NUM_SYMBOLS; n++) {
+                final byte[] expected = LinearSystem.enc(Kprime, C, new Tuple(Kprime, firstISI + n), SYMBOL_SIZE);
+                final int from = 3 + n * SYMBOL_SIZE;
+                assertArrayEquals(expected, Arrays.copyOfRange(actual, from, from + SYMBOL_SIZE));
+            }
+        }
+    }
+
+    @Test
+    public void testGeneratorIntoDirectBuffer() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final int T = SYMBOL_SIZE + 3; // not a multiple of the size of a long
+        final int Kprime = SystematicIndices.ceil(101);
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int L = Kprime + SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+
+        final byte[][] C = new byte[L][];
+        for (int i = 0; i < L; i++) {
+            C[i] = TestingCommon.randomBytes(T, rand);
+        }
+
+        final int firstISI = Kprime + 7;
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            final ByteBuffer direct = ByteBuffer.allocateDirect(5 + NUM_SYMBOLS * T).order(order);
+            direct.position(5);
+            new RepairSymbolGenerator(Kprime).generate(C, firstISI, NUM_SYMBOLS, T, direct);
+            assertEquals(direct.capacity(), direct.position());
+
+            for (int n = 0; n < NUM_SYMBOLS; n++) {
+                final byte[] expected = LinearSystem.enc(Kprime, C, new Tuple(Kprime, firstISI + n), T);
+                assertEquals(ByteBuffer.wrap(expected), slice(direct, 5 + n * T, T));
+            }
+        }
+    }
+
+    @Test
+    public void testWriteRepairSymbols() {
+
+        final int K = 20;
+        final int F = K * SYMBOL_SIZE - 5; // the last source symbol is padded
+        final byte[] data = TestingCommon.randomBytes(F, TestingCommon.newSeededRandom());
+        final ArrayDataEncoder dataEnc = OpenRQ.newEncoder(data, FECParameters.newParameters(F, SYMBOL_SIZE, 1));
+        final SourceBlockEncoder enc = dataEnc.sourceBlock(0);
+
+        final int esi = K + 3;
+        final ByteBuffer expected = enc.repairPacket(esi, NUM_SYMBOLS).symbols();
+        for (int n = 0; n < NUM_SYMBOLS; n++) {
+            assertEquals(enc.repairPacket(esi + n).symbols(), slice(expected, n * SYMBOL_SIZE, SYMBOL_SIZE));
+        }
+
+        final ByteBuffer heap = ByteBuffer.allocate(1 + NUM_SYMBOLS * SYMBOL_SIZE);
+        heap.position(1);
+        dataEnc.writeRepairSymbols(0, esi, NUM_SYMBOLS, heap);
+        assertEquals(heap.capacity(), heap.position());
+        assertEquals(expected, slice(heap, 1, NUM_SYMBOLS * SYMBOL_SIZE));
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(NUM_SYMBOLS * SYMBOL_SIZE);
+        dataEnc.writeRepairSymbols(0, esi, NUM_SYMBOLS, direct);
+        assertEquals(direct.capacity(), direct.position());
+        assertEquals(expected, slice(direct, 0, NUM_SYMBOLS * SYMBOL_SIZE));
+
+        final byte[] array = new byte[2 + NUM_SYMBOLS * SYMBOL_SIZE];
+        dataEnc.writeRepairSymbols(0, esi, NUM_SYMBOLS, array, 2);
+        assertEquals(expected, ByteBuffer.wrap(array, 2, NUM_SYMBOLS * SYMBOL_SIZE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteSourceSymbolAsRepair() {
+
+        final byte[] data = new byte[10 * SYMBOL_SIZE];
+        OpenRQ.newEncoder(data, FECParameters.newParameters(data.length, SYMBOL_SIZE, 1))
+            .writeRepairSymbols(0, 9, 1, new byte[SYMBOL_SIZE], 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testWriteRepairSymbolsIntoSmallArray() {
+
+        final byte[] data = new byte[10 * SYMBOL_SIZE];
+        OpenRQ.newEncoder(data, FECParameters.newParameters(data.length, SYMBOL_SIZE, 1))
+            .writeRepairSymbols(0, 10, 2, new byte[2 * SYMBOL_SIZE - 1], 0);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buf, int off, int len) {
+
+        final ByteBuffer dup = buf.duplicate();
+        dup.limit(off + len).position(off);
+        return dup.slice();
+    }
+}
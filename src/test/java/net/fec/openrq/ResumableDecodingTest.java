@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that failed permanent inactivation decodings are resumed when more symbols are added.
+ */
+public class ResumableDecodingTest {
+
+    private static final int SYMBOL_SIZE = 16;
+
+
+    @Test
+    public void testResumeAfterRankDeficit() throws SingularMatrixException {
+
+        final int Kprime = SystematicIndices.ceil(100);
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int SH = SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+        final int L = Kprime + SH;
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final byte[][] source = new byte[Kprime][];
+        for (int isi = 0; isi < Kprime; isi++) {
+            source[isi] = TestingCommon.randomBytes(SYMBOL_SIZE, rand);
+        }
+
+        final byte[][] expected = LinearSystem.PInactivationDecoding(
+            LinearSystem.generateConstraintMatrix(Kprime), newD(source, L, SH), Kprime);
+
+        // replace the rows of two source symbols by duplicates of other rows
+        final ByteMatrix A = LinearSystem.generateConstraintMatrix(Kprime);
+        final byte[][] D = newD(source, L, SH);
+        duplicateRow(A, D, SH + 7, SH + 8);
+        duplicateRow(A, D, SH + 20, SH + 50);
+
+        final LinearSystem.ResumableDecoding decoding = new LinearSystem.ResumableDecoding(A, D, Kprime);
+        assertSolveFails(decoding);
+        assertEquals(2, decoding.rankDeficit());
+
+        decoding.addSymbol(7, source[7].clone());
+        assertSolveFails(decoding);
+
+        decoding.addSymbol(20, source[20].clone());
+        assertArrayEquals(expected, decoding.solve());
+    }
+
+    @Test
+    public void testZeroOverheadRetries() {
+
+        final int K = 20;
+        final int Z = 200;
+        final Random rand = TestingCommon.newSeededRandom();
+        final int F = Z * K * SYMBOL_SIZE;
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, Z);
+        final byte[] data = TestingCommon.randomBytes(F, rand);
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParams);
+
+        // zero overhead decoders fail from time to time, and must succeed with later symbols
+        final ArrayDataDecoder dec = OpenRQ.newDecoderWithZeroOverhead(fecParams);
+        int failures = 0;
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final SourceBlockDecoder sbDec = dec.sourceBlock(sbEnc.sourceBlockNumber());
+
+            // lose about half of the source symbols
+            for (int esi = 0; esi < K; esi++) {
+                if (rand.nextBoolean()) {
+                    sbDec.putEncodingPacket(sbEnc.sourcePacket(esi));
+                }
+            }
+
+            int esi = K;
+            while (!sbDec.isSourceBlockDecoded()) {
+                if (sbDec.putEncodingPacket(sbEnc.repairPacket(esi++)) == SourceBlockState.DECODING_FAILURE) {
+                    failures++;
+                }
+            }
+            assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        }
+
+        assertTrue("no decoding failures were resumed", failures > 0);
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    private static byte[][] newD(byte[][] source, int L, int SH) {
+
+        final byte[][] D = new byte[L][SYMBOL_SIZE];
+        for (int isi = 0; isi < source.length; isi++) {
+            D[SH + isi] = source[isi].clone();
+        }
+        return D;
+    }
+
+    private static void duplicateRow(ByteMatrix A, byte[][] D, int row, int copiedRow) {
+
+        A.setRow(row, A.getRow(copiedRow));
+        D[row] = D[copiedRow].clone();
+    }
+
+    private static void assertSolveFails(LinearSystem.ResumableDecoding decoding) {
+
+        try {
+            decoding.solve();
+            fail("decoding should have failed");
+        }
+        catch (SingularMatrixException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that stream data encoders produce the same encoding packets as array data encoders.
+ */
+public class StreamDataEncoderTest {
+
+    private static final int SYMBOL_SIZE = 100;
+
+
+    @Test
+    public void testSameAsArrayEncoder() {
+
+        final int F = 3000 * SYMBOL_SIZE - 42; // the last source symbol is padded
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 3);
+        final byte[] data = TestingCommon.randomBytes(F, TestingCommon.newSeededRandom());
+
+        final ArrayDataEncoder arrayEnc = OpenRQ.newEncoder(data, fecParams);
+        // extra bytes after the source data are not read
+        final StreamDataEncoder streamEnc = OpenRQ.newEncoder(
+            new ByteArrayInputStream(Arrays.copyOf(data, F + 10)), fecParams);
+
+        int numBlocks = 0;
+        for (SourceBlockEncoder sbEnc : streamEnc.sourceBlockIterable()) {
+            final int sbn = sbEnc.sourceBlockNumber();
+            assertEquals(numBlocks++, sbn);
+            assertSame(sbEnc, streamEnc.sourceBlock(sbn));
+
+            final SourceBlockEncoder arraySbEnc = arrayEnc.sourceBlock(sbn);
+            final int K = sbEnc.numberOfSourceSymbols();
+            assertEquals(arraySbEnc.numberOfSourceSymbols(), K);
+            for (int esi = 0; esi < K + 10; esi++) {
+                assertArrayEquals(arraySbEnc.encodingPacket(esi).asArray(), sbEnc.encodingPacket(esi).asArray());
+            }
+        }
+        assertEquals(fecParams.numberOfSourceBlocks(), numBlocks);
+        assertFalse(streamEnc.hasNextSourceBlock());
+    }
+
+    @Test
+    public void testSkipsSourceBlocks() {
+
+        final int F = 3000 * SYMBOL_SIZE;
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 3);
+        final byte[] data = TestingCommon.randomBytes(F, TestingCommon.newSeededRandom());
+
+        final StreamDataEncoder streamEnc = OpenRQ.newEncoder(new ByteArrayInputStream(data), fecParams);
+        final SourceBlockEncoder sbEnc = streamEnc.sourceBlock(2);
+        assertArrayEquals(
+            OpenRQ.newEncoder(data, fecParams).sourceBlock(2).sourcePacket(0).asArray(),
+            sbEnc.sourcePacket(0).asArray());
+
+        try {
+            streamEnc.sourceBlock(1);
+            fail("expected IllegalStateException");
+        }
+        catch (IllegalStateException e) {
+            // the skipped source block was discarded
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testDataTooShort() throws IOException {
+
+        final int F = 1000;
+        final FECParameters fecParams = FECParameters.newParameters(F, SYMBOL_SIZE, 1);
+
+        OpenRQ.newEncoder(new ByteArrayInputStream(new byte[F - 1]), fecParams).nextSourceBlock();
+    }
+}
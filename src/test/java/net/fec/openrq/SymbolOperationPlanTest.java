@@ -0,0 +1,236 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.util.linearalgebra.LinearAlgebra;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.math.OctetOps;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that running a plan of symbol operations is the same as running each operation when it is recorded.
+ */
+public class SymbolOperationPlanTest {
+
+    private static final int NUM_SYMBOLS = 50;
+    private static final int NUM_REPLACED = 30; // the symbols replaced by a product, as in the third decoding phase
+    private static final int SYMBOL_SIZE = 40;
+    private static final int PARALLEL_SYMBOL_SIZE = 1000;
+    private static final int STRIPE_SIZE = 128;
+
+
+    @Test
+    public void testDecodingPhases() {
+
+        checkDecodingPhases(SYMBOL_SIZE, null, 0);
+    }
+
+    @Test
+    public void testStripedDecodingPhases() {
+
+        checkDecodingPhases(PARALLEL_SYMBOL_SIZE, null, STRIPE_SIZE);
+    }
+
+    @Test
+    public void testParallelDecodingPhases() {
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // several slices, the last of which is shorter than the others
+            checkDecodingPhases(PARALLEL_SYMBOL_SIZE, pool, 0);
+            checkDecodingPhases(PARALLEL_SYMBOL_SIZE, pool, STRIPE_SIZE);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void checkDecodingPhases(int symbolSize, ForkJoinPool pool, int stripeSize) {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final byte[][] expected = randomSymbols(symbolSize, rand);
+        final byte[][] actual = copyOf(expected);
+        final int[] d = randomPermutation(rand);
+        final SymbolOperationPlan plan = new SymbolOperationPlan(NUM_SYMBOLS);
+
+        // third phase: a lower triangular product
+        final ByteMatrix X = LinearAlgebra.CRS_FACTORY.createMatrix(NUM_REPLACED, NUM_REPLACED);
+        for (int row = 0; row < NUM_REPLACED; row++) {
+            X.set(row, row, (byte)(1 + rand.nextInt(255)));
+            for (int col = 0; col < row; col++) {
+                if (rand.nextInt(4) == 0) {
+                    X.set(row, col, (byte)rand.nextInt(256));
+                }
+            }
+        }
+        final byte[][] products = new byte[NUM_REPLACED][symbolSize];
+        for (int row = 0; row < NUM_REPLACED; row++) {
+            for (int col = 0; col <= row; col++) {
+                OctetOps.vectorVectorAdditionInPlace(X.get(row, col), expected[d[col]], products[row]);
+            }
+        }
+        for (int row = 0; row < NUM_REPLACED; row++) {
+            expected[d[row]] = products[row];
+        }
+        plan.multiplication(X, NUM_REPLACED, NUM_REPLACED, d);
+
+        // fourth phase: additions of the other symbols
+        for (int row = 0; row < NUM_REPLACED; row++) {
+            for (int j = NUM_REPLACED; j < NUM_SYMBOLS; j++) {
+                if (rand.nextInt(3) == 0) {
+                    final byte b = (byte)rand.nextInt(256);
+                    OctetOps.vectorVectorAdditionInPlace(b, expected[d[j]], expected[d[row]]);
+                    plan.addition(b, d[j], d[row]);
+                }
+            }
+        }
+
+        // fifth phase: divisions, and additions of the previous (final) symbols
+        for (int j = 0; j < NUM_REPLACED; j++) {
+            final byte beta = (byte)(1 + rand.nextInt(255));
+            OctetOps.valueVectorDivision(beta, expected[d[j]], expected[d[j]]);
+            plan.division(beta, d[j]);
+
+            for (int eL = 0; eL < j; eL++) {
+                if (rand.nextInt(3) == 0) {
+                    final byte beta2 = (byte)(rand.nextBoolean() ? 1 : rand.nextInt(256));
+                    OctetOps.vectorVectorAdditionInPlace(beta2, expected[d[eL]], expected[d[j]]);
+                    plan.addition(beta2, d[eL], d[j]);
+                }
+            }
+        }
+
+        plan.execute(actual, pool, stripeSize);
+        for (int k = 0; k < NUM_SYMBOLS; k++) {
+            assertArrayEquals(expected[k], actual[k]);
+        }
+    }
+
+    @Test
+    public void testInPlaceOperations() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final byte[][] expected = randomSymbols(rand);
+        final byte[][] actual = copyOf(expected);
+        final SymbolOperationPlan plan = new SymbolOperationPlan(NUM_SYMBOLS);
+
+        // every symbol only reads the final values of the previous ones, or unmodified symbols
+        for (int j = 0; j < NUM_REPLACED; j++) {
+            for (int k = 0; k < 5; k++) {
+                final int src = rand.nextBoolean() ? rand.nextInt(NUM_SYMBOLS - NUM_REPLACED) + NUM_REPLACED
+                                                   : (j == 0 ? NUM_REPLACED : rand.nextInt(j));
+                final byte mult = (byte)rand.nextInt(256);
+                OctetOps.vectorVectorAdditionInPlace(mult, expected[src], expected[j]);
+                plan.addition(mult, src, j);
+            }
+            final byte beta = (byte)(1 + rand.nextInt(255));
+            OctetOps.valueVectorDivision(beta, expected[j], expected[j]);
+            plan.division(beta, j);
+        }
+
+        final byte[][] arrays = actual.clone();
+        plan.execute(actual);
+        for (int k = 0; k < NUM_SYMBOLS; k++) {
+            assertArrayEquals(expected[k], actual[k]);
+            assertSame(arrays[k], actual[k]);
+        }
+    }
+
+    @Test
+    public void testCancellingOperations() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final byte[][] expected = randomSymbols(rand);
+        final byte[][] actual = copyOf(expected);
+        final SymbolOperationPlan plan = new SymbolOperationPlan(NUM_SYMBOLS);
+
+        plan.addition((byte)7, 1, 0);
+        plan.addition((byte)5, 2, 0);
+        plan.addition((byte)7, 1, 0);
+        plan.division((byte)3, 0);
+        plan.addition(OctetOps.aDividedByB((byte)5, (byte)3), 2, 0);
+
+        OctetOps.valueVectorDivision((byte)3, expected[0], expected[0]);
+        plan.execute(actual);
+        for (int k = 0; k < NUM_SYMBOLS; k++) {
+            assertArrayEquals(expected[k], actual[k]);
+        }
+    }
+
+    @Test
+    public void testModificationAfterFinalRead() {
+
+        final SymbolOperationPlan plan = new SymbolOperationPlan(NUM_SYMBOLS);
+        plan.division((byte)2, 0);
+        plan.addition((byte)1, 0, 1);
+        try {
+            plan.addition((byte)1, 2, 0);
+            fail("expected IllegalStateException");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static byte[][] randomSymbols(Random rand) {
+
+        return randomSymbols(SYMBOL_SIZE, rand);
+    }
+
+    private static byte[][] randomSymbols(int symbolSize, Random rand) {
+
+        final byte[][] D = new byte[NUM_SYMBOLS][];
+        for (int k = 0; k < NUM_SYMBOLS; k++) {
+            D[k] = TestingCommon.randomBytes(symbolSize, rand);
+        }
+        return D;
+    }
+
+    private static byte[][] copyOf(byte[][] D) {
+
+        final byte[][] copy = new byte[D.length][];
+        for (int k = 0; k < D.length; k++) {
+            copy[k] = D[k].clone();
+        }
+        return copy;
+    }
+
+    private static int[] randomPermutation(Random rand) {
+
+        final int[] d = new int[NUM_SYMBOLS];
+        for (int k = 0; k < NUM_SYMBOLS; k++) {
+            d[k] = k;
+        }
+        for (int k = NUM_SYMBOLS - 1; k > 0; k--) {
+            final int other = rand.nextInt(k + 1);
+            final int tmp = d[k];
+            d[k] = d[other];
+            d[other] = tmp;
+        }
+        return d;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that data decoders created with a pool run the symbol operations of the last decoding phases in that pool,
+ * and that data encoders and decoders created with a working set size run symbol operations over stripes.
+ */
+public class SymbolOperationsPoolTest {
+
+    // large enough for the symbols to be split into several slices
+    private static final int SYMBOL_SIZE = 2048;
+    private static final int NUM_SOURCE_BLOCKS = 2;
+    private static final int DATA_LENGTH = NUM_SOURCE_BLOCKS * 100 * SYMBOL_SIZE;
+
+
+    @Test
+    public void testDecodingWithPool() {
+
+        final AtomicInteger numThreads = new AtomicInteger();
+        final ForkJoinPool pool = new ForkJoinPool(4, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool p) {
+
+                numThreads.incrementAndGet();
+                return ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            }
+        }, null, false);
+
+        try {
+            final FECParameters fecParams = FECParameters.newParameters(DATA_LENGTH, SYMBOL_SIZE, NUM_SOURCE_BLOCKS);
+            final byte[] data = TestingCommon.randomBytes(DATA_LENGTH, TestingCommon.newSeededRandom());
+
+            // a decoder without a pool does not use the pool of another decoder
+            assertArrayEquals(data, decode(data, OpenRQ.newDecoder(fecParams, 0)));
+            assertEquals(0, numThreads.get());
+
+            assertArrayEquals(data, decode(data, OpenRQ.newDecoder(fecParams, 0, pool)));
+            assertTrue("expected symbol operations in the pool", numThreads.get() > 0);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testNullPool() {
+
+        final FECParameters fecParams = FECParameters.newParameters(DATA_LENGTH, SYMBOL_SIZE, NUM_SOURCE_BLOCKS);
+        try {
+            OpenRQ.newDecoder(fecParams, 0, (ForkJoinPool)null);
+            fail("expected NullPointerException");
+        }
+        catch (NullPointerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStripedSymbolOperations() {
+
+        final FECParameters fecParams = FECParameters.newParameters(DATA_LENGTH, SYMBOL_SIZE, NUM_SOURCE_BLOCKS);
+        final byte[] data = TestingCommon.randomBytes(DATA_LENGTH, TestingCommon.newSeededRandom());
+
+        // the smallest stripes
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParams);
+        final ArrayDataEncoder stripedEnc = OpenRQ.newEncoder(data, fecParams, 1);
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final int K = sbEnc.numberOfSourceSymbols();
+            final SourceBlockEncoder stripedSbEnc = stripedEnc.sourceBlock(sbEnc.sourceBlockNumber());
+            assertArrayEquals(sbEnc.repairPacket(K, 10).asArray(), stripedSbEnc.repairPacket(K, 10).asArray());
+        }
+
+        assertArrayEquals(data, decode(data, OpenRQ.newDecoder(fecParams, 0, null, 1)));
+    }
+
+    @Test
+    public void testNegativeWorkingSetSize() {
+
+        final FECParameters fecParams = FECParameters.newParameters(DATA_LENGTH, SYMBOL_SIZE, NUM_SOURCE_BLOCKS);
+        try {
+            OpenRQ.newEncoder(new byte[DATA_LENGTH], fecParams, -1);
+            fail("expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            OpenRQ.newDecoder(fecParams, 0, null, -1);
+            fail("expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static byte[] decode(byte[] data, ArrayDataDecoder dec) {
+
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, dec.fecParameters());
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final SourceBlockDecoder sbDec = dec.sourceBlock(sbEnc.sourceBlockNumber());
+            final int K = sbEnc.numberOfSourceSymbols();
+
+            // lose every other source symbol, and replace them with repair symbols
+            for (int esi = 1; esi < K; esi += 2) {
+                sbDec.putEncodingPacket(sbEnc.sourcePacket(esi));
+            }
+            for (int esi = K; esi < K + (K + 1) / 2; esi++) {
+                sbDec.putEncodingPacket(sbEnc.repairPacket(esi));
+            }
+            assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        }
+        return dec.dataArray();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the reuse of symbol rows by a {@link SymbolRowPool}, and decodings that use pooled rows as working memory.
+ */
+public class SymbolRowPoolTest {
+
+    private static final int SYMBOL_SIZE = 16;
+
+
+    @Test
+    public void testReuse() {
+
+        final SymbolRowPool pool = new SymbolRowPool(SYMBOL_SIZE, 1);
+        final byte[] row = pool.acquire();
+        assertEquals(SYMBOL_SIZE, row.length);
+
+        Arrays.fill(row, (byte)1);
+        pool.release(row, new byte[SYMBOL_SIZE]); // the second row is discarded, since the pool is full
+        assertSame(row, pool.acquire());
+
+        pool.release(row);
+        assertSame(row, pool.acquireZeroed());
+        assertArrayEquals(new byte[SYMBOL_SIZE], row);
+
+        // rows of other sizes are ignored
+        pool.release(new byte[SYMBOL_SIZE + 1]);
+        assertEquals(SYMBOL_SIZE, pool.acquire().length);
+    }
+
+    @Test
+    public void testPooledDecodings() throws SingularMatrixException {
+
+        final int Kprime = SystematicIndices.ceil(100);
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int SH = SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+        final int L = Kprime + SH;
+
+        final SymbolRowPool pool = new SymbolRowPool(SYMBOL_SIZE, L);
+        final Random rand = TestingCommon.newSeededRandom();
+
+        for (int n = 0; n < 3; n++) {
+            final byte[][] D = new byte[L][];
+            for (int row = 0; row < L; row++) {
+                D[row] = (row < SH) ? pool.acquireZeroed() : pool.acquire();
+                if (row >= SH) {
+                    rand.nextBytes(D[row]);
+                }
+            }
+
+            final byte[][] expected = LinearSystem.PInactivationDecoding(
+                LinearSystem.generateConstraintMatrix(Kprime), deepCopy(D), Kprime);
+
+            final LinearSystem.ResumableDecoding decoding = new LinearSystem.ResumableDecoding(
+                LinearSystem.generateConstraintMatrix(Kprime), D, Kprime, pool);
+            final byte[][] C = decoding.solve();
+            assertArrayEquals(expected, C);
+
+            // the intermediate symbols are released with the rows of the system
+            decoding.releaseRows();
+            final Set<byte[]> released = Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>());
+            released.addAll(Arrays.asList(C));
+            assertTrue(released.contains(pool.acquire()));
+        }
+    }
+
+    private static byte[][] deepCopy(byte[][] D) {
+
+        final byte[][] copy = new byte[D.length][];
+        for (int row = 0; row < D.length; row++) {
+            copy[row] = D[row].clone();
+        }
+        return copy;
+    }
+}
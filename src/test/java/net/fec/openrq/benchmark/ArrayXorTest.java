@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.benchmark;
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.util.datatype.SizeOf;
+import net.fec.openrq.util.math.OctetOps;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares the in-place OctetOps kernels over arrays, which work on single bytes, with long-wide versions that read
+ * and write the arrays through heap buffer views.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@Fork(0)
+@State(Scope.Benchmark)
+public class ArrayXorTest {
+
+    @Param({"64", "1500", "8192"})
+    public int size;
+
+    // a region of the source array that does not start at the same index as the destination region
+    @Param({"0", "3"})
+    public int srcOffset;
+
+    private byte[] src;
+    private byte[] dst;
+    private byte[][] multTable;
+
+
+    @Setup
+    public void setup() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        src = TestingCommon.randomBytes(srcOffset + size, rand);
+        dst = TestingCommon.randomBytes(size, rand);
+
+        multTable = new byte[256][256];
+        for (int a = 0; a < 256; a++) {
+            for (int b = 0; b < 256; b++) {
+                multTable[a][b] = OctetOps.aTimesB((byte)a, (byte)b);
+            }
+        }
+    }
+
+    @Benchmark
+    public void testBytes() {
+
+        OctetOps.vectorVectorAdditionInPlace(src, srcOffset, dst, 0, size);
+    }
+
+    @Benchmark
+    public void testLongs() {
+
+        final ByteBuffer srcBuf = ByteBuffer.wrap(src).order(ByteOrder.nativeOrder());
+        final ByteBuffer dstBuf = ByteBuffer.wrap(dst).order(ByteOrder.nativeOrder());
+        final int longEnd = (size / SizeOf.LONG) * SizeOf.LONG;
+
+        int s = srcOffset;
+        int d = 0;
+        for (; d < longEnd; s += SizeOf.LONG, d += SizeOf.LONG) {
+            dstBuf.putLong(d, srcBuf.getLong(s) ^ dstBuf.getLong(d));
+        }
+        for (; d < size; s++, d++) {
+            dst[d] ^= src[s];
+        }
+    }
+
+    @Benchmark
+    public void testMultiplyAddBytes() {
+
+        OctetOps.vectorVectorAdditionInPlace((byte)77, src, srcOffset, dst, 0, size);
+    }
+
+    @Benchmark
+    public void testMultiplyAddLongs() {
+
+        final byte[] prodRow = multTable[77];
+        final ByteBuffer dstBuf = ByteBuffer.wrap(dst).order(ByteOrder.BIG_ENDIAN);
+        final int longEnd = (size / SizeOf.LONG) * SizeOf.LONG;
+
+        int s = srcOffset;
+        int d = 0;
+        for (; d < longEnd; d += SizeOf.LONG) {
+            long prod = 0L;
+            for (int i = 0; i < SizeOf.LONG; i++, s++) {
+                prod = (prod << Byte.SIZE) | (prodRow[src[s] & 0xFF] & 0xFFL);
+            }
+            dstBuf.putLong(d, prod ^ dstBuf.getLong(d));
+        }
+        for (; d < size; s++, d++) {
+            dst[d] ^= prodRow[src[s] & 0xFF];
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
                Basic1DFactoryTest.class,
                Basic2DFactoryTest.class,
+               BitPackedFactoryTest.class,
                CCSFactoryTest.class,
                CRSFactoryTest.class
 })
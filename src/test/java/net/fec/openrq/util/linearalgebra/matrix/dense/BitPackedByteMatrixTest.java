@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.util.linearalgebra.matrix.dense;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+import net.fec.openrq.util.linearalgebra.LinearAlgebra;
+import net.fec.openrq.util.linearalgebra.factory.BitPackedFactory;
+import net.fec.openrq.util.linearalgebra.factory.Factory;
+import net.fec.openrq.util.linearalgebra.io.ByteVectorIterator;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+
+import org.junit.Test;
+
+
+public class BitPackedByteMatrixTest extends DenseByteMatrixTest {
+
+    private static final int ROWS = 20;
+    private static final int COLUMNS = 200; // spans several words, with a partial last word
+
+
+    @Override
+    public Factory factory() {
+
+        return new BitPackedFactory();
+    }
+
+    @Test
+    public void testBinaryRowConversions() {
+
+        final BitPackedByteMatrix a = new BitPackedByteMatrix(new byte[][] {
+                                                                            {0, 1, 1},
+                                                                            {0, 2, 0}
+        });
+        assertTrue(a.isBinaryRow(0));
+        assertFalse(a.isBinaryRow(1));
+
+        a.addRowsInPlace((byte)3, 1, 0);
+        assertFalse(a.isBinaryRow(0));
+        assertArrayEquals(new byte[] {0, 1 ^ 6, 1}, a.toArray()[0]);
+
+        a.clearRow(1);
+        assertTrue(a.isBinaryRow(1));
+        a.set(1, 2, (byte)1);
+        assertTrue(a.isBinaryRow(1));
+        a.set(1, 2, (byte)7);
+        assertFalse(a.isBinaryRow(1));
+        assertEquals(7, a.get(1, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArrayOfInvalidLength() {
+
+        new BitPackedByteMatrix(ROWS, COLUMNS, new byte[ROWS * COLUMNS - 1]);
+    }
+
+    @Test
+    public void testSameAsBasic2DMatrix() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final ByteMatrix expected = new Basic2DByteMatrix(ROWS, COLUMNS);
+        final ByteMatrix actual = new BitPackedByteMatrix(ROWS, COLUMNS);
+
+        // mostly sparse binary rows, with a few dense ones
+        for (int i = 0; i < ROWS; i++) {
+            for (int j = 0; j < COLUMNS; j++) {
+                final byte value;
+                if (i % 7 == 6) {
+                    value = (byte)rand.nextInt(256);
+                }
+                else {
+                    value = (byte)(rand.nextInt(8) == 0 ? 1 : 0);
+                }
+                expected.set(i, j, value);
+                actual.set(i, j, value);
+            }
+        }
+        assertEquals(expected, actual);
+
+        for (int step = 0; step < 2000; step++) {
+            final int r1 = rand.nextInt(ROWS);
+            final int r2 = rand.nextInt(ROWS);
+            final int from = rand.nextInt(COLUMNS);
+            final int to = from + rand.nextInt(COLUMNS - from + 1);
+            // mostly binary operations
+            final byte multiplier = (byte)(rand.nextInt(4) == 0 ? rand.nextInt(256) : 1);
+
+            switch (rand.nextInt(5)) {
+                case 0:
+                    if (r1 != r2) {
+                        expected.addRowsInPlace(multiplier, r1, r2, from, to);
+                        actual.addRowsInPlace(multiplier, r1, r2, from, to);
+                    }
+                break;
+
+                case 1:
+                    expected.swapRows(r1, r2);
+                    actual.swapRows(r1, r2);
+                break;
+
+                case 2:
+                    final int col = rand.nextInt(COLUMNS);
+                    expected.swapColumns(from, col);
+                    actual.swapColumns(from, col);
+                break;
+
+                case 3:
+                    assertEquals(expected.nonZerosInRow(r1, from, to), actual.nonZerosInRow(r1, from, to));
+                    assertArrayEquals(
+                        expected.nonZeroPositionsInRow(r1, from, to), actual.nonZeroPositionsInRow(r1, from, to));
+                break;
+
+                case 4:
+                    final ByteVectorIterator expIt = expected.nonZeroRowIterator(r1, from, to);
+                    final ByteVectorIterator actIt = actual.nonZeroRowIterator(r1, from, to);
+                    while (expIt.hasNext()) {
+                        assertTrue(actIt.hasNext());
+                        expIt.next();
+                        actIt.next();
+                        assertEquals(expIt.index(), actIt.index());
+                        assertEquals(expIt.get(), actIt.get());
+                    }
+                    assertFalse(actIt.hasNext());
+                break;
+            }
+        }
+        assertEquals(expected, actual);
+
+        final ByteMatrix other = LinearAlgebra.BASIC2D_FACTORY.createRandomMatrix(COLUMNS, 10, rand);
+        assertEquals(expected.multiply(other), actual.multiply(other));
+        assertEquals(
+            expected.multiply(other, 2, 9, 0, 50, 0, 50, 3, 7),
+            actual.multiply(other, 2, 9, 0, 50, 0, 50, 3, 7));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.util.math;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.fec.openrq.common.TestingCommon;
+
+import org.junit.Test;
+
+
+/**
+ * Checks the symbol-wide octet kernels against the scalar octet operations.
+ */
+public class OctetOpsTest {
+
+    // not a multiple of 8, so that the trailing bytes of the long-wide paths are also exercised
+    private static final int SYMBOL_SIZE = 1500 + 3;
+
+
+    private static byte[] expectedMultiplyAdd(byte mult, byte[] src, byte[] dst) {
+
+        final byte[] exp = new byte[dst.length];
+        for (int i = 0; i < exp.length; i++) {
+            exp[i] = OctetOps.aPlusB(OctetOps.aTimesB(mult, src[i]), dst[i]);
+        }
+        return exp;
+    }
+
+    @Test
+    public void testVectorVectorAdditionInPlace() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final byte[] src = TestingCommon.randomBytes(SYMBOL_SIZE, rand);
+
+        for (int m = 0; m < 256; m++) {
+            final byte mult = (byte)m;
+            final byte[] dst = TestingCommon.randomBytes(SYMBOL_SIZE, rand);
+            final byte[] exp = expectedMultiplyAdd(mult, src, dst);
+
+            OctetOps.vectorVectorAdditionInPlace(mult, src, dst);
+            assertArrayEquals(exp, dst);
+        }
+    }
+
+    @Test
+    public void testVectorVectorAdditionInPlaceIntoBuffer() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final byte[] src = TestingCommon.randomBytes(SYMBOL_SIZE + 5, rand);
+
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            final byte[] dst = TestingCommon.randomBytes(SYMBOL_SIZE, rand);
+            final byte[] exp = expectedMultiplyAdd((byte)1, Arrays.copyOfRange(src, 5, SYMBOL_SIZE + 5), dst);
+
+            // unaligned regions, and a buffer position that is left unchanged
+            final ByteBuffer dstBuf = ByteBuffer.allocateDirect(SYMBOL_SIZE + 3).order(order);
+            dstBuf.position(3);
+            dstBuf.put(dst).position(1);
+            OctetOps.vectorVectorAdditionInPlace(src, 5, dstBuf, 3, SYMBOL_SIZE);
+            assertEquals(1, dstBuf.position());
+            dstBuf.position(3);
+            assertArrayEquals(exp, copyOf(dstBuf));
+        }
+    }
+
+    @Test
+    public void testVectorVectorAdditionWithMultiplier() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final byte[] src = TestingCommon.randomBytes(SYMBOL_SIZE, rand);
+
+        for (int m = 0; m < 256; m++) {
+            final byte mult = (byte)m;
+            final byte[] dst = TestingCommon.randomBytes(SYMBOL_SIZE, rand);
+            final byte[] exp = expectedMultiplyAdd(mult, src, dst);
+
+            final byte[] res = new byte[SYMBOL_SIZE];
+            OctetOps.vectorVectorAddition(mult, src, dst, res);
+            assertArrayEquals(exp, res);
+
+            final ByteBuffer resBuf = ByteBuffer.allocate(SYMBOL_SIZE);
+            OctetOps.vectorVectorAddition(mult, ByteBuffer.wrap(src), ByteBuffer.wrap(dst), resBuf);
+            assertArrayEquals(exp, resBuf.array());
+        }
+    }
+
+    @Test
+    public void testValueVectorProductAndDivision() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        final byte[] src = TestingCommon.randomBytes(SYMBOL_SIZE, rand);
+
+        for (int m = 1; m < 256; m++) {
+            final byte value = (byte)m;
+            final byte[] expProd = new byte[SYMBOL_SIZE];
+            final byte[] expQuot = new byte[SYMBOL_SIZE];
+            for (int i = 0; i < SYMBOL_SIZE; i++) {
+                expProd[i] = OctetOps.aTimesB(value, src[i]);
+                expQuot[i] = OctetOps.aDividedByB(src[i], value);
+            }
+
+            final byte[] prod = new byte[SYMBOL_SIZE];
+            OctetOps.valueVectorProduct(value, src, prod);
+            assertArrayEquals(expProd, prod);
+
+            final ByteBuffer prodBuf = ByteBuffer.allocateDirect(SYMBOL_SIZE);
+            OctetOps.valueVectorProduct(value, ByteBuffer.wrap(src), prodBuf);
+            assertArrayEquals(expProd, copyOf(prodBuf));
+
+            final byte[] quot = new byte[SYMBOL_SIZE];
+            OctetOps.valueVectorDivision(value, src, quot);
+            assertArrayEquals(expQuot, quot);
+
+            final ByteBuffer quotBuf = ByteBuffer.allocateDirect(SYMBOL_SIZE);
+            OctetOps.valueVectorDivision(value, ByteBuffer.wrap(src), quotBuf);
+            assertArrayEquals(expQuot, copyOf(quotBuf));
+        }
+    }
+
+    private static byte[] copyOf(ByteBuffer buf) {
+
+        final byte[] array = new byte[buf.remaining()];
+        buf.duplicate().get(array);
+        return array;
+    }
+}